@@ -7,10 +7,14 @@ import java.net.URI;
 import java.time.Duration;
 
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import java.net.ConnectException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 
 /**
@@ -21,6 +25,8 @@ import java.io.IOException;
  * <a href="http://localhost:8080/logstore/stats/">...</a><type>
  * and writes the response to the specified file.
  * CSV responses are text, Excel responses are binary (.xlsx).
+ * The URL and ETag of the download are kept next to the file (fileName.etag), the ETag is sent back as If-None-Match
+ * when the file was downloaded from the same URL; when the server answers 304 the file is already current and is left untouched.
  * Exits with error messages if arguments are invalid, the server is unavailable, or the response status is not 200.
  */
 public class Client {
@@ -45,19 +51,43 @@ public class Client {
 
         // Try to connect to server
         var client = HttpClient.newHttpClient();
-        var request = HttpRequest.newBuilder()
-                .GET()
-                .uri(URI.create(url))
-                .timeout(Duration.ofSeconds(15))
-                .build();
+        Path file = Paths.get(fileName);
+        Path etagFile = Paths.get(fileName + ".etag");
         try {
+            var builder = HttpRequest.newBuilder()
+                    .GET()
+                    .uri(URI.create(url))
+                    .timeout(Duration.ofSeconds(15))
+                    .header("Accept-Encoding", "gzip"); // CSV compresses well, Excel is sent as it is
+            if (Files.exists(file) && Files.exists(etagFile)) { // only skip a download we still have
+                List<String> saved = Files.readAllLines(etagFile); // URL, then ETag
+                if (saved.size() == 2 && saved.get(0).equals(url)) { // not a csv ETag for an excel download
+                    builder.header("If-None-Match", saved.get(1).trim());
+                }
+            }
             // excel is binary content
-            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            HttpResponse<byte[]> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() == 304) {
+                System.out.println(fileName + " is up to date");
+                return;
+            }
             if (response.statusCode() != 200) {
                 System.err.println("Error: Server returned status " + response.statusCode());
                 System.exit(1);
             }
-            Files.write(Paths.get(fileName), response.body());
+            byte[] body = response.body();
+            if (response.headers().firstValue("Content-Encoding").orElse("").equals("gzip")) {
+                try (var in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                    body = in.readAllBytes();
+                }
+            }
+            Files.write(file, body);
+            var etag = response.headers().firstValue("ETag");
+            if (etag.isPresent()) {
+                Files.writeString(etagFile, url + "\n" + etag.get() + "\n");
+            } else {
+                Files.deleteIfExists(etagFile);
+            }
         } catch (ConnectException e) {
             System.err.println("Error: Server is not available at http://localhost:8080/logstore/");
         } catch (IOException e) {
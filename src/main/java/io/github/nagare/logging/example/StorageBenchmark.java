@@ -0,0 +1,129 @@
+package io.github.nagare.logging.example;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import io.github.nagare.logging.server.LogEvent;
+import io.github.nagare.logging.server.LogEventRepository;
+import io.github.nagare.logging.server.StatsHelper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+
+
+/**
+ * Populates a file-based H2 database and reports storage size and query latency.
+ * Run it before and after a storage change to compare the numbers.
+ * The database is created from scratch in target/bench on every run.
+ * Test with command below:
+ * mvn exec:java -Dexec.mainClass="io.github.nagare.logging.example.StorageBenchmark" -Dexec.args="100000"
+ * <br>
+ * For PostgreSQL, table and index size can be checked directly with:
+ * SELECT pg_size_pretty(pg_table_size('log_events')), pg_size_pretty(pg_indexes_size('log_events'));
+ */
+public class StorageBenchmark {
+
+    private static final Random random = new Random(42);
+    private static final String[] LEVELS = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR", "FATAL"};
+    private static final int LOOKUPS = 10_000;
+    private static final int SCANS = 20;
+    // File based, in-memory H2 does not report its size
+    private static final String BENCH_URL = "jdbc:h2:file:./target/bench/logDB";
+
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 100_000;
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("logDB_dev",
+                Map.of("jakarta.persistence.jdbc.url", BENCH_URL,
+                        "jakarta.persistence.schema-generation.database.action", "drop-and-create"));
+        LogEventRepository repo = new LogEventRepository(emf);
+
+        List<String> ids = populate(repo, count);
+        System.out.println("events:              " + count);
+        System.out.println("table size (bytes):  " + diskSpaceUsed(emf));
+        System.out.printf("point lookup (avg):  %.1f us%n", pointLookupMicros(repo, ids));
+        System.out.printf("GET /logs ALL (avg): %.1f ms%n", scanMillis(() -> repo.filterLogs("1000", "ALL")));
+        System.out.printf("GET /logs WARN (avg):%.1f ms%n", scanMillis(() -> repo.filterLogs("1000", "WARN")));
+        StatsHelper helper = new StatsHelper(repo);
+        System.out.printf("stats (avg):         %.1f ms%n", scanMillis(helper::getLogStatistics));
+
+        emf.close();
+    }
+
+
+    /**
+     * Insert count random log events
+     * @param repo repository to save into
+     * @param count number of events
+     * @return ids of the inserted events
+     */
+    private static List<String> populate(LogEventRepository repo, int count) {
+        List<String> ids = new ArrayList<>(count);
+        Instant start = Instant.now();
+        for (int i = 0; i < count; i++) {
+            LogEvent event = new LogEvent();
+            event.setId(UUID.randomUUID().toString());
+            event.setMessage("Benchmark message " + i);
+            event.setTimestamp(start.minus(Duration.ofMillis(i)).toString());
+            event.setThread("worker-" + random.nextInt(16));
+            event.setLogger("com.company.service.Service" + random.nextInt(50));
+            event.setLevel(LEVELS[random.nextInt(LEVELS.length)]);
+            repo.save(event);
+            ids.add(event.getId());
+        }
+        return ids;
+    }
+
+
+    /**
+     * Measure average latency of primary key lookups over random ids
+     * @param repo repository to read from
+     * @param ids existing ids
+     * @return average lookup time in microseconds
+     */
+    private static double pointLookupMicros(LogEventRepository repo, List<String> ids) {
+        // warm up JIT and connection
+        for (int i = 0; i < LOOKUPS / 10; i++) {
+            repo.getById(ids.get(random.nextInt(ids.size())));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            repo.getById(ids.get(random.nextInt(ids.size())));
+        }
+        return (System.nanoTime() - start) / 1000.0 / LOOKUPS;
+    }
+
+
+    /**
+     * Measure average time of a query that scans the table
+     * @param scan query to run
+     * @return average time in milliseconds
+     */
+    private static double scanMillis(Runnable scan) {
+        scan.run(); // warm up
+        long start = System.nanoTime();
+        for (int i = 0; i < SCANS; i++) {
+            scan.run();
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / SCANS;
+    }
+
+
+    /**
+     * Ask H2 how much space log_events uses, including its indexes
+     * <a href="https://h2database.com/html/functions.html#disk_space_used">...</a>
+     * @param emf EntityManagerFactory of the H2 database
+     * @return size in bytes
+     */
+    private static long diskSpaceUsed(EntityManagerFactory emf) {
+        try (EntityManager em = emf.createEntityManager()) {
+            Number size = (Number) em.createNativeQuery("SELECT DISK_SPACE_USED('LOG_EVENTS')").getSingleResult();
+            return size.longValue();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package io.github.nagare.logging.server;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.TypedQuery;
+
+
+/**
+ * Deletes log events in bounded-size chunks, one short transaction per chunk.
+ * A single DELETE over a billion rows holds locks and writes WAL for the whole run,
+ * chunks keep every transaction small and the pause between them leaves room for ingest.
+ * Chunks are taken oldest first, so an interrupted run has still removed the oldest data.
+ * <br>
+ * Implements MBean interface to report progress and throughput via JMX.
+ */
+public class ChunkedDeleter implements ChunkedDeleterMBean {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    public static final long DEFAULT_PAUSE_MILLIS = 50;
+
+    private final EntityManagerFactory emf;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final AtomicLong totalDeleted = new AtomicLong();
+    private final AtomicLong chunkCount = new AtomicLong();
+    private final AtomicLong currentRunDeleted = new AtomicLong();
+    private volatile long runStartNanos;
+    private volatile long runEndNanos;
+    private volatile boolean running;
+    private String name;
+
+    /**
+     * Deleter with default chunk size and pause
+     * @param emf EntityManagerFactory of the database holding log_events
+     */
+    public ChunkedDeleter(EntityManagerFactory emf) {
+        this(emf, DEFAULT_CHUNK_SIZE, DEFAULT_PAUSE_MILLIS);
+    }
+
+    /**
+     * @param emf EntityManagerFactory of the database holding log_events
+     * @param chunkSize maximum number of rows deleted per transaction
+     * @param pauseMillis pause between two chunks
+     */
+    public ChunkedDeleter(EntityManagerFactory emf, int chunkSize, long pauseMillis) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        if (pauseMillis < 0) {
+            throw new IllegalArgumentException("pauseMillis cannot be negative");
+        }
+        this.emf = emf;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+
+    /**
+     * Delete every log event selected by the filter, chunk by chunk.
+     * Runs are serialized, a second caller waits for the first one to finish.
+     * @param filter selection of log events to delete
+     * @return number of deleted log events
+     */
+    public synchronized long delete(DeleteFilter filter) {
+        running = true;
+        currentRunDeleted.set(0);
+        runStartNanos = System.nanoTime();
+        try {
+            while (true) {
+                int deleted = deleteChunk(filter);
+                currentRunDeleted.addAndGet(deleted);
+                totalDeleted.addAndGet(deleted);
+                if (deleted > 0) chunkCount.incrementAndGet();
+                if (deleted < chunkSize) break; // nothing left
+                if (!pause()) break;
+            }
+            return currentRunDeleted.get();
+        } finally {
+            runEndNanos = System.nanoTime();
+            running = false;
+        }
+    }
+
+
+    /**
+     * Delete one chunk in its own transaction
+     * @param filter selection of log events to delete
+     * @return number of rows deleted, less than chunkSize when done
+     */
+    private int deleteChunk(DeleteFilter filter) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            TypedQuery<String> select = em.createQuery(
+                    "SELECT L.id FROM LogEvent L WHERE " + where(filter) + " ORDER BY L.eventTime", String.class);
+            bind(select, filter);
+            List<String> ids = select.setMaxResults(chunkSize).getResultList();
+            if (ids.isEmpty()) {
+                tx.commit();
+                return 0;
+            }
+            int deleted = em.createQuery("DELETE FROM LogEvent WHERE id IN :ids")
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+            tx.commit();
+            return deleted;
+        }
+        catch (Exception e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        }
+        finally {
+            em.close();
+        }
+    }
+
+
+    private static String where(DeleteFilter filter) {
+        StringBuilder where = new StringBuilder("1 = 1");
+        if (filter.getBefore() != null) where.append(" AND L.eventTime < :before");
+        if (filter.getMaxLevel() != null) where.append(" AND L.level <= :maxLevel"); // LevelConverter
+        if (filter.getLoggerPrefix() != null) {
+            where.append(" AND L.loggerId IN (SELECT N.id FROM LoggerName N WHERE N.name LIKE :prefix ESCAPE '!')");
+        }
+        return where.toString();
+    }
+
+
+    private static void bind(TypedQuery<?> query, DeleteFilter filter) {
+        if (filter.getBefore() != null) query.setParameter("before", filter.getBefore());
+        if (filter.getMaxLevel() != null) query.setParameter("maxLevel", filter.getMaxLevel());
+        if (filter.getLoggerPrefix() != null) {
+            String escaped = filter.getLoggerPrefix().replace("!", "!!").replace("%", "!%").replace("_", "!_");
+            query.setParameter("prefix", escaped + "%");
+        }
+    }
+
+
+    /**
+     * Throttle between chunks
+     * @return false if interrupted, the run stops
+     */
+    private boolean pause() {
+        if (pauseMillis == 0) return true;
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+
+    @Override
+    public long getCurrentRunDeleted() {
+        return currentRunDeleted.get();
+    }
+
+
+    @Override
+    public long getTotalDeleted() {
+        return totalDeleted.get();
+    }
+
+
+    @Override
+    public long getChunkCount() {
+        return chunkCount.get();
+    }
+
+
+    @Override
+    public double getRowsPerSecond() {
+        long start = runStartNanos;
+        if (start == 0) return 0;
+        long end = running ? System.nanoTime() : runEndNanos;
+        double seconds = (end - start) / 1_000_000_000.0;
+        return (seconds <= 0) ? 0 : currentRunDeleted.get() / seconds;
+    }
+
+
+    @Override
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+
+    @Override
+    public long getPauseMillis() {
+        return pauseMillis;
+    }
+
+
+    /**
+     * Register this ChunkedDeleter as an MBean with the platform MBeanServer
+     * @param name instance name of the MBean
+     */
+    public void registerMBean(String name) {
+        MBeanRegistry.register(this, "ChunkedDeleter", name);
+        this.name = name;
+    }
+
+
+    /**
+     * Unregisters this ChunkedDeleter as an MBean with the platform MBeanServer
+     */
+    public void unregisterMBean() {
+        if (this.name == null) {
+            return;
+        }
+        MBeanRegistry.unregister("ChunkedDeleter", name);
+        this.name = null;
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.nagare.logging.server;
+
+/**
+ * MBean interface for ChunkedDeleter.
+ * Reports progress and throughput of bulk deletes and retention purges.
+ * The MBean class MUST implement an interface with the following name: “class name” plus MBean.
+ */
+public interface ChunkedDeleterMBean {
+
+    /**
+     * Check whether a delete is in progress
+     * @return true while chunks are being deleted
+     */
+    public boolean isRunning();
+
+    /**
+     * Get the number of rows deleted by the current run, or by the last run if none is in progress
+     * @return the number of rows deleted by the current run
+     */
+    public long getCurrentRunDeleted();
+
+    /**
+     * Get the number of rows deleted since start up
+     * @return the total number of deleted rows
+     */
+    public long getTotalDeleted();
+
+    /**
+     * Get the number of committed chunks since start up
+     * @return the total number of chunks
+     */
+    public long getChunkCount();
+
+    /**
+     * Get the throughput of the current run, or of the last run if none is in progress
+     * @return deleted rows per second
+     */
+    public double getRowsPerSecond();
+
+    /**
+     * Get the maximum number of rows deleted per transaction
+     * @return the chunk size
+     */
+    public int getChunkSize();
+
+    /**
+     * Get the pause between two chunks, leaving room for ingest
+     * @return the pause in milliseconds
+     */
+    public long getPauseMillis();
+}
@@ -0,0 +1,435 @@
+package io.github.nagare.logging.server;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Columnar side store of (event time, logger, level) in front of another LogStore, for the stats servlets.
+ * Row engines drag message and errorDetails through every aggregation, here each column is a primitive array:
+ * event times in long[], dictionary coded loggers in int[], level ordinals in byte[].
+ * <br>
+ * Rows are appended on ingest to the active chunk, which is sealed once full (CHUNK_ROWS rows).
+ * Chunk columns grow with their rows, a chunk holding few rows (the active one, a packed one) stays small.
+ * Sealed columns never change, deletes only set bits in the deletion bitmap of a chunk,
+ * which is possible because every DeleteFilter criterion is one of the columns;
+ * deleteById reads the event first and marks one row with the same time, logger and level.
+ * A background job compacts the chunks every minute, the live rows of sealed chunks with at least half
+ * of their rows deleted are packed into new chunks.
+ * Aggregations (per logger and level, per time bucket for the rollups) are tight loops over the columns,
+ * one task per chunk on the common ForkJoinPool.
+ * <br>
+ * On startup the columns are filled from a paged scan of the backing store reading only time, logger and level.
+ * Only writes made through this store are seen, so the backing store must not be shared with another writer.
+ */
+public class ColumnarStatsStore implements LogStore {
+
+    static final int CHUNK_ROWS = 65_536;
+    static final long COMPACT_PERIOD_SECONDS = 60;
+
+    private final LogStore backing;
+    private volatile List<Chunk> chunks = new CopyOnWriteArrayList<>(); // oldest first, last one is active, replaced by compact
+    private final Map<String, Integer> loggerIds = new ConcurrentHashMap<>();
+    private final List<String> loggerNames = new CopyOnWriteArrayList<>(); // index = logger id
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ScheduledExecutorService compactor;
+
+    /**
+     * Create the side store and load the columns of the events already stored
+     * @param backing store holding every event
+     */
+    public ColumnarStatsStore(LogStore backing) {
+        this.backing = backing;
+        LogScan.forEach(backing, List.of("logger", "level"), null, null, page -> {
+            writeLock.lock();
+            try {
+                page.forEach(this::append);
+            } finally {
+                writeLock.unlock();
+            }
+        });
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-columnar-compact");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compactSafely, COMPACT_PERIOD_SECONDS, COMPACT_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+
+    /**
+     * Get the store behind the columns
+     * @return backing LogStore
+     */
+    public LogStore getBacking() {
+        return backing;
+    }
+
+
+    @Override
+    public void save(LogEvent logEvent) {
+        saveAll(List.of(logEvent));
+    }
+
+
+    @Override
+    public void saveAll(List<LogEvent> logEvents) {
+        writeLock.lock();
+        try {
+            backing.saveAll(logEvents);
+            for (LogEvent logEvent : logEvents) {
+                append(logEvent);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public List<LogEvent> filterLogs(LogQuery query) {
+        return backing.filterLogs(query);
+    }
+
+
+    @Override
+    public boolean is_exist(String id) {
+        return backing.is_exist(id);
+    }
+
+
+    @Override
+    public LogEvent getById(String id) {
+        return backing.getById(id);
+    }
+
+
+    @Override
+    public List<LogEvent> getAllLogs() {
+        return backing.getAllLogs();
+    }
+
+
+    /**
+     * Count log events per logger and level from the columns, one parallel task per chunk
+     * @return nested map: logger → (level → count), levels without events are absent
+     */
+    @Override
+    public Map<String, Map<String, Long>> countByLoggerAndLevel() {
+        int levels = LogLevels.LEVELS.size();
+        int loggers = loggerNames.size();
+        long[] counts = chunks.parallelStream()
+                .map(chunk -> chunk.countByLoggerAndLevel(loggers, levels))
+                .reduce(new long[loggers * levels], ColumnarStatsStore::sum);
+
+        Map<String, Map<String, Long>> stats = new HashMap<>();
+        for (int logger = 0; logger < loggers; logger++) {
+            for (int ordinal = 0; ordinal < levels; ordinal++) {
+                long count = counts[logger * levels + ordinal];
+                if (count > 0) {
+                    stats.computeIfAbsent(loggerNames.get(logger), k -> new HashMap<>())
+                            .put(LogLevels.name(ordinal), count);
+                }
+            }
+        }
+        return stats;
+    }
+
+
+    /**
+     * Count log events per time bucket, logger and level from the columns, one parallel task per chunk
+     */
+    @Override
+    public SortedMap<Instant, Map<String, Map<String, Long>>> countByTimeBucket(Duration width, Instant from, Instant to) {
+        long widthMicros = EventKey.micros(Instant.EPOCH.plus(width));
+        if (widthMicros < 1) {
+            throw new IllegalArgumentException("width must be at least one microsecond");
+        }
+        long fromMicros = (from == null) ? Long.MIN_VALUE : EventKey.micros(from);
+        long toMicros = (to == null) ? Long.MAX_VALUE : EventKey.micros(to);
+        int levels = LogLevels.LEVELS.size();
+        int loggers = loggerNames.size();
+        List<Map<Long, long[]>> perChunk = chunks.parallelStream()
+                .map(chunk -> chunk.countByTimeBucket(widthMicros, fromMicros, toMicros, loggers, levels))
+                .toList();
+
+        SortedMap<Instant, Map<String, Map<String, Long>>> stats = new TreeMap<>();
+        for (Map<Long, long[]> counts : perChunk) {
+            counts.forEach((start, perLoggerAndLevel) -> {
+                Map<String, Map<String, Long>> bucket = stats.computeIfAbsent(
+                        Instant.EPOCH.plus(start, ChronoUnit.MICROS), k -> new HashMap<>());
+                for (int cell = 0; cell < perLoggerAndLevel.length; cell++) {
+                    if (perLoggerAndLevel[cell] == 0) continue;
+                    bucket.computeIfAbsent(loggerNames.get(cell / levels), k -> new HashMap<>())
+                            .merge(LogLevels.name(cell % levels), perLoggerAndLevel[cell], Long::sum);
+                }
+            });
+        }
+        return stats;
+    }
+
+
+    /**
+     * Delete from the backing store, then mark the same rows deleted in the columns
+     */
+    @Override
+    public long delete(DeleteFilter filter) {
+        writeLock.lock();
+        try {
+            long deleted = backing.delete(filter);
+            if (filter.isEmpty()) {
+                chunks.clear();
+                return deleted;
+            }
+            long before = (filter.getBefore() == null) ? Long.MAX_VALUE : EventKey.micros(filter.getBefore());
+            int maxLevel = (filter.getMaxLevel() == null) ? LogLevels.OFF : LogLevels.ordinal(filter.getMaxLevel());
+            boolean[] loggers = new boolean[loggerNames.size()];
+            for (int logger = 0; logger < loggers.length; logger++) {
+                loggers[logger] = filter.getLoggerPrefix() == null
+                        || loggerNames.get(logger).startsWith(filter.getLoggerPrefix());
+            }
+            chunks.parallelStream().forEach(chunk -> chunk.delete(before, maxLevel, loggers));
+            return deleted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Read the event, delete it from the backing store, then mark one row of the same time, logger and level deleted.
+     * The columns have no id, but rows with the same values are interchangeable for every aggregation
+     */
+    @Override
+    public void deleteById(String id) {
+        writeLock.lock();
+        try {
+            LogEvent logEvent = backing.getById(id);
+            backing.deleteById(id);
+            if (logEvent == null) return;
+            Integer logger = loggerIds.get(logEvent.getLogger());
+            if (logger == null) return;
+            long micros = EventKey.of(logEvent).getMicros();
+            byte level = (byte) LogLevels.ordinal(logEvent.getLevel());
+            for (Chunk chunk : chunks) {
+                if (chunk.deleteRow(micros, logger, level)) return;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Stop compacting and close the backing store
+     */
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        backing.close();
+    }
+
+
+    /**
+     * Get the number of rows held in the columns, deleted rows included until compacted
+     * @return the number of rows
+     */
+    public long getRowCount() {
+        return chunks.stream().mapToLong(chunk -> chunk.size).sum();
+    }
+
+
+    /**
+     * Pack the live rows of the sealed chunks with at least half of their rows deleted into new chunks
+     * @return number of deleted rows dropped
+     */
+    public long compact() {
+        writeLock.lock();
+        try {
+            List<Chunk> kept = new ArrayList<>();
+            List<Chunk> packed = new ArrayList<>();
+            long dropped = 0;
+            Chunk active = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            for (Chunk chunk : chunks) {
+                if (chunk == active || chunk.deletedCount * 2 < chunk.size) {
+                    kept.add(chunk);
+                    continue;
+                }
+                dropped += chunk.deletedCount;
+                for (int row = 0; row < chunk.size; row++) {
+                    if (chunk.isDeleted(row)) continue;
+                    Chunk target = packed.isEmpty() ? null : packed.get(packed.size() - 1);
+                    if (target == null || target.size == CHUNK_ROWS) {
+                        target = new Chunk();
+                        packed.add(target);
+                    }
+                    target.append(chunk.micros[row], chunk.loggers[row], chunk.levels[row]);
+                }
+            }
+            if (dropped == 0) return 0;
+            if (active != null) {
+                kept.remove(active);
+                packed.add(active); // the active chunk stays last
+            }
+            kept.addAll(packed);
+            chunks = new CopyOnWriteArrayList<>(kept); // one switch, readers never see a row twice or missing
+            return dropped;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    // An exception would cancel all later runs of scheduleWithFixedDelay
+    private void compactSafely() {
+        try {
+            compact();
+        } catch (Exception e) {
+            System.err.println("Columnar compaction failed: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Append one row to the active chunk, the caller holds the write lock
+     */
+    private void append(LogEvent logEvent) {
+        Chunk active = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (active == null || active.size == CHUNK_ROWS) { // seal the full chunk
+            active = new Chunk();
+            chunks.add(active);
+        }
+        int logger = loggerIds.computeIfAbsent(logEvent.getLogger(), name -> {
+            loggerNames.add(name);
+            return loggerNames.size() - 1;
+        });
+        active.append(EventKey.of(logEvent).getMicros(), logger, (byte) LogLevels.ordinal(logEvent.getLevel()));
+    }
+
+
+    private static long[] sum(long[] a, long[] b) {
+        long[] total = new long[Math.max(a.length, b.length)];
+        for (int i = 0; i < a.length; i++) total[i] += a[i];
+        for (int i = 0; i < b.length; i++) total[i] += b[i];
+        return total;
+    }
+
+
+    /**
+     * Column chunk of at most CHUNK_ROWS rows, its arrays grow by doubling.
+     * Rows are written, and grown arrays replaced, before size is published,
+     * so readers scanning up to size never see a partial row. Deletes hold the write lock.
+     */
+    private static final class Chunk {
+
+        private static final int INITIAL_ROWS = 1024;
+
+        long[] micros = new long[INITIAL_ROWS];
+        int[] loggers = new int[INITIAL_ROWS];
+        byte[] levels = new byte[INITIAL_ROWS];
+        long[] deleted = new long[INITIAL_ROWS / 64]; // deletion bitmap
+        volatile int size;
+        volatile int deletedCount;
+
+        void append(long eventMicros, int logger, byte level) {
+            int row = size;
+            if (row == micros.length) grow();
+            micros[row] = eventMicros;
+            loggers[row] = logger;
+            levels[row] = level;
+            size = row + 1;
+        }
+
+        // A reader still holding the previous arrays finds every published row in them
+        private void grow() {
+            int capacity = Math.min(micros.length * 2, CHUNK_ROWS);
+            micros = Arrays.copyOf(micros, capacity);
+            loggers = Arrays.copyOf(loggers, capacity);
+            levels = Arrays.copyOf(levels, capacity);
+            deleted = Arrays.copyOf(deleted, capacity / 64);
+        }
+
+        boolean isDeleted(int row) {
+            return (deleted[row >>> 6] & (1L << row)) != 0;
+        }
+
+        long[] countByLoggerAndLevel(int loggerCount, int levelCount) {
+            long[] counts = new long[loggerCount * levelCount];
+            int rows = size;
+            for (int row = 0; row < rows; row++) {
+                if (isDeleted(row)) continue;
+                int logger = loggers[row];
+                if (logger < loggerCount) counts[logger * levelCount + levels[row]]++; // newer loggers are skipped
+            }
+            return counts;
+        }
+
+        /**
+         * @return bucket start in micros → counts indexed by logger * levelCount + level
+         */
+        Map<Long, long[]> countByTimeBucket(long widthMicros, long fromMicros, long toMicros,
+                                            int loggerCount, int levelCount) {
+            Map<Long, long[]> counts = new HashMap<>();
+            long currentStart = 0;
+            long[] current = null; // rows arrive mostly in time order, most rows hit the previous bucket
+            int rows = size;
+            for (int row = 0; row < rows; row++) {
+                long time = micros[row];
+                if (time < fromMicros || time >= toMicros || isDeleted(row)) continue;
+                int logger = loggers[row];
+                if (logger >= loggerCount) continue; // newer loggers are skipped
+                long start = Math.floorDiv(time, widthMicros) * widthMicros;
+                if (current == null || start != currentStart) {
+                    currentStart = start;
+                    current = counts.computeIfAbsent(start, k -> new long[loggerCount * levelCount]);
+                }
+                current[logger * levelCount + levels[row]]++;
+            }
+            return counts;
+        }
+
+        void delete(long before, int maxLevel, boolean[] matchingLoggers) {
+            int rows = size;
+            for (int row = 0; row < rows; row++) {
+                if (micros[row] < before && levels[row] <= maxLevel && matchingLoggers[loggers[row]] && !isDeleted(row)) {
+                    markDeleted(row);
+                }
+            }
+        }
+
+        boolean deleteRow(long eventMicros, int logger, byte level) {
+            int rows = size;
+            for (int row = 0; row < rows; row++) {
+                if (micros[row] == eventMicros && loggers[row] == logger && levels[row] == level && !isDeleted(row)) {
+                    markDeleted(row);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void markDeleted(int row) {
+            deleted[row >>> 6] |= 1L << row;
+            deletedCount++;
+        }
+    }
+}
@@ -0,0 +1,493 @@
+package io.github.nagare.logging.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+
+/**
+ * Filter compressing text responses with the content coding the client accepts, gzip preferred over deflate.
+ * Compression streams: the first compression.min.bytes (COMPRESSION_MIN_BYTES) are held back,
+ * smaller responses are sent as they are, larger ones are compressed as the servlet writes them.
+ * Only 200 responses of text types and JSON are compressed, already compressed content such as .xlsx
+ * and the event stream of /logs/tail (whose flushes must reach the client) are passed through.
+ * So is the rest of an asynchronous response once the servlet returns, and non-blocking output (setWriteListener):
+ * a compressor writes more than one isReady() allows.
+ * <br>
+ * A compressed response gets its own ETag ("tag--gzip"), the suffix is removed from If-None-Match
+ * before the servlet sees it, so conditional GET keeps working.
+ * Implements MBean interface to report the bandwidth saved via JMX.
+ */
+public class CompressionFilter implements Filter, CompressionFilterMBean {
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+    private static final String ETAG_SEPARATOR = "--";
+
+    private final int minBytes;
+    private final AtomicLong compressedCount = new AtomicLong();
+    private final AtomicLong uncompressedCount = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private static int instanceCounter = 0;
+    private String name;
+
+    // Explicitly defined default constructor, reads compression.min.bytes
+    public CompressionFilter() {
+        this(Integer.parseInt(DatabaseInitializer.readSetting("COMPRESSION_MIN_BYTES", "compression.min.bytes", "1024")));
+    }
+
+
+    /**
+     * @param minBytes smallest response compressed, smaller ones cost more CPU than the bytes they save
+     */
+    public CompressionFilter(int minBytes) {
+        if (minBytes < 0) {
+            throw new IllegalArgumentException("minBytes must not be negative");
+        }
+        this.minBytes = minBytes;
+    }
+
+
+    /**
+     * Register the MBean reporting the bandwidth saved
+     */
+    @Override
+    public void init(FilterConfig filterConfig) {
+        instanceCounter++;
+        name = "CompressionFilter-" + instanceCounter;
+        MBeanRegistry.register(this, "CompressionFilter", name);
+    }
+
+
+    /**
+     * Release the JMX registration made in init()
+     */
+    @Override
+    public void destroy() {
+        if (name != null) {
+            MBeanRegistry.unregister("CompressionFilter", name);
+            name = null;
+        }
+    }
+
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!(request instanceof HttpServletRequest req) || !(response instanceof HttpServletResponse resp)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!resp.containsHeader("Vary")) {
+            resp.setHeader("Vary", "Accept-Encoding"); // caches must not serve gzip to other clients
+        }
+        String encoding = negotiate(req.getHeader("Accept-Encoding"));
+        if (encoding == null) {
+            uncompressedCount.incrementAndGet();
+            chain.doFilter(req, resp);
+            return;
+        }
+        CompressingResponse wrapped = new CompressingResponse(resp, encoding);
+        chain.doFilter(new EncodedTagRequest(req, encoding), wrapped);
+        if (req.isAsyncStarted()) {
+            wrapped.passThrough(); // the servlet keeps writing after doFilter returns
+        } else {
+            wrapped.finish();
+        }
+    }
+
+
+    @Override
+    public long getCompressedCount() {
+        return compressedCount.get();
+    }
+
+
+    @Override
+    public long getUncompressedCount() {
+        return uncompressedCount.get();
+    }
+
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+
+    @Override
+    public long getBytesSaved() {
+        return bytesIn.get() - bytesOut.get();
+    }
+
+
+    @Override
+    public double getCompressionRatio() {
+        long in = bytesIn.get();
+        return (in == 0) ? 1 : (double) bytesOut.get() / in;
+    }
+
+
+    /**
+     * Pick the content coding from an Accept-Encoding header, e.g. "gzip, deflate;q=0.5"
+     * @param acceptEncoding header value, may be null
+     * @return GZIP, DEFLATE, or null if the client accepts neither
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) return null;
+        Double gzip = null; // null when not listed
+        Double deflate = null;
+        Double any = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] fields = part.trim().split(";");
+            String coding = fields[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < fields.length; i++) {
+                String param = fields[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            switch (coding) {
+                case GZIP, "x-gzip" -> gzip = q;
+                case DEFLATE -> deflate = q;
+                case "*" -> any = q;
+                default -> { }
+            }
+        }
+        double gzipQ = (gzip != null) ? gzip : (any != null) ? any : 0;
+        double deflateQ = (deflate != null) ? deflate : (any != null) ? any : 0;
+        if (gzipQ > 0 && gzipQ >= deflateQ) return GZIP;
+        return (deflateQ > 0) ? DEFLATE : null;
+    }
+
+
+    /**
+     * Check whether a content type is worth compressing
+     * @param contentType Content-Type header, may be null
+     * @return true for text types (but event streams), JSON and XML
+     */
+    static boolean isCompressible(String contentType) {
+        if (contentType == null) return false;
+        String type = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        if (type.equals("text/event-stream")) return false;
+        return type.startsWith("text/") || type.equals("application/json") || type.equals("application/xml")
+                || type.endsWith("+json") || type.endsWith("+xml");
+    }
+
+
+    /**
+     * Request seeing If-None-Match without the content coding suffix added to compressed ETags
+     */
+    private static final class EncodedTagRequest extends HttpServletRequestWrapper {
+
+        private final String suffix;
+
+        EncodedTagRequest(HttpServletRequest request, String encoding) {
+            super(request);
+            this.suffix = ETAG_SEPARATOR + encoding + "\"";
+        }
+
+        @Override
+        public String getHeader(String name) {
+            String value = super.getHeader(name);
+            return (value != null && name.equalsIgnoreCase("If-None-Match")) ? value.replace(suffix, "\"") : value;
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (!name.equalsIgnoreCase("If-None-Match")) return super.getHeaders(name);
+            String value = getHeader(name);
+            return (value == null) ? Collections.emptyEnumeration() : Collections.enumeration(List.of(value));
+        }
+    }
+
+
+    /**
+     * Response deciding on compression once minBytes have been written or the servlet is done
+     */
+    private final class CompressingResponse extends HttpServletResponseWrapper {
+
+        private final String encoding;
+        private CompressingStream stream;
+        private PrintWriter writer;
+
+        CompressingResponse(HttpServletResponse response, String encoding) {
+            super(response);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (writer != null) throw new IllegalStateException("getWriter() has already been called");
+            if (stream == null) stream = new CompressingStream(this);
+            return stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (writer == null) {
+                if (stream != null) throw new IllegalStateException("getOutputStream() has already been called");
+                stream = new CompressingStream(this);
+                writer = new PrintWriter(new OutputStreamWriter(stream, Charset.forName(getCharacterEncoding())));
+            }
+            return writer;
+        }
+
+        // The length of the compressed body is unknown, the container sends it chunked
+        @Override
+        public void setContentLength(int len) {
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) writer.flush();
+            if (stream != null) {
+                stream.flush();
+            } else {
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            if (stream != null) stream.discard();
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            if (stream != null) stream.discard();
+            super.reset();
+        }
+
+        void finish() throws IOException {
+            if (writer != null) writer.flush();
+            if (stream != null) {
+                stream.finish();
+            } else {
+                uncompressedCount.incrementAndGet(); // no body, e.g. 304
+            }
+        }
+
+        void passThrough() throws IOException {
+            if (writer != null) writer.flush();
+            if (stream != null) {
+                stream.passThrough();
+            } else {
+                uncompressedCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * Decide once, for a response larger than minBytes
+         * @return the compressing stream over the servlet output, or null to send the response as it is
+         */
+        DeflaterOutputStream startCompression(CountingStream raw) throws IOException {
+            HttpServletResponse resp = (HttpServletResponse) getResponse();
+            if (resp.getStatus() != 200 || resp.containsHeader("Content-Encoding")
+                    || !isCompressible(resp.getContentType())) {
+                return null;
+            }
+            resp.setHeader("Content-Encoding", encoding);
+            String etag = resp.getHeader("ETag");
+            if (etag != null && etag.endsWith("\"")) {
+                resp.setHeader("ETag", etag.substring(0, etag.length() - 1) + ETAG_SEPARATOR + encoding + "\"");
+            }
+            return encoding.equals(GZIP) ? new GZIPOutputStream(raw, 8192, true) : new DeflaterOutputStream(raw, true);
+        }
+    }
+
+
+    /**
+     * Holds back the first minBytes, then streams through a compressor or straight to the servlet output
+     */
+    private final class CompressingStream extends ServletOutputStream {
+
+        private final CompressingResponse response;
+        private byte[] buffer = new byte[Math.min(minBytes, 8192)];
+        private int count;
+        private boolean decided;
+        private boolean finished;
+        private ServletOutputStream out; // of the wrapped response
+        private CountingStream raw;
+        private OutputStream target;
+        private DeflaterOutputStream compressor; // null when sent as it is
+        private long written;
+
+        CompressingStream(CompressingResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            written += len;
+            if (!decided) {
+                if (count + len <= minBytes) {
+                    if (count + len > buffer.length) {
+                        buffer = Arrays.copyOf(buffer, Math.min(Math.max(buffer.length * 2, count + len), minBytes));
+                    }
+                    System.arraycopy(b, off, buffer, count, len);
+                    count += len;
+                    return;
+                }
+                decide(true);
+            }
+            target.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (decided) target.flush(); // a small response is held back until minBytes or the end
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        void discard() {
+            if (!decided) {
+                count = 0;
+                written = 0;
+            }
+        }
+
+        void finish() throws IOException {
+            if (finished) return;
+            finished = true;
+            if (!decided) decide(false);
+            if (compressor == null) {
+                target.flush();
+                uncompressedCount.incrementAndGet();
+                return;
+            }
+            compressor.close(); // ends the deflater and the servlet output
+            compressedCount.incrementAndGet();
+            bytesIn.addAndGet(written);
+            bytesOut.addAndGet(raw.count);
+        }
+
+        /**
+         * Send what is held back and the rest as it is, a compressor already started ends with close()
+         */
+        void passThrough() throws IOException {
+            if (finished) return;
+            if (!decided) decide(false);
+            if (compressor == null) {
+                finished = true;
+                uncompressedCount.incrementAndGet();
+            }
+        }
+
+        private void decide(boolean large) throws IOException {
+            decided = true;
+            out = response.getResponse().getOutputStream();
+            raw = new CountingStream(out);
+            compressor = large ? response.startCompression(raw) : null;
+            target = (compressor == null) ? raw : compressor;
+            target.write(buffer, 0, count);
+            buffer = null;
+        }
+
+        @Override
+        public boolean isReady() {
+            return (decided && compressor == null) ? out.isReady() : true; // blocking until then
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            if (!decided) {
+                try {
+                    decide(false); // what is held back goes out before non-blocking output starts
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot send the response start", e);
+                }
+            }
+            if (compressor != null) {
+                throw new IllegalStateException("Non-blocking output after " + minBytes + " compressed bytes");
+            }
+            out.setWriteListener(writeListener);
+        }
+    }
+
+
+    /**
+     * Counts the bytes sent to the client
+     */
+    private static final class CountingStream extends OutputStream {
+
+        private final OutputStream out;
+        long count;
+
+        CountingStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.nagare.logging.server;
+
+/**
+ * MBean interface for CompressionFilter.
+ * Reports how many responses were compressed and the bandwidth it saved.
+ * The MBean class MUST implement an interface with the following name: “class name” plus MBean.
+ */
+public interface CompressionFilterMBean {
+
+    /**
+     * Get the number of responses sent with gzip or deflate content coding
+     * @return the number of compressed responses
+     */
+    public long getCompressedCount();
+
+    /**
+     * Get the number of responses sent as they are: too small, not compressible or not accepted by the client
+     * @return the number of uncompressed responses
+     */
+    public long getUncompressedCount();
+
+    /**
+     * Get the bytes written by the servlets into compressed responses
+     * @return bytes before compression
+     */
+    public long getBytesIn();
+
+    /**
+     * Get the bytes sent for compressed responses
+     * @return bytes after compression
+     */
+    public long getBytesOut();
+
+    /**
+     * Get the bandwidth saved by compression
+     * @return bytes in - bytes out
+     */
+    public long getBytesSaved();
+
+    /**
+     * Get the average size of a compressed response relative to its original size
+     * @return bytes out / bytes in, 1 if nothing was compressed
+     */
+    public double getCompressionRatio();
+}
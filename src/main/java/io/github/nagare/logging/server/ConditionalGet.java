@@ -0,0 +1,67 @@
+package io.github.nagare.logging.server;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+
+/**
+ * Conditional GET on the data version of the shared VersionedLogStore.
+ * Responses carry an ETag and a Last-Modified header, a client sending back a current one
+ * with If-None-Match or If-Modified-Since gets 304 Not Modified without any query being run.
+ * Stores that are not versioned (servlets created without DatabaseInitializer) are never conditional.
+ */
+final class ConditionalGet {
+
+    /**
+     * Private constructor prevents instantiation
+     */
+    private ConditionalGet() {
+        throw new AssertionError("Cannot instantiate utility class");
+    }
+
+
+    /**
+     * Set the validators of the current version and answer 304 if the client already has it.
+     * Call before running the query: a write racing with it leaves the response tagged with the older version,
+     * so the next request downloads again rather than missing the write.
+     * @param req the HttpServletRequest
+     * @param resp the HttpServletResponse
+     * @param store LogStore shared by the servlets
+     * @return true if 304 was sent and the servlet must not write a body
+     */
+    static boolean notModified(HttpServletRequest req, HttpServletResponse resp, LogStore store) {
+        if (!(store instanceof VersionedLogStore versioned)) return false;
+        long lastModified = versioned.getLastModified(); // read first, an ETag is never older than it
+        String etag = versioned.getETag();
+        resp.setHeader("ETag", etag);
+        resp.setDateHeader("Last-Modified", lastModified);
+        resp.setHeader("Cache-Control", "no-cache"); // may be stored, but must be revalidated
+        if (!isCurrent(req, etag, lastModified)) return false;
+        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return true;
+    }
+
+
+    /**
+     * Check the request validators, If-None-Match takes precedence over If-Modified-Since (RFC 9110)
+     */
+    private static boolean isCurrent(HttpServletRequest req, String etag, long lastModified) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) candidate = candidate.substring(2); // weak comparison
+                if (candidate.equals("*") || candidate.equals(etag)) return true;
+            }
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = req.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) { // malformed date, ignored
+            return false;
+        }
+        // HTTP dates have whole seconds, two writes within one second are only told apart by the ETag
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+}
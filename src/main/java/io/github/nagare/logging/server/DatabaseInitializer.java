@@ -26,11 +26,71 @@ import jakarta.servlet.annotation.WebListener;
 @WebListener
 public class DatabaseInitializer implements ServletContextListener{
 
+    private LogStore store;
+    private LogStore engine; // store without the caches in front of it
+    private HotTierLogStore hotTier; // null unless enabled, registered as MBean
+    private EntityCacheLogStore entityCache; // null unless enabled, registered as MBean
+    private RollupLogStore rollups; // null unless enabled, registered as MBean
+    private RetentionService retention;
+    private LogTail tail;
+    private StatsService stats;
+    private HeavyHitters hitters;
+    private ErrorGroups errors;
+
     @Override
     public void contextInitialized(ServletContextEvent sce) {
         try {
             EntityManagerFactory emf = createEMF();
             sce.getServletContext().setAttribute(ServletAttributes.EMF_ATTRIBUTE, emf);
+            // Storage engine shared by all servlets
+            engine = LogStores.create(readSetting("LOG_STORE", "log.store", LogStores.DEFAULT), emf);
+            LogStore rolled = LogStores.withRollups(LogStores.withColumnarStats(LogStores.withTextIndex(engine)));
+            LogStore hot = LogStores.withHotTier(rolled);
+            LogStore cached = LogStores.withEntityCache(hot);
+            System.out.println("Using log store: " + engine.getClass().getSimpleName()
+                    + ((cached == engine) ? "" : " behind " + cached.getClass().getSimpleName()));
+            // Outermost, counts every write so servlets can tell whether a response is still current
+            store = new VersionedLogStore(cached);
+            sce.getServletContext().setAttribute(ServletAttributes.LOG_STORE_ATTRIBUTE, store);
+            if (engine instanceof LogEventRepository repository) {
+                repository.getStackTraces().registerMBean("LogStore");
+                repository.getDeleter().registerMBean("LogStore");
+            }
+            if (hot instanceof HotTierLogStore tier) {
+                hotTier = tier;
+                hotTier.registerMBean("LogStore");
+            }
+            if (rolled instanceof RollupLogStore tables) {
+                rollups = tables;
+                rollups.registerMBean("LogStore");
+                sce.getServletContext().setAttribute(ServletAttributes.ROLLUPS_ATTRIBUTE, rollups);
+            }
+            if (cached instanceof EntityCacheLogStore cache) {
+                entityCache = cache;
+                entityCache.registerMBean("LogStore");
+            }
+            // Live tail of new log events for /logs/tail
+            tail = LogTail.fromSettings();
+            tail.registerMBean("LogStore");
+            sce.getServletContext().setAttribute(ServletAttributes.LOG_TAIL_ATTRIBUTE, tail);
+            // Noisiest loggers and messages for /stats/top
+            hitters = HeavyHitters.fromSettings();
+            hitters.registerMBean("LogStore");
+            sce.getServletContext().setAttribute(ServletAttributes.HEAVY_HITTERS_ATTRIBUTE, hitters);
+            // Stack traces grouped by fingerprint for /stats/errors
+            errors = ErrorGroups.fromSettings();
+            errors.registerMBean("LogStore");
+            sce.getServletContext().setAttribute(ServletAttributes.ERROR_GROUPS_ATTRIBUTE, errors);
+            // Statistics snapshot shared by the stats pages, recomputed once per data version
+            stats = StatsService.fromSettings(store);
+            stats.registerMBean("LogStore");
+            sce.getServletContext().setAttribute(ServletAttributes.STATS_SERVICE_ATTRIBUTE, stats);
+            // Daily partitions and retention window, RETENTION_DAYS=0 keeps log events forever
+            int retentionDays = Integer.parseInt(readSetting("RETENTION_DAYS", "retention.days", "0"));
+            PartitionManager partitions = (engine instanceof LogEventRepository) ? new PartitionManager(emf) : null;
+            StackTraceStore stackTraces = (engine instanceof LogEventRepository jpa) ? jpa.getStackTraces() : null;
+            retention = new RetentionService(partitions, stackTraces, store, retentionDays);
+            retention.start();
         } catch (Exception e) {
             System.err.println("EntityManagerFactory initialization failed!");
             e.printStackTrace();
@@ -40,6 +100,38 @@ public class DatabaseInitializer implements ServletContextListener{
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        if (retention != null) {
+            retention.stop();
+        }
+        if (tail != null) {
+            tail.unregisterMBean();
+            tail.close(); // releases the servlet threads of the tail clients
+        }
+        if (stats != null) {
+            stats.unregisterMBean();
+        }
+        if (hitters != null) {
+            hitters.unregisterMBean();
+        }
+        if (errors != null) {
+            errors.unregisterMBean();
+        }
+        if (store != null) {
+            if (entityCache != null) {
+                entityCache.unregisterMBean();
+            }
+            if (hotTier != null) {
+                hotTier.unregisterMBean();
+            }
+            if (rollups != null) {
+                rollups.unregisterMBean();
+            }
+            if (engine instanceof LogEventRepository repository) {
+                repository.getStackTraces().unregisterMBean();
+                repository.getDeleter().unregisterMBean();
+            }
+            store.close();
+        }
         EntityManagerFactory emf = (EntityManagerFactory) sce.getServletContext()
                 .getAttribute(ServletAttributes.EMF_ATTRIBUTE);
         if (emf != null && emf.isOpen()) {
@@ -110,4 +202,29 @@ public class DatabaseInitializer implements ServletContextListener{
         }
     }
 
+
+    /**
+     * Read an optional setting, with the same priority as the database configuration:
+     * environment variable first, then config.properties, then the default value.
+     * @param envName environment variable name, e.g. RETENTION_DAYS
+     * @param propertyName config.properties key, e.g. retention.days
+     * @param defaultValue value used when neither source defines the setting
+     * @return the setting value
+     */
+    static String readSetting(String envName, String propertyName, String defaultValue) {
+        String value = System.getenv(envName);
+        if (value != null && !value.isEmpty()) return value;
+        try (InputStream input = DatabaseInitializer.class.getClassLoader().getResourceAsStream("config.properties")) {
+            if (input != null) {
+                Properties props = new Properties();
+                props.load(input);
+                value = props.getProperty(propertyName);
+                if (value != null && !value.isEmpty()) return value.trim();
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to load config.properties: " + e.getMessage());
+        }
+        return defaultValue;
+    }
+
 }
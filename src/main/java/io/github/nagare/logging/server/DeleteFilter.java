@@ -0,0 +1,74 @@
+package io.github.nagare.logging.server;
+
+import java.time.Instant;
+
+
+/**
+ * Immutable selection of log events to delete, every non-null criterion must match.
+ * An empty filter selects every log event.
+ */
+public final class DeleteFilter {
+
+    /**
+     * Filter selecting every log event
+     */
+    public static final DeleteFilter ALL = new DeleteFilter(null, null, null);
+
+    private final Instant before;
+    private final String maxLevel;
+    private final String loggerPrefix;
+
+    /**
+     * @param before exclusive upper bound of the event time, null for no bound
+     * @param maxLevel upper case level from TRACE to FATAL, events at this level or below are selected,
+     *                 null for any level
+     * @param loggerPrefix prefix of the logger name, null for any logger
+     */
+    public DeleteFilter(Instant before, String maxLevel, String loggerPrefix) {
+        if (maxLevel != null && LogLevels.ordinal(maxLevel) < 0) {
+            throw new IllegalArgumentException("Unknown log level: " + maxLevel);
+        }
+        if (maxLevel != null && (LogLevels.ordinal(maxLevel) == LogLevels.ALL || LogLevels.ordinal(maxLevel) == LogLevels.OFF)) {
+            throw new IllegalArgumentException("ALL and OFF are filter settings, not a maximum level: " + maxLevel);
+        }
+        this.before = before;
+        this.maxLevel = maxLevel;
+        this.loggerPrefix = loggerPrefix;
+    }
+
+
+    /**
+     * Filter selecting log events older than the given time
+     * @param before exclusive upper bound of the event time
+     * @return filter on event time only
+     */
+    public static DeleteFilter before(Instant before) {
+        return new DeleteFilter(before, null, null);
+    }
+
+    // getters
+    public Instant getBefore() { return before; }
+    public String getMaxLevel() { return maxLevel; }
+    public String getLoggerPrefix() { return loggerPrefix; }
+
+
+    /**
+     * Check whether the filter selects every log event
+     * @return true if no criterion is set
+     */
+    public boolean isEmpty() {
+        return before == null && maxLevel == null && loggerPrefix == null;
+    }
+
+
+    /**
+     * Check whether a log event is selected, for stores that filter in memory
+     * @param logEvent log event with timestamp, level and logger
+     * @return true if every criterion matches
+     */
+    public boolean matches(LogEvent logEvent) {
+        if (before != null && !Instant.parse(logEvent.getTimestamp()).isBefore(before)) return false;
+        if (maxLevel != null && LogLevels.ordinal(logEvent.getLevel()) > LogLevels.ordinal(maxLevel)) return false;
+        return loggerPrefix == null || logEvent.getLogger().startsWith(loggerPrefix);
+    }
+}
@@ -0,0 +1,210 @@
+package io.github.nagare.logging.server;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Bounded cache of log events by id in front of another LogStore, for GET /logs/{id}.
+ * Log events never change once stored, so an entry stays valid until the event is deleted:
+ * deletes made through this store remove the matching entries, nothing else invalidates them.
+ * Least recently used entries are evicted beyond maxEntries. The cache keeps its own copy of
+ * each event and hands out copies, so a caller changing a returned event does not change it.
+ * <br>
+ * Only deletes made through this store are seen, so the backing store must not be shared
+ * with another writer (another server instance, or a LogStore created elsewhere).
+ * Implements MBean interface to report hits and misses via JMX.
+ */
+public class EntityCacheLogStore implements LogStore, EntityCacheLogStoreMBean {
+
+    private final LogStore backing;
+    private final Map<String, LogEvent> entries;
+    private final AtomicLong deletes = new AtomicLong(); // a lookup racing with a delete is not cached
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private String name;
+
+    /**
+     * @param backing store holding every event
+     * @param maxEntries maximum number of cached log events
+     */
+    public EntityCacheLogStore(LogStore backing, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.backing = backing;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) { // access order
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LogEvent> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+
+    /**
+     * Get the store behind the cache
+     * @return backing LogStore
+     */
+    public LogStore getBacking() {
+        return backing;
+    }
+
+
+    @Override
+    public LogEvent getById(String id) {
+        synchronized (entries) {
+            LogEvent cached = entries.get(id);
+            if (cached != null) {
+                hitCount.incrementAndGet();
+                return MemoryLogStore.copy(cached); // the caller may change the event it gets
+            }
+        }
+        missCount.incrementAndGet();
+        long deletesBefore = deletes.get();
+        LogEvent logEvent = backing.getById(id);
+        if (logEvent != null) {
+            synchronized (entries) {
+                if (deletes.get() == deletesBefore) entries.put(id, MemoryLogStore.copy(logEvent));
+            }
+        }
+        return logEvent;
+    }
+
+
+    @Override
+    public boolean is_exist(String id) {
+        synchronized (entries) {
+            if (entries.containsKey(id)) return true;
+        }
+        return backing.is_exist(id);
+    }
+
+
+    @Override
+    public void save(LogEvent logEvent) {
+        backing.save(logEvent);
+    }
+
+
+    @Override
+    public void saveAll(List<LogEvent> logEvents) {
+        backing.saveAll(logEvents);
+    }
+
+
+    @Override
+    public List<LogEvent> filterLogs(LogQuery query) {
+        return backing.filterLogs(query);
+    }
+
+
+    @Override
+    public List<LogEvent> getAllLogs() {
+        return backing.getAllLogs();
+    }
+
+
+    @Override
+    public Map<String, Map<String, Long>> countByLoggerAndLevel() {
+        return backing.countByLoggerAndLevel();
+    }
+
+
+    @Override
+    public SortedMap<Instant, Map<String, Map<String, Long>>> countByTimeBucket(Duration width, Instant from, Instant to) {
+        return backing.countByTimeBucket(width, from, to);
+    }
+
+
+    @Override
+    public long delete(DeleteFilter filter) {
+        invalidate(filter);
+        long deleted = backing.delete(filter);
+        invalidate(filter); // an entry cached while the delete ran
+        return deleted;
+    }
+
+
+    @Override
+    public void deleteById(String id) {
+        synchronized (entries) {
+            deletes.incrementAndGet();
+            entries.remove(id);
+        }
+        backing.deleteById(id);
+        synchronized (entries) {
+            deletes.incrementAndGet();
+            entries.remove(id);
+        }
+    }
+
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+
+    @Override
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+
+    @Override
+    public void close() {
+        backing.close();
+    }
+
+
+    /**
+     * Register this EntityCacheLogStore as an MBean with the platform MBeanServer
+     * @param name instance name of the MBean
+     */
+    public void registerMBean(String name) {
+        MBeanRegistry.register(this, "EntityCacheLogStore", name);
+        this.name = name;
+    }
+
+
+    /**
+     * Unregisters this EntityCacheLogStore as an MBean with the platform MBeanServer
+     */
+    public void unregisterMBean() {
+        if (this.name == null) {
+            return;
+        }
+        MBeanRegistry.unregister("EntityCacheLogStore", name);
+        this.name = null;
+    }
+
+
+    private void invalidate(DeleteFilter filter) {
+        synchronized (entries) {
+            deletes.incrementAndGet();
+            if (filter.isEmpty()) {
+                entries.clear();
+                return;
+            }
+            Iterator<LogEvent> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (filter.matches(iterator.next())) iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package io.github.nagare.logging.server;
+
+/**
+ * MBean interface for EntityCacheLogStore.
+ * Reports how many GET /logs/{id} lookups are answered without the backing store.
+ * The MBean class MUST implement an interface with the following name: “class name” plus MBean.
+ */
+public interface EntityCacheLogStoreMBean {
+
+    /**
+     * Get the number of lookups answered from the cache
+     * @return the number of hits
+     */
+    public long getHitCount();
+
+    /**
+     * Get the number of lookups that read the backing store
+     * @return the number of misses
+     */
+    public long getMissCount();
+
+    /**
+     * Get the number of cached log events
+     * @return the number of entries
+     */
+    public int getSize();
+}
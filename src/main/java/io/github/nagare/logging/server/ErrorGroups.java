@@ -0,0 +1,252 @@
+package io.github.nagare.logging.server;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import jakarta.servlet.ServletContext;
+
+
+/**
+ * Groups the stack traces of log events by fingerprint for /stats/errors, so thousands of distinct
+ * errorDetails show as the handful of bugs behind them.
+ * LogsServlet records every event it stores, counts, first and last seen event times are updated in place,
+ * the LogStore is never queried.
+ * <br>
+ * The fingerprint is a hash of the stack trace normalized by fingerprint(String): exception messages,
+ * line numbers, generated class suffixes and lambda numbers are removed, the class names and methods are kept.
+ * At most errors.max.groups (ERRORS_MAX_GROUPS) groups are kept, a new fingerprint beyond it evicts the group
+ * seen last the longest ago, so a new bug always shows up.
+ * Implements MBean interface to report the groups via JMX.
+ */
+public class ErrorGroups implements ErrorGroupsMBean {
+
+    static final int MAX_SAMPLE_CHARS = 2000;
+
+    private static final Pattern MORE = Pattern.compile("\\.\\.\\. \\d+ (more|common frames omitted)");
+    // applied in order to every line
+    private static final Pattern[] PATTERNS = {
+            Pattern.compile("\\((.*?):\\d+\\)"), // (Foo.java:42)
+            Pattern.compile("\\$\\$(Lambda|EnhancerBy\\w*CGLIB|FastClassBy\\w*CGLIB|SpringCGLIB|HibernateProxy)[\\w$]*(/0x\\p{XDigit}+)?"),
+            Pattern.compile("\\$Proxy\\d+"),
+            Pattern.compile("(Generated\\w*Accessor)\\d+"),
+            Pattern.compile("\\blambda\\$(\\w+?)\\$\\d+"),
+            Pattern.compile("/0x\\p{XDigit}+"), // hidden class address
+    };
+    private static final String[] REPLACEMENTS = {"($1)", "", "\\$Proxy", "$1", "lambda\\$$1\\$", ""};
+
+    /**
+     * Summary of the errors sharing a fingerprint
+     */
+    public static final class Group {
+
+        private final String fingerprint;
+        private final String exception;
+        private final String sample;
+        private final AtomicLong count = new AtomicLong();
+        private Instant firstSeen;
+        private Instant lastSeen;
+
+        Group(String fingerprint, String exception, String sample, Instant time) {
+            this.fingerprint = fingerprint;
+            this.exception = exception;
+            this.sample = sample;
+            this.firstSeen = time;
+            this.lastSeen = time;
+        }
+
+        synchronized void seen(Instant time) {
+            count.incrementAndGet();
+            if (time.isBefore(firstSeen)) firstSeen = time;
+            if (time.isAfter(lastSeen)) lastSeen = time;
+        }
+
+        // getters, serialized by Jackson
+        public String getFingerprint() { return fingerprint; }
+        public String getException() { return exception; }
+        public String getSample() { return sample; }
+        public long getCount() { return count.get(); }
+        public synchronized String getFirstSeen() { return firstSeen.toString(); }
+        public synchronized String getLastSeen() { return lastSeen.toString(); }
+        // for sorting, Instant.toString varies in length
+        synchronized Instant lastSeen() { return lastSeen; }
+    }
+
+    private final int maxGroups;
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+    private final AtomicLong recordedCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private String name;
+
+    /**
+     * @param maxGroups maximum number of fingerprints kept
+     */
+    public ErrorGroups(int maxGroups) {
+        if (maxGroups < 1) {
+            throw new IllegalArgumentException("maxGroups must be positive");
+        }
+        this.maxGroups = maxGroups;
+    }
+
+
+    /**
+     * Create ErrorGroups bounded by the errors.max.groups setting
+     * @return new ErrorGroups
+     */
+    public static ErrorGroups fromSettings() {
+        return new ErrorGroups(Integer.parseInt(DatabaseInitializer.readSetting("ERRORS_MAX_GROUPS", "errors.max.groups", "10000")));
+    }
+
+
+    /**
+     * Get the ErrorGroups shared by DatabaseInitializer, or create and share one,
+     * e.g. when servlets are initialized without the listener
+     * @param context ServletContext of the application
+     * @return ErrorGroups shared by LogsServlet and StatsErrorsServlet
+     */
+    public static ErrorGroups fromContext(ServletContext context) {
+        synchronized (context) {
+            ErrorGroups errors = (ErrorGroups) context.getAttribute(ServletAttributes.ERROR_GROUPS_ATTRIBUTE);
+            if (errors == null) {
+                errors = fromSettings();
+                context.setAttribute(ServletAttributes.ERROR_GROUPS_ATTRIBUTE, errors);
+            }
+            return errors;
+        }
+    }
+
+
+    /**
+     * Count the stack trace of a stored log event, events without errorDetails are ignored
+     * @param logEvent stored log event, with a valid timestamp
+     */
+    public void record(LogEvent logEvent) {
+        String details = logEvent.getErrorDetails();
+        if (details == null || details.isBlank()) return;
+        String normalized = normalize(details);
+        String fingerprint = StackTraceStore.hash(normalized).substring(0, 16);
+        Instant time = Instant.parse(logEvent.getTimestamp());
+        Group group = groups.get(fingerprint);
+        if (group == null) { // new fingerprints are rare, known ones never lock
+            String sample = (details.length() > MAX_SAMPLE_CHARS) ? details.substring(0, MAX_SAMPLE_CHARS) : details;
+            synchronized (groups) {
+                group = groups.get(fingerprint);
+                if (group == null) {
+                    if (groups.size() >= maxGroups) evictStalest();
+                    group = new Group(fingerprint, exception(normalized), sample, time);
+                    groups.put(fingerprint, group);
+                }
+            }
+        }
+        group.seen(time);
+        recordedCount.incrementAndGet();
+    }
+
+
+    /**
+     * Get the largest groups
+     * @param limit maximum number of groups
+     * @return groups in decreasing count, then latest first
+     */
+    public List<Group> top(int limit) {
+        List<Group> top = new ArrayList<>(groups.values());
+        top.sort(Comparator.comparingLong(Group::getCount).reversed()
+                .thenComparing(Comparator.comparing(Group::lastSeen).reversed()));
+        return top.subList(0, Math.min(limit, top.size()));
+    }
+
+
+    /**
+     * Normalize a stack trace, so the same bug gives the same text:
+     * messages after "Exception: " (first line, Caused by, Suppressed) and "... n more" lines are dropped,
+     * line numbers, generated class suffixes ($$Lambda/0x..., $Proxy12, $$EnhancerByCGLIB$$...) and lambda numbers are removed
+     * @param details stack trace text
+     * @return one trimmed line per exception and frame
+     */
+    static String normalize(String details) {
+        StringBuilder normalized = new StringBuilder();
+        for (String line : details.split("\\R")) {
+            line = line.strip();
+            if (line.isEmpty() || MORE.matcher(line).matches()) continue;
+            if (!line.startsWith("at ")) { // exception line, keep its class
+                int colon = line.indexOf(": ", line.startsWith("Caused by: ") || line.startsWith("Suppressed: ")
+                        ? line.indexOf(": ") + 2 : 0);
+                if (colon >= 0) line = line.substring(0, colon);
+            }
+            for (int i = 0; i < PATTERNS.length; i++) {
+                line = PATTERNS[i].matcher(line).replaceAll(REPLACEMENTS[i]);
+            }
+            normalized.append(line).append('\n');
+        }
+        return normalized.toString();
+    }
+
+
+    /**
+     * Remove the group seen last the longest ago, the caller holds the lock on groups
+     */
+    private void evictStalest() {
+        Group stalest = null;
+        for (Group group : groups.values()) {
+            if (stalest == null || group.lastSeen().isBefore(stalest.lastSeen())) stalest = group;
+        }
+        if (stalest != null) {
+            groups.remove(stalest.getFingerprint());
+            evictedCount.incrementAndGet();
+        }
+    }
+
+
+    /**
+     * @return the class of the first exception of a normalized stack trace
+     */
+    private static String exception(String normalized) {
+        int end = normalized.indexOf('\n');
+        return (end < 0) ? normalized : normalized.substring(0, end);
+    }
+
+
+    @Override
+    public int getGroupCount() {
+        return groups.size();
+    }
+
+
+    @Override
+    public long getRecordedCount() {
+        return recordedCount.get();
+    }
+
+
+    @Override
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+
+    /**
+     * Register this ErrorGroups as an MBean with the platform MBeanServer
+     * @param name instance name of the MBean
+     */
+    public void registerMBean(String name) {
+        MBeanRegistry.register(this, "ErrorGroups", name);
+        this.name = name;
+    }
+
+
+    /**
+     * Unregisters this ErrorGroups as an MBean with the platform MBeanServer
+     */
+    public void unregisterMBean() {
+        if (this.name == null) {
+            return;
+        }
+        MBeanRegistry.unregister("ErrorGroups", name);
+        this.name = null;
+    }
+}
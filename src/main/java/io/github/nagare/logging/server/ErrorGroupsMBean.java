@@ -0,0 +1,27 @@
+package io.github.nagare.logging.server;
+
+/**
+ * MBean interface for ErrorGroups.
+ * Reports how many distinct bugs the stack traces of /stats/errors come down to.
+ * The MBean class MUST implement an interface with the following name: “class name” plus MBean.
+ */
+public interface ErrorGroupsMBean {
+
+    /**
+     * Get the number of distinct fingerprints
+     * @return the number of groups
+     */
+    public int getGroupCount();
+
+    /**
+     * Get the number of stack traces counted in a group since startup
+     * @return the number of stack traces
+     */
+    public long getRecordedCount();
+
+    /**
+     * Get the number of groups evicted to make room for a new fingerprint past errors.max.groups
+     * @return the number of evicted groups
+     */
+    public long getEvictedCount();
+}
@@ -0,0 +1,70 @@
+package io.github.nagare.logging.server;
+
+import java.time.Instant;
+
+
+/**
+ * Ordering key of a log event in the in-memory structures: event time in micros, then id,
+ * so events with equal times stay distinct. Used by MemoryLogStore and HotTierLogStore.
+ */
+final class EventKey implements Comparable<EventKey> {
+
+    private final long micros;
+    private final String id;
+
+    EventKey(long micros, String id) {
+        this.micros = micros;
+        this.id = id;
+    }
+
+
+    /**
+     * Key of a log event, from its timestamp and id
+     * @param logEvent validated log event
+     * @return key of the event
+     */
+    static EventKey of(LogEvent logEvent) {
+        return new EventKey(micros(Instant.parse(logEvent.getTimestamp())), logEvent.getId());
+    }
+
+
+    /**
+     * Key sorting before every event at the given time, used as a range bound
+     * @param instant time bound
+     * @return lowest key at that time
+     */
+    static EventKey lowest(Instant instant) {
+        return new EventKey(micros(instant), "");
+    }
+
+
+    /**
+     * Convert an instant to micros since the epoch, the precision kept by every engine
+     * @param instant time to convert
+     * @return micros since the epoch, sub-micro digits are truncated
+     */
+    static long micros(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000; // no overflow through nanos
+    }
+
+    // getters
+    long getMicros() { return micros; }
+    String getId() { return id; }
+
+
+    @Override
+    public int compareTo(EventKey other) {
+        int byTime = Long.compare(micros, other.micros);
+        return (byTime != 0) ? byTime : id.compareTo(other.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof EventKey key && micros == key.micros && id.equals(key.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(micros) * 31 + id.hashCode();
+    }
+}
@@ -0,0 +1,271 @@
+package io.github.nagare.logging.server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.servlet.ServletContext;
+
+
+/**
+ * Noisiest loggers and messages of the last minute, 5 minutes and hour, for /stats/top.
+ * LogsServlet records every event it stores, by arrival time, the LogStore is never queried.
+ * Each window is a ring of time slots, each slot a pair of SpaceSaving summaries (loggers, messages)
+ * of capacity counters: recording is O(1) and memory is bounded whatever the volume.
+ * The 1 minute window has slots of 10 seconds, the others share slots of one minute;
+ * a window is made of whole slots, the current one included, so its start moves one slot at a time.
+ * <br>
+ * The capacity comes from top.capacity (TOP_CAPACITY), messages are counted on their first MAX_MESSAGE_CHARS.
+ * Implements MBean interface to report the recorded events and the noisiest logger via JMX.
+ */
+public class HeavyHitters implements HeavyHittersMBean {
+
+    static final int MAX_MESSAGE_CHARS = 200;
+
+    /**
+     * Sliding window of the counts
+     */
+    public enum Window {
+        ONE_MINUTE("1m", 1), FIVE_MINUTES("5m", 5), ONE_HOUR("1h", 60);
+
+        private final String label;
+        private final int minutes;
+
+        Window(String label, int minutes) {
+            this.label = label;
+            this.minutes = minutes;
+        }
+
+        /**
+         * Parse a window label
+         * @param label 1m, 5m or 1h
+         * @return the window, null if the label is unknown
+         */
+        public static Window parse(String label) {
+            for (Window window : values()) {
+                if (window.label.equalsIgnoreCase(label)) return window;
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Estimated count of a logger or message in a window
+     */
+    public static final class Hitter {
+
+        private final String value;
+        private final long count;
+        private final long error;
+
+        Hitter(String value, long count, long error) {
+            this.value = value;
+            this.count = count;
+            this.error = error;
+        }
+
+        // getters, serialized by Jackson
+        public String getValue() { return value; }
+        public long getCount() { return count; }
+        public long getError() { return error; }
+    }
+
+    private final int capacity;
+    private final Ring seconds; // 6 slots of 10 seconds, for ONE_MINUTE
+    private final Ring minutes; // 60 slots of one minute, for the other windows
+    private final AtomicLong recordedCount = new AtomicLong();
+    private String name;
+
+    /**
+     * @param capacity loggers and messages counted per slot
+     */
+    public HeavyHitters(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.seconds = new Ring(10_000, 6, capacity);
+        this.minutes = new Ring(60_000, 60, capacity);
+    }
+
+
+    /**
+     * Create HeavyHitters sized by the top.capacity setting
+     * @return new HeavyHitters
+     */
+    public static HeavyHitters fromSettings() {
+        return new HeavyHitters(Integer.parseInt(DatabaseInitializer.readSetting("TOP_CAPACITY", "top.capacity", "100")));
+    }
+
+
+    /**
+     * Get the HeavyHitters shared by DatabaseInitializer, or create and share one,
+     * e.g. when servlets are initialized without the listener
+     * @param context ServletContext of the application
+     * @return HeavyHitters shared by LogsServlet and StatsTopServlet
+     */
+    public static HeavyHitters fromContext(ServletContext context) {
+        synchronized (context) {
+            HeavyHitters hitters = (HeavyHitters) context.getAttribute(ServletAttributes.HEAVY_HITTERS_ATTRIBUTE);
+            if (hitters == null) {
+                hitters = fromSettings();
+                context.setAttribute(ServletAttributes.HEAVY_HITTERS_ATTRIBUTE, hitters);
+            }
+            return hitters;
+        }
+    }
+
+
+    /**
+     * Count a stored log event now
+     * @param logEvent stored log event
+     */
+    public void record(LogEvent logEvent) {
+        record(logEvent, System.currentTimeMillis());
+    }
+
+
+    void record(LogEvent logEvent, long nowMillis) {
+        String message = logEvent.getMessage();
+        if (message.length() > MAX_MESSAGE_CHARS) message = message.substring(0, MAX_MESSAGE_CHARS);
+        seconds.offer(nowMillis, logEvent.getLogger(), message);
+        minutes.offer(nowMillis, logEvent.getLogger(), message);
+        recordedCount.incrementAndGet();
+    }
+
+
+    /**
+     * Get the noisiest loggers of a window
+     * @param window time window up to now
+     * @param limit maximum number of loggers
+     * @return loggers in decreasing count
+     */
+    public List<Hitter> topLoggers(Window window, int limit) {
+        return top(window, true, limit, System.currentTimeMillis());
+    }
+
+
+    /**
+     * Get the most frequent messages of a window
+     * @param window time window up to now
+     * @param limit maximum number of messages
+     * @return messages in decreasing count
+     */
+    public List<Hitter> topMessages(Window window, int limit) {
+        return top(window, false, limit, System.currentTimeMillis());
+    }
+
+
+    List<Hitter> top(Window window, boolean loggers, int limit, long nowMillis) {
+        Map<String, long[]> merged = (window == Window.ONE_MINUTE)
+                ? seconds.merge(nowMillis, 6, loggers)
+                : minutes.merge(nowMillis, window.minutes, loggers);
+        List<Hitter> hitters = new ArrayList<>(merged.size());
+        merged.forEach((value, totals) -> hitters.add(new Hitter(value, totals[0], totals[1])));
+        hitters.sort(Comparator.comparingLong(Hitter::getCount).reversed().thenComparing(Hitter::getValue));
+        return hitters.subList(0, Math.min(limit, hitters.size()));
+    }
+
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+
+    @Override
+    public long getRecordedCount() {
+        return recordedCount.get();
+    }
+
+
+    @Override
+    public String getTopLogger() {
+        List<Hitter> top = topLoggers(Window.ONE_MINUTE, 1);
+        return top.isEmpty() ? "" : top.get(0).getValue() + " (" + top.get(0).getCount() + ")";
+    }
+
+
+    /**
+     * Register this HeavyHitters as an MBean with the platform MBeanServer
+     * @param name instance name of the MBean
+     */
+    public void registerMBean(String name) {
+        MBeanRegistry.register(this, "HeavyHitters", name);
+        this.name = name;
+    }
+
+
+    /**
+     * Unregisters this HeavyHitters as an MBean with the platform MBeanServer
+     */
+    public void unregisterMBean() {
+        if (this.name == null) {
+            return;
+        }
+        MBeanRegistry.unregister("HeavyHitters", name);
+        this.name = null;
+    }
+
+
+    /**
+     * Ring of time slots, a slot is reset when time comes back to it
+     */
+    private static final class Ring {
+
+        private final long slotMillis;
+        private final long[] periods; // slot index since the epoch held by each slot, -1 when unused
+        private final SpaceSaving[] loggers;
+        private final SpaceSaving[] messages;
+
+        Ring(long slotMillis, int slots, int capacity) {
+            this.slotMillis = slotMillis;
+            this.periods = new long[slots];
+            this.loggers = new SpaceSaving[slots];
+            this.messages = new SpaceSaving[slots];
+            for (int i = 0; i < slots; i++) {
+                periods[i] = -1;
+                loggers[i] = new SpaceSaving(capacity);
+                messages[i] = new SpaceSaving(capacity);
+            }
+        }
+
+        synchronized void offer(long nowMillis, String logger, String message) {
+            long period = nowMillis / slotMillis;
+            int slot = (int) (period % periods.length);
+            if (periods[slot] != period) {
+                periods[slot] = period;
+                loggers[slot].clear();
+                messages[slot].clear();
+            }
+            loggers[slot].offer(logger);
+            messages[slot].offer(message);
+        }
+
+        /**
+         * Merge the summaries of the last slots, the current one included:
+         * every count stays an upper bound of the true count, at most its error above it
+         */
+        synchronized Map<String, long[]> merge(long nowMillis, int slots, boolean ofLoggers) {
+            long current = nowMillis / slotMillis;
+            Map<String, long[]> merged = new HashMap<>();
+            SpaceSaving[] summaries = ofLoggers ? loggers : messages;
+            for (int slot = 0; slot < periods.length; slot++) {
+                if (periods[slot] > current - slots && periods[slot] <= current) summaries[slot].addTo(merged);
+            }
+            // keys a full slot does not count may have been evicted from it, keep counts upper bounds
+            for (int slot = 0; slot < periods.length; slot++) {
+                if (periods[slot] > current - slots && periods[slot] <= current) summaries[slot].addMissingTo(merged);
+            }
+            return merged;
+        }
+    }
+}
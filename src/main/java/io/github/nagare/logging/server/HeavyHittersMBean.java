@@ -0,0 +1,27 @@
+package io.github.nagare.logging.server;
+
+/**
+ * MBean interface for HeavyHitters.
+ * Reports the events counted for /stats/top and the noisiest logger of the last minute.
+ * The MBean class MUST implement an interface with the following name: “class name” plus MBean.
+ */
+public interface HeavyHittersMBean {
+
+    /**
+     * Get the number of events recorded since startup
+     * @return the number of events
+     */
+    public long getRecordedCount();
+
+    /**
+     * Get the number of loggers and messages counted per time slot
+     * @return the capacity
+     */
+    public int getCapacity();
+
+    /**
+     * Get the noisiest logger of the last minute, with its estimated count
+     * @return "logger (count)", empty without events
+     */
+    public String getTopLogger();
+}
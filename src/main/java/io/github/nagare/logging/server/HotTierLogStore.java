@@ -0,0 +1,290 @@
+package io.github.nagare.logging.server;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Write-through cache of the most recent log events in front of another LogStore.
+ * Most GET /logs requests ask for the latest events: they are answered from a ConcurrentSkipListMap
+ * ordered by (event time, id) and only requests reaching older data go to the backing store.
+ * <br>
+ * The tier holds at most maxEvents events, none older than maxAge.
+ * It holds every stored event later than its floor: evicting an event raises the floor to its time,
+ * and events older than the floor are not cached on ingest.
+ * A query is a hit when the limit is reached above the floor, or when its window starts above the floor.
+ * <br>
+ * Events are copied in and out, so callers and caches in front never share an instance held by the tier.
+ * Only writes made through this store are seen, so the backing store must not be shared
+ * with another writer (another server instance, or a LogStore created elsewhere).
+ * Implements MBean interface to report hit ratio and memory used via JMX.
+ */
+public class HotTierLogStore implements LogStore, HotTierLogStoreMBean {
+
+    private final LogStore backing;
+    private final int maxEvents;
+    private final long maxAgeMicros;
+    private final ConcurrentSkipListMap<EventKey, LogEvent> recent = new ConcurrentSkipListMap<>();
+    private final Map<String, EventKey> ids = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private volatile long floor = Long.MIN_VALUE; // every stored event later than this is cached, in micros
+    private String name;
+
+    /**
+     * Create the tier and warm it with the latest events of the backing store
+     * @param backing store holding every event
+     * @param maxEvents maximum number of cached events
+     * @param maxAge maximum age of cached events
+     */
+    public HotTierLogStore(LogStore backing, int maxEvents, Duration maxAge) {
+        if (maxEvents < 1) {
+            throw new IllegalArgumentException("maxEvents must be positive");
+        }
+        this.backing = backing;
+        this.maxEvents = maxEvents;
+        this.maxAgeMicros = EventKey.micros(Instant.EPOCH.plus(maxAge));
+        List<LogEvent> latest = backing.filterLogs(String.valueOf(maxEvents), "ALL");
+        if (latest.size() == maxEvents) { // older events exist, equal times may have been cut
+            floor = EventKey.of(latest.get(latest.size() - 1)).getMicros();
+        }
+        writeLock.lock();
+        try {
+            for (LogEvent logEvent : latest) {
+                cache(logEvent);
+            }
+            evict();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Get the store behind the tier
+     * @return backing LogStore
+     */
+    public LogStore getBacking() {
+        return backing;
+    }
+
+
+    @Override
+    public void save(LogEvent logEvent) {
+        saveAll(List.of(logEvent));
+    }
+
+
+    @Override
+    public void saveAll(List<LogEvent> logEvents) {
+        writeLock.lock();
+        try {
+            backing.saveAll(logEvents); // written through before it becomes visible here
+            for (LogEvent logEvent : logEvents) {
+                cache(logEvent);
+            }
+            evict();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Answer from the tier when it holds the whole result, otherwise from the backing store
+     */
+    @Override
+    public List<LogEvent> filterLogs(LogQuery query) {
+        if (query.getThreshold() == LogLevels.OFF) return List.of();
+        long floorBefore = floor;
+        NavigableSet<EventKey> keys = recent.navigableKeySet();
+        if (query.getTo() != null) keys = keys.headSet(EventKey.lowest(query.getTo()), false);
+        if (query.getFrom() != null) keys = keys.tailSet(EventKey.lowest(query.getFrom()), true);
+
+        List<LogEvent> result = new ArrayList<>();
+        for (EventKey key : keys.descendingSet()) {
+            if (result.size() == query.getLimit() || key.getMicros() <= floorBefore) break;
+            LogEvent logEvent = recent.get(key);
+            if (logEvent != null && query.matches(logEvent)) result.add(MemoryLogStore.copy(logEvent));
+        }
+        boolean complete = result.size() == query.getLimit() || floorBefore == Long.MIN_VALUE
+                || (query.getFrom() != null && EventKey.micros(query.getFrom()) > floorBefore);
+        // floor is raised before an event is evicted, a changed floor means the scan may have missed one
+        if (complete && floor == floorBefore) {
+            hitCount.incrementAndGet();
+            return result;
+        }
+        missCount.incrementAndGet();
+        return backing.filterLogs(query);
+    }
+
+
+    @Override
+    public boolean is_exist(String id) {
+        return ids.containsKey(id) || backing.is_exist(id);
+    }
+
+
+    @Override
+    public LogEvent getById(String id) {
+        EventKey key = ids.get(id);
+        LogEvent logEvent = (key == null) ? null : recent.get(key);
+        return (logEvent != null) ? MemoryLogStore.copy(logEvent) : backing.getById(id);
+    }
+
+
+    @Override
+    public List<LogEvent> getAllLogs() {
+        return backing.getAllLogs();
+    }
+
+
+    @Override
+    public Map<String, Map<String, Long>> countByLoggerAndLevel() {
+        return backing.countByLoggerAndLevel();
+    }
+
+
+    @Override
+    public SortedMap<Instant, Map<String, Map<String, Long>>> countByTimeBucket(Duration width, Instant from, Instant to) {
+        return backing.countByTimeBucket(width, from, to);
+    }
+
+
+    @Override
+    public long delete(DeleteFilter filter) {
+        writeLock.lock();
+        try {
+            long deleted = backing.delete(filter);
+            for (LogEvent logEvent : new ArrayList<>(recent.values())) {
+                if (filter.matches(logEvent)) uncache(EventKey.of(logEvent));
+            }
+            if (filter.isEmpty()) floor = Long.MIN_VALUE; // nothing is left outside the tier
+            return deleted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public void deleteById(String id) {
+        writeLock.lock();
+        try {
+            backing.deleteById(id);
+            EventKey key = ids.get(id);
+            if (key != null) uncache(key);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public void close() {
+        backing.close();
+    }
+
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+
+    @Override
+    public double getHitRatio() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return (total == 0) ? 0 : (double) hits / total;
+    }
+
+
+    @Override
+    public int getSize() {
+        return recent.size();
+    }
+
+
+    @Override
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+
+    /**
+     * Add a stored event unless it is older than the floor, the caller holds the write lock
+     */
+    private void cache(LogEvent logEvent) {
+        EventKey key = EventKey.of(logEvent);
+        if (key.getMicros() <= floor) return;
+        EventKey previous = ids.get(logEvent.getId());
+        if (previous != null) uncache(previous);
+        LogEvent stored = MemoryLogStore.copy(logEvent);
+        recent.put(key, stored);
+        ids.put(stored.getId(), key);
+        usedBytes.addAndGet(MemoryLogStore.sizeOf(stored));
+    }
+
+
+    /**
+     * Evict the oldest events beyond maxEvents or maxAge, raising the floor first
+     */
+    private void evict() {
+        long cutoff = EventKey.micros(Instant.now()) - maxAgeMicros;
+        if (cutoff > floor) floor = cutoff;
+        while (!recent.isEmpty()) {
+            EventKey oldest = recent.firstKey();
+            if (recent.size() <= maxEvents && oldest.getMicros() > floor) return;
+            if (oldest.getMicros() > floor) floor = oldest.getMicros();
+            uncache(oldest);
+        }
+    }
+
+
+    private void uncache(EventKey key) {
+        LogEvent logEvent = recent.remove(key);
+        if (logEvent == null) return;
+        ids.remove(key.getId());
+        usedBytes.addAndGet(-MemoryLogStore.sizeOf(logEvent));
+    }
+
+
+    /**
+     * Register this HotTierLogStore as an MBean with the platform MBeanServer
+     * @param name instance name of the MBean
+     */
+    public void registerMBean(String name) {
+        MBeanRegistry.register(this, "HotTierLogStore", name);
+        this.name = name;
+    }
+
+
+    /**
+     * Unregisters this HotTierLogStore as an MBean with the platform MBeanServer
+     */
+    public void unregisterMBean() {
+        if (this.name == null) {
+            return;
+        }
+        MBeanRegistry.unregister("HotTierLogStore", name);
+        this.name = null;
+    }
+}
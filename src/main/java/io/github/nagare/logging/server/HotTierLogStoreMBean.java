@@ -0,0 +1,39 @@
+package io.github.nagare.logging.server;
+
+/**
+ * MBean interface for HotTierLogStore.
+ * Reports how many GET /logs queries are answered from memory and what it costs.
+ * The MBean class MUST implement an interface with the following name: “class name” plus MBean.
+ */
+public interface HotTierLogStoreMBean {
+
+    /**
+     * Get the number of queries answered from the hot tier
+     * @return the number of hits
+     */
+    public long getHitCount();
+
+    /**
+     * Get the number of queries that needed older data from the backing store
+     * @return the number of misses
+     */
+    public long getMissCount();
+
+    /**
+     * Get the fraction of queries answered from the hot tier
+     * @return hit count / (hit count + miss count), 0 if nothing was queried
+     */
+    public double getHitRatio();
+
+    /**
+     * Get the number of events held in the hot tier
+     * @return the number of events
+     */
+    public int getSize();
+
+    /**
+     * Get the estimated heap used by the events of the hot tier
+     * @return estimated bytes
+     */
+    public long getUsedBytes();
+}
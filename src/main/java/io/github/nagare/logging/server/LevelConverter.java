@@ -0,0 +1,41 @@
+package io.github.nagare.logging.server;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+
+/**
+ * Converts the level name of LogEvent to its severity ordinal at the JPA boundary.
+ * The database stores a SMALLINT, so "level >= WARN" becomes an indexable range predicate,
+ * while JSON keeps the level name.
+ * Hibernate applies the converter to query parameters compared with the level attribute too.
+ */
+@Converter
+public class LevelConverter implements AttributeConverter<String, Short> {
+
+    /**
+     * Convert level name to ordinal
+     * @param level upper case level name, must already be validated
+     * @return severity ordinal, or null if level is null
+     */
+    @Override
+    public Short convertToDatabaseColumn(String level) {
+        if (level == null) return null;
+        int ordinal = LogLevels.ordinal(level);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Unknown log level: " + level);
+        }
+        return (short) ordinal;
+    }
+
+
+    /**
+     * Convert ordinal back to level name
+     * @param ordinal severity ordinal from the database
+     * @return upper case level name, or null if ordinal is null
+     */
+    @Override
+    public String convertToEntityAttribute(Short ordinal) {
+        return (ordinal == null) ? null : LogLevels.name(ordinal);
+    }
+}
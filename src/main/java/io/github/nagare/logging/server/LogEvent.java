@@ -1,17 +1,24 @@
 package io.github.nagare.logging.server;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Instant;
 import java.util.Objects;
 import jakarta.persistence.*;
+import org.hibernate.annotations.JavaType;
 
 /**
  * Unified log event model used across all system components.
  */
 @Entity
-@Table(name = "log_events")
+@Table(name = "log_events", indexes = {
+        @Index(name = "idx_log_events_event_time", columnList = "event_time"),
+        @Index(name = "idx_log_events_level_event_time", columnList = "level, event_time"),
+        @Index(name = "idx_log_events_logger_event_time", columnList = "logger_id, event_time")
+})
 public class LogEvent {
 
     @Id // it's already unique, no need of "GeneratedValue"
-    @Column(name = "id", length = 36) // standard UUID code -> 36 characters.
+    @Column(name = "id") // stored as native UUID / BINARY(16) instead of 36 characters
+    @JavaType(UuidStringJavaType.class)
     @JsonProperty
     private String id; // $uuid - generated server-side if not provided
 
@@ -23,22 +30,35 @@ public class LogEvent {
     @JsonProperty(required = true)
     private String timestamp; // ISO-8601 format: "2024-11-17T14:22:15.123Z"
 
-    @Column(name = "thread", nullable = false)
+    @Column(name = "event_time", nullable = false)
+    private Instant eventTime; // parsed timestamp, used for ordering, time bounds and daily partitions
+
+    @Transient // stored once in log_threads, see NameDictionary
     @JsonProperty(required = true)
     private String thread; // where the log event has occurred
 
-    @Column(name = "logger", nullable = false)
+    @Transient // stored once in log_loggers, see NameDictionary
     @JsonProperty(required = true)
     private String logger; // name property of the logger
 
-    @Column(name = "level", length = 10, nullable = false) // could be 5, but for custom levels
+    @Column(name = "thread_id", nullable = false)
+    private int threadId; // dictionary key of thread, resolved by LogEventRepository
+
+    @Column(name = "logger_id", nullable = false)
+    private int loggerId; // dictionary key of logger, resolved by LogEventRepository
+
+    @Column(name = "level", nullable = false) // stored as SMALLINT ordinal, see LogLevels
+    @Convert(converter = LevelConverter.class)
     @JsonProperty(required = true)
     private String level; // ALL, TRACE, DEBUG, INFO, WARN, ERROR, FATAL, OFF
 
-    @Column(name = "error_details", columnDefinition = "TEXT") // Can be very long
+    @Transient // stored once in log_stack_traces, see StackTraceStore
     @JsonProperty
     private String errorDetails; // Optional, the stack trace of the error or exception that has been logged
 
+    @Column(name = "error_hash", length = 64)
+    private String errorHash; // SHA-256 of errorDetails, resolved by LogEventRepository
+
     /**
      * Default no-argument constructor for Jackson
      */
@@ -53,6 +73,11 @@ public class LogEvent {
     public String getLogger() { return logger; }
     public String getLevel() { return level; }
     public String getErrorDetails() { return errorDetails; }
+    // package-private, so Jackson does not serialize the dictionary keys
+    int getThreadId() { return threadId; }
+    int getLoggerId() { return loggerId; }
+    String getErrorHash() { return errorHash; }
+    Instant getEventTime() { return eventTime; }
 
     // setters
     public void setId(String id) {
@@ -83,6 +108,22 @@ public class LogEvent {
         this.errorDetails = errorDetails;
     }
 
+    void setThreadId(int threadId) {
+        this.threadId = threadId;
+    }
+
+    void setLoggerId(int loggerId) {
+        this.loggerId = loggerId;
+    }
+
+    void setErrorHash(String errorHash) {
+        this.errorHash = errorHash;
+    }
+
+    void setEventTime(Instant eventTime) {
+        this.eventTime = eventTime;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
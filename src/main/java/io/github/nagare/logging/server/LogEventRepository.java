@@ -1,60 +1,187 @@
 package io.github.nagare.logging.server;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.TypedQuery;
 
 /**
+ * JPA implementation of LogStore, the default engine (log.store=jpa).
  * Class handle Basic CRUD operations for LogServlet
  * Basic JPQL structure:
  * em.createQuery("SELECT/FROM entity WHERE conditions ORDER BY field", Class)
  * <a href="https://docs.oracle.com/javaee/7/api/javax/persistence/EntityManager.html">...</a>
  */
-public class LogEventRepository {
+public class LogEventRepository implements LogStore {
+
+    private static final int BATCH_SIZE = 50;
 
     private final EntityManagerFactory emf;
+    private final NameDictionary<LoggerName> loggers;
+    private final NameDictionary<ThreadName> threads;
+    private final StackTraceStore stackTraces;
+    private final ChunkedDeleter deleter;
 
     /**
      * Public constructor, servlet need to pass EntityManagerFactory
      * @param emf EntityManagerFactory from Servlet or class use it
      */
     public LogEventRepository(EntityManagerFactory emf){
+        this(emf, new ChunkedDeleter(emf));
+    }
+
+
+    /**
+     * Repository deleting with the given chunk size and pause
+     * @param emf EntityManagerFactory from Servlet or class use it
+     * @param deleter chunked deleter on the same EntityManagerFactory
+     */
+    public LogEventRepository(EntityManagerFactory emf, ChunkedDeleter deleter){
         this.emf = emf;
+        this.loggers = new NameDictionary<>(emf, LoggerName.class, LoggerName::new);
+        this.threads = new NameDictionary<>(emf, ThreadName.class, ThreadName::new);
+        this.stackTraces = new StackTraceStore(emf);
+        this.deleter = deleter;
+    }
+
+
+    /**
+     * Get the deduplicated storage of errorDetails, e.g. to report its hit ratio
+     * @return StackTraceStore used by this repository
+     */
+    public StackTraceStore getStackTraces() {
+        return stackTraces;
+    }
+
+
+    /**
+     * Get the chunked deleter used by delete() and deleteAll(), e.g. to report its progress
+     * @return ChunkedDeleter used by this repository
+     */
+    public ChunkedDeleter getDeleter() {
+        return deleter;
     }
 
 
     /**
-     * Get logs filtered by level and limited by count, ordered by timestamp descending
-     * @param limit maximum number of logs to return
-     * @param level minimum log level threshold for filtering
+     * Get the latest logs matching the query, ordered by timestamp descending.
+     * Level is stored as an ordinal, so the threshold is a range predicate evaluated by the database.
+     * Time bounds are predicates on event_time, so a partitioned table only scans the matching days.
+     * Logger is compared by its dictionary key. Terms are prefiltered with LIKE, which also matches inside
+     * longer words, then checked on the tokenized message: a scan, put a TextIndexLogStore in front to avoid it.
+     * With fields, only their columns are selected: message is not read unless asked for or needed by terms,
+     * stack traces are not loaded unless errorDetails is asked for.
+     * @param logQuery level, logger and time window to match, and maximum number of logs to return
      * @return List of LogEvent objects that match the criteria
      */
-    public List<LogEvent> filterLogs(String limit, String level){
-        try (EntityManager em = emf.createEntityManager()) {
-            // Get ALL logs, ordered by timestamp
-            List<LogEvent> allLogs = em.createQuery("FROM LogEvent ORDER BY timestamp DESC", LogEvent.class)
-                    .getResultList();
+    @Override
+    public List<LogEvent> filterLogs(LogQuery logQuery){
+        int threshold = logQuery.getThreshold();
+        if (threshold == LogLevels.OFF) return List.of(); // nothing passes OFF, no need to ask
+        Integer loggerId = null;
+        if (logQuery.getLogger() != null) {
+            loggerId = loggers.find(logQuery.getLogger());
+            if (loggerId == null) return List.of(); // never logged
+        }
+        Instant from = logQuery.getFrom();
+        Instant to = logQuery.getTo();
+        List<String> terms = logQuery.getTerms();
+        List<String> columns = logQuery.isProjection() ? columns(logQuery) : null;
+        StringBuilder jpql = new StringBuilder();
+        if (columns != null) jpql.append("SELECT ").append(String.join(", ", columns)).append(" ");
+        jpql.append("FROM LogEvent WHERE 1 = 1");
+        // LevelConverter turns the parameter into its ordinal
+        if (threshold != LogLevels.ALL) jpql.append(" AND level >= :level");
+        if (loggerId != null) jpql.append(" AND loggerId = :loggerId");
+        if (from != null) jpql.append(" AND eventTime >= :from");
+        if (to != null) jpql.append(" AND eventTime < :to");
+        for (int i = 0; i < terms.size(); i++) {
+            jpql.append(" AND LOWER(message) LIKE :term").append(i); // terms are letters and digits, no wildcard
+        }
+        jpql.append(" ORDER BY eventTime DESC");
 
-            return allLogs.stream()
-                    .filter(log -> filterLevel(log.getLevel(), level))
-                    .limit(Integer.parseInt(limit))
-                    .toList();
+        try (EntityManager em = emf.createEntityManager()) {
+            TypedQuery<?> query = (columns == null)
+                    ? em.createQuery(jpql.toString(), LogEvent.class)
+                    : em.createQuery(jpql.toString(), Object[].class);
+            if (threshold != LogLevels.ALL) query.setParameter("level", logQuery.getLevel());
+            if (loggerId != null) query.setParameter("loggerId", loggerId);
+            if (from != null) query.setParameter("from", from.truncatedTo(ChronoUnit.MICROS));
+            if (to != null) query.setParameter("to", to.truncatedTo(ChronoUnit.MICROS));
+            for (int i = 0; i < terms.size(); i++) {
+                query.setParameter("term" + i, "%" + terms.get(i) + "%");
+            }
+            if (terms.isEmpty()) query.setMaxResults(logQuery.getLimit()); // otherwise limited after matchesText
+            Stream<LogEvent> candidates = query.getResultStream()
+                    .map(row -> (columns == null) ? (LogEvent) row : toLogEvent((Object[]) row, columns));
+            try (candidates) {
+                List<LogEvent> logEvents = candidates
+                        .filter(logEvent -> logQuery.matchesText(logEvent.getMessage()))
+                        .limit(logQuery.getLimit())
+                        .collect(Collectors.toList());
+                if (columns == null) return decode(logEvents);
+                if (!logQuery.includes("message")) logEvents.forEach(logEvent -> logEvent.setMessage(null));
+                return logQuery.includes("errorDetails") ? decode(logEvents) : decodeNames(logEvents);
+            }
         }
     }
 
 
     /**
-     * Filters log events based on the minimum log level threshold.
-     * @param target the log level of the event to be filtered
-     * @param levelParam the minimum log level threshold for filtering
-     * @return true if the log should be included, false otherwise
+     * Get the attributes to select for the fields of a query, in the order read by toLogEvent
+     * @param logQuery query with fields
+     * @return attribute names of LogEvent
      */
-    private boolean filterLevel(String target, String levelParam){
-        if (levelParam.equals("ALL")) return true;
-        if (levelParam.equals("OFF")) return false;
-        return LogsServlet.LEVELS.indexOf(target) >= LogsServlet.LEVELS.indexOf(levelParam);
+    private static List<String> columns(LogQuery logQuery) {
+        List<String> columns = new ArrayList<>();
+        if (logQuery.includes("id")) columns.add("id");
+        if (logQuery.includes("message") || !logQuery.getTerms().isEmpty()) columns.add("message");
+        if (logQuery.includes("timestamp")) columns.add("timestamp");
+        if (logQuery.includes("thread")) columns.add("threadId");
+        if (logQuery.includes("logger")) columns.add("loggerId");
+        if (logQuery.includes("level")) columns.add("level");
+        if (logQuery.includes("errorDetails")) columns.add("errorHash");
+        if (columns.isEmpty()) columns.add("id"); // the query needs a selection, e.g. fields=thread on no column
+        return columns;
+    }
+
+
+    /**
+     * Build a partial log event from a projected row
+     * @param row selected values
+     * @param columns attribute names of the values
+     * @return log event with only these attributes set
+     */
+    private static LogEvent toLogEvent(Object[] row, List<String> columns) {
+        LogEvent logEvent = new LogEvent();
+        logEvent.setThreadId(-1); // no dictionary key, see decodeNames
+        logEvent.setLoggerId(-1);
+        for (int i = 0; i < columns.size(); i++) {
+            Object value = row[i];
+            switch (columns.get(i)) {
+                case "id" -> logEvent.setId((String) value);
+                case "message" -> logEvent.setMessage((String) value);
+                case "timestamp" -> logEvent.setTimestamp((String) value);
+                case "threadId" -> logEvent.setThreadId((Integer) value);
+                case "loggerId" -> logEvent.setLoggerId((Integer) value);
+                case "level" -> logEvent.setLevel((String) value);
+                case "errorHash" -> logEvent.setErrorHash((String) value);
+                default -> throw new IllegalStateException("Unexpected column: " + columns.get(i));
+            }
+        }
+        return logEvent;
     }
 
 
@@ -62,7 +189,9 @@ public class LogEventRepository {
      * Save log event to database
      * @param logEvent log event to be saved
      */
+    @Override
     public void save(LogEvent logEvent){
+        encode(logEvent); // resolved before the transaction, a new name is inserted in its own
         EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
@@ -80,11 +209,45 @@ public class LogEventRepository {
     }
 
 
+    /**
+     * Save a batch of log events in one transaction, flushed every BATCH_SIZE events
+     * so the persistence context stays small
+     * @param logEvents log events to be saved
+     */
+    @Override
+    public void saveAll(List<LogEvent> logEvents) {
+        for (LogEvent logEvent : logEvents) {
+            encode(logEvent);
+        }
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            for (int i = 0; i < logEvents.size(); i++) {
+                em.persist(logEvents.get(i));
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            tx.commit();
+        }
+        catch (Exception e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        }
+        finally {
+            em.close();
+        }
+    }
+
+
     /**
      * Check if log event with given ID exists
      * @param id log event ID
      * @return true if exists, false otherwise
      */
+    @Override
     public boolean is_exist(String id) {
         try (EntityManager em = emf.createEntityManager()) {
             // JPQL requires alias for COUNT
@@ -98,29 +261,21 @@ public class LogEventRepository {
 
 
     /**
-     * Delete all log events from database
+     * Delete the log events selected by the filter, in short chunked transactions
+     * @param filter selection of log events to delete
+     * @return number of deleted log events
      */
-    public void deleteAll() {
-        EntityManager em = emf.createEntityManager();
-        EntityTransaction tx = em.getTransaction();
-        try {
-            tx.begin();
-            em.createQuery("DELETE FROM LogEvent").executeUpdate();
-            tx.commit();
-        }
-        catch (Exception e) {
-            if (tx.isActive()) tx.rollback();
-            throw e;
-        }
-        finally {
-            em.close();
-        }
+    @Override
+    public long delete(DeleteFilter filter) {
+        return deleter.delete(filter);
     }
 
+
     /**
      * Delete log event by ID
      * @param id log event ID
      */
+    @Override
     public void deleteById(String id) {
         EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
@@ -145,9 +300,10 @@ public class LogEventRepository {
      * Get all logs from database
      * @return List of all LogEvent objects
      */
+    @Override
     public List<LogEvent> getAllLogs(){
         try (EntityManager em = emf.createEntityManager()) {
-            return em.createQuery("FROM LogEvent", LogEvent.class).getResultList();
+            return decode(em.createQuery("FROM LogEvent", LogEvent.class).getResultList());
         }
     }
 
@@ -157,10 +313,126 @@ public class LogEventRepository {
      * @param id log event ID
      * @return LogEvent object if found, null otherwise
      */
+    @Override
     public LogEvent getById(String id){
         try (EntityManager em = emf.createEntityManager()) {
-            return em.find(LogEvent.class, id);
+            LogEvent logEvent = em.find(LogEvent.class, id);
+            return (logEvent == null) ? null : decode(logEvent);
+        }
+    }
+
+
+    /**
+     * Count log events per logger and level, aggregated by the database.
+     * Groups by the dictionary key, so only the small integer columns are scanned.
+     * @return nested map: logger → (level → count), levels without events are absent
+     */
+    @Override
+    public Map<String, Map<String, Long>> countByLoggerAndLevel() {
+        try (EntityManager em = emf.createEntityManager()) {
+            List<Object[]> rows = em.createQuery(
+                    "SELECT L.loggerId, L.level, COUNT(L) FROM LogEvent L GROUP BY L.loggerId, L.level", Object[].class)
+                    .getResultList();
+            Map<String, Map<String, Long>> stats = new HashMap<>();
+            for (Object[] row : rows) {
+                String logger = loggers.nameOf((Integer) row[0]);
+                stats.computeIfAbsent(logger, k -> new HashMap<>()).put((String) row[1], (Long) row[2]);
+            }
+            return stats;
+        }
+    }
+
+
+    /**
+     * Count log events per time bucket, logger and level with one GROUP BY on the event_time index,
+     * bucket of an event = floor(epoch seconds / width seconds)
+     */
+    @Override
+    public SortedMap<Instant, Map<String, Map<String, Long>>> countByTimeBucket(Duration width, Instant from, Instant to) {
+        if (width.getNano() != 0 || width.getSeconds() < 1) { // whole seconds only
+            return LogStore.super.countByTimeBucket(width, from, to);
+        }
+        long seconds = width.getSeconds();
+        // the width is inlined: a parameter in both SELECT and GROUP BY is two different expressions for PostgreSQL
+        String bucket = "floor(extract(epoch from L.eventTime) / " + seconds + ")";
+        StringBuilder jpql = new StringBuilder("SELECT " + bucket + ", L.loggerId, L.level, COUNT(L) FROM LogEvent L WHERE 1 = 1");
+        if (from != null) jpql.append(" AND L.eventTime >= :from");
+        if (to != null) jpql.append(" AND L.eventTime < :to");
+        jpql.append(" GROUP BY ").append(bucket).append(", L.loggerId, L.level");
+        try (EntityManager em = emf.createEntityManager()) {
+            TypedQuery<Object[]> query = em.createQuery(jpql.toString(), Object[].class);
+            if (from != null) query.setParameter("from", from.truncatedTo(ChronoUnit.MICROS));
+            if (to != null) query.setParameter("to", to.truncatedTo(ChronoUnit.MICROS));
+            SortedMap<Instant, Map<String, Map<String, Long>>> counts = new TreeMap<>();
+            for (Object[] row : query.getResultList()) {
+                Instant start = Instant.ofEpochSecond(((Number) row[0]).longValue() * seconds);
+                counts.computeIfAbsent(start, k -> new HashMap<>())
+                        .computeIfAbsent(loggers.nameOf((Integer) row[1]), k -> new HashMap<>())
+                        .put((String) row[2], (Long) row[3]);
+            }
+            return counts;
+        }
+    }
+
+
+    /**
+     * Parse the timestamp, replace logger and thread names by their dictionary keys,
+     * and errorDetails by the hash of the deduplicated stack trace before persisting
+     * @param logEvent log event to be saved
+     */
+    private void encode(LogEvent logEvent) {
+        // Databases keep microseconds, truncate instead of letting them round
+        logEvent.setEventTime(Instant.parse(logEvent.getTimestamp()).truncatedTo(ChronoUnit.MICROS));
+        logEvent.setLoggerId(loggers.idOf(logEvent.getLogger()));
+        logEvent.setThreadId(threads.idOf(logEvent.getThread()));
+        String details = logEvent.getErrorDetails();
+        logEvent.setErrorHash((details == null) ? null : stackTraces.store(details));
+    }
+
+
+    /**
+     * Fill logger and thread names from their dictionary keys after loading
+     * @param logEvent loaded log event
+     * @return the same log event
+     */
+    private LogEvent decode(LogEvent logEvent) {
+        return decode(List.of(logEvent)).get(0);
+    }
+
+
+    /**
+     * Fill logger and thread names from their dictionary keys, those not selected (-1) are left unset
+     * @param logEvents loaded log events
+     * @return the same log events
+     */
+    private List<LogEvent> decodeNames(List<LogEvent> logEvents) {
+        for (LogEvent logEvent : logEvents) {
+            if (logEvent.getLoggerId() >= 0) logEvent.setLogger(loggers.nameOf(logEvent.getLoggerId()));
+            if (logEvent.getThreadId() >= 0) logEvent.setThread(threads.nameOf(logEvent.getThreadId()));
+        }
+        return logEvents;
+    }
+
+
+    /**
+     * Fill logger and thread names from their dictionary keys,
+     * and errorDetails with one batched lookup for all referenced stack traces
+     * @param logEvents loaded log events
+     * @return the same log events
+     */
+    private List<LogEvent> decode(List<LogEvent> logEvents) {
+        decodeNames(logEvents);
+        List<String> hashes = new ArrayList<>();
+        for (LogEvent logEvent : logEvents) {
+            if (logEvent.getErrorHash() != null) hashes.add(logEvent.getErrorHash());
+        }
+        if (hashes.isEmpty()) return logEvents;
+
+        Map<String, String> details = stackTraces.load(hashes);
+        for (LogEvent logEvent : logEvents) {
+            if (logEvent.getErrorHash() != null) logEvent.setErrorDetails(details.get(logEvent.getErrorHash()));
         }
+        return logEvents;
     }
 
 }
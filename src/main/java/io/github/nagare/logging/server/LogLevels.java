@@ -0,0 +1,83 @@
+package io.github.nagare.logging.server;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Fixed set of log levels in severity order, and their ordinals.
+ * The ordinal is the position in LEVELS, it is what the database stores for LogEvent.level.
+ * Lookup is precomputed into a HashMap, so validation and filtering never scan the list.
+ */
+public final class LogLevels {
+
+    /**
+     * All levels in severity order, ALL and OFF are filter settings only
+     */
+    public static final List<String> LEVELS = List.of("ALL", "TRACE", "DEBUG", "INFO", "WARN", "ERROR", "FATAL", "OFF");
+
+    public static final int ALL = 0;
+    public static final int OFF = LEVELS.size() - 1;
+
+    private static final Map<String, Integer> ORDINALS = new HashMap<>();
+    static {
+        for (int i = 0; i < LEVELS.size(); i++) {
+            ORDINALS.put(LEVELS.get(i), i);
+        }
+    }
+
+
+    /**
+     * Private constructor prevents instantiation
+     */
+    private LogLevels() {
+        throw new AssertionError("Cannot instantiate constants class");
+    }
+
+
+    /**
+     * Get the ordinal of a level name
+     * @param level upper case level name
+     * @return position in severity order, -1 if level is null or unknown
+     */
+    public static int ordinal(String level) {
+        if (level == null) return -1;
+        Integer ordinal = ORDINALS.get(level);
+        return (ordinal == null) ? -1 : ordinal;
+    }
+
+
+    /**
+     * Get the level name of an ordinal
+     * @param ordinal position in severity order
+     * @return upper case level name
+     */
+    public static String name(int ordinal) {
+        return LEVELS.get(ordinal);
+    }
+
+
+    /**
+     * Check whether the level is one of the accepted levels, including ALL and OFF
+     * @param level upper case level name
+     * @return true if valid level, false otherwise
+     */
+    public static boolean isValid(String level) {
+        return ordinal(level) >= 0;
+    }
+
+
+    /**
+     * Check whether a log event at target level passes the minimum threshold
+     * @param target the log level of the event
+     * @param threshold the minimum log level, ALL passes everything and OFF nothing
+     * @return true if the event should be included, false otherwise
+     */
+    public static boolean passes(String target, String threshold) {
+        int min = ordinal(threshold);
+        if (min == ALL) return true;
+        if (min == OFF) return false;
+        return ordinal(target) >= min;
+    }
+}
@@ -0,0 +1,162 @@
+package io.github.nagare.logging.server;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Immutable search for GET /logs, every non-null criterion must match.
+ * Terms (see Tokenizer) must all occur in the message, an index such as TextIndexLogStore avoids a scan.
+ * The latest matching log events are returned first, at most limit of them.
+ * Fields, if any, are the only properties the caller reads: a store may leave the others unset
+ * instead of reading them, e.g. LogEventRepository skips message and errorDetails for list views.
+ */
+public final class LogQuery {
+
+    /**
+     * Properties of a LogEvent in JSON order, the names accepted by fields
+     */
+    public static final List<String> FIELDS = List.of("id", "message", "timestamp", "thread", "logger", "level", "errorDetails");
+
+    private final int limit;
+    private final String level;
+    private final String logger;
+    private final Instant from;
+    private final Instant to;
+    private final List<String> terms;
+    private final Set<String> fields;
+
+    /**
+     * @param limit maximum number of log events to return
+     * @param level upper case minimum level, ALL passes everything and OFF nothing
+     * @param logger exact logger name, null for any logger
+     * @param from inclusive lower bound of the event time, null for no bound
+     * @param to exclusive upper bound of the event time, null for no bound
+     */
+    public LogQuery(int limit, String level, String logger, Instant from, Instant to) {
+        this(limit, level, logger, from, to, List.of());
+    }
+
+
+    /**
+     * @param limit maximum number of log events to return
+     * @param level upper case minimum level, ALL passes everything and OFF nothing
+     * @param logger exact logger name, null for any logger
+     * @param from inclusive lower bound of the event time, null for no bound
+     * @param to exclusive upper bound of the event time, null for no bound
+     * @param terms terms that must all occur in the message, empty for any message
+     */
+    public LogQuery(int limit, String level, String logger, Instant from, Instant to, List<String> terms) {
+        this(limit, level, logger, from, to, terms, List.of());
+    }
+
+
+    /**
+     * @param limit maximum number of log events to return
+     * @param level upper case minimum level, ALL passes everything and OFF nothing
+     * @param logger exact logger name, null for any logger
+     * @param from inclusive lower bound of the event time, null for no bound
+     * @param to exclusive upper bound of the event time, null for no bound
+     * @param terms terms that must all occur in the message, empty for any message
+     * @param fields names from FIELDS the caller reads, empty for every field
+     */
+    public LogQuery(int limit, String level, String logger, Instant from, Instant to, List<String> terms,
+                    Collection<String> fields) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        if (!LogLevels.isValid(level)) {
+            throw new IllegalArgumentException("Unknown log level: " + level);
+        }
+        this.limit = limit;
+        this.level = level;
+        this.logger = logger;
+        this.from = from;
+        this.to = to;
+        this.terms = List.copyOf(terms);
+        for (String field : fields) {
+            if (!FIELDS.contains(field)) throw new IllegalArgumentException("Unknown field: " + field);
+        }
+        this.fields = new LinkedHashSet<>(FIELDS);
+        if (!fields.isEmpty()) this.fields.retainAll(fields); // in FIELDS order
+    }
+
+
+    /**
+     * Query on level and time window only
+     * @param limit maximum number of log events to return, as sent by the client
+     * @param level upper case minimum level
+     * @param from inclusive lower bound of the event time, null for no bound
+     * @param to exclusive upper bound of the event time, null for no bound
+     * @return query for any logger
+     */
+    public static LogQuery of(String limit, String level, Instant from, Instant to) {
+        return new LogQuery(Integer.parseInt(limit), level, null, from, to);
+    }
+
+    // getters
+    public int getLimit() { return limit; }
+    public String getLevel() { return level; }
+    public String getLogger() { return logger; }
+    public Instant getFrom() { return from; }
+    public Instant getTo() { return to; }
+    public List<String> getTerms() { return terms; }
+    public Set<String> getFields() { return Collections.unmodifiableSet(fields); } // in FIELDS order
+
+
+    /**
+     * Check whether the caller reads a field
+     * @param field name from FIELDS
+     * @return true if the field was asked for, or no fields were given
+     */
+    public boolean includes(String field) {
+        return fields.contains(field);
+    }
+
+
+    /**
+     * Check whether only some fields are read
+     * @return true if a store may leave fields unset
+     */
+    public boolean isProjection() {
+        return fields.size() < FIELDS.size();
+    }
+
+
+    /**
+     * Get the ordinal of the minimum level
+     * @return position in severity order, see LogLevels
+     */
+    public int getThreshold() {
+        return LogLevels.ordinal(level);
+    }
+
+
+    /**
+     * Check whether a log event matches every criterion but the limit, for stores that filter in memory
+     * @param logEvent log event with timestamp, level and logger
+     * @return true if every criterion matches
+     */
+    public boolean matches(LogEvent logEvent) {
+        if (!LogLevels.passes(logEvent.getLevel(), level)) return false;
+        if (logger != null && !logger.equals(logEvent.getLogger())) return false;
+        if (!matchesText(logEvent.getMessage())) return false;
+        if (from == null && to == null) return true;
+        Instant time = Instant.parse(logEvent.getTimestamp());
+        return (from == null || !time.isBefore(from)) && (to == null || time.isBefore(to));
+    }
+
+
+    /**
+     * Check whether a message holds every term, by tokenizing it
+     * @param message log message
+     * @return true if there are no terms or all of them occur
+     */
+    public boolean matchesText(String message) {
+        return Tokenizer.containsAll(message, terms);
+    }
+}
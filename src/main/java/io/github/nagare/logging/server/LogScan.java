@@ -0,0 +1,62 @@
+package io.github.nagare.logging.server;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+
+/**
+ * Reads every event of a LogStore in pages, latest first, without holding them all in memory.
+ * Each page ends before the oldest event of the previous one, events sharing the oldest time of a full page
+ * are left for the next page, which starts just after that time, so none is skipped or read twice (see LogsExcelServlet).
+ * Only the given fields are read, on engines supporting projections.
+ */
+final class LogScan {
+
+    static final int PAGE_EVENTS = 65_536;
+
+    private LogScan() {
+    }
+
+
+    /**
+     * Visit the events of a time window page by page, latest first
+     * @param store store to read
+     * @param fields names from LogQuery.FIELDS the action reads, timestamp is always read
+     * @param from inclusive lower bound of the event time, null for no bound
+     * @param to exclusive upper bound of the event time, null for no bound
+     * @param action called once per page, with at most PAGE_EVENTS events unless many share one time
+     */
+    static void forEach(LogStore store, Collection<String> fields, Instant from, Instant to, Consumer<List<LogEvent>> action) {
+        List<String> read = new ArrayList<>(fields);
+        if (!read.contains("timestamp")) read.add("timestamp");
+        int pageSize = PAGE_EVENTS;
+        while (true) {
+            List<LogEvent> page = store.filterLogs(new LogQuery(pageSize, "ALL", null, from, to, List.of(), read));
+            if (page.size() < pageSize) { // last page
+                if (!page.isEmpty()) action.accept(page);
+                return;
+            }
+            Instant oldest = eventTime(page.get(page.size() - 1));
+            int keep = page.size();
+            while (keep > 0 && eventTime(page.get(keep - 1)).equals(oldest)) {
+                keep--;
+            }
+            if (keep == 0) { // the whole page shares one time, read more at once
+                pageSize *= 2;
+                continue;
+            }
+            action.accept(page.subList(0, keep));
+            to = oldest.plus(1, ChronoUnit.MICROS); // stores keep microseconds
+            pageSize = PAGE_EVENTS;
+        }
+    }
+
+
+    private static Instant eventTime(LogEvent logEvent) {
+        return Instant.parse(logEvent.getTimestamp()).truncatedTo(ChronoUnit.MICROS);
+    }
+}
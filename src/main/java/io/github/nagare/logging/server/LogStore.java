@@ -0,0 +1,155 @@
+package io.github.nagare.logging.server;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+
+/**
+ * Storage engine for log events, used by LogsServlet and StatsHelper.
+ * Servlets only depend on this interface, the engine is selected once by DatabaseInitializer
+ * (log.store / LOG_STORE) and shared through the ServletContext.
+ * <br>
+ * Implementations must be safe for concurrent use by every servlet thread,
+ * and must pass the shared conformance suite (LogStoreContract in the tests).
+ */
+public interface LogStore extends AutoCloseable {
+
+    /**
+     * Store a validated log event
+     * @param logEvent log event to be saved
+     */
+    void save(LogEvent logEvent);
+
+
+    /**
+     * Store a batch of validated log events, cheaper than one save() per event
+     * @param logEvents log events to be saved
+     */
+    void saveAll(List<LogEvent> logEvents);
+
+
+    /**
+     * Get logs filtered by level and limited by count, ordered by timestamp descending.
+     * @param limit maximum number of logs to return
+     * @param level minimum log level threshold for filtering
+     * @return List of LogEvent objects that match the criteria
+     */
+    default List<LogEvent> filterLogs(String limit, String level) {
+        return filterLogs(limit, level, null, null);
+    }
+
+
+    /**
+     * Get logs filtered by level and time window and limited by count, ordered by timestamp descending.
+     * @param limit maximum number of logs to return
+     * @param level minimum log level threshold for filtering
+     * @param from inclusive lower bound of the event time, null for no bound
+     * @param to exclusive upper bound of the event time, null for no bound
+     * @return List of LogEvent objects that match the criteria
+     */
+    default List<LogEvent> filterLogs(String limit, String level, Instant from, Instant to) {
+        return filterLogs(LogQuery.of(limit, level, from, to));
+    }
+
+
+    /**
+     * Get the latest logs matching the query, ordered by timestamp descending.
+     * @param query level, logger and time window to match, and maximum number of logs to return
+     * @return List of LogEvent objects that match the criteria
+     */
+    List<LogEvent> filterLogs(LogQuery query);
+
+
+    /**
+     * Check if log event with given ID exists
+     * @param id log event ID
+     * @return true if exists, false otherwise
+     */
+    boolean is_exist(String id);
+
+
+    /**
+     * Get log event by ID
+     * @param id log event ID
+     * @return LogEvent object if found, null otherwise
+     */
+    LogEvent getById(String id);
+
+
+    /**
+     * Get all stored logs, in no particular order
+     * @return List of all LogEvent objects
+     */
+    List<LogEvent> getAllLogs();
+
+
+    /**
+     * Count log events per logger and level
+     * @return nested map: logger → (level → count), levels without events are absent
+     */
+    Map<String, Map<String, Long>> countByLoggerAndLevel();
+
+
+    /**
+     * Count log events per time bucket, logger and level, buckets are aligned on the epoch (UTC).
+     * The default implementation aggregates a paged scan of event time, logger and level (see LogScan),
+     * engines with a query language group in the database.
+     * @param width bucket width, e.g. one minute, hour or day
+     * @param from inclusive lower bound of the event time, null for no bound
+     * @param to exclusive upper bound of the event time, null for no bound
+     * @return start of each bucket, in time order → (logger → (level → count)), empty buckets and levels are absent
+     */
+    default SortedMap<Instant, Map<String, Map<String, Long>>> countByTimeBucket(Duration width, Instant from, Instant to) {
+        long widthMicros = EventKey.micros(Instant.EPOCH.plus(width));
+        if (widthMicros < 1) {
+            throw new IllegalArgumentException("width must be at least one microsecond");
+        }
+        SortedMap<Instant, Map<String, Map<String, Long>>> counts = new TreeMap<>();
+        LogScan.forEach(this, List.of("logger", "level"), from, to, page -> {
+            for (LogEvent logEvent : page) {
+                long start = Math.floorDiv(EventKey.of(logEvent).getMicros(), widthMicros) * widthMicros;
+                counts.computeIfAbsent(Instant.EPOCH.plus(start, ChronoUnit.MICROS), k -> new HashMap<>())
+                        .computeIfAbsent(logEvent.getLogger(), k -> new HashMap<>())
+                        .merge(logEvent.getLevel(), 1L, Long::sum);
+            }
+        });
+        return counts;
+    }
+
+
+    /**
+     * Delete the log events selected by the filter
+     * @param filter selection of log events to delete
+     * @return number of deleted log events
+     */
+    long delete(DeleteFilter filter);
+
+
+    /**
+     * Delete all log events
+     */
+    default void deleteAll() {
+        delete(DeleteFilter.ALL);
+    }
+
+
+    /**
+     * Delete log event by ID
+     * @param id log event ID
+     */
+    void deleteById(String id);
+
+
+    /**
+     * Release files, threads or memory held by the engine, called once on shutdown
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.nagare.logging.server;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+
+
+/**
+ * Factory of LogStore engines and lookup of the engine shared through the ServletContext.
+ * Engines are selected by name with the log.store setting (LOG_STORE environment variable):
+ * <ul>
+ *     <li>jpa (default) - LogEventRepository, any JDBC database configured for the EntityManagerFactory,
+ *     deleting in chunks of delete.chunk.size (DELETE_CHUNK_SIZE) every delete.pause.ms (DELETE_PAUSE_MS)</li>
+ *     <li>segment - SegmentLogStore, append-only segment files in log.store.dir (LOG_STORE_DIR),
+ *     sealed after segment.max.bytes (SEGMENT_MAX_BYTES) or segment.max.age.minutes (SEGMENT_MAX_AGE_MINUTES)</li>
+ *     <li>memory - MemoryLogStore, concurrent in-memory indexes bounded by memory.store.bytes (MEMORY_STORE_BYTES),
+ *     nothing survives a restart</li>
+ * </ul>
+ * hot.tier.events (HOT_TIER_EVENTS) above 0 puts a HotTierLogStore of the latest events in front of the engine,
+ * stats.columnar=true (STATS_COLUMNAR) puts a ColumnarStatsStore in front of it for the stats servlets,
+ * stats.rollups=true (STATS_ROLLUPS) puts a RollupLogStore in front of it for stats time ranges,
+ * search.index=true (SEARCH_INDEX) puts a TextIndexLogStore in front of it for GET /logs?q=,
+ * entity.cache.entries (ENTITY_CACHE_ENTRIES) above 0 puts an EntityCacheLogStore in front of it for GET /logs/{id}.
+ */
+public final class LogStores {
+
+    public static final String JPA = "jpa";
+    public static final String SEGMENT = "segment";
+    public static final String MEMORY = "memory";
+    public static final String DEFAULT = JPA;
+
+    /**
+     * Private constructor prevents instantiation
+     */
+    private LogStores() {
+        throw new AssertionError("Cannot instantiate utility class");
+    }
+
+
+    /**
+     * Create the engine with the given name
+     * @param engine engine name, case-insensitive
+     * @param emf EntityManagerFactory, used by the jpa engine
+     * @return new LogStore, engine specific settings are read with DatabaseInitializer.readSetting
+     * @throws IllegalArgumentException if the engine name is unknown
+     */
+    public static LogStore create(String engine, EntityManagerFactory emf) {
+        switch (engine.trim().toLowerCase()) {
+            case JPA:
+                int chunkSize = Integer.parseInt(DatabaseInitializer.readSetting("DELETE_CHUNK_SIZE",
+                        "delete.chunk.size", String.valueOf(ChunkedDeleter.DEFAULT_CHUNK_SIZE)));
+                long pauseMillis = Long.parseLong(DatabaseInitializer.readSetting("DELETE_PAUSE_MS",
+                        "delete.pause.ms", String.valueOf(ChunkedDeleter.DEFAULT_PAUSE_MILLIS)));
+                return new LogEventRepository(emf, new ChunkedDeleter(emf, chunkSize, pauseMillis));
+            case SEGMENT:
+                return new SegmentLogStore(
+                        Path.of(DatabaseInitializer.readSetting("LOG_STORE_DIR", "log.store.dir", "data/segments")),
+                        Long.parseLong(DatabaseInitializer.readSetting("SEGMENT_MAX_BYTES", "segment.max.bytes",
+                                String.valueOf(SegmentLogStore.DEFAULT_SEGMENT_BYTES))),
+                        Duration.ofMinutes(Long.parseLong(DatabaseInitializer.readSetting(
+                                "SEGMENT_MAX_AGE_MINUTES", "segment.max.age.minutes",
+                                String.valueOf(SegmentLogStore.DEFAULT_SEGMENT_AGE.toMinutes())))));
+            case MEMORY:
+                return new MemoryLogStore(Long.parseLong(DatabaseInitializer.readSetting(
+                        "MEMORY_STORE_BYTES", "memory.store.bytes", String.valueOf(MemoryLogStore.DEFAULT_MEMORY_BYTES))));
+            default:
+                throw new IllegalArgumentException("Unknown log store: " + engine
+                        + ". Must be one of: " + JPA + ", " + SEGMENT + ", " + MEMORY);
+        }
+    }
+
+
+    /**
+     * Put a hot tier of the latest events in front of the engine when hot.tier.events is set
+     * @param engine engine holding every event
+     * @return the engine, or a HotTierLogStore in front of it
+     */
+    public static LogStore withHotTier(LogStore engine) {
+        int events = Integer.parseInt(DatabaseInitializer.readSetting("HOT_TIER_EVENTS", "hot.tier.events", "0"));
+        if (events == 0) return engine;
+        long minutes = Long.parseLong(DatabaseInitializer.readSetting("HOT_TIER_MINUTES", "hot.tier.minutes", "60"));
+        return new HotTierLogStore(engine, events, Duration.ofMinutes(minutes));
+    }
+
+
+    /**
+     * Put a cache of log events by id in front of the store when entity.cache.entries is set
+     * @param store store holding every event
+     * @return the store, or an EntityCacheLogStore in front of it
+     */
+    public static LogStore withEntityCache(LogStore store) {
+        int entries = Integer.parseInt(DatabaseInitializer.readSetting("ENTITY_CACHE_ENTRIES", "entity.cache.entries", "0"));
+        return (entries == 0) ? store : new EntityCacheLogStore(store, entries);
+    }
+
+
+    /**
+     * Put a columnar side store for stats in front of the engine when stats.columnar is true
+     * @param engine engine holding every event
+     * @return the engine, or a ColumnarStatsStore in front of it
+     */
+    public static LogStore withColumnarStats(LogStore engine) {
+        boolean columnar = Boolean.parseBoolean(DatabaseInitializer.readSetting("STATS_COLUMNAR", "stats.columnar", "false"));
+        return columnar ? new ColumnarStatsStore(engine) : engine;
+    }
+
+
+    /**
+     * Put rollup tables per minute, hour and day in front of the engine when stats.rollups is true,
+     * keeping minute buckets for rollup.minute.hours (ROLLUP_MINUTE_HOURS) and hour buckets for rollup.hour.days
+     * @param engine engine holding every event
+     * @return the engine, or a RollupLogStore in front of it
+     */
+    public static LogStore withRollups(LogStore engine) {
+        boolean rollups = Boolean.parseBoolean(DatabaseInitializer.readSetting("STATS_ROLLUPS", "stats.rollups", "false"));
+        if (!rollups) return engine;
+        long minuteHours = Long.parseLong(DatabaseInitializer.readSetting("ROLLUP_MINUTE_HOURS", "rollup.minute.hours", "48"));
+        long hourDays = Long.parseLong(DatabaseInitializer.readSetting("ROLLUP_HOUR_DAYS", "rollup.hour.days", "90"));
+        return new RollupLogStore(engine, Duration.ofHours(minuteHours), Duration.ofDays(hourDays));
+    }
+
+
+    /**
+     * Put an inverted index of message terms in front of the engine when search.index is true
+     * @param engine engine holding every event
+     * @return the engine, or a TextIndexLogStore in front of it
+     */
+    public static LogStore withTextIndex(LogStore engine) {
+        boolean index = Boolean.parseBoolean(DatabaseInitializer.readSetting("SEARCH_INDEX", "search.index", "false"));
+        return index ? new TextIndexLogStore(engine) : engine;
+    }
+
+
+    /**
+     * Get the engine shared by DatabaseInitializer.
+     * Falls back to a JPA engine on the shared EntityManagerFactory when no engine was shared,
+     * e.g. when servlets are initialized without the listener.
+     * @param context ServletContext of the application
+     * @return LogStore to use
+     * @throws ServletException if neither a LogStore nor an EntityManagerFactory is available
+     */
+    public static LogStore fromContext(ServletContext context) throws ServletException {
+        LogStore store = (LogStore) context.getAttribute(ServletAttributes.LOG_STORE_ATTRIBUTE);
+        if (store != null) return store;
+        EntityManagerFactory emf = (EntityManagerFactory) context.getAttribute(ServletAttributes.EMF_ATTRIBUTE);
+        if (emf == null) {
+            throw new ServletException("EntityManagerFactory not found");
+        }
+        return new LogEventRepository(emf);
+    }
+}
@@ -0,0 +1,240 @@
+package io.github.nagare.logging.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.servlet.ServletContext;
+
+
+/**
+ * Fan-out of newly ingested log events to the clients of /logs/tail, without reading the LogStore.
+ * LogsServlet publishes every event it stores, each subscriber gets the events passing its filters
+ * in a bounded queue that LogTailServlet drains.
+ * Publishing never blocks: an event that does not fit in a full queue is dropped for that subscriber
+ * and reported to it, so a slow client only loses events and never slows down ingest.
+ * <br>
+ * Queue size and subscriber limit come from tail.queue.events (TAIL_QUEUE_EVENTS)
+ * and tail.max.subscribers (TAIL_MAX_SUBSCRIBERS).
+ * Implements MBean interface to report subscribers and dropped events via JMX.
+ */
+public class LogTail implements LogTailMBean, AutoCloseable {
+
+    private final int queueEvents;
+    private final int maxSubscribers;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>(); // read on every publish
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private volatile boolean closed;
+    private String name;
+
+    /**
+     * @param queueEvents events buffered per subscriber
+     * @param maxSubscribers maximum number of subscribers at once
+     */
+    public LogTail(int queueEvents, int maxSubscribers) {
+        if (queueEvents < 1 || maxSubscribers < 1) {
+            throw new IllegalArgumentException("queueEvents and maxSubscribers must be positive");
+        }
+        this.queueEvents = queueEvents;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+
+    /**
+     * Create a LogTail sized by the tail.queue.events and tail.max.subscribers settings
+     * @return new LogTail
+     */
+    public static LogTail fromSettings() {
+        int queueEvents = Integer.parseInt(DatabaseInitializer.readSetting("TAIL_QUEUE_EVENTS", "tail.queue.events", "1024"));
+        int maxSubscribers = Integer.parseInt(DatabaseInitializer.readSetting("TAIL_MAX_SUBSCRIBERS", "tail.max.subscribers", "64"));
+        return new LogTail(queueEvents, maxSubscribers);
+    }
+
+
+    /**
+     * Get the LogTail shared by DatabaseInitializer, or create and share one,
+     * e.g. when servlets are initialized without the listener
+     * @param context ServletContext of the application
+     * @return LogTail shared by LogsServlet and LogTailServlet
+     */
+    public static LogTail fromContext(ServletContext context) {
+        synchronized (context) {
+            LogTail tail = (LogTail) context.getAttribute(ServletAttributes.LOG_TAIL_ATTRIBUTE);
+            if (tail == null) {
+                tail = fromSettings();
+                context.setAttribute(ServletAttributes.LOG_TAIL_ATTRIBUTE, tail);
+            }
+            return tail;
+        }
+    }
+
+
+    /**
+     * Hand a stored log event to every subscriber whose filters it passes, never blocks
+     * @param logEvent stored log event
+     */
+    public void publish(LogEvent logEvent) {
+        publishedCount.incrementAndGet();
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(logEvent);
+        }
+    }
+
+
+    /**
+     * Start following new log events
+     * @param level upper case minimum level
+     * @param logger exact logger name, null for any logger
+     * @return subscription to poll and close, null if the subscriber limit is reached or the tail is closed
+     */
+    public Subscription subscribe(String level, String logger) {
+        synchronized (subscriptions) {
+            if (closed || subscriptions.size() >= maxSubscribers) {
+                rejectedCount.incrementAndGet();
+                return null;
+            }
+            Subscription subscription = new Subscription(LogLevels.ordinal(level), logger);
+            subscriptions.add(subscription);
+            return subscription;
+        }
+    }
+
+
+    @Override
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+
+    @Override
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+
+    @Override
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+
+    @Override
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+
+    /**
+     * End every subscription, their streams end on the next poll
+     */
+    @Override
+    public void close() {
+        synchronized (subscriptions) {
+            closed = true;
+            for (Subscription subscription : subscriptions) {
+                subscription.close();
+            }
+        }
+    }
+
+
+    /**
+     * Register this LogTail as an MBean with the platform MBeanServer
+     * @param name instance name of the MBean
+     */
+    public void registerMBean(String name) {
+        MBeanRegistry.register(this, "LogTail", name);
+        this.name = name;
+    }
+
+
+    /**
+     * Unregisters this LogTail as an MBean with the platform MBeanServer
+     */
+    public void unregisterMBean() {
+        if (this.name == null) {
+            return;
+        }
+        MBeanRegistry.unregister("LogTail", name);
+        this.name = null;
+    }
+
+
+    /**
+     * Events for one client, with its level and logger filters
+     */
+    public final class Subscription implements AutoCloseable {
+
+        private static final LogEvent CLOSED = new LogEvent(); // wakes up a waiting poll
+
+        private final int threshold;
+        private final String logger;
+        private final BlockingQueue<LogEvent> queue = new ArrayBlockingQueue<>(queueEvents + 1);
+        private final AtomicLong dropped = new AtomicLong(); // since the last takeDropped
+        private volatile boolean open = true;
+
+        private Subscription(int threshold, String logger) {
+            this.threshold = threshold;
+            this.logger = logger;
+        }
+
+
+        private void offer(LogEvent logEvent) {
+            int ordinal = LogLevels.ordinal(logEvent.getLevel());
+            if (ordinal < threshold || threshold == LogLevels.OFF) return;
+            if (logger != null && !logger.equals(logEvent.getLogger())) return;
+            // one slot is kept for CLOSED
+            if (queue.size() >= queueEvents || !queue.offer(logEvent)) {
+                dropped.incrementAndGet();
+                droppedCount.incrementAndGet();
+            }
+        }
+
+
+        /**
+         * Wait for new events
+         * @param timeoutMillis maximum wait, 0 to return at once
+         * @return events in publish order, empty on timeout, null once the subscription is closed
+         * @throws InterruptedException if the polling thread is interrupted
+         */
+        public List<LogEvent> poll(long timeoutMillis) throws InterruptedException {
+            if (!open) return null;
+            LogEvent first = queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (first == null) return List.of();
+            if (first == CLOSED) return null;
+            List<LogEvent> events = new ArrayList<>();
+            events.add(first);
+            queue.drainTo(events);
+            events.removeIf(event -> event == CLOSED); // the next poll sees open == false
+            return events;
+        }
+
+
+        /**
+         * Get and reset the number of events dropped since the previous call
+         * @return dropped events
+         */
+        public long takeDropped() {
+            return dropped.getAndSet(0);
+        }
+
+
+        /**
+         * Stop following, called by the servlet when the client is gone
+         */
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+            if (open) {
+                open = false;
+                queue.offer(CLOSED);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.nagare.logging.server;
+
+/**
+ * MBean interface for LogTail.
+ * Reports the live tail subscribers and the events they could not keep up with.
+ * The MBean class MUST implement an interface with the following name: “class name” plus MBean.
+ */
+public interface LogTailMBean {
+
+    /**
+     * Get the number of clients following /logs/tail
+     * @return the number of subscribers
+     */
+    public int getSubscriberCount();
+
+    /**
+     * Get the number of events published since startup
+     * @return the number of events
+     */
+    public long getPublishedCount();
+
+    /**
+     * Get the number of events dropped because a subscriber queue was full
+     * @return the number of dropped events, counted once per subscriber
+     */
+    public long getDroppedCount();
+
+    /**
+     * Get the number of subscribers refused because the subscriber limit was reached
+     * @return the number of refused subscribers
+     */
+    public long getRejectedCount();
+}
@@ -0,0 +1,268 @@
+package io.github.nagare.logging.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+
+/**
+ * Servlet streaming new log events as Server-Sent Events, accessible at GET /logstore/logs/tail.
+ * Events come from the LogTail fed by LogsServlet, the LogStore is never queried.
+ * Each event is sent as "event: log" with the JSON log event as data and its id as SSE id,
+ * events dropped because the client fell behind are reported as "event: dropped" with their count.
+ * A comment is sent every HEARTBEAT_MILLIS without events, so proxies keep the connection open.
+ * <br>
+ * Requests are asynchronous, no container thread waits for events: one scheduler thread drains
+ * every subscription each FLUSH_MILLIS and writes only when the connection is ready (non-blocking I/O),
+ * so a slow client costs a queue, never a thread.
+ * Content type: text/event-stream
+ * Status: 200 while streaming, 400 on invalid parameters, 503 when too many clients are following
+ */
+public class LogTailServlet extends HttpServlet {
+
+    static final long HEARTBEAT_MILLIS = 15_000;
+    static final long FLUSH_MILLIS = 100; // events published meanwhile go out in one chunk
+
+    private LogTail tail;
+    private ScheduledExecutorService scheduler;
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    // Explicitly defined default constructor
+    public LogTailServlet() {
+    }
+
+
+    /**
+     * Initialize servlet - get the LogTail from ServletContext, start the thread writing the streams
+     */
+    @Override
+    public void init() throws ServletException {
+        this.tail = LogTail.fromContext(getServletContext());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-tail");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+
+    /**
+     * Stream log events stored from now on, until the client disconnects or the application stops.
+     * Optional level (minimum level, default ALL) and logger (exact logger name) parameters filter the events.
+     * Returns once the stream is set up, the scheduler thread writes the events.
+     * @param req the HttpServletRequest
+     * @param resp the HttpServletResponse
+     * @throws ServletException if a servlet error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        String tempLevel = req.getParameter("level");
+        String levelParam = (tempLevel == null) ? "ALL" : tempLevel.toUpperCase();
+        if (!LogLevels.isValid(levelParam)) {
+            sendError(resp, 400, "Invalid log level. Must be one of: ALL, TRACE, DEBUG, INFO, WARN, ERROR, FATAL, OFF");
+            return;
+        }
+        LogTail.Subscription subscription = tail.subscribe(levelParam, req.getParameter("logger"));
+        if (subscription == null) {
+            sendError(resp, 503, "Too many clients following the logs");
+            return;
+        }
+        try {
+            resp.setStatus(200);
+            resp.setContentType("text/event-stream");
+            resp.setCharacterEncoding("UTF-8");
+            resp.setHeader("Cache-Control", "no-cache");
+            ServletOutputStream out = resp.getOutputStream();
+            write(out, ": following\n\n");
+            resp.flushBuffer(); // commit the headers, the client knows it is connected
+
+            AsyncContext async = req.startAsync();
+            async.setTimeout(0); // the stream ends when the client is gone or the tail is closed
+            Stream stream = new Stream(async, subscription, out);
+            async.addListener(stream);
+            out.setWriteListener(stream); // non-blocking from now on
+            stream.future = scheduler.scheduleWithFixedDelay(stream::flushSafely, FLUSH_MILLIS, FLUSH_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        } catch (IOException | RuntimeException e) {
+            subscription.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Format the events and drop count polled from a subscription as SSE
+     * @param events new events, in publish order
+     * @param dropped events dropped since the previous chunk
+     * @return SSE text, empty if there is nothing to send
+     * @throws IOException if an event cannot be serialized
+     */
+    static String chunk(List<LogEvent> events, long dropped) throws IOException {
+        StringBuilder chunk = new StringBuilder();
+        for (LogEvent logEvent : events) {
+            chunk.append("id: ").append(logEvent.getId()).append('\n')
+                    .append("event: log\n")
+                    .append("data: ").append(mapper.writeValueAsString(logEvent)).append("\n\n");
+        }
+        if (dropped > 0) {
+            chunk.append("event: dropped\ndata: ").append(dropped).append("\n\n");
+        }
+        return chunk.toString();
+    }
+
+
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * Sends an HTTP error response with the specified status code and message.
+     * @param resp the HttpServletResponse to write the error to
+     * @param statusCode the HTTP status code
+     * @param message the error message to include in the response body
+     * @throws IOException if an I/O error occurs while writing the response
+     */
+    private void sendError(HttpServletResponse resp, int statusCode, String message) throws IOException {
+        resp.setStatus(statusCode);
+        resp.setContentType("text/plain");
+        resp.getWriter().write(message);
+    }
+
+
+    /**
+     * One client stream, written by the scheduler thread and by the container once the connection drains
+     */
+    private static final class Stream implements WriteListener, AsyncListener {
+
+        private final AsyncContext async;
+        private final LogTail.Subscription subscription;
+        private final ServletOutputStream out;
+        private volatile ScheduledFuture<?> future;
+        private long lastWrite = System.currentTimeMillis();
+        private boolean done;
+
+        Stream(AsyncContext async, LogTail.Subscription subscription, ServletOutputStream out) {
+            this.async = async;
+            this.subscription = subscription;
+            this.out = out;
+        }
+
+
+        /**
+         * Write what the subscription holds, unless the previous write is still pending:
+         * events stay queued meanwhile, and are dropped once the queue is full
+         */
+        synchronized void flush() throws IOException {
+            if (done || !out.isReady()) return; // onWritePossible follows once the connection drains
+            List<LogEvent> events;
+            try {
+                events = subscription.poll(0);
+            } catch (InterruptedException e) { // the scheduler is shutting down
+                Thread.currentThread().interrupt();
+                events = null;
+            }
+            if (events == null) {
+                end(true);
+                return;
+            }
+            String chunk = chunk(events, subscription.takeDropped());
+            long now = System.currentTimeMillis();
+            if (chunk.isEmpty()) {
+                if (now - lastWrite < HEARTBEAT_MILLIS) return;
+                chunk = ": keep-alive\n\n";
+            }
+            write(out, chunk);
+            lastWrite = now;
+            if (out.isReady()) out.flush();
+        }
+
+
+        // An exception would cancel all later runs of scheduleWithFixedDelay
+        void flushSafely() {
+            try {
+                flush();
+            } catch (IOException | RuntimeException e) { // the client is gone
+                end(true);
+            }
+        }
+
+
+        /**
+         * Stop writing and release the subscription
+         * @param complete whether the async request must still be completed
+         */
+        synchronized void end(boolean complete) {
+            if (done) return;
+            done = true;
+            if (future != null) future.cancel(false);
+            subscription.close();
+            if (complete) {
+                try {
+                    async.complete();
+                } catch (IllegalStateException e) {
+                    // already completed by the container, e.g. after an error
+                }
+            }
+        }
+
+
+        @Override
+        public void onWritePossible() throws IOException {
+            flush();
+        }
+
+
+        @Override
+        public void onError(Throwable t) {
+            end(true);
+        }
+
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            end(false);
+        }
+
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            end(true);
+        }
+
+
+        @Override
+        public void onError(AsyncEvent event) {
+            end(true);
+        }
+
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
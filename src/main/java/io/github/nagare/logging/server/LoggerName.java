@@ -0,0 +1,16 @@
+package io.github.nagare.logging.server;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+
+
+/**
+ * Dictionary entry for the name property of a logger, referenced by log_events.logger_id
+ */
+@Entity
+@Table(name = "log_loggers")
+public class LoggerName extends NameEntry {
+
+    public LoggerName() {
+    }
+}
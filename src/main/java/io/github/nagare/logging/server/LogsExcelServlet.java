@@ -0,0 +1,175 @@
+package io.github.nagare.logging.server;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+
+/**
+ * Servlet exporting raw log events as an Excel workbook, accessible at GET /logstore/logs/excel.
+ * Optional parameters: level (minimum level, default ALL), logger (exact name), from (inclusive) and to (exclusive)
+ * ISO-8601 timestamps, and limit (default and maximum: the rows of a sheet).
+ * Events are read from the LogStore in pages of PAGE_EVENTS, latest first, and written through a streaming
+ * SXSSF workbook, so the heap used does not depend on the size of the range.
+ * Content type: application/vnd.openxmlformats-officedocument.spreadsheetml.sheet
+ * Status: 200 on success, 400 on invalid parameters
+ */
+public class LogsExcelServlet extends HttpServlet {
+
+    static final int PAGE_EVENTS = 1000;
+    static final int MAX_ROWS = SpreadsheetVersion.EXCEL2007.getLastRowIndex(); // one row is the header
+    private static final int MAX_TEXT = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+    private static final List<String> COLUMNS = List.of("id", "timestamp", "level", "logger", "thread", "message", "errorDetails");
+
+    private LogStore store;
+
+    // Explicitly defined default constructor
+    public LogsExcelServlet() {
+    }
+
+
+    /**
+     * Initialize servlet - get the LogStore engine from ServletContext
+     */
+    @Override
+    public void init() throws ServletException {
+        this.store = LogStores.fromContext(getServletContext());
+    }
+
+
+    /**
+     * Handles GET requests and writes the matching log events to an Excel sheet "events", latest first.
+     * 304 without a body when the client already has the current version (see ConditionalGet).
+     * @param req  HTTP request
+     * @param resp HTTP response
+     * @throws ServletException if a servlet error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        String tempLevel = req.getParameter("level");
+        String levelParam = (tempLevel == null) ? "ALL" : tempLevel.toUpperCase();
+        if (!LogLevels.isValid(levelParam)) {
+            sendError(resp, 400, "Invalid log level. Must be one of: ALL, TRACE, DEBUG, INFO, WARN, ERROR, FATAL, OFF");
+            return;
+        }
+        int limit = MAX_ROWS;
+        String limitParam = req.getParameter("limit");
+        if (limitParam != null) {
+            try {
+                limit = Integer.parseInt(limitParam);
+            } catch (NumberFormatException e) {
+                limit = -1;
+            }
+            if (limit < 1 || limit > MAX_ROWS) {
+                sendError(resp, 400, "Limit must be between 1 and " + MAX_ROWS);
+                return;
+            }
+        }
+        Instant from;
+        Instant to;
+        try {
+            from = (req.getParameter("from") == null) ? null : Instant.parse(req.getParameter("from"));
+            to = (req.getParameter("to") == null) ? null : Instant.parse(req.getParameter("to"));
+        } catch (DateTimeParseException e) {
+            sendError(resp, 400, "Invalid from or to format. Expected: ISO-8601 format");
+            return;
+        }
+        if (ConditionalGet.notModified(req, resp, store)) {
+            return;
+        }
+
+        resp.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        // close() also deletes the temporary files of the flushed rows
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(StatsExcelServlet.ROW_WINDOW)) {
+            workbook.setCompressTempFiles(true); // messages compress well
+            Sheet sheet = workbook.createSheet("events");
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                header.createCell(i).setCellValue(COLUMNS.get(i));
+            }
+            writeEvents(sheet, levelParam, req.getParameter("logger"), from, to, limit);
+            resp.setStatus(200);
+            workbook.write(resp.getOutputStream());
+        }
+    }
+
+
+    /**
+     * Page through the matching events, latest first, each page ending before the oldest event of the previous one.
+     * Events sharing the oldest time of a full page are left for the next page, which starts just after that time,
+     * so none is skipped or written twice.
+     * @return number of events written
+     */
+    private int writeEvents(Sheet sheet, String level, String logger, Instant from, Instant to, int limit) {
+        int written = 0;
+        int pageSize = PAGE_EVENTS;
+        while (written < limit) {
+            int size = Math.min(pageSize, limit - written);
+            List<LogEvent> page = store.filterLogs(new LogQuery(size, level, logger, from, to));
+            if (page.size() < size || written + size == limit) { // last page
+                for (LogEvent logEvent : page) {
+                    writeRow(sheet.createRow(++written), logEvent);
+                }
+                return written;
+            }
+            Instant oldest = eventTime(page.get(page.size() - 1));
+            int keep = page.size();
+            while (keep > 0 && eventTime(page.get(keep - 1)).equals(oldest)) {
+                keep--;
+            }
+            if (keep == 0) { // the whole page shares one time, read more at once
+                pageSize *= 2;
+                continue;
+            }
+            for (LogEvent logEvent : page.subList(0, keep)) {
+                writeRow(sheet.createRow(++written), logEvent);
+            }
+            to = oldest.plus(1, ChronoUnit.MICROS); // stores keep microseconds
+            pageSize = PAGE_EVENTS;
+        }
+        return written;
+    }
+
+
+    private static Instant eventTime(LogEvent logEvent) {
+        return Instant.parse(logEvent.getTimestamp()).truncatedTo(ChronoUnit.MICROS);
+    }
+
+
+    private static void writeRow(Row row, LogEvent logEvent) {
+        String[] values = {logEvent.getId(), logEvent.getTimestamp(), logEvent.getLevel(), logEvent.getLogger(),
+                logEvent.getThread(), logEvent.getMessage(), logEvent.getErrorDetails()};
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) continue;
+            // a cell holds at most 32767 characters, longer stack traces are cut
+            row.createCell(i).setCellValue(values[i].length() > MAX_TEXT ? values[i].substring(0, MAX_TEXT) : values[i]);
+        }
+    }
+
+
+    /**
+     * Sends an HTTP error response with the specified status code and message.
+     * @param resp the HttpServletResponse to write the error to
+     * @param statusCode the HTTP status code
+     * @param message the error message to include in the response body
+     * @throws IOException if an I/O error occurs while writing the response
+     */
+    private void sendError(HttpServletResponse resp, int statusCode, String message) throws IOException {
+        resp.setStatus(statusCode);
+        resp.setContentType("text/plain");
+        resp.getWriter().write(message);
+    }
+}
@@ -3,13 +3,15 @@ package io.github.nagare.logging.server;
 import java.io.IOException;
 import java.time.Instant;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import jakarta.persistence.EntityManagerFactory;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
@@ -18,14 +20,20 @@ import jakarta.servlet.http.HttpServletResponse;
 
 /**
  * Servlet for managing log events via HTTP requests.
- * Supports GET (retrieve logs), POST (create log), and DELETE (clear all logs) operations.
- * Logs are stored in memory and returned as JSON.
+ * Supports GET (retrieve logs), POST (create log), and DELETE (clear all or filtered logs) operations.
+ * Logs are stored by the configured LogStore engine and returned as JSON.
  */
 public class LogsServlet extends HttpServlet{
 
-    private LogEventRepository repository;
+    private LogStore repository;
+    private LogEventRepository ownRepository; // created by this servlet, its MBeans are registered here
+    private QueryCache cache; // null unless enabled and the store is versioned
+    private LogTail tail;
+    private HeavyHitters hitters;
+    private ErrorGroups errors;
     private static final ObjectMapper mapper = new ObjectMapper();
-    public static final List<String> LEVELS = List.of("ALL", "TRACE", "DEBUG", "INFO", "WARN", "ERROR", "FATAL", "OFF");
+    private static int instanceCounter = 0;
+    public static final List<String> LEVELS = LogLevels.LEVELS;
 
 
     // Explicitly defined default constructor
@@ -34,23 +42,57 @@ public class LogsServlet extends HttpServlet{
 
 
     /**
-     * Initialize servlet - get EntityManagerFactory from ServletContext
+     * Initialize servlet - get the LogStore engine from ServletContext
      */
     @Override
     public void init() throws ServletException {
-        EntityManagerFactory emf = (EntityManagerFactory) getServletContext().getAttribute(ServletAttributes.EMF_ATTRIBUTE);
-        if (emf == null) {
-            throw new ServletException("EntityManagerFactory not found");
+        this.repository = LogStores.fromContext(getServletContext());
+        this.tail = LogTail.fromContext(getServletContext());
+        this.hitters = HeavyHitters.fromContext(getServletContext());
+        this.errors = ErrorGroups.fromContext(getServletContext());
+        if (getServletContext().getAttribute(ServletAttributes.LOG_STORE_ATTRIBUTE) == null
+                && repository instanceof LogEventRepository) {
+            // Not shared by DatabaseInitializer, report errorDetails deduplication and deletes via JMX here
+            ownRepository = (LogEventRepository) repository;
+            instanceCounter++;
+            ownRepository.getStackTraces().registerMBean("LogsServlet-" + instanceCounter);
+            ownRepository.getDeleter().registerMBean("LogsServlet-" + instanceCounter);
+        }
+        // Cache serialized responses, only valid when every write goes through the version counter
+        int cacheEntries = Integer.parseInt(DatabaseInitializer.readSetting("LOGS_CACHE_ENTRIES", "logs.cache.entries", "0"));
+        if (cacheEntries > 0 && repository instanceof VersionedLogStore) {
+            cache = new QueryCache(cacheEntries);
+            cache.registerMBean("LogsServlet-" + (++instanceCounter));
+        }
+    }
+
+
+    /**
+     * Release the JMX registration made in init()
+     */
+    @Override
+    public void destroy() {
+        if (ownRepository != null) {
+            ownRepository.getStackTraces().unregisterMBean();
+            ownRepository.getDeleter().unregisterMBean();
+        }
+        if (cache != null) {
+            cache.unregisterMBean();
         }
-        this.repository = new LogEventRepository(emf);
     }
 
 
     /**
      * By passing in the appropriate options, you can search for available logs in the system.
      * Logs are returned ordered by timestamp, the latest logs first.
+     * Optional from (inclusive) and to (exclusive) ISO-8601 parameters restrict the time window,
+     * an optional logger parameter restricts the logs to one logger name,
+     * an optional q parameter to the messages holding every word of q,
+     * and an optional fields parameter (comma separated) returns only these properties of each log.
      * Logs are JSON encoded, the returned value is a JSON array.
      * If there are no logs found, then an empty array is returned.
+     * Responses carry an ETag, 304 is returned when nothing was written since (see ConditionalGet).
+     * GET /logs/{id} returns the single log event with this id, 404 if there is none.
      * @param req the HttpServletRequest
      * @param resp the HttpServletResponse
      * @throws ServletException if a servlet error occurs
@@ -58,6 +100,11 @@ public class LogsServlet extends HttpServlet{
      */
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        String id = idFromPath(req);
+        if (id != null) {
+            getById(id, resp);
+            return;
+        }
         // Parse and verify limit/level parameters
         String limitParam = req.getParameter("limit");
         String tempLevel = req.getParameter("level");
@@ -67,14 +114,147 @@ public class LogsServlet extends HttpServlet{
             sendError(resp, 400, validationError);
             return;
         }
-        // Filter and sort LogEvents
-        List<LogEvent> logList = repository.filterLogs(limitParam, levelParam);
+        // Optional time window, lets a partitioned table skip whole days
+        String fromParam = req.getParameter("from");
+        String toParam = req.getParameter("to");
+        if (fromParam != null && !isValidTimestamp(fromParam)) {
+            sendError(resp, 400, "Invalid from format. Expected: ISO-8601 format");
+            return;
+        }
+        if (toParam != null && !isValidTimestamp(toParam)) {
+            sendError(resp, 400, "Invalid to format. Expected: ISO-8601 format");
+            return;
+        }
+        Instant from = (fromParam == null) ? null : Instant.parse(fromParam);
+        Instant to = (toParam == null) ? null : Instant.parse(toParam);
+
+        String logger = req.getParameter("logger");
+        String q = req.getParameter("q");
+        List<String> terms = Tokenizer.terms(q);
+        if (q != null && terms.isEmpty()) {
+            sendError(resp, 400, "Invalid q. Must contain letters or digits");
+            return;
+        }
+
+        // Optional projection, e.g. fields=timestamp,level,logger for list views
+        String fieldsParam = req.getParameter("fields");
+        List<String> fields = new ArrayList<>();
+        if (fieldsParam != null) {
+            for (String field : fieldsParam.split(",")) {
+                if (!LogQuery.FIELDS.contains(field.trim())) {
+                    sendError(resp, 400, "Invalid fields. Must be among: " + String.join(", ", LogQuery.FIELDS));
+                    return;
+                }
+                fields.add(field.trim());
+            }
+        }
 
-        // Convert to JSON array
-        String jsonArray = mapper.writeValueAsString(logList);
+        if (ConditionalGet.notModified(req, resp, repository)) {
+            return;
+        }
+
+        // Filter and sort LogEvents, then convert to JSON array
+        LogQuery query = new LogQuery(Integer.parseInt(limitParam), levelParam, logger, from, to, terms, fields);
+        byte[] body;
+        if (cache == null) {
+            body = toJson(query, repository.filterLogs(query));
+        } else {
+            // Version read before the query: a write racing with it makes the entry stale, never wrong
+            long version = ((VersionedLogStore) repository).getVersion();
+            body = cache.get(cacheKey(query), version, () -> toJson(query, repository.filterLogs(query)));
+        }
+        resp.setContentType("application/json");
+        resp.setStatus(200);
+        resp.getOutputStream().write(body);
+    }
+
+
+    /**
+     * Handles GET /logs/{id}, a primary key lookup (see EntityCacheLogStore for the cache in front of it).
+     * @param id log event id from the path
+     * @param resp the HttpServletResponse
+     * @throws IOException if an I/O error occurs
+     */
+    private void getById(String id, HttpServletResponse resp) throws IOException {
+        String canonical = canonicalId(id);
+        if (canonical == null) {
+            sendError(resp, 400, "Invalid UUID format for id");
+            return;
+        }
+        LogEvent logEvent = repository.getById(canonical);
+        if (logEvent == null) {
+            sendError(resp, 404, "Log event not found");
+            return;
+        }
         resp.setContentType("application/json");
         resp.setStatus(200);
-        resp.getWriter().write(jsonArray);
+        resp.getOutputStream().write(mapper.writeValueAsBytes(logEvent));
+    }
+
+
+    /**
+     * Get the id of /logs/{id}
+     * @param req the HttpServletRequest
+     * @return the id, null for /logs itself
+     */
+    private static String idFromPath(HttpServletRequest req) {
+        String pathInfo = req.getPathInfo();
+        return (pathInfo == null || pathInfo.equals("/")) ? null : pathInfo.substring(1);
+    }
+
+
+    /**
+     * Normalize a UUID to the canonical form returned by the UUID column
+     * @param id id to normalize
+     * @return canonical id, null if it is not a UUID
+     */
+    private static String canonicalId(String id) {
+        try {
+            return UUID.fromString(id).toString();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Serialize log events, with only the fields of the query if it has some
+     * @param query query with its fields
+     * @param logEvents log events to serialize
+     * @return JSON array
+     * @throws IOException if serialization fails
+     */
+    private static byte[] toJson(LogQuery query, List<LogEvent> logEvents) throws IOException {
+        if (!query.isProjection()) return mapper.writeValueAsBytes(logEvents);
+        List<Map<String, Object>> projected = new ArrayList<>(logEvents.size());
+        for (LogEvent logEvent : logEvents) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (String field : query.getFields()) {
+                values.put(field, switch (field) {
+                    case "id" -> logEvent.getId();
+                    case "message" -> logEvent.getMessage();
+                    case "timestamp" -> logEvent.getTimestamp();
+                    case "thread" -> logEvent.getThread();
+                    case "logger" -> logEvent.getLogger();
+                    case "level" -> logEvent.getLevel();
+                    default -> logEvent.getErrorDetails();
+                });
+            }
+            projected.add(values);
+        }
+        return mapper.writeValueAsBytes(projected);
+    }
+
+
+    /**
+     * Build the cache key of a query, equal for queries that return the same logs
+     * @param query validated query, level already upper case and terms tokenized
+     * @return normalized key
+     */
+    private static String cacheKey(LogQuery query) {
+        return query.getLimit() + "|" + query.getLevel() + "|" + query.getLogger()
+                + "|" + query.getFrom() + "|" + query.getTo() + "|" + String.join(" ", query.getTerms())
+                + "|" + String.join(",", query.getFields());
     }
 
 
@@ -116,6 +296,7 @@ public class LogsServlet extends HttpServlet{
     /**
      * Handles POST requests to create a new log event.
      * Validates content type, parses JSON body, checks for duplicates, and stores the log.
+     * Stored logs are published to the clients of /logs/tail counted for /stats/top and /stats/errors.
      * @param req the HttpServletRequest
      * @param resp the HttpServletResponse
      * @throws ServletException if a servlet error occurs
@@ -123,6 +304,10 @@ public class LogsServlet extends HttpServlet{
      */
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (idFromPath(req) != null) {
+            sendError(resp, 405, "POST is only supported on /logs");
+            return;
+        }
         // Validate content of requestBody
         String contentType = req.getContentType();
         if (contentType == null || !contentType.contains("application/json")) {
@@ -149,6 +334,9 @@ public class LogsServlet extends HttpServlet{
             return;
         }
         repository.save(logEvent);
+        tail.publish(logEvent); // live tail clients, never blocks
+        hitters.record(logEvent); // O(1), for /stats/top
+        errors.record(logEvent); // stack trace fingerprint, for /stats/errors
         resp.setStatus(201);
     }
 
@@ -171,11 +359,11 @@ public class LogsServlet extends HttpServlet{
 
         // Normalize level to uppercase
         logEvent.setLevel(logEvent.getLevel().toUpperCase());
-        String level = logEvent.getLevel();
-        if (!isValidLevel(level)) {
+        int ordinal = LogLevels.ordinal(logEvent.getLevel()); // precomputed lookup, -1 if unknown
+        if (ordinal < 0) {
             return "Invalid log level. Must be one of: TRACE, DEBUG, INFO, WARN, ERROR, FATAL";
         }
-        if (level.equals("ALL") || level.equals("OFF")) {
+        if (ordinal == LogLevels.ALL || ordinal == LogLevels.OFF) {
             return "Invalid log level. ALL and OFF are filter settings, not valid log levels";
         }
         return null;
@@ -196,7 +384,8 @@ public class LogsServlet extends HttpServlet{
             return true;
         }
         try {
-            UUID.fromString(id);
+            // Normalize to canonical form, it is what the UUID column returns on read
+            logEvent.setId(UUID.fromString(id).toString());
             return true;
         } catch (IllegalArgumentException e) {
             return false;
@@ -225,7 +414,7 @@ public class LogsServlet extends HttpServlet{
      * @return true if valid level, false otherwise
      */
     private boolean isValidLevel(String level) {
-        return LEVELS.contains(level);
+        return LogLevels.isValid(level);
     }
 
 
@@ -244,7 +433,11 @@ public class LogsServlet extends HttpServlet{
 
 
     /**
-     * Handles DELETE requests to clear all stored log events.
+     * Handles DELETE requests to clear stored log events.
+     * DELETE /logs/{id} deletes one log event.
+     * Without parameters every log event is deleted, optional parameters narrow the selection:
+     * before (ISO-8601, exclusive), level (maximum level deleted, TRACE to FATAL) and logger (logger name prefix).
+     * Rows are deleted in short chunked transactions, so a large purge never blocks ingest.
      * @param req the HttpServletRequest
      * @param resp the HttpServletResponse
      * @throws ServletException if a servlet error occurs
@@ -252,8 +445,40 @@ public class LogsServlet extends HttpServlet{
      */
     @Override
     protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        // Clear database
-        repository.deleteAll();
+        String id = idFromPath(req);
+        if (id != null) { // DELETE /logs/{id}
+            String canonical = canonicalId(id);
+            if (canonical == null) {
+                sendError(resp, 400, "Invalid UUID format for id");
+                return;
+            }
+            if (!repository.is_exist(canonical)) {
+                sendError(resp, 404, "Log event not found");
+                return;
+            }
+            repository.deleteById(canonical);
+            resp.setStatus(200);
+            return;
+        }
+        String beforeParam = req.getParameter("before");
+        String tempLevel = req.getParameter("level");
+        String levelParam = (tempLevel == null) ? null : tempLevel.toUpperCase();
+        String loggerParam = req.getParameter("logger");
+        if (beforeParam != null && !isValidTimestamp(beforeParam)) {
+            sendError(resp, 400, "Invalid before format. Expected: ISO-8601 format");
+            return;
+        }
+        if (levelParam != null && !isValidLevel(levelParam)) {
+            sendError(resp, 400, "Invalid log level. Must be one of: TRACE, DEBUG, INFO, WARN, ERROR, FATAL");
+            return;
+        }
+        // On GET, ALL selects everything and OFF nothing, the reverse of a maximum level: not reused for a purge
+        if (levelParam != null && (levelParam.equals("ALL") || levelParam.equals("OFF"))) {
+            sendError(resp, 400, "Invalid log level. ALL and OFF are not a maximum level, omit level to ignore levels");
+            return;
+        }
+        Instant before = (beforeParam == null) ? null : Instant.parse(beforeParam);
+        repository.delete(new DeleteFilter(before, levelParam, loggerParam));
         resp.setStatus(200);
     }
 }
@@ -0,0 +1,71 @@
+package io.github.nagare.logging.server;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+
+
+/**
+ * Registers server-side MBeans with the platform MBeanServer.
+ * Object names follow the appenders: package name + type = class name + name = instance name
+ * <a href="https://docs.oracle.com/javase/tutorial/jmx/mbeans/standard.html">...</a>
+ */
+public final class MBeanRegistry {
+
+    private static final String DOMAIN = "io.github.nagare.logging.server";
+
+    /**
+     * Private constructor prevents instantiation
+     */
+    private MBeanRegistry() {
+        throw new AssertionError("Cannot instantiate utility class");
+    }
+
+
+    /**
+     * Register an MBean
+     * @param mbean object implementing its "class name" plus MBean interface
+     * @param type class name of the MBean
+     * @param name instance name
+     */
+    public static void register(Object mbean, String type, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(mbean, objectName(type, name));
+        } catch (InstanceAlreadyExistsException e) {
+            throw new RuntimeException("MBean already registered with this name: " + e.getMessage(), e);
+        } catch (MBeanRegistrationException | NotCompliantMBeanException e) {
+            throw new RuntimeException("MBean registration error: " + e.getMessage(), e);
+        } catch (MalformedObjectNameException e) {
+            throw new RuntimeException("Invalid MBean name: " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Unregister an MBean if it is registered
+     * @param type class name of the MBean
+     * @param name instance name
+     */
+    public static void unregister(String type, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(type, name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (Exception e) { // checked exceptions are difficult to simulate
+            throw new RuntimeException("Failed to unregister MBean: " + e.getMessage(), e);
+        }
+    }
+
+
+    private static ObjectName objectName(String type, String name) throws MalformedObjectNameException {
+        return new ObjectName(DOMAIN + ":type=" + type + ",name=" + name);
+    }
+}
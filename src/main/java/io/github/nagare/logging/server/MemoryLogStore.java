@@ -0,0 +1,338 @@
+package io.github.nagare.logging.server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * In-memory LogStore engine (log.store=memory), for edge deployments and integration tests.
+ * Replaces the former Persistency placeholder, an unsynchronized static list.
+ * <br>
+ * Log events are kept in a ConcurrentSkipListMap ordered by (event time, id),
+ * with secondary indexes per level and per logger name holding the same keys.
+ * Reads never lock: they walk the skip lists, which are weakly consistent under concurrent writes.
+ * Writes and deletes are serialized by one lock, so every index stays coherent with the main map.
+ * Events are copied in and out: a caller (or a cache such as EntityCacheLogStore) never shares a stored instance.
+ * <br>
+ * A memory budget bounds the estimated size of the stored events, the oldest events are evicted first.
+ * Nothing survives a restart.
+ */
+public class MemoryLogStore implements LogStore {
+
+    public static final long DEFAULT_MEMORY_BYTES = 256L * 1024 * 1024;
+    private static final int EVENT_OVERHEAD = 320; // objects, references and index entries of one event
+
+    private final long budgetBytes;
+    private final ConcurrentSkipListMap<EventKey, LogEvent> events = new ConcurrentSkipListMap<>();
+    private final Map<String, EventKey> ids = new ConcurrentHashMap<>();
+    private final List<NavigableSet<EventKey>> byLevel = new ArrayList<>(); // index = level ordinal
+    private final ConcurrentSkipListMap<String, NavigableSet<EventKey>> byLogger = new ConcurrentSkipListMap<>();
+    private final Map<String, AtomicLongArray> counts = new ConcurrentHashMap<>(); // logger → count per level
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    /**
+     * Store with the default memory budget
+     */
+    public MemoryLogStore() {
+        this(DEFAULT_MEMORY_BYTES);
+    }
+
+
+    /**
+     * @param budgetBytes estimated memory the events may use before the oldest are evicted
+     */
+    public MemoryLogStore(long budgetBytes) {
+        if (budgetBytes < 1) {
+            throw new IllegalArgumentException("budgetBytes must be positive");
+        }
+        this.budgetBytes = budgetBytes;
+        for (int i = 0; i < LogLevels.LEVELS.size(); i++) {
+            byLevel.add(new ConcurrentSkipListSet<>());
+        }
+    }
+
+
+    @Override
+    public void save(LogEvent logEvent) {
+        saveAll(List.of(logEvent));
+    }
+
+
+    @Override
+    public void saveAll(List<LogEvent> logEvents) {
+        writeLock.lock();
+        try {
+            for (LogEvent logEvent : logEvents) {
+                LogEvent stored = copy(logEvent); // callers may keep using their instance
+                EventKey key = EventKey.of(stored);
+                EventKey previous = ids.get(stored.getId());
+                if (previous != null) remove(previous); // same id saved again, the new event replaces it
+                events.put(key, stored);
+                ids.put(stored.getId(), key);
+                int level = LogLevels.ordinal(stored.getLevel());
+                byLevel.get(level).add(key);
+                byLogger.computeIfAbsent(stored.getLogger(), k -> new ConcurrentSkipListSet<>()).add(key);
+                counts.computeIfAbsent(stored.getLogger(), k -> new AtomicLongArray(LogLevels.LEVELS.size()))
+                        .incrementAndGet(level);
+                usedBytes.addAndGet(sizeOf(stored));
+            }
+            evict();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Get the latest logs matching the query, ordered by timestamp descending.
+     * A logger query walks the index of that logger only, otherwise the per-level indexes
+     * at or above the threshold are merged, latest first, so no event below the threshold is visited.
+     * Terms are checked by tokenizing the messages visited.
+     */
+    @Override
+    public List<LogEvent> filterLogs(LogQuery query) {
+        int threshold = query.getThreshold();
+        if (threshold == LogLevels.OFF) return List.of();
+        int max = query.getLimit();
+        EventKey lower = (query.getFrom() == null) ? null : EventKey.lowest(query.getFrom());
+        EventKey upper = (query.getTo() == null) ? null : EventKey.lowest(query.getTo());
+
+        List<LogEvent> result = new ArrayList<>();
+        if (query.getLogger() != null || threshold == LogLevels.ALL) {
+            NavigableSet<EventKey> keys = (query.getLogger() == null)
+                    ? events.navigableKeySet() : byLogger.get(query.getLogger());
+            if (keys == null) return result; // never logged
+            for (EventKey key : window(keys, lower, upper).descendingSet()) {
+                if (result.size() == max) break;
+                LogEvent logEvent = events.get(key);
+                if (logEvent == null) continue; // deleted meanwhile
+                if (LogLevels.ordinal(logEvent.getLevel()) >= threshold && query.matchesText(logEvent.getMessage())) {
+                    result.add(copy(logEvent));
+                }
+            }
+            return result;
+        }
+        // k-way merge of the level indexes, each already ordered by (event time, id)
+        PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparing((Head head) -> head.key).reversed());
+        for (int ordinal = threshold; ordinal < LogLevels.OFF; ordinal++) {
+            Iterator<EventKey> keys = window(byLevel.get(ordinal), lower, upper).descendingIterator();
+            if (keys.hasNext()) heads.add(new Head(keys.next(), keys));
+        }
+        while (result.size() < max && !heads.isEmpty()) {
+            Head head = heads.poll();
+            LogEvent logEvent = events.get(head.key);
+            if (logEvent != null && query.matchesText(logEvent.getMessage())) result.add(copy(logEvent));
+            if (head.rest.hasNext()) heads.add(new Head(head.rest.next(), head.rest));
+        }
+        return result;
+    }
+
+
+    @Override
+    public boolean is_exist(String id) {
+        return ids.containsKey(id);
+    }
+
+
+    @Override
+    public LogEvent getById(String id) {
+        EventKey key = ids.get(id);
+        LogEvent logEvent = (key == null) ? null : events.get(key);
+        return (logEvent == null) ? null : copy(logEvent);
+    }
+
+
+    @Override
+    public List<LogEvent> getAllLogs() {
+        List<LogEvent> logs = new ArrayList<>(events.size());
+        for (LogEvent logEvent : events.values()) {
+            logs.add(copy(logEvent));
+        }
+        return logs;
+    }
+
+
+    @Override
+    public Map<String, Map<String, Long>> countByLoggerAndLevel() {
+        Map<String, Map<String, Long>> stats = new HashMap<>();
+        counts.forEach((logger, perLevel) -> {
+            Map<String, Long> levels = new HashMap<>();
+            for (int ordinal = 0; ordinal < perLevel.length(); ordinal++) {
+                long count = perLevel.get(ordinal);
+                if (count > 0) levels.put(LogLevels.name(ordinal), count);
+            }
+            if (!levels.isEmpty()) stats.put(logger, levels);
+        });
+        return stats;
+    }
+
+
+    /**
+     * Delete the log events selected by the filter, starting from the narrowest index:
+     * the logger prefix range, otherwise the levels up to maxLevel, otherwise the time range
+     */
+    @Override
+    public long delete(DeleteFilter filter) {
+        EventKey upper = (filter.getBefore() == null) ? null : EventKey.lowest(filter.getBefore());
+        writeLock.lock();
+        try {
+            List<NavigableSet<EventKey>> candidates = new ArrayList<>();
+            if (filter.getLoggerPrefix() != null) {
+                String prefix = filter.getLoggerPrefix();
+                candidates.addAll(byLogger.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values());
+            } else if (filter.getMaxLevel() != null) {
+                candidates.addAll(byLevel.subList(0, LogLevels.ordinal(filter.getMaxLevel()) + 1));
+            } else {
+                candidates.add(events.navigableKeySet());
+            }
+            List<EventKey> selected = new ArrayList<>();
+            for (NavigableSet<EventKey> keys : candidates) {
+                for (EventKey key : window(keys, null, upper)) {
+                    LogEvent logEvent = events.get(key);
+                    if (logEvent != null && matches(filter, logEvent)) selected.add(key);
+                }
+            }
+            for (EventKey key : selected) {
+                remove(key);
+            }
+            return selected.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public void deleteById(String id) {
+        writeLock.lock();
+        try {
+            EventKey key = ids.get(id);
+            if (key != null) remove(key);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Get the estimated memory used by the stored events
+     * @return estimated bytes
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+
+    /**
+     * Get the number of events evicted to stay within the memory budget
+     * @return evicted events since startup
+     */
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+
+    /**
+     * Drop the oldest events until the estimated size fits the budget
+     */
+    private void evict() {
+        while (usedBytes.get() > budgetBytes && !events.isEmpty()) {
+            remove(events.firstKey());
+            evictedCount.incrementAndGet();
+        }
+    }
+
+
+    /**
+     * Remove an event from every index, the caller holds the write lock
+     */
+    private void remove(EventKey key) {
+        LogEvent logEvent = events.remove(key);
+        if (logEvent == null) return;
+        ids.remove(key.getId());
+        int level = LogLevels.ordinal(logEvent.getLevel());
+        byLevel.get(level).remove(key);
+        NavigableSet<EventKey> loggerKeys = byLogger.get(logEvent.getLogger());
+        loggerKeys.remove(key);
+        if (loggerKeys.isEmpty()) byLogger.remove(logEvent.getLogger());
+        AtomicLongArray perLevel = counts.get(logEvent.getLogger());
+        perLevel.decrementAndGet(level);
+        if (loggerKeys.isEmpty()) counts.remove(logEvent.getLogger());
+        usedBytes.addAndGet(-sizeOf(logEvent));
+    }
+
+
+    private static boolean matches(DeleteFilter filter, LogEvent logEvent) {
+        if (filter.getMaxLevel() != null
+                && LogLevels.ordinal(logEvent.getLevel()) > LogLevels.ordinal(filter.getMaxLevel())) return false;
+        return filter.getLoggerPrefix() == null || logEvent.getLogger().startsWith(filter.getLoggerPrefix());
+    }
+
+
+    private static NavigableSet<EventKey> window(NavigableSet<EventKey> keys, EventKey lower, EventKey upper) {
+        if (lower != null && upper != null) return keys.subSet(lower, true, upper, false);
+        if (lower != null) return keys.tailSet(lower, true);
+        if (upper != null) return keys.headSet(upper, false);
+        return keys;
+    }
+
+
+    /**
+     * Copy the fields a client sends, so the stored event is not shared with the caller, on save and on read
+     * @param logEvent log event to copy
+     * @return new LogEvent
+     */
+    static LogEvent copy(LogEvent logEvent) {
+        LogEvent copy = new LogEvent();
+        copy.setId(logEvent.getId());
+        copy.setMessage(logEvent.getMessage());
+        copy.setTimestamp(logEvent.getTimestamp());
+        copy.setThread(logEvent.getThread());
+        copy.setLogger(logEvent.getLogger());
+        copy.setLevel(logEvent.getLevel());
+        copy.setErrorDetails(logEvent.getErrorDetails());
+        return copy;
+    }
+
+
+    /**
+     * Estimate the heap used by a stored event
+     * @param logEvent stored log event
+     * @return estimated bytes
+     */
+    static long sizeOf(LogEvent logEvent) {
+        long chars = logEvent.getId().length() + logEvent.getMessage().length() + logEvent.getTimestamp().length()
+                + logEvent.getThread().length() + logEvent.getLogger().length()
+                + ((logEvent.getErrorDetails() == null) ? 0 : logEvent.getErrorDetails().length());
+        return EVENT_OVERHEAD + chars;
+    }
+
+
+    /**
+     * Current position in one level index during the merge
+     */
+    private static final class Head {
+
+        final EventKey key;
+        final Iterator<EventKey> rest;
+
+        Head(EventKey key, Iterator<EventKey> rest) {
+            this.key = key;
+            this.rest = rest;
+        }
+    }
+}
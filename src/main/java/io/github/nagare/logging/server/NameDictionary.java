@@ -0,0 +1,141 @@
+package io.github.nagare.logging.server;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.PersistenceException;
+
+
+/**
+ * Concurrent in-memory cache in front of a dictionary table (log_loggers, log_threads).
+ * Resolves names to surrogate keys on ingest and keys back to names on read.
+ * Once a name has been seen, both directions are answered without a query.
+ * Entries are never removed, the number of distinct names is small.
+ * @param <E> dictionary entity type
+ */
+public class NameDictionary<E extends NameEntry> {
+
+    private final EntityManagerFactory emf;
+    private final Class<E> type;
+    private final Supplier<E> factory;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+    /**
+     * @param emf EntityManagerFactory of the database holding the dictionary table
+     * @param type dictionary entity class
+     * @param factory creates an empty entity for new names
+     */
+    public NameDictionary(EntityManagerFactory emf, Class<E> type, Supplier<E> factory) {
+        this.emf = emf;
+        this.type = type;
+        this.factory = factory;
+    }
+
+
+    /**
+     * Get the surrogate key of a name, inserting a new dictionary row on first use
+     * @param name logger or thread name
+     * @return surrogate key
+     */
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+
+        id = load(name);
+        if (id == null) {
+            try {
+                id = insert(name);
+            } catch (PersistenceException e) {
+                // Another thread or server inserted the same name first (unique constraint)
+                id = load(name);
+                if (id == null) throw e;
+            }
+        }
+        remember(id, name);
+        return id;
+    }
+
+
+    /**
+     * Get the surrogate key of a name without inserting it, e.g. to filter on a name
+     * @param name logger or thread name
+     * @return surrogate key, null if the name was never stored
+     */
+    public Integer find(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        id = load(name);
+        if (id != null) remember(id, name);
+        return id;
+    }
+
+
+    /**
+     * Get the name of a surrogate key
+     * @param id surrogate key
+     * @return logger or thread name, null if the key does not exist
+     */
+    public String nameOf(int id) {
+        String name = names.get(id);
+        if (name != null) return name;
+
+        try (EntityManager em = emf.createEntityManager()) {
+            E entry = em.find(type, id);
+            if (entry == null) return null;
+            remember(id, entry.getName());
+            return entry.getName();
+        }
+    }
+
+
+    /**
+     * Get the number of cached names
+     * @return the number of cached names
+     */
+    public int size() {
+        return ids.size();
+    }
+
+
+    private void remember(int id, String name) {
+        ids.putIfAbsent(name, id);
+        names.putIfAbsent(id, name);
+    }
+
+
+    private Integer load(String name) {
+        try (EntityManager em = emf.createEntityManager()) {
+            List<E> result = em.createQuery("FROM " + type.getSimpleName() + " WHERE name = :name", type)
+                    .setParameter("name", name)
+                    .getResultList();
+            return result.isEmpty() ? null : result.get(0).getId();
+        }
+    }
+
+
+    private Integer insert(String name) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            E entry = factory.get();
+            entry.setName(name);
+            em.persist(entry);
+            tx.commit();
+            return entry.getId();
+        }
+        catch (Exception e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        }
+        finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.nagare.logging.server;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.MappedSuperclass;
+
+
+/**
+ * One row of a dictionary table, maps a repeated name to a small integer surrogate key.
+ * A handful of distinct logger and thread names account for millions of log events,
+ * so log_events stores the key and the name is stored once.
+ */
+@MappedSuperclass
+public abstract class NameEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "name", nullable = false, unique = true)
+    private String name;
+
+    /**
+     * Default no-argument constructor for JPA
+     */
+    protected NameEntry() {
+    }
+
+    // getters
+    public Integer getId() { return id; }
+    public String getName() { return name; }
+
+    // setters
+    public void setName(String name) {
+        this.name = name;
+    }
+}
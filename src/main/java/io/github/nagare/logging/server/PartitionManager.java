@@ -0,0 +1,186 @@
+package io.github.nagare.logging.server;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+
+
+/**
+ * Manages daily partitions of log_events, so retention drops whole days instead of deleting rows.
+ * <br>
+ * PostgreSQL: native declarative partitioning by range of event_time, one partition per UTC day
+ * named log_events_pYYYYMMDD. The partitioned parent table is created by db/migration/V6__partition_by_day.sql,
+ * hibernate.hbm2ddl.auto can only create a plain table. Dropping a partition is O(1):
+ * no per-row WAL, no bloat, and queries bounded by event_time only touch the matching partitions.
+ * <br>
+ * Other databases (H2 for development, or PostgreSQL without the migration): no partitioning,
+ * retention falls back to chunked deletes on the event_time index, see RetentionService.
+ * <a href="https://www.postgresql.org/docs/current/ddl-partitioning.html">...</a>
+ */
+public class PartitionManager {
+
+    private static final String TABLE = "log_events";
+    private static final String PREFIX = TABLE + "_p";
+    private static final String DEFAULT = TABLE + "_default";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final EntityManagerFactory emf;
+    private final boolean partitioned;
+
+    /**
+     * @param emf EntityManagerFactory of the database holding log_events
+     */
+    public PartitionManager(EntityManagerFactory emf) {
+        this.emf = emf;
+        this.partitioned = detectPartitioning();
+    }
+
+
+    /**
+     * Check whether log_events is natively partitioned
+     * @return true if partitions are dropped, false if rows are deleted
+     */
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+
+    /**
+     * Create the daily partitions between from and to (inclusive) that do not exist yet.
+     * Events of that day already caught by the default partition are moved into the new partition,
+     * PostgreSQL refuses to create a partition whose rows are in the default one.
+     * Does nothing if log_events is not partitioned.
+     * @param from first day
+     * @param to last day
+     */
+    public void ensurePartitions(LocalDate from, LocalDate to) {
+        if (!partitioned) return;
+        List<LocalDate> existing = listPartitions();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            if (existing.contains(day)) continue;
+            String create = "CREATE TABLE IF NOT EXISTS " + partitionName(day) + " PARTITION OF " + TABLE
+                    + " FOR VALUES FROM ('" + startOf(day) + "') TO ('" + startOf(day.plusDays(1)) + "')";
+            if (!inDefault(day)) {
+                execute(create);
+                continue;
+            }
+            // Detached, the default partition no longer conflicts with the new range
+            String range = " WHERE event_time >= '" + startOf(day) + "' AND event_time < '" + startOf(day.plusDays(1)) + "'";
+            execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + DEFAULT,
+                    create,
+                    "INSERT INTO " + TABLE + " SELECT * FROM " + DEFAULT + range,
+                    "DELETE FROM " + DEFAULT + range,
+                    "ALTER TABLE " + TABLE + " ATTACH PARTITION " + DEFAULT + " DEFAULT");
+        }
+    }
+
+
+    /**
+     * Drop the daily partitions older than the cutoff day.
+     * Does nothing if log_events is not partitioned, rows are then deleted by ChunkedDeleter.
+     * @param cutoff first day to keep
+     * @return number of partitions dropped
+     */
+    public long dropBefore(LocalDate cutoff) {
+        if (!partitioned) return 0;
+        long dropped = 0;
+        for (LocalDate day : listPartitions()) {
+            if (day.isBefore(cutoff)) {
+                execute("DROP TABLE IF EXISTS " + partitionName(day));
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+
+    /**
+     * List the days that currently have a partition
+     * @return days in ascending order, empty if not partitioned
+     */
+    public List<LocalDate> listPartitions() {
+        List<LocalDate> days = new ArrayList<>();
+        if (!partitioned) return days;
+        try (EntityManager em = emf.createEntityManager()) {
+            @SuppressWarnings("unchecked")
+            List<String> names = em.createNativeQuery(
+                    "SELECT c.relname FROM pg_inherits i"
+                    + " JOIN pg_class c ON i.inhrelid = c.oid"
+                    + " JOIN pg_class p ON i.inhparent = p.oid"
+                    + " WHERE p.relname = '" + TABLE + "' ORDER BY c.relname").getResultList();
+            for (String name : names) {
+                if (name.startsWith(PREFIX)) { // skip the default partition
+                    days.add(LocalDate.parse(name.substring(PREFIX.length()), SUFFIX));
+                }
+            }
+        }
+        return days;
+    }
+
+
+    private boolean detectPartitioning() {
+        Dialect dialect = emf.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        if (!(dialect instanceof PostgreSQLDialect)) return false;
+        try (EntityManager em = emf.createEntityManager()) {
+            Number count = (Number) em.createNativeQuery(
+                    "SELECT COUNT(*) FROM pg_partitioned_table t JOIN pg_class c ON t.partrelid = c.oid"
+                    + " WHERE c.relname = '" + TABLE + "'").getSingleResult();
+            if (count.longValue() == 0) {
+                System.err.println("log_events is not partitioned, apply db/migration/V6__partition_by_day.sql"
+                        + " for O(1) retention. Falling back to range deletes");
+                return false;
+            }
+            return true;
+        }
+    }
+
+
+    private boolean inDefault(LocalDate day) {
+        try (EntityManager em = emf.createEntityManager()) {
+            return !em.createNativeQuery("SELECT 1 FROM " + DEFAULT + " WHERE event_time >= '" + startOf(day)
+                    + "' AND event_time < '" + startOf(day.plusDays(1)) + "' LIMIT 1").getResultList().isEmpty();
+        }
+    }
+
+
+    private static String partitionName(LocalDate day) {
+        return PREFIX + SUFFIX.format(day);
+    }
+
+
+    static Instant startOf(LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+
+    // Statements run in one transaction, DDL included
+    private void execute(String... statements) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            for (String sql : statements) {
+                em.createNativeQuery(sql).executeUpdate();
+            }
+            tx.commit();
+        }
+        catch (Exception e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        }
+        finally {
+            em.close();
+        }
+    }
+}
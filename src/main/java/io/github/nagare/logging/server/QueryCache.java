@@ -0,0 +1,168 @@
+package io.github.nagare.logging.server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Bounded cache of serialized GET /logs responses, keyed by the normalized query.
+ * Each entry is tagged with the data version it was computed at (see VersionedLogStore),
+ * an entry of an older version is a miss, so every write invalidates the whole cache without touching it.
+ * Concurrent misses for the same key and version are coalesced: one request runs the query,
+ * the others wait for its result.
+ * <br>
+ * Least recently used entries are evicted beyond maxEntries.
+ * Implements MBean interface to report hits, misses and coalesced misses via JMX.
+ */
+public class QueryCache implements QueryCacheMBean {
+
+    /**
+     * Computes a response on a miss
+     */
+    @FunctionalInterface
+    public interface Loader {
+        byte[] load() throws IOException;
+    }
+
+    private final Map<String, Entry> entries;
+    private final Map<String, CompletableFuture<byte[]>> running = new ConcurrentHashMap<>(); // key@version
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private String name;
+
+    /**
+     * @param maxEntries maximum number of cached responses
+     */
+    public QueryCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) { // access order
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+
+    /**
+     * Get the response of a query at the given data version, loading it on a miss
+     * @param key normalized query
+     * @param version data version read before the call
+     * @param loader runs the query and serializes the result
+     * @return serialized response, shared: do not modify
+     * @throws IOException if the loader fails, for every request waiting on it
+     */
+    public byte[] get(String key, long version, Loader loader) throws IOException {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version >= version) {
+                hitCount.incrementAndGet();
+                return entry.body;
+            }
+        }
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        String runningKey = key + "@" + version;
+        CompletableFuture<byte[]> other = running.putIfAbsent(runningKey, mine);
+        if (other != null) {
+            coalescedCount.incrementAndGet();
+            return await(other);
+        }
+        missCount.incrementAndGet();
+        try {
+            byte[] body = loader.load();
+            synchronized (entries) {
+                Entry entry = entries.get(key);
+                if (entry == null || entry.version < version) entries.put(key, new Entry(version, body));
+            }
+            mine.complete(body);
+            return body;
+        } catch (IOException | RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            running.remove(runningKey);
+        }
+    }
+
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+
+    @Override
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+
+    @Override
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+
+    /**
+     * Register this QueryCache as an MBean with the platform MBeanServer
+     * @param name instance name of the MBean
+     */
+    public void registerMBean(String name) {
+        MBeanRegistry.register(this, "QueryCache", name);
+        this.name = name;
+    }
+
+
+    /**
+     * Unregisters this QueryCache as an MBean with the platform MBeanServer
+     */
+    public void unregisterMBean() {
+        if (this.name == null) {
+            return;
+        }
+        MBeanRegistry.unregister("QueryCache", name);
+        this.name = null;
+    }
+
+
+    private static byte[] await(CompletableFuture<byte[]> other) throws IOException {
+        try {
+            return other.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw new IOException(io.getMessage(), io);
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw new UncheckedIOException(new IOException(cause));
+        }
+    }
+
+
+    private static final class Entry {
+
+        final long version;
+        final byte[] body;
+
+        Entry(long version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.nagare.logging.server;
+
+/**
+ * MBean interface for QueryCache.
+ * Reports how many GET /logs responses are served without running the query.
+ * The MBean class MUST implement an interface with the following name: “class name” plus MBean.
+ */
+public interface QueryCacheMBean {
+
+    /**
+     * Get the number of responses served from the cache
+     * @return the number of hits
+     */
+    public long getHitCount();
+
+    /**
+     * Get the number of queries run to fill the cache
+     * @return the number of misses
+     */
+    public long getMissCount();
+
+    /**
+     * Get the number of requests that waited for the same query run by another request
+     * @return the number of coalesced misses
+     */
+    public long getCoalescedCount();
+
+    /**
+     * Get the number of cached responses
+     * @return the number of entries
+     */
+    public int getSize();
+}
@@ -0,0 +1,135 @@
+package io.github.nagare.logging.server;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+
+/**
+ * Background job that keeps the daily partitions of log_events in shape.
+ * Every hour it creates the partitions for today and the next days,
+ * and drops the days that fall out of the retention window.
+ * Rows that are not in a dropped partition (no partitioning, or the default partition)
+ * are purged by a ChunkedDeleter, in short throttled transactions that never block ingest.
+ * Engines other than JPA have no partitions, expired events are deleted through the LogStore.
+ * With the JPA engine each pass also deletes the deduplicated stack traces no event references any more.
+ * The retention window is configured per deployment (RETENTION_DAYS / retention.days),
+ * 0 keeps log events forever.
+ */
+public class RetentionService {
+
+    private static final int DAYS_AHEAD = 2;
+    private static final long PERIOD_MINUTES = 60;
+
+    private final PartitionManager partitions;
+    private final ToLongFunction<DeleteFilter> deleter;
+    private final Runnable onDropped; // the rows of dropped partitions are not deleted through the LogStore
+    private final StackTraceStore stackTraces;
+    private final int retentionDays;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param partitions partition manager of log_events
+     * @param deleter deletes the remaining expired rows in chunks
+     * @param retentionDays number of days to keep, including today, 0 to keep forever
+     */
+    public RetentionService(PartitionManager partitions, ChunkedDeleter deleter, int retentionDays) {
+        this(partitions, null, deleter::delete, () -> {}, retentionDays);
+    }
+
+
+    /**
+     * Retention deleting the remaining expired events through the LogStore,
+     * so caches in front of the engine see the deletes, and bumping the version of a VersionedLogStore
+     * when partitions are dropped
+     * @param partitions partition manager of log_events, null for an engine without partitions
+     * @param stackTraces stack traces to collect once unreferenced, null for an engine without them
+     * @param store LogStore deleting the expired events
+     * @param retentionDays number of days to keep, including today, 0 to keep forever
+     */
+    public RetentionService(PartitionManager partitions, StackTraceStore stackTraces, LogStore store,
+                            int retentionDays) {
+        this(partitions, stackTraces, store::delete,
+                (store instanceof VersionedLogStore versioned) ? versioned::markModified : () -> {}, retentionDays);
+    }
+
+
+    private RetentionService(PartitionManager partitions, StackTraceStore stackTraces,
+                             ToLongFunction<DeleteFilter> deleter, Runnable onDropped, int retentionDays) {
+        if (retentionDays < 0) {
+            throw new IllegalArgumentException("retentionDays cannot be negative");
+        }
+        this.partitions = partitions;
+        this.deleter = deleter;
+        this.onDropped = onDropped;
+        this.stackTraces = stackTraces;
+        this.retentionDays = retentionDays;
+    }
+
+
+    /**
+     * Run once now, then every hour on a daemon thread
+     */
+    public synchronized void start() {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::runSafely, 0, PERIOD_MINUTES, TimeUnit.MINUTES);
+    }
+
+
+    /**
+     * Stop the background job, waiting briefly for a running pass to finish
+     */
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+
+    /**
+     * Create upcoming partitions, apply the retention window and collect orphaned stack traces once
+     * @return number of events deleted, rows of dropped partitions are not counted
+     */
+    public long runOnce() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        if (partitions != null) {
+            try {
+                partitions.ensurePartitions(today, today.plusDays(DAYS_AHEAD));
+            } catch (RuntimeException e) { // retention must still run, the default partition takes new events meanwhile
+                System.err.println("Creating partitions failed: " + e.getMessage());
+            }
+        }
+        long deleted = 0;
+        if (retentionDays > 0) {
+            LocalDate cutoff = today.minusDays(retentionDays - 1);
+            if (partitions != null && partitions.dropBefore(cutoff) > 0) onDropped.run();
+            deleted = deleter.applyAsLong(DeleteFilter.before(PartitionManager.startOf(cutoff)));
+        }
+        // Also after DELETE /logs, so this runs with retention 0 too
+        if (stackTraces != null) stackTraces.deleteOrphans();
+        return deleted;
+    }
+
+
+    // An exception would cancel all later runs of scheduleAtFixedRate
+    private void runSafely() {
+        try {
+            runOnce();
+        } catch (Exception e) {
+            System.err.println("Retention pass failed: " + e.getMessage());
+        }
+    }
+}
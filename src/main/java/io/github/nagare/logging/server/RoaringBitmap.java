@@ -0,0 +1,354 @@
+package io.github.nagare.logging.server;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+
+/**
+ * Compressed set of non-negative ints, used as a secondary index over record ordinals.
+ * Roaring layout: values are grouped by their high 16 bits, each group is a container of the low 16 bits,
+ * a sorted char[] while it holds at most ARRAY_MAX values, a 65536 bit long[] above that.
+ * Sparse indexes (a rare logger) then cost 2 bytes per value, dense ones (INFO) 1 bit per ordinal,
+ * and intersections work container by container, skipping groups missing on either side.
+ * <br>
+ * Not thread-safe, SegmentLogStore guards it with its lock.
+ */
+final class RoaringBitmap {
+
+    private static final int ARRAY_MAX = 4096; // above this, a bitmap container is smaller
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys = new char[4]; // high 16 bits, sorted
+    private Container[] containers = new Container[4];
+    private int size;
+
+    /**
+     * Add a value, cheapest when values are added in increasing order
+     * @param value non-negative value
+     */
+    void add(int value) {
+        char key = (char) (value >>> 16);
+        int index = (size > 0 && keys[size - 1] == key) ? size - 1 : find(key);
+        if (index < 0) {
+            index = -index - 1;
+            insert(index, key, new Container());
+        }
+        containers[index].add((char) value);
+    }
+
+
+    /**
+     * Check whether a value is in the set
+     * @param value value to look for
+     * @return true if added before
+     */
+    boolean contains(int value) {
+        int index = find((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+
+    /**
+     * Get the number of values in the set
+     * @return cardinality
+     */
+    int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality;
+        }
+        return cardinality;
+    }
+
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+
+    /**
+     * Intersect two sets
+     * @param other set to intersect with
+     * @return new set of the values in both
+     */
+    RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality > 0) result.insert(result.size, keys[i], container);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Unite two sets
+     * @param other set to unite with
+     * @return new set of the values in either
+     */
+    RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.insert(result.size, keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.insert(result.size, other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.insert(result.size, keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Iterate over the values in increasing order
+     * @return iterator, invalidated by a later add
+     */
+    PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index;
+            private int next = -1; // position in the current container
+
+            @Override
+            public boolean hasNext() {
+                return index < size && containers[index].next(next + 1) >= 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) throw new NoSuchElementException();
+                next = containers[index].next(next + 1);
+                int value = (keys[index] << 16) | containers[index].valueAt(next);
+                if (containers[index].next(next + 1) < 0) {
+                    index++;
+                    next = -1;
+                }
+                return value;
+            }
+        };
+    }
+
+
+    /**
+     * Write the set, containers as they are in memory
+     * @param out destination
+     * @throws IOException if writing fails
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            Container container = containers[i];
+            out.writeChar(keys[i]);
+            out.writeBoolean(container.bits != null);
+            out.writeInt(container.cardinality);
+            if (container.bits == null) {
+                for (int k = 0; k < container.cardinality; k++) {
+                    out.writeChar(container.array[k]);
+                }
+            } else {
+                for (long word : container.bits) {
+                    out.writeLong(word);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Read a set written by writeTo
+     * @param in source
+     * @return the set
+     * @throws IOException if reading fails
+     */
+    static RoaringBitmap readFrom(DataInput in) throws IOException {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            char key = in.readChar();
+            boolean bitmapForm = in.readBoolean();
+            Container container = new Container();
+            container.cardinality = in.readInt();
+            if (!bitmapForm) {
+                container.array = new char[container.cardinality];
+                for (int k = 0; k < container.cardinality; k++) {
+                    container.array[k] = in.readChar();
+                }
+            } else {
+                container.array = null;
+                container.bits = new long[BITMAP_WORDS];
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    container.bits[w] = in.readLong();
+                }
+            }
+            bitmap.insert(bitmap.size, key, container);
+        }
+        return bitmap;
+    }
+
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+
+    private void insert(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+
+    /**
+     * Low 16 bits of the values sharing one key, array or bitmap form
+     */
+    private static final class Container {
+
+        char[] array = new char[4]; // sorted, null in bitmap form
+        long[] bits;
+        int cardinality;
+
+        void add(char value) {
+            if (bits != null) {
+                long before = bits[value >>> 6];
+                bits[value >>> 6] = before | (1L << value);
+                if (before != bits[value >>> 6]) cardinality++;
+                return;
+            }
+            int index = (cardinality > 0 && array[cardinality - 1] < value)
+                    ? -cardinality - 1 : Arrays.binarySearch(array, 0, cardinality, value);
+            if (index >= 0) return;
+            if (cardinality == ARRAY_MAX) {
+                toBitmap();
+                add(value);
+                return;
+            }
+            index = -index - 1;
+            if (cardinality == array.length) array = Arrays.copyOf(array, Math.min(Math.max(cardinality * 2, 4), ARRAY_MAX));
+            System.arraycopy(array, index, array, index + 1, cardinality - index);
+            array[index] = value;
+            cardinality++;
+        }
+
+        boolean contains(char value) {
+            if (bits != null) return (bits[value >>> 6] & (1L << value)) != 0;
+            return Arrays.binarySearch(array, 0, cardinality, value) >= 0;
+        }
+
+        Container and(Container other) {
+            Container result = new Container();
+            if (bits != null && other.bits != null) {
+                long[] words = new long[BITMAP_WORDS];
+                int cardinality = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    words[w] = bits[w] & other.bits[w];
+                    cardinality += Long.bitCount(words[w]);
+                }
+                result.bits = words;
+                result.array = null;
+                result.cardinality = cardinality;
+                if (cardinality <= ARRAY_MAX) result.toArray();
+                return result;
+            }
+            // at least one side is a short sorted array, probe the other side
+            Container small = (bits == null) ? this : other;
+            Container large = (small == this) ? other : this;
+            result.array = new char[small.cardinality];
+            for (int k = 0; k < small.cardinality; k++) {
+                if (large.contains(small.array[k])) result.array[result.cardinality++] = small.array[k];
+            }
+            return result;
+        }
+
+        Container or(Container other) {
+            Container result = copy();
+            if (other.bits != null && result.bits == null) result.toBitmap();
+            if (result.bits != null && other.bits != null) {
+                int cardinality = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    result.bits[w] |= other.bits[w];
+                    cardinality += Long.bitCount(result.bits[w]);
+                }
+                result.cardinality = cardinality;
+                return result;
+            }
+            for (int k = 0; k < other.cardinality; k++) {
+                result.add(other.array[k]);
+            }
+            return result;
+        }
+
+        Container copy() {
+            Container copy = new Container();
+            copy.cardinality = cardinality;
+            copy.array = (array == null) ? null : Arrays.copyOf(array, Math.max(cardinality, 4));
+            copy.bits = (bits == null) ? null : bits.clone();
+            return copy;
+        }
+
+        /**
+         * Find the first position holding a value, at or after the given position:
+         * an index into the array, or a bit number in bitmap form
+         * @return position, -1 if there is none
+         */
+        int next(int position) {
+            if (bits == null) return (position < cardinality) ? position : -1;
+            int word = position >>> 6;
+            if (word >= BITMAP_WORDS) return -1;
+            long remaining = bits[word] & (-1L << position);
+            while (remaining == 0) {
+                if (++word == BITMAP_WORDS) return -1;
+                remaining = bits[word];
+            }
+            return word * 64 + Long.numberOfTrailingZeros(remaining);
+        }
+
+        char valueAt(int position) {
+            return (bits == null) ? array[position] : (char) position;
+        }
+
+        private void toBitmap() {
+            bits = new long[BITMAP_WORDS];
+            for (int k = 0; k < cardinality; k++) {
+                bits[array[k] >>> 6] |= 1L << array[k];
+            }
+            array = null;
+        }
+
+        private void toArray() {
+            char[] values = new char[cardinality];
+            int k = 0;
+            for (int position = next(0); position >= 0; position = next(position + 1)) {
+                values[k++] = (char) position;
+            }
+            array = values;
+            bits = null;
+        }
+    }
+}
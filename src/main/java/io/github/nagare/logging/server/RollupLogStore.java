@@ -0,0 +1,439 @@
+package io.github.nagare.logging.server;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Rollup tables of event counts per time bucket, logger and level, in front of another LogStore,
+ * so the stats servlets answer time ranges without reading the events.
+ * There is one table per Bucket width (minute, hour, day), buckets are aligned on UTC.
+ * The tables are filled on startup with one grouped count of the backing store per width (countByTimeBucket).
+ * Every stored event increments one bucket in each table, deletes decrement them: the buckets before the
+ * DeleteFilter cut lose the matching counts, and the bucket holding the cut, if any, is recounted from
+ * the backing store over that bucket only (retention always cuts on a day, so on a boundary of every table).
+ * <br>
+ * A background job compacts the tables every minute: minute buckets are kept for minuteRetention,
+ * hour buckets for hourRetention, then only the coarser tables hold their counts. Day buckets are kept.
+ * Only writes made through this store are seen, so the backing store must not be shared with another writer.
+ * Implements MBean interface to report the size of the tables via JMX.
+ */
+public class RollupLogStore implements LogStore, RollupLogStoreMBean {
+
+    /**
+     * Width of the buckets of a rollup table
+     */
+    public enum Bucket {
+        MINUTE(60), HOUR(3_600), DAY(86_400);
+
+        private final long micros;
+
+        Bucket(long seconds) {
+            this.micros = seconds * 1_000_000;
+        }
+
+        /**
+         * Parse a bucket name, case-insensitive
+         * @param name minute, hour or day
+         * @return the bucket, null if the name is unknown
+         */
+        public static Bucket parse(String name) {
+            for (Bucket bucket : values()) {
+                if (bucket.name().equalsIgnoreCase(name)) return bucket;
+            }
+            return null;
+        }
+
+        Duration width() {
+            return Duration.of(micros, ChronoUnit.MICROS);
+        }
+
+        long floor(long micros) {
+            return Math.floorDiv(micros, this.micros) * this.micros;
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    static final long COMPACT_PERIOD_SECONDS = 60;
+
+    private final LogStore backing;
+    private final Duration minuteRetention;
+    private final Duration hourRetention;
+    // bucket start in micros → logger → count per level ordinal
+    private final Map<Bucket, ConcurrentSkipListMap<Long, Map<String, AtomicLongArray>>> tables = new EnumMap<>(Bucket.class);
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ScheduledExecutorService compactor;
+    private final AtomicLong recountCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private String name;
+
+    /**
+     * Create the rollup tables and fill them with the counts of the events already stored, within retention
+     * @param backing store holding every event
+     * @param minuteRetention how long minute buckets are kept
+     * @param hourRetention how long hour buckets are kept
+     */
+    public RollupLogStore(LogStore backing, Duration minuteRetention, Duration hourRetention) {
+        this.backing = backing;
+        this.minuteRetention = minuteRetention;
+        this.hourRetention = hourRetention;
+        for (Bucket bucket : Bucket.values()) {
+            tables.put(bucket, new ConcurrentSkipListMap<>());
+        }
+        Instant now = Instant.now();
+        load(Bucket.MINUTE, now.minus(minuteRetention));
+        load(Bucket.HOUR, now.minus(hourRetention));
+        load(Bucket.DAY, null);
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-rollup-compact");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compactSafely, COMPACT_PERIOD_SECONDS, COMPACT_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+
+    /**
+     * Get the store behind the rollup tables
+     * @return backing LogStore
+     */
+    public LogStore getBacking() {
+        return backing;
+    }
+
+
+    @Override
+    public void save(LogEvent logEvent) {
+        saveAll(List.of(logEvent));
+    }
+
+
+    @Override
+    public void saveAll(List<LogEvent> logEvents) {
+        writeLock.lock();
+        try {
+            backing.saveAll(logEvents);
+            for (LogEvent logEvent : logEvents) {
+                add(logEvent, 1);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public List<LogEvent> filterLogs(LogQuery query) {
+        return backing.filterLogs(query);
+    }
+
+
+    @Override
+    public boolean is_exist(String id) {
+        return backing.is_exist(id);
+    }
+
+
+    @Override
+    public LogEvent getById(String id) {
+        return backing.getById(id);
+    }
+
+
+    @Override
+    public List<LogEvent> getAllLogs() {
+        return backing.getAllLogs();
+    }
+
+
+    @Override
+    public Map<String, Map<String, Long>> countByLoggerAndLevel() {
+        return backing.countByLoggerAndLevel();
+    }
+
+
+    @Override
+    public SortedMap<Instant, Map<String, Map<String, Long>>> countByTimeBucket(Duration width, Instant from, Instant to) {
+        return backing.countByTimeBucket(width, from, to);
+    }
+
+
+    /**
+     * Count log events per bucket, logger and level from the rollup table of the given width.
+     * from is rounded down and to rounded up to the bucket width, buckets without events are absent,
+     * and so are buckets already compacted out of the table.
+     * @param bucket bucket width
+     * @param from inclusive start, null for no lower bound
+     * @param to exclusive end, null for no upper bound
+     * @return start of each bucket, in time order → (logger → (level → count))
+     */
+    public SortedMap<Instant, Map<String, Map<String, Long>>> countByBucket(Bucket bucket, Instant from, Instant to) {
+        NavigableMap<Long, Map<String, AtomicLongArray>> range = tables.get(bucket);
+        if (from != null) range = range.tailMap(bucket.floor(EventKey.micros(from)), true);
+        if (to != null) {
+            long end = EventKey.micros(to);
+            long ceil = bucket.floor(end) + ((bucket.floor(end) == end) ? 0 : bucket.micros);
+            range = range.headMap(ceil, false);
+        }
+        SortedMap<Instant, Map<String, Map<String, Long>>> result = new TreeMap<>();
+        range.forEach((start, loggers) -> {
+            Map<String, Map<String, Long>> stats = new HashMap<>();
+            loggers.forEach((logger, counts) -> {
+                Map<String, Long> levels = new HashMap<>();
+                long total = 0;
+                for (int ordinal = 0; ordinal < counts.length(); ordinal++) {
+                    long count = counts.get(ordinal);
+                    levels.put(LogLevels.name(ordinal), count);
+                    total += count;
+                }
+                if (total > 0) stats.put(logger, levels);
+            });
+            if (!stats.isEmpty()) result.put(Instant.EPOCH.plus(start, ChronoUnit.MICROS), stats);
+        });
+        return result;
+    }
+
+
+    /**
+     * Delete from the backing store, then remove the matching counts of the buckets before the cut
+     * and recount the bucket holding it
+     */
+    @Override
+    public long delete(DeleteFilter filter) {
+        writeLock.lock();
+        try {
+            long deleted = backing.delete(filter);
+            if (filter.isEmpty()) {
+                tables.values().forEach(Map::clear);
+                return deleted;
+            }
+            long before = (filter.getBefore() == null) ? Long.MAX_VALUE : EventKey.micros(filter.getBefore());
+            int maxLevel = (filter.getMaxLevel() == null) ? LogLevels.OFF : LogLevels.ordinal(filter.getMaxLevel());
+            for (Bucket bucket : Bucket.values()) {
+                if (before != Long.MAX_VALUE && bucket.floor(before) != before) {
+                    recount(bucket, bucket.floor(before)); // it keeps events on both sides of the cut
+                }
+                // buckets ending at or before the cut
+                long lastStart = (before == Long.MAX_VALUE) ? Long.MAX_VALUE : bucket.floor(before) - bucket.micros;
+                tables.get(bucket).headMap(lastStart, true).values().forEach(loggers -> loggers.forEach((logger, counts) -> {
+                    if (filter.getLoggerPrefix() != null && !logger.startsWith(filter.getLoggerPrefix())) return;
+                    for (int ordinal = 0; ordinal <= maxLevel; ordinal++) {
+                        counts.set(ordinal, 0);
+                    }
+                }));
+            }
+            return deleted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Read the event, delete it from the backing store, then remove it from its buckets
+     */
+    @Override
+    public void deleteById(String id) {
+        writeLock.lock();
+        try {
+            LogEvent logEvent = backing.getById(id);
+            backing.deleteById(id);
+            if (logEvent != null) add(logEvent, -1);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Stop compacting and close the backing store
+     */
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        backing.close();
+    }
+
+
+    /**
+     * Drop the minute and hour buckets past their retention, and the counts left at zero by deletes
+     * @param now current time
+     * @return number of buckets dropped
+     */
+    public long compact(Instant now) {
+        long nowMicros = EventKey.micros(now);
+        long dropped = 0;
+        writeLock.lock();
+        try {
+            dropped += expire(Bucket.MINUTE, nowMicros - EventKey.micros(Instant.EPOCH.plus(minuteRetention)));
+            dropped += expire(Bucket.HOUR, nowMicros - EventKey.micros(Instant.EPOCH.plus(hourRetention)));
+            for (ConcurrentSkipListMap<Long, Map<String, AtomicLongArray>> table : tables.values()) {
+                table.values().forEach(loggers -> loggers.values().removeIf(RollupLogStore::isEmpty));
+                table.values().removeIf(Map::isEmpty);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        expiredCount.addAndGet(dropped);
+        return dropped;
+    }
+
+
+    @Override
+    public long getMinuteBucketCount() {
+        return tables.get(Bucket.MINUTE).size();
+    }
+
+
+    @Override
+    public long getHourBucketCount() {
+        return tables.get(Bucket.HOUR).size();
+    }
+
+
+    @Override
+    public long getDayBucketCount() {
+        return tables.get(Bucket.DAY).size();
+    }
+
+
+    @Override
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+
+    @Override
+    public long getRecountCount() {
+        return recountCount.get();
+    }
+
+
+    /**
+     * Register this RollupLogStore as an MBean with the platform MBeanServer
+     * @param name instance name of the MBean
+     */
+    public void registerMBean(String name) {
+        MBeanRegistry.register(this, "RollupLogStore", name);
+        this.name = name;
+    }
+
+
+    /**
+     * Unregisters this RollupLogStore as an MBean with the platform MBeanServer
+     */
+    public void unregisterMBean() {
+        if (this.name == null) {
+            return;
+        }
+        MBeanRegistry.unregister("RollupLogStore", name);
+        this.name = null;
+    }
+
+
+    /**
+     * Fill a table from a grouped count of the backing store
+     * @param from start of the counted events, rounded down to the bucket width, null for every event
+     */
+    private void load(Bucket bucket, Instant from) {
+        Instant start = (from == null) ? null : Instant.EPOCH.plus(bucket.floor(EventKey.micros(from)), ChronoUnit.MICROS);
+        backing.countByTimeBucket(bucket.width(), start, null)
+                .forEach((time, stats) -> tables.get(bucket).put(EventKey.micros(time), toCounts(stats)));
+    }
+
+
+    /**
+     * Replace the counts of one bucket by a count of the backing store over that bucket only,
+     * unless the bucket is not in the table (no event, or compacted out). The caller holds the write lock
+     */
+    private void recount(Bucket bucket, long start) {
+        ConcurrentSkipListMap<Long, Map<String, AtomicLongArray>> table = tables.get(bucket);
+        if (!table.containsKey(start)) return;
+        Instant from = Instant.EPOCH.plus(start, ChronoUnit.MICROS);
+        Map<String, Map<String, Long>> stats = backing.countByTimeBucket(bucket.width(), from, from.plus(bucket.width())).get(from);
+        if (stats == null) {
+            table.remove(start);
+        } else {
+            table.put(start, toCounts(stats));
+        }
+        recountCount.incrementAndGet();
+    }
+
+
+    private static Map<String, AtomicLongArray> toCounts(Map<String, Map<String, Long>> stats) {
+        Map<String, AtomicLongArray> loggers = new ConcurrentHashMap<>();
+        stats.forEach((logger, levels) -> {
+            AtomicLongArray counts = new AtomicLongArray(LogLevels.LEVELS.size());
+            levels.forEach((level, count) -> counts.set(LogLevels.ordinal(level), count));
+            loggers.put(logger, counts);
+        });
+        return loggers;
+    }
+
+
+    /**
+     * Add delta to the counts of the event in every table, the caller holds the write lock
+     */
+    private void add(LogEvent logEvent, int delta) {
+        long micros = EventKey.of(logEvent).getMicros();
+        int ordinal = LogLevels.ordinal(logEvent.getLevel());
+        for (Bucket bucket : Bucket.values()) {
+            tables.get(bucket)
+                    .computeIfAbsent(bucket.floor(micros), start -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(logEvent.getLogger(), logger -> new AtomicLongArray(LogLevels.LEVELS.size()))
+                    .addAndGet(ordinal, delta);
+        }
+    }
+
+
+    private long expire(Bucket bucket, long before) {
+        SortedMap<Long, Map<String, AtomicLongArray>> expired = tables.get(bucket).headMap(bucket.floor(before));
+        int size = expired.size();
+        expired.clear();
+        return size;
+    }
+
+
+    private static boolean isEmpty(AtomicLongArray counts) {
+        for (int i = 0; i < counts.length(); i++) {
+            if (counts.get(i) != 0) return false;
+        }
+        return true;
+    }
+
+
+    // An exception would cancel all later runs of scheduleWithFixedDelay
+    private void compactSafely() {
+        try {
+            compact(Instant.now());
+        } catch (Exception e) {
+            System.err.println("Rollup compaction failed: " + e.getMessage());
+        }
+    }
+}
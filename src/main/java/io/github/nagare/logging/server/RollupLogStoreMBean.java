@@ -0,0 +1,39 @@
+package io.github.nagare.logging.server;
+
+/**
+ * MBean interface for RollupLogStore.
+ * Reports the size of the rollup tables answering the stats time ranges.
+ * The MBean class MUST implement an interface with the following name: “class name” plus MBean.
+ */
+public interface RollupLogStoreMBean {
+
+    /**
+     * Get the number of minute buckets held
+     * @return the number of buckets
+     */
+    public long getMinuteBucketCount();
+
+    /**
+     * Get the number of hour buckets held
+     * @return the number of buckets
+     */
+    public long getHourBucketCount();
+
+    /**
+     * Get the number of day buckets held
+     * @return the number of buckets
+     */
+    public long getDayBucketCount();
+
+    /**
+     * Get the number of minute and hour buckets dropped past their retention
+     * @return the number of buckets
+     */
+    public long getExpiredCount();
+
+    /**
+     * Get the number of buckets recounted from the backing store, after a delete cutting through them
+     * @return the number of recounted buckets
+     */
+    public long getRecountCount();
+}
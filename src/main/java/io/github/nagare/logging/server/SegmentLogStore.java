@@ -0,0 +1,906 @@
+package io.github.nagare.logging.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+
+/**
+ * File-backed LogStore engine (log.store=segment), no external database needed.
+ * <br>
+ * Log events are appended to segment files (segment-NNNNNNNNNN.log) through a FileChannel and read
+ * through read-only memory maps. A segment is sealed and a new one started when it reaches the size limit
+ * or the age limit. Every record is framed as [body length][CRC32 of body][body],
+ * so after a crash the torn tail of a segment is detected and truncated on the next start.
+ * <br>
+ * Each segment keeps a sparse index in memory: one entry per block of BLOCK_RECORDS records,
+ * with the offset and the event time range of the block. Queries skip segments and blocks outside
+ * the requested window, and stop as soon as no remaining block can contain a later event.
+ * Bitmap indexes (see RoaringBitmap) map each level and each logger to the ordinals of its records,
+ * so a query on level or logger intersects bitmaps and only reads the selected records.
+ * When a segment is sealed, its sparse and bitmap indexes are written next to it (segment-NNNNNNNNNN.idx),
+ * a restart loads them instead of decoding every record.
+ * <br>
+ * An id index (id → location) is the source of truth for liveness:
+ * a delete appends a tombstone and removes the id, the dead record stays in its segment
+ * until every record of the oldest segments is dead, then these segments are removed.
+ * <br>
+ * Writes and deletes take a write lock, queries share a read lock.
+ */
+public class SegmentLogStore implements LogStore {
+
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    public static final Duration DEFAULT_SEGMENT_AGE = Duration.ofHours(1);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int BLOCK_RECORDS = 64; // records per sparse index entry
+    private static final int HEADER = 8; // body length + CRC32
+    private static final byte EVENT = 1;
+    private static final byte TOMBSTONE = 2;
+    // Offsets in the body of an EVENT record: type, event time (micros), level ordinal, id, logger, ...
+    private static final int MICROS_AT = 1;
+    private static final int LEVEL_AT = 9;
+    private static final int ID_AT = 10;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final long segmentAgeMillis;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>(); // oldest first
+    private final Map<String, Long> locations = new HashMap<>(); // id → location of the live record
+    private final Map<String, long[]> counts = new HashMap<>(); // logger → count per level ordinal
+    private Segment active;
+
+    /**
+     * Open the store with default segment limits
+     * @param directory directory holding the segment files, created if missing
+     */
+    public SegmentLogStore(Path directory) {
+        this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_SEGMENT_AGE);
+    }
+
+
+    /**
+     * Open the store, recovering the segments already in the directory
+     * @param directory directory holding the segment files, created if missing
+     * @param segmentBytes size after which the active segment is sealed
+     * @param segmentAge age after which the active segment is sealed
+     */
+    public SegmentLogStore(Path directory, long segmentBytes, Duration segmentAge) {
+        if (segmentBytes < 1 || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segmentBytes must be between 1 and " + Integer.MAX_VALUE);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.segmentAgeMillis = segmentAge.toMillis();
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open segment store in " + directory, e);
+        }
+    }
+
+
+    @Override
+    public void save(LogEvent logEvent) {
+        saveAll(List.of(logEvent));
+    }
+
+
+    @Override
+    public void saveAll(List<LogEvent> logEvents) {
+        List<ByteBuffer> records = new ArrayList<>(logEvents.size());
+        for (LogEvent logEvent : logEvents) {
+            records.add(encode(logEvent)); // outside the lock
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < records.size(); i++) {
+                LogEvent logEvent = logEvents.get(i);
+                Long previous = locations.get(logEvent.getId());
+                if (previous != null) unlink(previous); // same id saved again, the new record replaces it
+                long location = append(records.get(i));
+                locations.put(logEvent.getId(), location);
+                segmentOf(location).live++;
+                count(logEvent.getLogger(), LogLevels.ordinal(logEvent.getLevel()), 1);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to " + active.path, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Get the latest logs matching the query, ordered by timestamp descending.
+     * Segments are visited latest first and the latest matches are kept in a bounded heap,
+     * so once the heap is full only blocks that may hold a later event are read.
+     * A level or logger criterion is answered from the bitmap indexes, only the selected records are read.
+     * Terms are checked by tokenizing the message of candidate records.
+     */
+    @Override
+    public List<LogEvent> filterLogs(LogQuery query) {
+        int threshold = query.getThreshold();
+        if (threshold == LogLevels.OFF) return List.of();
+        int max = query.getLimit();
+        long fromMicros = (query.getFrom() == null) ? Long.MIN_VALUE : micros(query.getFrom());
+        long toMicros = (query.getTo() == null) ? Long.MAX_VALUE : micros(query.getTo());
+        Predicate<String> logger = (query.getLogger() == null) ? null : query.getLogger()::equals;
+
+        lock.readLock().lock();
+        try {
+            // {event time, location}, earliest on top
+            PriorityQueue<long[]> latest = new PriorityQueue<>(Comparator.comparingLong(match -> match[0]));
+            List<Segment> byLatest = new ArrayList<>(segments.values());
+            byLatest.sort(Comparator.comparingLong((Segment segment) -> segment.maxTime).reversed());
+            for (Segment segment : byLatest) {
+                if (latest.size() == max && segment.maxTime < latest.peek()[0]) break;
+                if (segment.minTime >= toMicros || segment.maxTime < fromMicros) continue;
+                ByteBuffer view = segment.view();
+                RoaringBitmap selected = segment.select(threshold, LogLevels.OFF, logger);
+                if (selected != null) {
+                    for (PrimitiveIterator.OfInt ordinals = selected.iterator(); ordinals.hasNext(); ) {
+                        int ordinal = ordinals.nextInt();
+                        int block = ordinal / BLOCK_RECORDS;
+                        if (segment.blockMin[block] >= toMicros || segment.blockMax[block] < fromMicros) continue;
+                        collect(segment, view, segment.offsets[ordinal], query, fromMicros, toMicros, latest);
+                    }
+                    continue;
+                }
+                for (int block = 0; block < segment.blocks; block++) {
+                    if (segment.blockMin[block] >= toMicros || segment.blockMax[block] < fromMicros) continue;
+                    if (latest.size() == max && segment.blockMax[block] < latest.peek()[0]) continue;
+                    int end = segment.blockEnd(block);
+                    for (int offset = segment.blockOffset[block]; offset < end; offset = next(view, offset)) {
+                        if (view.get(offset + HEADER) != EVENT) continue;
+                        collect(segment, view, offset, query, fromMicros, toMicros, latest);
+                    }
+                }
+            }
+            List<long[]> matches = new ArrayList<>(latest);
+            matches.sort(Comparator.comparingLong((long[] match) -> match[0]).reversed());
+            List<LogEvent> result = new ArrayList<>(matches.size());
+            for (long[] match : matches) {
+                result.add(read(match[1]));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Keep an event record in the bounded heap of latest matches if it is live, in the window, holds the terms
+     * and is later than the earliest kept, the level and logger criteria are already checked
+     */
+    private void collect(Segment segment, ByteBuffer view, int offset, LogQuery query, long fromMicros, long toMicros,
+                         PriorityQueue<long[]> latest) {
+        int max = query.getLimit();
+        int body = offset + HEADER;
+        long eventTime = view.getLong(body + MICROS_AT);
+        if (eventTime < fromMicros || eventTime >= toMicros) return;
+        if (latest.size() == max && eventTime <= latest.peek()[0]) return;
+        long location = location(segment.id, offset);
+        if (!isLive(view, body, location)) return;
+        if (!query.getTerms().isEmpty() && !query.matchesText(read(location).getMessage())) return;
+        latest.add(new long[] {eventTime, location});
+        if (latest.size() > max) latest.poll();
+    }
+
+
+    @Override
+    public boolean is_exist(String id) {
+        lock.readLock().lock();
+        try {
+            return locations.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    @Override
+    public LogEvent getById(String id) {
+        lock.readLock().lock();
+        try {
+            Long location = locations.get(id);
+            return (location == null) ? null : read(location);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    @Override
+    public List<LogEvent> getAllLogs() {
+        lock.readLock().lock();
+        try {
+            List<LogEvent> result = new ArrayList<>(locations.size());
+            for (Segment segment : segments.values()) {
+                ByteBuffer view = segment.view();
+                for (int offset = 0; offset < segment.size; offset = next(view, offset)) {
+                    int body = offset + HEADER;
+                    if (view.get(body) != EVENT) continue;
+                    long location = location(segment.id, offset);
+                    if (isLive(view, body, location)) result.add(read(location));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Count log events per logger and level, maintained on every write and delete
+     * @return nested map: logger → (level → count), levels without events are absent
+     */
+    @Override
+    public Map<String, Map<String, Long>> countByLoggerAndLevel() {
+        lock.readLock().lock();
+        try {
+            Map<String, Map<String, Long>> stats = new HashMap<>();
+            counts.forEach((logger, perLevel) -> {
+                Map<String, Long> levels = new HashMap<>();
+                for (int ordinal = 0; ordinal < perLevel.length; ordinal++) {
+                    if (perLevel[ordinal] > 0) levels.put(LogLevels.name(ordinal), perLevel[ordinal]);
+                }
+                stats.put(logger, levels);
+            });
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Delete the log events selected by the filter.
+     * An empty filter removes every segment file, otherwise matching events get a tombstone.
+     * Blocks starting after the before bound are not read, and a level or logger criterion
+     * only reads the records selected by the bitmap indexes.
+     */
+    @Override
+    public long delete(DeleteFilter filter) {
+        lock.writeLock().lock();
+        try {
+            if (filter.isEmpty()) return clear();
+            long beforeMicros = (filter.getBefore() == null) ? Long.MAX_VALUE : micros(filter.getBefore());
+            int maxLevel = (filter.getMaxLevel() == null) ? LogLevels.OFF : LogLevels.ordinal(filter.getMaxLevel());
+            String prefix = filter.getLoggerPrefix();
+
+            Predicate<String> logger = (prefix == null) ? null : name -> name.startsWith(prefix);
+
+            List<String> ids = new ArrayList<>();
+            for (Segment segment : segments.values()) {
+                if (segment.minTime >= beforeMicros) continue;
+                ByteBuffer view = segment.view();
+                RoaringBitmap selected = segment.select(LogLevels.ALL, maxLevel, logger);
+                if (selected != null) {
+                    for (PrimitiveIterator.OfInt ordinals = selected.iterator(); ordinals.hasNext(); ) {
+                        String id = selectForDelete(segment, view, segment.offsets[ordinals.nextInt()], beforeMicros);
+                        if (id != null) ids.add(id);
+                    }
+                    continue;
+                }
+                for (int block = 0; block < segment.blocks; block++) {
+                    if (segment.blockMin[block] >= beforeMicros) continue;
+                    int end = segment.blockEnd(block);
+                    for (int offset = segment.blockOffset[block]; offset < end; offset = next(view, offset)) {
+                        if (view.get(offset + HEADER) != EVENT) continue;
+                        String id = selectForDelete(segment, view, offset, beforeMicros);
+                        if (id != null) ids.add(id);
+                    }
+                }
+            }
+            for (String id : ids) {
+                remove(id);
+            }
+            dropDeadSegments();
+            return ids.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete from " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Get the id of an event record to delete if it is live and older than the before bound,
+     * the level and logger criteria are already checked
+     * @return id, null if the record is not deleted
+     */
+    private String selectForDelete(Segment segment, ByteBuffer view, int offset, long beforeMicros) {
+        int body = offset + HEADER;
+        if (view.getLong(body + MICROS_AT) >= beforeMicros) return null;
+        String id = readString(view.duplicate().position(body + ID_AT));
+        return Long.valueOf(location(segment.id, offset)).equals(locations.get(id)) ? id : null;
+    }
+
+
+    @Override
+    public void deleteById(String id) {
+        lock.writeLock().lock();
+        try {
+            if (locations.containsKey(id)) {
+                remove(id);
+                dropDeadSegments();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete from " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Flush the active segment, write its indexes and close every file
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (active != null && active.channel.isOpen()) {
+                active.channel.force(false);
+                active.writeIndex();
+            }
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close segment store in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Get the number of segment files, sealed and active
+     * @return the number of segments
+     */
+    int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Scan the segment files in order to rebuild the in-memory indexes,
+     * truncating each segment after its last complete record
+     */
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.naturalOrder()); // ids are zero padded
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            Segment segment = new Segment(id, file, Files.getLastModifiedTime(file).toMillis());
+            segments.put(id, segment);
+            if (segment.readIndex(segment.channel.size())) {
+                load(segment);
+            } else {
+                replay(segment);
+            }
+        }
+        // Second pass, now that the id index only holds live records
+        for (Segment segment : segments.values()) {
+            ByteBuffer view = segment.view();
+            for (int offset = 0; offset < segment.size; offset = next(view, offset)) {
+                int body = offset + HEADER;
+                if (view.get(body) != EVENT || !isLive(view, body, location(segment.id, offset))) continue;
+                ByteBuffer fields = view.duplicate().position(body + ID_AT);
+                readString(fields); // id
+                count(readString(fields), view.get(body + LEVEL_AT), 1);
+                segment.live++;
+            }
+        }
+        active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (active == null || active.size >= segmentBytes) roll();
+    }
+
+
+    /**
+     * Replay the events and tombstones of a segment whose indexes were loaded,
+     * its records were validated before the index was written
+     */
+    private void load(Segment segment) {
+        ByteBuffer view = segment.view();
+        for (int ordinal = 0; ordinal < segment.records; ordinal++) {
+            int offset = segment.offsets[ordinal];
+            int body = offset + HEADER;
+            boolean event = view.get(body) == EVENT;
+            String id = readString(view.duplicate().position(body + (event ? ID_AT : 1)));
+            if (event) {
+                locations.put(id, location(segment.id, offset));
+            } else {
+                locations.remove(id);
+            }
+        }
+    }
+
+
+    /**
+     * Validate the records of a segment, build its sparse and bitmap indexes and replay its events and tombstones
+     */
+    private void replay(Segment segment) throws IOException {
+        long fileSize = segment.channel.size();
+        ByteBuffer view = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        int offset = 0;
+        CRC32 crc = new CRC32();
+        while (offset + HEADER <= fileSize) {
+            int length = view.getInt(offset);
+            if (length < 1 || offset + HEADER + (long) length > fileSize) break; // torn write
+            crc.reset();
+            crc.update(view.duplicate().position(offset + HEADER).limit(offset + HEADER + length));
+            if ((int) crc.getValue() != view.getInt(offset + 4)) break; // partially flushed
+            int body = offset + HEADER;
+            long location = location(segment.id, offset);
+            String id = readString(view.duplicate().position(body + ((view.get(body) == EVENT) ? ID_AT : 1)));
+            segment.index(offset, view, body);
+            if (view.get(body) == EVENT) {
+                locations.put(id, location);
+            } else {
+                locations.remove(id);
+            }
+            offset += HEADER + length;
+        }
+        if (offset < fileSize) {
+            System.err.println("Truncating " + segment.path + " from " + fileSize + " to " + offset
+                    + " bytes, the tail was not completely written");
+            segment.channel.truncate(offset);
+        }
+        segment.size = offset;
+    }
+
+
+    /**
+     * Append one framed record to the active segment, rolling it first if needed
+     * @return location of the record
+     */
+    private long append(ByteBuffer record) throws IOException {
+        boolean full = active.size + record.remaining() > segmentBytes;
+        boolean old = System.currentTimeMillis() - active.createdMillis > segmentAgeMillis;
+        if (active.size > 0 && (full || old)) roll();
+        int offset = (int) active.size;
+        long position = offset;
+        while (record.hasRemaining()) {
+            position += active.channel.write(record, position);
+        }
+        active.size = position;
+        active.index(offset, record, HEADER);
+        return location(active.id, offset);
+    }
+
+
+    /**
+     * Seal the active segment, write its indexes, and start a new one
+     */
+    private void roll() throws IOException {
+        int id = 0;
+        if (active != null) {
+            active.channel.force(false);
+            active.writeIndex();
+            id = active.id + 1;
+        } else if (!segments.isEmpty()) {
+            id = segments.lastKey() + 1;
+        }
+        Path path = directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        active = new Segment(id, path, System.currentTimeMillis());
+        segments.put(id, active);
+    }
+
+
+    /**
+     * Delete a live event: drop it from the indexes and append a tombstone
+     */
+    private void remove(String id) throws IOException {
+        unlink(locations.remove(id));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TOMBSTONE);
+        writeString(out, id);
+        append(frame(bytes.toByteArray()));
+    }
+
+
+    /**
+     * Account for a record that is no longer live
+     */
+    private void unlink(long location) {
+        Segment segment = segmentOf(location);
+        ByteBuffer fields = segment.view().duplicate().position(offsetOf(location) + HEADER + ID_AT);
+        readString(fields); // id
+        count(readString(fields), segment.view().get(offsetOf(location) + HEADER + LEVEL_AT), -1);
+        segment.live--;
+    }
+
+
+    /**
+     * Remove the oldest sealed segments as long as they hold no live event.
+     * Only a prefix is removed: a tombstone always follows the record it deletes,
+     * so the tombstones of a removed prefix never refer to records kept on disk.
+     */
+    private void dropDeadSegments() throws IOException {
+        while (!segments.isEmpty()) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active || oldest.live > 0) return;
+            segments.pollFirstEntry();
+            oldest.channel.close();
+            Files.deleteIfExists(oldest.path);
+            Files.deleteIfExists(oldest.indexPath);
+        }
+    }
+
+
+    /**
+     * Remove every segment and start from an empty one
+     * @return number of deleted log events
+     */
+    private long clear() {
+        long deleted = locations.size();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+                Files.deleteIfExists(segment.indexPath);
+            }
+            int next = (active == null) ? 0 : active.id + 1; // never reuse the name of a file still mapped
+            segments.clear();
+            locations.clear();
+            counts.clear();
+            active = null;
+            Path path = directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, next, SEGMENT_SUFFIX));
+            active = new Segment(next, path, System.currentTimeMillis());
+            segments.put(next, active);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot clear segment store in " + directory, e);
+        }
+        return deleted;
+    }
+
+
+    private void count(String logger, int ordinal, long delta) {
+        long[] perLevel = counts.computeIfAbsent(logger, k -> new long[LogLevels.LEVELS.size()]);
+        perLevel[ordinal] += delta;
+        if (delta < 0 && Arrays.stream(perLevel).allMatch(count -> count == 0)) counts.remove(logger);
+    }
+
+
+    private boolean isLive(ByteBuffer view, int body, long location) {
+        String id = readString(view.duplicate().position(body + ID_AT));
+        Long live = locations.get(id);
+        return live != null && live == location;
+    }
+
+
+    private LogEvent read(long location) {
+        ByteBuffer fields = segmentOf(location).view().duplicate().position(offsetOf(location) + HEADER);
+        fields.get(); // type
+        long eventMicros = fields.getLong();
+        int level = fields.get();
+        LogEvent logEvent = new LogEvent();
+        logEvent.setId(readString(fields));
+        logEvent.setLogger(readString(fields));
+        logEvent.setThread(readString(fields));
+        logEvent.setTimestamp(readString(fields));
+        logEvent.setMessage(readString(fields));
+        logEvent.setErrorDetails(readString(fields));
+        logEvent.setLevel(LogLevels.name(level));
+        logEvent.setEventTime(Instant.EPOCH.plus(eventMicros, ChronoUnit.MICROS));
+        return logEvent;
+    }
+
+
+    private static ByteBuffer encode(LogEvent logEvent) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(EVENT);
+            out.writeLong(micros(Instant.parse(logEvent.getTimestamp())));
+            out.writeByte(LogLevels.ordinal(logEvent.getLevel()));
+            writeString(out, logEvent.getId());
+            writeString(out, logEvent.getLogger());
+            writeString(out, logEvent.getThread());
+            writeString(out, logEvent.getTimestamp());
+            writeString(out, logEvent.getMessage());
+            writeString(out, logEvent.getErrorDetails());
+            return frame(bytes.toByteArray());
+        } catch (IOException e) { // ByteArrayOutputStream does not throw
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    private static ByteBuffer frame(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer record = ByteBuffer.allocate(HEADER + body.length);
+        record.putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+        return record;
+    }
+
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8); // writeUTF is limited to 64 KB
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    private static int next(ByteBuffer view, int offset) {
+        return offset + HEADER + view.getInt(offset);
+    }
+
+
+    private static long micros(Instant instant) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+
+
+    private static long location(int segmentId, int offset) {
+        return ((long) segmentId << 32) | offset;
+    }
+
+
+    private Segment segmentOf(long location) {
+        return segments.get((int) (location >>> 32));
+    }
+
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+
+    /**
+     * One segment file, its memory map, its sparse index and its bitmap indexes
+     */
+    private static final class Segment {
+
+        final int id;
+        final Path path;
+        final Path indexPath;
+        final FileChannel channel;
+        final long createdMillis;
+        long size;
+        int live; // records still referenced by the id index
+        long minTime = Long.MAX_VALUE; // event time range in micros
+        long maxTime = Long.MIN_VALUE;
+        int records;
+        int blocks;
+        int[] blockOffset = new int[16];
+        long[] blockMin = new long[16];
+        long[] blockMax = new long[16];
+        int[] offsets = new int[256]; // record ordinal → offset
+        final RoaringBitmap[] levels = new RoaringBitmap[LogLevels.LEVELS.size()]; // event ordinals per level
+        final Map<String, RoaringBitmap> loggers = new HashMap<>(); // event ordinals per logger
+        private MappedByteBuffer map;
+
+        Segment(int id, Path path, long createdMillis) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.indexPath = path.resolveSibling(path.getFileName().toString().replace(SEGMENT_SUFFIX, INDEX_SUFFIX));
+            this.createdMillis = createdMillis;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            for (int level = 0; level < levels.length; level++) {
+                levels[level] = new RoaringBitmap();
+            }
+        }
+
+        /**
+         * Add a record to the sparse index, and an event to the bitmap indexes
+         * @param offset record offset
+         * @param buffer buffer holding the record
+         * @param body position of the record body in buffer
+         */
+        void index(int offset, ByteBuffer buffer, int body) {
+            if (records % BLOCK_RECORDS == 0) {
+                if (blocks == blockOffset.length) {
+                    blockOffset = Arrays.copyOf(blockOffset, blocks * 2);
+                    blockMin = Arrays.copyOf(blockMin, blocks * 2);
+                    blockMax = Arrays.copyOf(blockMax, blocks * 2);
+                }
+                blockOffset[blocks] = offset;
+                blockMin[blocks] = Long.MAX_VALUE;
+                blockMax[blocks] = Long.MIN_VALUE;
+                blocks++;
+            }
+            if (records == offsets.length) offsets = Arrays.copyOf(offsets, records * 2);
+            int ordinal = records++;
+            offsets[ordinal] = offset;
+            if (buffer.get(body) != EVENT) return;
+            long eventTime = buffer.getLong(body + MICROS_AT);
+            int block = blocks - 1;
+            blockMin[block] = Math.min(blockMin[block], eventTime);
+            blockMax[block] = Math.max(blockMax[block], eventTime);
+            minTime = Math.min(minTime, eventTime);
+            maxTime = Math.max(maxTime, eventTime);
+            levels[buffer.get(body + LEVEL_AT)].add(ordinal);
+            ByteBuffer fields = buffer.duplicate().position(body + ID_AT);
+            readString(fields); // id
+            loggers.computeIfAbsent(readString(fields), k -> new RoaringBitmap()).add(ordinal);
+        }
+
+        /**
+         * Select the events of this segment from the bitmap indexes
+         * @param minLevel lowest level ordinal selected
+         * @param maxLevel highest level ordinal selected
+         * @param logger logger names selected, null for any logger
+         * @return ordinals of the events at these levels from these loggers, null if every event is selected
+         */
+        RoaringBitmap select(int minLevel, int maxLevel, Predicate<String> logger) {
+            RoaringBitmap selected = null;
+            if (minLevel > LogLevels.ALL || maxLevel < LogLevels.OFF) {
+                selected = new RoaringBitmap();
+                for (int level = minLevel; level <= maxLevel; level++) {
+                    selected = selected.or(levels[level]);
+                }
+            }
+            if (logger != null) {
+                RoaringBitmap byLogger = new RoaringBitmap();
+                for (Map.Entry<String, RoaringBitmap> entry : loggers.entrySet()) {
+                    if (logger.test(entry.getKey())) byLogger = byLogger.or(entry.getValue());
+                }
+                selected = (selected == null) ? byLogger : selected.and(byLogger);
+            }
+            return selected;
+        }
+
+        int blockEnd(int block) {
+            return (block + 1 < blocks) ? blockOffset[block + 1] : (int) size;
+        }
+
+        /**
+         * Write the sparse and bitmap indexes next to the segment, so a restart reads them instead
+         * of every record. Written to a temporary file first, then moved, and checked by a CRC32 trailer.
+         */
+        void writeIndex() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(size);
+            out.writeInt(records);
+            out.writeInt(blocks);
+            out.writeLong(minTime);
+            out.writeLong(maxTime);
+            for (int block = 0; block < blocks; block++) {
+                out.writeInt(blockOffset[block]);
+                out.writeLong(blockMin[block]);
+                out.writeLong(blockMax[block]);
+            }
+            for (int ordinal = 0; ordinal < records; ordinal++) {
+                out.writeInt(offsets[ordinal]);
+            }
+            for (RoaringBitmap level : levels) {
+                level.writeTo(out);
+            }
+            out.writeInt(loggers.size());
+            for (Map.Entry<String, RoaringBitmap> entry : loggers.entrySet()) {
+                writeString(out, entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+
+            Path temporary = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+            Files.write(temporary, bytes.toByteArray());
+            Files.move(temporary, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Load the indexes written by writeIndex, if they describe the segment file as it is
+         * @param fileSize current size of the segment file
+         * @return true if loaded, false if missing, stale or corrupt
+         */
+        boolean readIndex(long fileSize) throws IOException {
+            if (!Files.exists(indexPath)) return false;
+            byte[] bytes = Files.readAllBytes(indexPath);
+            if (bytes.length < 4) return false;
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 4);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if ((int) crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt()) return false;
+            if (in.readLong() != fileSize) return false; // appended to after the index was written
+            size = fileSize;
+            records = in.readInt();
+            blocks = in.readInt();
+            minTime = in.readLong();
+            maxTime = in.readLong();
+            blockOffset = new int[Math.max(blocks, 16)];
+            blockMin = new long[blockOffset.length];
+            blockMax = new long[blockOffset.length];
+            for (int block = 0; block < blocks; block++) {
+                blockOffset[block] = in.readInt();
+                blockMin[block] = in.readLong();
+                blockMax[block] = in.readLong();
+            }
+            offsets = new int[Math.max(records, 256)];
+            for (int ordinal = 0; ordinal < records; ordinal++) {
+                offsets[ordinal] = in.readInt();
+            }
+            for (int level = 0; level < levels.length; level++) {
+                levels[level] = RoaringBitmap.readFrom(in);
+            }
+            int loggerCount = in.readInt();
+            for (int i = 0; i < loggerCount; i++) {
+                int length = in.readInt();
+                byte[] name = new byte[length];
+                in.readFully(name);
+                loggers.put(new String(name, StandardCharsets.UTF_8), RoaringBitmap.readFrom(in));
+            }
+            return true;
+        }
+
+        /**
+         * Read-only map of the written part of the file, remapped when the active segment has grown
+         * @return buffer shared by readers, use absolute gets or a duplicate
+         */
+        synchronized ByteBuffer view() {
+            if (map == null || map.capacity() != size) {
+                try {
+                    map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot map " + path, e);
+                }
+            }
+            return map;
+        }
+    }
+}
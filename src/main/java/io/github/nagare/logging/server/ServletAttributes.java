@@ -11,6 +11,36 @@ public final class ServletAttributes {
      */
     public static final String EMF_ATTRIBUTE = "EntityManagerFactory";
 
+    /**
+     * Key for the LogStore engine stored in ServletContext
+     */
+    public static final String LOG_STORE_ATTRIBUTE = "LogStore";
+
+    /**
+     * Key for the LogTail fanning out new log events, stored in ServletContext
+     */
+    public static final String LOG_TAIL_ATTRIBUTE = "LogTail";
+
+    /**
+     * Key for the StatsService shared by the stats servlets, stored in ServletContext
+     */
+    public static final String STATS_SERVICE_ATTRIBUTE = "StatsService";
+
+    /**
+     * Key for the RollupLogStore answering stats time ranges, stored in ServletContext when enabled
+     */
+    public static final String ROLLUPS_ATTRIBUTE = "Rollups";
+
+    /**
+     * Key for the HeavyHitters counting the noisiest loggers and messages, stored in ServletContext
+     */
+    public static final String HEAVY_HITTERS_ATTRIBUTE = "HeavyHitters";
+
+    /**
+     * Key for the ErrorGroups counting stack traces by fingerprint, stored in ServletContext
+     */
+    public static final String ERROR_GROUPS_ATTRIBUTE = "ErrorGroups";
+
     /**
      * Private constructor prevents instantiation
      */
@@ -0,0 +1,167 @@
+package io.github.nagare.logging.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * SpaceSaving summary of the most frequent keys of a stream, in at most capacity counters.
+ * A key that is not counted takes over a counter of the lowest count, which it keeps as its error:
+ * a count is never below the true count, and overestimates it by at most its error.
+ * Counters are grouped in buckets of equal count kept in increasing order (Stream-Summary),
+ * so every offer is O(1).
+ * Metwally, Agrawal and El Abbadi, Efficient Computation of Frequent and Top-k Elements in Data Streams (2005)
+ * Not thread-safe, HeavyHitters synchronizes access.
+ */
+final class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Counter> counters = new HashMap<>();
+    private Bucket min; // lowest count, head of the bucket list
+
+    /**
+     * @param capacity maximum number of keys counted at once
+     */
+    SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+
+    /**
+     * Count one occurrence of a key
+     * @param key key seen in the stream
+     */
+    void offer(String key) {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            increment(counter);
+        } else if (counters.size() < capacity) {
+            counter = new Counter(key);
+            counters.put(key, counter);
+            Bucket one = min;
+            if (one == null || one.count != 1) {
+                one = new Bucket(1);
+                one.next = min;
+                if (min != null) min.prev = one;
+                min = one;
+            }
+            attach(counter, one);
+        } else { // replace a key of the lowest count
+            counter = min.first;
+            counters.remove(counter.key);
+            counter.key = key;
+            counter.error = min.count;
+            counters.put(key, counter);
+            increment(counter);
+        }
+    }
+
+
+    /**
+     * Add the counts of this summary to a merged view
+     * @param merged key → {count, error}, updated in place
+     */
+    void addTo(Map<String, long[]> merged) {
+        for (Counter counter : counters.values()) {
+            long[] totals = merged.computeIfAbsent(counter.key, k -> new long[2]);
+            totals[0] += counter.bucket.count;
+            totals[1] += counter.error;
+        }
+    }
+
+
+    /**
+     * Add the lowest count of this summary, if full, to the keys of a merged view it does not count:
+     * such a key may have been evicted from it with up to that count, so it is added to the count and the error.
+     * Called after addTo of every merged summary (Agarwal et al., Mergeable Summaries, 2012)
+     * @param merged key → {count, error}, updated in place
+     */
+    void addMissingTo(Map<String, long[]> merged) {
+        if (counters.size() < capacity) return; // nothing was evicted
+        long lowest = min.count;
+        for (Map.Entry<String, long[]> entry : merged.entrySet()) {
+            if (counters.containsKey(entry.getKey())) continue;
+            entry.getValue()[0] += lowest;
+            entry.getValue()[1] += lowest;
+        }
+    }
+
+
+    void clear() {
+        counters.clear();
+        min = null;
+    }
+
+
+    /**
+     * Move a counter to the bucket of the next count
+     */
+    private void increment(Counter counter) {
+        Bucket from = counter.bucket;
+        long count = from.count + 1;
+        Bucket to = from.next;
+        if (to == null || to.count != count) {
+            to = new Bucket(count);
+            to.prev = from;
+            to.next = from.next;
+            if (from.next != null) from.next.prev = to;
+            from.next = to;
+        }
+        detach(counter);
+        attach(counter, to);
+    }
+
+
+    private void attach(Counter counter, Bucket bucket) {
+        counter.prev = null;
+        counter.next = bucket.first;
+        if (bucket.first != null) bucket.first.prev = counter;
+        bucket.first = counter;
+        counter.bucket = bucket;
+    }
+
+
+    private void detach(Counter counter) {
+        Bucket bucket = counter.bucket;
+        if (counter.prev != null) counter.prev.next = counter.next;
+        else bucket.first = counter.next;
+        if (counter.next != null) counter.next.prev = counter.prev;
+        counter.prev = null;
+        counter.next = null;
+        if (bucket.first == null) { // unlink the empty bucket
+            if (bucket.prev != null) bucket.prev.next = bucket.next;
+            else min = bucket.next;
+            if (bucket.next != null) bucket.next.prev = bucket.prev;
+        }
+    }
+
+
+    private static final class Counter {
+
+        String key;
+        long error;
+        Bucket bucket;
+        Counter prev;
+        Counter next;
+
+        Counter(String key) {
+            this.key = key;
+        }
+    }
+
+
+    private static final class Bucket {
+
+        final long count;
+        Counter first;
+        Bucket prev;
+        Bucket next;
+
+        Bucket(long count) {
+            this.count = count;
+        }
+    }
+}
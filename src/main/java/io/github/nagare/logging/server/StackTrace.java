@@ -0,0 +1,45 @@
+package io.github.nagare.logging.server;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+
+/**
+ * Content-addressed stack trace, stored once no matter how many log events carry it.
+ * Keyed by the SHA-256 hex digest of the text, referenced by log_events.error_hash
+ */
+@Entity
+@Table(name = "log_stack_traces")
+public class StackTrace {
+
+    @Id
+    @Column(name = "hash", length = 64) // SHA-256 in hex
+    private String hash;
+
+    @Column(name = "details", columnDefinition = "TEXT", nullable = false) // Can be very long
+    private String details;
+
+    @Column(name = "last_used", nullable = false) // rows unused for StackTraceStore.GRACE may be collected
+    private Instant lastUsed;
+
+    /**
+     * Default no-argument constructor for JPA
+     */
+    public StackTrace() {
+    }
+
+    public StackTrace(String hash, String details, Instant lastUsed) {
+        this.hash = hash;
+        this.details = details;
+        this.lastUsed = lastUsed;
+    }
+
+    // getters
+    public String getHash() { return hash; }
+    public String getDetails() { return details; }
+    public Instant getLastUsed() { return lastUsed; }
+}
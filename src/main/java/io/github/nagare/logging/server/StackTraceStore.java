@@ -0,0 +1,302 @@
+package io.github.nagare.logging.server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.PersistenceException;
+
+
+/**
+ * Deduplicated storage for the errorDetails of log events.
+ * During an incident the same stack trace is logged thousands of times,
+ * it is stored once in log_stack_traces keyed by its SHA-256 hash, and log events reference the hash.
+ * <br>
+ * A bounded LRU cache of hash → text keeps hot stack traces in memory,
+ * so repeated traces are neither re-inserted nor re-read.
+ * Rows are not deleted with their log events, a stack trace may be shared by other events,
+ * RetentionService collects the rows no event references any more, see deleteOrphans.
+ * <br>
+ * Every row records when it was last handed out (last_used), and only rows unused for GRACE are collected.
+ * store() refreshes last_used in the database at least every GRACE / 2, re-inserting a row collected meanwhile,
+ * so the event referencing a returned hash is saved long before its row may go, whichever server collects.
+ * Servers must keep their clocks within GRACE / 2 of each other.
+ * <br>
+ * Implements MBean interface to report hit ratio and bytes saved via JMX.
+ */
+public class StackTraceStore implements StackTraceStoreMBean {
+
+    static final Duration GRACE = Duration.ofHours(1);
+    private static final int CACHE_SIZE = 1024;
+
+    private final EntityManagerFactory emf;
+    private final Map<String, Cached> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) { // access order -> LRU
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private String name;
+
+    /**
+     * @param emf EntityManagerFactory of the database holding log_stack_traces
+     */
+    public StackTraceStore(EntityManagerFactory emf) {
+        this.emf = emf;
+    }
+
+
+    /**
+     * Store a stack trace unless it is already stored
+     * @param details stack trace text
+     * @return hash referencing the stored text
+     */
+    public String store(String details) {
+        return store(details, Instant.now());
+    }
+
+
+    /**
+     * Store a stack trace unless it is already stored, at the given time
+     * @param details stack trace text
+     * @param now current time, last_used of the row
+     * @return hash referencing the stored text
+     */
+    String store(String details, Instant now) {
+        String hash = hash(details);
+        Cached cached = cache.get(hash);
+        // A row used less than GRACE / 2 ago outlives the save of the event referencing it
+        if (cached != null && cached.used.isAfter(now.minus(GRACE.dividedBy(2)))) {
+            hit(details);
+            return hash;
+        }
+        if (touch(hash, now)) {
+            hit(details);
+        } else {
+            try {
+                insert(hash, details, now); // never stored, or collected since it was cached
+                missCount.incrementAndGet();
+            } catch (PersistenceException e) {
+                // Another thread or server inserted the same trace first
+                if (!touch(hash, now)) throw e;
+                hit(details);
+            }
+        }
+        cache.put(hash, new Cached(details, now));
+        return hash;
+    }
+
+
+    /**
+     * Load the text of the given hashes, with one query for all hashes not in the cache
+     * @param hashes hashes to resolve, may contain duplicates
+     * @return map of hash → stack trace text
+     */
+    public Map<String, String> load(Collection<String> hashes) {
+        Map<String, String> result = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (String hash : hashes) {
+            Cached cached = cache.get(hash);
+            if (cached != null) {
+                result.put(hash, cached.details);
+            } else {
+                missing.add(hash);
+            }
+        }
+        if (missing.isEmpty()) return result;
+
+        try (EntityManager em = emf.createEntityManager()) {
+            List<StackTrace> traces = em.createQuery("FROM StackTrace WHERE hash IN :hashes", StackTrace.class)
+                    .setParameter("hashes", missing)
+                    .getResultList();
+            for (StackTrace trace : traces) {
+                cache.putIfAbsent(trace.getHash(), new Cached(trace.getDetails(), Instant.EPOCH)); // read, not used
+                result.put(trace.getHash(), trace.getDetails());
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Delete the stack traces that no log event references and that were not used for GRACE
+     * @return number of stack traces deleted
+     */
+    public int deleteOrphans() {
+        return deleteOrphans(Instant.now());
+    }
+
+
+    /**
+     * Delete the stack traces that no log event references and that were not used for GRACE
+     * @param now current time
+     * @return number of stack traces deleted
+     */
+    int deleteOrphans(Instant now) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            int deleted = em.createQuery("DELETE FROM StackTrace T WHERE T.lastUsed < :cutoff"
+                            + " AND NOT EXISTS (FROM LogEvent E WHERE E.errorHash = T.hash)")
+                    .setParameter("cutoff", now.minus(GRACE))
+                    .executeUpdate();
+            tx.commit();
+            return deleted;
+        }
+        catch (Exception e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        }
+        finally {
+            em.close();
+        }
+    }
+
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+
+    @Override
+    public double getHitRatio() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return (total == 0) ? 0 : (double) hits / total;
+    }
+
+
+    @Override
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+
+    /**
+     * Compute the content address of a stack trace
+     * @param details stack trace text
+     * @return SHA-256 digest in lowercase hex, 64 characters
+     */
+    static String hash(String details) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(details.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) { // every JVM must support SHA-256
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+
+    private void hit(String details) {
+        hitCount.incrementAndGet();
+        bytesSaved.addAndGet(details.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+
+    /**
+     * Set last_used of a stored row, a collector deleting it concurrently either sees the new time or wins
+     * @return false if the row is not stored
+     */
+    private boolean touch(String hash, Instant now) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            int updated = em.createQuery("UPDATE StackTrace SET lastUsed = :now WHERE hash = :hash")
+                    .setParameter("now", now)
+                    .setParameter("hash", hash)
+                    .executeUpdate();
+            tx.commit();
+            return updated == 1;
+        }
+        catch (Exception e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        }
+        finally {
+            em.close();
+        }
+    }
+
+
+    private void insert(String hash, String details, Instant now) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            em.persist(new StackTrace(hash, details, now));
+            tx.commit();
+        }
+        catch (Exception e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        }
+        finally {
+            em.close();
+        }
+    }
+
+
+    /**
+     * Register this StackTraceStore as an MBean with the platform MBeanServer
+     * @param name instance name of the MBean
+     */
+    public void registerMBean(String name) {
+        MBeanRegistry.register(this, "StackTraceStore", name);
+        this.name = name;
+    }
+
+
+    /**
+     * Unregisters this StackTraceStore as an MBean with the platform MBeanServer
+     */
+    public void unregisterMBean() {
+        if (this.name == null) {
+            return;
+        }
+        MBeanRegistry.unregister("StackTraceStore", name);
+        this.name = null;
+    }
+
+
+    /**
+     * Cached text of a stack trace, with the time its row was last known to be stored and used
+     */
+    private static final class Cached {
+
+        final String details;
+        final Instant used;
+
+        Cached(String details, Instant used) {
+            this.details = details;
+            this.used = used;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.nagare.logging.server;
+
+/**
+ * MBean interface for StackTraceStore.
+ * Reports how much storage the deduplication of errorDetails saves.
+ * The MBean class MUST implement an interface with the following name: “class name” plus MBean.
+ */
+public interface StackTraceStoreMBean {
+
+    /**
+     * Get the number of stored stack traces that were already known
+     * @return the number of deduplicated stack traces
+     */
+    public long getHitCount();
+
+    /**
+     * Get the number of stored stack traces that had to be inserted
+     * @return the number of new stack traces
+     */
+    public long getMissCount();
+
+    /**
+     * Get the fraction of stack traces that were already known
+     * @return hit count / (hit count + miss count), 0 if nothing was stored
+     */
+    public double getHitRatio();
+
+    /**
+     * Get the number of UTF-8 bytes that were not written because the stack trace was already stored
+     * @return the number of bytes saved
+     */
+    public long getBytesSaved();
+}
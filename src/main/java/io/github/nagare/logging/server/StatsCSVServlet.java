@@ -1,28 +1,37 @@
 package io.github.nagare.logging.server;
 
-import jakarta.persistence.EntityManagerFactory;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.ServletException;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 
 
 /**
  * Servlet for returning log statistics in CSV format.
  * Accessible at GET /logstore/stats/csv.
  * Response is tab-separated (\t) with newline (\n) line breaks.
+ * The statistics and the rendered file come from the snapshot shared through StatsService,
+ * the file is streamed to the first client while it is rendered, time ranges are always streamed.
  * Column structure follows the assignment specification:
  * <a href="https://docs.google.com/drawings/d/1v_dpZ0XKiqTaygmOaTThWgR9swRDatY6sxYmGEn9GVM/edit?usp=sharing">...</a>
  * Content type: text/csv
- * Status: 200 on success
+ * Status: 200 on success, 400 on invalid from, to or bucket
  */
 public class StatsCSVServlet extends HttpServlet {
 
-    private StatsHelper helper;
+    private LogStore store;
+    private StatsService stats;
+    private RollupLogStore rollups; // null when stats.rollups is off
 
     // Explicitly defined default constructor
     public StatsCSVServlet() {
@@ -30,21 +39,20 @@ public class StatsCSVServlet extends HttpServlet {
 
 
     /**
-     * Initialize servlet - get EntityManagerFactory from ServletContext
+     * Initialize servlet - get the LogStore engine from ServletContext
      */
     @Override
     public void init() throws ServletException {
-        EntityManagerFactory emf = (EntityManagerFactory) getServletContext().getAttribute(ServletAttributes.EMF_ATTRIBUTE);
-        if (emf == null) {
-            throw new ServletException("EntityManagerFactory not found");
-        }
-        LogEventRepository repository = new LogEventRepository(emf);
-        this.helper = new StatsHelper(repository);
+        this.store = LogStores.fromContext(getServletContext());
+        this.stats = StatsService.fromContext(getServletContext());
+        this.rollups = StatsRange.rollups(getServletContext());
     }
 
 
     /**
      * Handles GET requests and writes CSV statistics to the response.
+     * With from, to or bucket (see StatsRange), one row per bucket and logger from the rollup tables.
+     * 304 without a body when the client already has the current version (see ConditionalGet).
      * @param req  HTTP request
      * @param resp HTTP response
      * @throws ServletException if a servlet error occurs
@@ -52,36 +60,112 @@ public class StatsCSVServlet extends HttpServlet {
      */
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        StatsRange range;
+        try {
+            range = StatsRange.parse(req);
+        } catch (IllegalArgumentException e) {
+            sendError(resp, 400, e.getMessage());
+            return;
+        }
+        if (range != null && rollups == null) {
+            sendError(resp, 400, StatsRange.DISABLED);
+            return;
+        }
+        if (ConditionalGet.notModified(req, resp, store)) {
+            return;
+        }
         resp.setContentType("text/csv");
-        String csvData = generateCSV(helper.getLogStatistics());
         resp.setStatus(200);
-        resp.getWriter().write(csvData);
+        if (range == null) {
+            stats.snapshot().write("csv", this::writeCSV, resp.getOutputStream());
+        } else { // never cached, streamed as it is written
+            writeCSV(range.count(rollups), resp.getOutputStream());
+        }
     }
 
 
     /**
-     * Generate tab-separated CSV data from aggregated log statistics.
+     * Write the CSV file of a stats snapshot, in the servlet default charset (ISO-8859-1)
      * @param stats nested map of logger → level → count
-     * @return CSV string with header and rows for each logger
+     * @param out stream of the response, or of the snapshot copy
+     * @throws IOException if the stream fails
      */
-    private String generateCSV(Map<String, Map<String, Long>> stats) {
-        StringBuilder csv = new StringBuilder();
-        // header row
-        csv.append("logger");
-        List<String> levels = StatsHelper.getLevels();
-        for (String level: levels) {
-            csv.append("\t").append(level);
+    private void writeCSV(Map<String, Map<String, Long>> stats, OutputStream out) throws IOException {
+        PrintWriter csv = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.ISO_8859_1));
+        writeHeader(false, csv);
+        writeRows(null, stats, csv);
+        finish(csv);
+    }
+
+
+    /**
+     * Write the CSV file of a time range, with the start of the bucket in the first column
+     * @param buckets start of each bucket → (logger → (level → count))
+     * @param out stream of the response
+     * @throws IOException if the stream fails
+     */
+    private void writeCSV(SortedMap<Instant, Map<String, Map<String, Long>>> buckets, OutputStream out) throws IOException {
+        PrintWriter csv = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.ISO_8859_1));
+        writeHeader(true, csv);
+        buckets.forEach((start, stats) -> writeRows(start.toString(), stats, csv));
+        finish(csv);
+    }
+
+
+    /**
+     * Flush the writer, PrintWriter keeps I/O errors to itself
+     */
+    private static void finish(PrintWriter writer) throws IOException {
+        if (writer.checkError()) {
+            throw new IOException("Writing the response failed");
         }
-        csv.append("\n");
+    }
 
-        // Loggers row
-        for (String logger: stats.keySet()) {
-            csv.append(logger);
+
+    /**
+     * Write the tab-separated header row
+     * @param bucketed whether the first column is the start of the bucket
+     * @param csv writer of the rendered file
+     */
+    private void writeHeader(boolean bucketed, PrintWriter csv) {
+        if (bucketed) csv.write("bucket\t");
+        csv.write("logger");
+        for (String level: StatsHelper.getLevels()) {
+            csv.write("\t" + level);
+        }
+        csv.write("\n");
+    }
+
+
+    /**
+     * Write tab-separated CSV data from aggregated log statistics, one row per logger.
+     * @param bucket start of the bucket for the first column, null without one
+     * @param stats nested map of logger → level → count
+     * @param csv writer of the rendered file
+     */
+    private void writeRows(String bucket, Map<String, Map<String, Long>> stats, PrintWriter csv) {
+        List<String> levels = StatsHelper.getLevels();
+        for (Map.Entry<String, Map<String, Long>> entry: stats.entrySet()) {
+            if (bucket != null) csv.write(bucket + "\t");
+            csv.write(entry.getKey());
             for (String level: levels) {
-                csv.append("\t").append(stats.get(logger).get(level));
+                csv.write("\t" + entry.getValue().get(level));
             }
-            csv.append("\n");
+            csv.write("\n");
         }
-        return csv.toString();
+    }
+
+
+    /**
+     * Sends an HTTP error response with the specified status code and message.
+     * @param resp the HttpServletResponse to write the error to
+     * @param statusCode the HTTP status code
+     * @param message the error message to include in the response body
+     * @throws IOException if an I/O error occurs while writing the response
+     */
+    private void sendError(HttpServletResponse resp, int statusCode, String message) throws IOException {
+        resp.setStatus(statusCode);
+        resp.setContentType("text/plain");
+        resp.getWriter().write(message);
     }
 }
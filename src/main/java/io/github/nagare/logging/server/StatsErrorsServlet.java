@@ -0,0 +1,86 @@
+package io.github.nagare.logging.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.ServletException;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Servlet for returning the stack traces of log events grouped by fingerprint.
+ * Accessible at GET /logstore/stats/errors?limit=50.
+ * limit is between 1 and 1000 (default 50), the largest groups come first.
+ * Groups come from ErrorGroups, kept up to date as events are posted, the LogStore is never scanned.
+ * Content type: application/json
+ * Status: 200 on success, 400 on invalid limit
+ */
+public class StatsErrorsServlet extends HttpServlet {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final int MAX_LIMIT = 1000;
+    private ErrorGroups errors;
+
+    // Explicitly defined default constructor
+    public StatsErrorsServlet() {
+    }
+
+
+    /**
+     * Initialize servlet - get the ErrorGroups fed by LogsServlet from ServletContext
+     */
+    @Override
+    public void init() throws ServletException {
+        this.errors = ErrorGroups.fromContext(getServletContext());
+    }
+
+
+    /**
+     * Handles GET requests and writes the largest error groups as JSON:
+     * {"groupCount": n, "groups": [{"fingerprint", "exception", "sample", "count", "firstSeen", "lastSeen"}...]}
+     * @param req  HTTP request
+     * @param resp HTTP response
+     * @throws ServletException if a servlet error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        int limit = 50;
+        String limitParam = req.getParameter("limit");
+        if (limitParam != null) {
+            try {
+                limit = Integer.parseInt(limitParam);
+            } catch (NumberFormatException e) {
+                limit = 0;
+            }
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            sendError(resp, 400, "Limit must be between 1 and " + MAX_LIMIT);
+            return;
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("groupCount", errors.getGroupCount());
+        body.put("groups", errors.top(limit));
+        resp.setStatus(200);
+        resp.setContentType("application/json");
+        resp.getOutputStream().write(mapper.writeValueAsBytes(body));
+    }
+
+
+    /**
+     * Sends an HTTP error response with the specified status code and message.
+     * @param resp the HttpServletResponse to write the error to
+     * @param statusCode the HTTP status code
+     * @param message the error message to include in the response body
+     * @throws IOException if an I/O error occurs while writing the response
+     */
+    private void sendError(HttpServletResponse resp, int statusCode, String message) throws IOException {
+        resp.setStatus(statusCode);
+        resp.setContentType("text/plain");
+        resp.getWriter().write(message);
+    }
+}
@@ -1,14 +1,16 @@
 package io.github.nagare.logging.server;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
-import jakarta.persistence.EntityManagerFactory;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
@@ -19,6 +21,9 @@ import jakarta.servlet.http.HttpServletResponse;
  * Servlet for returning excel-encoded log statistics.
  * Accessible at GET /logstore/stats/excel.
  * Response is an Excel 2007 OOXML workbook (.xlsx) with a single sheet named "stats".
+ * The workbook is streamed (SXSSF): only ROW_WINDOW rows are kept in memory, older rows are flushed
+ * to a compressed temporary file, deleted once the workbook is rendered.
+ * The statistics and the rendered workbook come from the snapshot shared through StatsService.
  * Column structure follows the assignment specification:
  * <a href="https://docs.google.com/drawings/d/1v_dpZ0XKiqTaygmOaTThWgR9swRDatY6sxYmGEn9GVM/edit?usp=sharing">...</a>
  * References:
@@ -28,11 +33,14 @@ import jakarta.servlet.http.HttpServletResponse;
  * <a href="https://jakarta.ee/specifications/servlet/6.1/apidocs/jakarta.servlet/jakarta/servlet/servletresponse#getOutputStream()">...</a>
  * <a href="https://poi.apache.org/apidocs/5.0/org/apache/poi/ooxml/POIXMLDocument.html#write-java.io.OutputStream-">...</a>
  * Content type: application/vnd.openxmlformats-officedocument.spreadsheetml.sheet
- * Status: 200 on success
+ * Status: 200 on success, 400 on invalid from, to or bucket
  */
 public class StatsExcelServlet extends HttpServlet {
 
-    private StatsHelper helper;
+    static final int ROW_WINDOW = 100;
+    private LogStore store;
+    private StatsService stats;
+    private RollupLogStore rollups; // null when stats.rollups is off
 
     // Explicitly defined default constructor
     public StatsExcelServlet() {
@@ -40,21 +48,20 @@ public class StatsExcelServlet extends HttpServlet {
 
 
     /**
-     * Initialize servlet - get EntityManagerFactory from ServletContext
+     * Initialize servlet - get the LogStore engine from ServletContext
      */
     @Override
     public void init() throws ServletException {
-        EntityManagerFactory emf = (EntityManagerFactory) getServletContext().getAttribute(ServletAttributes.EMF_ATTRIBUTE);
-        if (emf == null) {
-            throw new ServletException("EntityManagerFactory not found");
-        }
-        LogEventRepository repository = new LogEventRepository(emf);
-        this.helper = new StatsHelper(repository);
+        this.store = LogStores.fromContext(getServletContext());
+        this.stats = StatsService.fromContext(getServletContext());
+        this.rollups = StatsRange.rollups(getServletContext());
     }
 
 
     /**
      * Handles GET requests and writes Excel statistics to the response.
+     * With from, to or bucket (see StatsRange), one row per bucket and logger from the rollup tables.
+     * 304 without a body when the client already has the current version (see ConditionalGet).
      * @param req  HTTP request
      * @param resp HTTP response
      * @throws ServletException if a servlet error occurs
@@ -62,43 +69,124 @@ public class StatsExcelServlet extends HttpServlet {
      */
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        resp.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-        try (XSSFWorkbook workbook = generateExcel(helper.getLogStatistics())) {
-            resp.setStatus(200);
-            workbook.write(resp.getOutputStream());
+        StatsRange range;
+        try {
+            range = StatsRange.parse(req);
+        } catch (IllegalArgumentException e) {
+            sendError(resp, 400, e.getMessage());
+            return;
+        }
+        if (range != null && rollups == null) {
+            sendError(resp, 400, StatsRange.DISABLED);
+            return;
+        }
+        if (ConditionalGet.notModified(req, resp, store)) {
+            return;
         }
+        resp.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        byte[] body = (range == null)
+                ? stats.snapshot().render("xlsx", this::renderExcel)
+                : renderExcel(range.count(rollups));
+        resp.setStatus(200);
+        resp.getOutputStream().write(body);
     }
 
 
     /**
-     * Generate an Excel workbook containing a statistics sheet.
-     * XSSF Workbook → ZIP compression → Binary bytes → OutputStream → HTTP Response
+     * Render the workbook of a stats snapshot
      * @param stats nested map of logger → level → count
-     * @return XSSFWorkbook with a single sheet "stats"
+     * @return .xlsx file
+     * @throws IOException if the workbook cannot be written
+     */
+    private byte[] renderExcel(Map<String, Map<String, Long>> stats) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // close() also deletes the temporary files of the flushed rows
+        try (SXSSFWorkbook workbook = generateExcel(false)) {
+            writeRows(workbook.getSheet("stats"), 1, null, stats);
+            workbook.write(out);
+        }
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Render the workbook of a time range, with the start of the bucket in the first column
+     * @param buckets start of each bucket → (logger → (level → count))
+     * @return .xlsx file
+     * @throws IOException if the workbook cannot be written
+     */
+    private byte[] renderExcel(SortedMap<Instant, Map<String, Map<String, Long>>> buckets) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SXSSFWorkbook workbook = generateExcel(true)) {
+            Sheet sheet = workbook.getSheet("stats");
+            int nextRow = 1;
+            for (Map.Entry<Instant, Map<String, Map<String, Long>>> bucket : buckets.entrySet()) {
+                nextRow = writeRows(sheet, nextRow, bucket.getKey().toString(), bucket.getValue());
+            }
+            workbook.write(out);
+        }
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Generate an Excel workbook containing a statistics sheet with its header row.
+     * SXSSF Workbook → rows beyond the window in temp files → ZIP compression → OutputStream → HTTP Response
+     * @param bucketed whether the first column is the start of the bucket
+     * @return SXSSFWorkbook with a single sheet "stats", to close after writing
      */
-    private XSSFWorkbook generateExcel(Map<String, Map<String, Long>> stats) {
-        XSSFWorkbook workbook = new XSSFWorkbook();
+    private SXSSFWorkbook generateExcel(boolean bucketed) {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true); // logger names compress well
         // must contain a single sheet names "stats"
-        XSSFSheet sheet = workbook.createSheet("stats");
+        Sheet sheet = workbook.createSheet("stats");
 
         // header row
-        XSSFRow header = sheet.createRow(0);
-        header.createCell(0).setCellValue("logger");
-        List<String> levels = StatsHelper.getLevels();
-        for (int i = 0; i < levels.size(); i++) {
-            header.createCell(i + 1).setCellValue(levels.get(i));
+        Row header = sheet.createRow(0);
+        int column = 0;
+        if (bucketed) header.createCell(column++).setCellValue("bucket");
+        header.createCell(column++).setCellValue("logger");
+        for (String level: StatsHelper.getLevels()) {
+            header.createCell(column++).setCellValue(level);
         }
+        return workbook;
+    }
+
 
-        // Loggers row
-        int nextRow = 1;
-        for (String logger: stats.keySet()) {
-            XSSFRow row = sheet.createRow(nextRow);
-            row.createCell(0).setCellValue(logger);
-            for (int i = 0; i < levels.size(); i++) {
-                row.createCell(i + 1).setCellValue(stats.get(logger).get(levels.get(i)));
+    /**
+     * Write one row per logger
+     * @param sheet sheet "stats"
+     * @param nextRow index of the first row to write
+     * @param bucket start of the bucket for the first column, null without one
+     * @param stats nested map of logger → level → count
+     * @return index of the row after the last one written
+     */
+    private int writeRows(Sheet sheet, int nextRow, String bucket, Map<String, Map<String, Long>> stats) {
+        List<String> levels = StatsHelper.getLevels();
+        for (Map.Entry<String, Map<String, Long>> entry: stats.entrySet()) {
+            Row row = sheet.createRow(nextRow);
+            int column = 0;
+            if (bucket != null) row.createCell(column++).setCellValue(bucket);
+            row.createCell(column++).setCellValue(entry.getKey());
+            for (String level: levels) {
+                row.createCell(column++).setCellValue(entry.getValue().get(level));
             }
             nextRow++;
         }
-        return workbook;
+        return nextRow;
+    }
+
+
+    /**
+     * Sends an HTTP error response with the specified status code and message.
+     * @param resp the HttpServletResponse to write the error to
+     * @param statusCode the HTTP status code
+     * @param message the error message to include in the response body
+     * @throws IOException if an I/O error occurs while writing the response
+     */
+    private void sendError(HttpServletResponse resp, int statusCode, String message) throws IOException {
+        resp.setStatus(statusCode);
+        resp.setContentType("text/plain");
+        resp.getWriter().write(message);
     }
 }
@@ -1,10 +1,15 @@
 package io.github.nagare.logging.server;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 
-import jakarta.persistence.EntityManagerFactory;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
@@ -17,11 +22,15 @@ import jakarta.servlet.http.HttpServletResponse;
  * Response is text/html containing a <table> element with rows and columns as specified in the assignment:
  * <a href="https://docs.google.com/drawings/d/1v_dpZ0XKiqTaygmOaTThWgR9swRDatY6sxYmGEn9GVM/edit?usp=sharing">...</a>
  * Table uses standard HTML tags: <table>, <tr>, <th>, <td>.
- * Status: 200 on success
+ * The statistics and the rendered page come from the snapshot shared through StatsService,
+ * the page is streamed to the first client while it is rendered, time ranges are always streamed.
+ * Status: 200 on success, 400 on invalid from, to or bucket
  */
 public class StatsHTMLServlet extends HttpServlet  {
 
-    private StatsHelper helper;
+    private LogStore store;
+    private StatsService stats;
+    private RollupLogStore rollups; // null when stats.rollups is off
 
     // Explicitly defined default constructor
     public StatsHTMLServlet() {
@@ -29,21 +38,20 @@ public class StatsHTMLServlet extends HttpServlet  {
 
 
     /**
-     * Initialize servlet - get EntityManagerFactory from ServletContext
+     * Initialize servlet - get the LogStore engine from ServletContext
      */
     @Override
     public void init() throws ServletException {
-        EntityManagerFactory emf = (EntityManagerFactory) getServletContext().getAttribute(ServletAttributes.EMF_ATTRIBUTE);
-        if (emf == null) {
-            throw new ServletException("EntityManagerFactory not found");
-        }
-        LogEventRepository repository = new LogEventRepository(emf);
-        this.helper = new StatsHelper(repository);
+        this.store = LogStores.fromContext(getServletContext());
+        this.stats = StatsService.fromContext(getServletContext());
+        this.rollups = StatsRange.rollups(getServletContext());
     }
 
 
     /**
      * Handles GET requests and writes HTML table statistics to the response.
+     * With from, to or bucket (see StatsRange), one row per bucket and logger from the rollup tables.
+     * 304 without a body when the client already has the current version (see ConditionalGet).
      * @param req  HTTP request
      * @param resp HTTP response
      * @throws ServletException if a servlet error occurs
@@ -51,50 +59,153 @@ public class StatsHTMLServlet extends HttpServlet  {
      */
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        StatsRange range;
+        try {
+            range = StatsRange.parse(req);
+        } catch (IllegalArgumentException e) {
+            sendError(resp, 400, e.getMessage());
+            return;
+        }
+        if (range != null && rollups == null) {
+            sendError(resp, 400, StatsRange.DISABLED);
+            return;
+        }
+        if (ConditionalGet.notModified(req, resp, store)) {
+            return;
+        }
         resp.setContentType("text/html");
-        String htmlData = generateHTML(helper.getLogStatistics());
         resp.setStatus(200);
-        resp.getWriter().write(htmlData);
+        if (range == null) {
+            stats.snapshot().write("html", this::writeHTML, resp.getOutputStream());
+        } else { // never cached, streamed as it is written
+            writeHTML(range.count(rollups), resp.getOutputStream());
+        }
     }
 
 
     /**
-     * Generate an HTML page containing a statistics table.
-     * <a href="https://www.w3schools.com/html/html_tables.asp">...</a>
+     * Write the HTML page of a stats snapshot, in the servlet default charset (ISO-8859-1)
      * @param stats nested map of logger → level → count
-     * @return HTML string with a complete table
+     * @param out stream of the response, or of the snapshot copy
+     * @throws IOException if the stream fails
+     */
+    private void writeHTML(Map<String, Map<String, Long>> stats, OutputStream out) throws IOException {
+        PrintWriter html = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.ISO_8859_1));
+        writeStart(false, html);
+        writeRows(null, stats, html);
+        writeEnd(html);
+        finish(html);
+    }
+
+
+    /**
+     * Write the HTML page of a time range, with the start of the bucket in the first column
+     * @param buckets start of each bucket → (logger → (level → count))
+     * @param out stream of the response
+     * @throws IOException if the stream fails
      */
-    private String generateHTML(Map<String, Map<String, Long>> stats) {
-        StringBuilder html = new StringBuilder();
+    private void writeHTML(SortedMap<Instant, Map<String, Map<String, Long>>> buckets, OutputStream out) throws IOException {
+        PrintWriter html = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.ISO_8859_1));
+        writeStart(true, html);
+        buckets.forEach((start, stats) -> writeRows(start.toString(), stats, html));
+        writeEnd(html);
+        finish(html);
+    }
+
+
+    /**
+     * Flush the writer, PrintWriter keeps I/O errors to itself
+     */
+    private static void finish(PrintWriter writer) throws IOException {
+        if (writer.checkError()) {
+            throw new IOException("Writing the response failed");
+        }
+    }
+
+
+    /**
+     * Write the start of an HTML page containing a statistics table, up to its header row.
+     * <a href="https://www.w3schools.com/html/html_tables.asp">...</a>
+     * @param bucketed whether the first column is the start of the bucket
+     * @param html writer of the rendered page
+     */
+    private void writeStart(boolean bucketed, PrintWriter html) {
         // Basic HTML structure
-        html.append("<!DOCTYPE html>");
-        html.append("<html><body>");
+        html.write("<!DOCTYPE html>");
+        html.write("<html><body>");
 
         // table start
-        html.append("<table>");
-        List<String> levels = StatsHelper.getLevels();
+        html.write("<table>");
 
         // header row
-        html.append("<tr>");
-        html.append("<th>logger</th>");
-        for (String level: levels) {
-            html.append("<th>").append(level).append("</th>");
+        html.write("<tr>");
+        if (bucketed) html.write("<th>bucket</th>");
+        html.write("<th>logger</th>");
+        for (String level: StatsHelper.getLevels()) {
+            html.write("<th>" + level + "</th>");
         }
-        html.append("</tr>");
+        html.write("</tr>");
+    }
 
-        // Loggers row
-        for (String logger: stats.keySet()) {
-            html.append("<tr>");
-            html.append("<td>").append(logger).append("</td>");
+
+    /**
+     * Write one table row per logger
+     * @param bucket start of the bucket for the first column, null without one
+     * @param stats nested map of logger → level → count
+     * @param html writer of the rendered page
+     */
+    private void writeRows(String bucket, Map<String, Map<String, Long>> stats, PrintWriter html) {
+        List<String> levels = StatsHelper.getLevels();
+        for (Map.Entry<String, Map<String, Long>> entry: stats.entrySet()) {
+            html.write("<tr>");
+            if (bucket != null) html.write("<td>" + bucket + "</td>");
+            html.write("<td>" + escape(entry.getKey()) + "</td>");
             for (String level: levels) {
-                html.append("<td>").append(stats.get(logger).get(level)).append("</td>");
+                html.write("<td>" + entry.getValue().get(level) + "</td>");
             }
-            html.append("</tr>");
+            html.write("</tr>");
         }
+    }
 
-        html.append("</table>");
-        html.append("</body></html>");
-        return html.toString();
+
+    private void writeEnd(PrintWriter html) {
+        html.write("</table>");
+        html.write("</body></html>");
     }
 
+
+    /**
+     * Escape a logger name for HTML text, logger names come from clients
+     * @param text text to escape
+     * @return text with the HTML special characters replaced by entities
+     */
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '&' -> escaped.append("&amp;");
+                case '"' -> escaped.append("&quot;");
+                case '\'' -> escaped.append("&#39;");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+
+    /**
+     * Sends an HTTP error response with the specified status code and message.
+     * @param resp the HttpServletResponse to write the error to
+     * @param statusCode the HTTP status code
+     * @param message the error message to include in the response body
+     * @throws IOException if an I/O error occurs while writing the response
+     */
+    private void sendError(HttpServletResponse resp, int statusCode, String message) throws IOException {
+        resp.setStatus(statusCode);
+        resp.setContentType("text/plain");
+        resp.getWriter().write(message);
+    }
 }
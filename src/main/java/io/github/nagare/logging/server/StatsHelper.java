@@ -2,24 +2,22 @@ package io.github.nagare.logging.server;
 
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 
 /**
  * Utility class for computing log statistics.
- * Provides access to the fixed set of log levels and aggregates log events from Persistency
+ * Provides access to the fixed set of log levels and aggregates log events from the LogStore
  * into the structure required by the assignment table spec.
  */
 public class StatsHelper {
 
-    private final LogEventRepository repository;
-    private static final List<String> LEVELS = List.of("ALL", "TRACE", "DEBUG", "INFO", "WARN", "ERROR", "FATAL", "OFF");
+    private final LogStore repository;
+    private static final List<String> LEVELS = LogLevels.LEVELS;
 
     /**
-     *
-     * @param repo
+     * @param repo LogStore engine holding the log events
      */
-    public StatsHelper(LogEventRepository repo){
+    public StatsHelper(LogStore repo){
         this.repository = repo;
     }
 
@@ -41,16 +39,8 @@ public class StatsHelper {
      * @return nested map: logger → (level → count)
      */
     public Map<String, Map<String, Long>> getLogStatistics() {
-        // logger, <level,count>
-        Map<String, Map<String, Long>> stats =  repository.getAllLogs()
-                .stream()
-                .collect(Collectors.groupingBy(
-                        LogEvent::getLogger,
-                        Collectors.groupingBy(
-                                log -> log.getLevel().toUpperCase(),
-                                Collectors.counting()
-                        )
-                ));
+        // logger, <level,count>, grouped by the database
+        Map<String, Map<String, Long>> stats = repository.countByLoggerAndLevel();
         // fill missing levels
         List<String> allLevels = getLevels();
         stats.forEach((logger, levelMap) -> {
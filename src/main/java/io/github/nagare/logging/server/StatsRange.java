@@ -0,0 +1,80 @@
+package io.github.nagare.logging.server;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.SortedMap;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
+
+
+/**
+ * Time range of a stats request, from the optional parameters shared by the stats servlets:
+ * from (inclusive) and to (exclusive) ISO-8601 timestamps, and bucket (minute, hour or day, default day).
+ * Ranges are answered from the RollupLogStore, one row per bucket and logger.
+ */
+final class StatsRange {
+
+    static final String DISABLED = "Time ranges need the rollup tables, enable stats.rollups on the server";
+
+    private final RollupLogStore.Bucket bucket;
+    private final Instant from;
+    private final Instant to;
+
+    private StatsRange(RollupLogStore.Bucket bucket, Instant from, Instant to) {
+        this.bucket = bucket;
+        this.from = from;
+        this.to = to;
+    }
+
+
+    /**
+     * Parse the range parameters of a stats request
+     * @param req HTTP request
+     * @return the range, null when the request has none of the parameters (all-time statistics)
+     * @throws IllegalArgumentException with the message to send back, if a parameter is invalid
+     */
+    static StatsRange parse(HttpServletRequest req) {
+        String bucketParam = req.getParameter("bucket");
+        String fromParam = req.getParameter("from");
+        String toParam = req.getParameter("to");
+        if (bucketParam == null && fromParam == null && toParam == null) return null;
+        RollupLogStore.Bucket bucket = (bucketParam == null) ? RollupLogStore.Bucket.DAY : RollupLogStore.Bucket.parse(bucketParam);
+        if (bucket == null) {
+            throw new IllegalArgumentException("Invalid bucket. Must be one of: minute, hour, day");
+        }
+        Instant from;
+        Instant to;
+        try {
+            from = (fromParam == null) ? null : Instant.parse(fromParam);
+            to = (toParam == null) ? null : Instant.parse(toParam);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid from or to format. Expected: ISO-8601 format");
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        return new StatsRange(bucket, from, to);
+    }
+
+
+    /**
+     * Get the rollup tables shared by DatabaseInitializer
+     * @param context ServletContext of the application
+     * @return the RollupLogStore, null when stats.rollups is off
+     */
+    static RollupLogStore rollups(ServletContext context) {
+        return (RollupLogStore) context.getAttribute(ServletAttributes.ROLLUPS_ATTRIBUTE);
+    }
+
+
+    /**
+     * Count the log events of the range
+     * @param rollups rollup tables
+     * @return start of each bucket → (logger → (level → count)), every level present
+     */
+    SortedMap<Instant, Map<String, Map<String, Long>>> count(RollupLogStore rollups) {
+        return rollups.countByBucket(bucket, from, to);
+    }
+}
@@ -0,0 +1,358 @@
+package io.github.nagare.logging.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+
+
+/**
+ * Statistics shared by the stats servlets (CSV, HTML, Excel), computed once and reused as an immutable Snapshot.
+ * A snapshot is tagged with the data version it was computed at (see VersionedLogStore) and reused until a write
+ * changes the version, or until it is older than stats.ttl.ms (STATS_TTL_MS) when that is set.
+ * Without a VersionedLogStore only the TTL applies, and 0 (default) computes the statistics on every request.
+ * Concurrent requests needing a new snapshot are coalesced: one computes it, the others wait for its result.
+ * Each snapshot also keeps its rendered documents, so a format is rendered once per snapshot;
+ * text formats are streamed to the first client while they are rendered (see Snapshot.write).
+ * <br>
+ * Implements MBean interface to report snapshots computed and reused via JMX.
+ */
+public class StatsService implements StatsServiceMBean {
+
+    /**
+     * Renders the statistics of a snapshot as a document
+     */
+    @FunctionalInterface
+    public interface Renderer {
+        byte[] render(Map<String, Map<String, Long>> stats) throws IOException;
+    }
+
+    /**
+     * Writes the statistics of a snapshot as a document to a stream
+     */
+    @FunctionalInterface
+    public interface StreamRenderer {
+        void render(Map<String, Map<String, Long>> stats, OutputStream out) throws IOException;
+    }
+
+    private final StatsHelper helper;
+    private final VersionedLogStore versioned; // null if the store keeps no version
+    private final long ttlMillis;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong renderCount = new AtomicLong();
+    private Snapshot current; // guarded by this
+    private CompletableFuture<Snapshot> running; // guarded by this
+    private long runningVersion; // guarded by this
+    private String name;
+
+    /**
+     * @param store LogStore engine holding the log events
+     * @param ttlMillis maximum age of a snapshot, 0 for no limit on a VersionedLogStore
+     */
+    public StatsService(LogStore store, long ttlMillis) {
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("ttlMillis must not be negative");
+        }
+        this.helper = new StatsHelper(store);
+        this.versioned = (store instanceof VersionedLogStore v) ? v : null;
+        this.ttlMillis = ttlMillis;
+    }
+
+
+    /**
+     * Create a StatsService over the given store, with the stats.ttl.ms setting
+     * @param store LogStore engine holding the log events
+     * @return new StatsService
+     */
+    public static StatsService fromSettings(LogStore store) {
+        long ttlMillis = Long.parseLong(DatabaseInitializer.readSetting("STATS_TTL_MS", "stats.ttl.ms", "0"));
+        return new StatsService(store, ttlMillis);
+    }
+
+
+    /**
+     * Get the StatsService shared by DatabaseInitializer, or create and share one,
+     * e.g. when servlets are initialized without the listener
+     * @param context ServletContext of the application
+     * @return StatsService shared by the stats servlets
+     * @throws ServletException if no LogStore can be found or created
+     */
+    public static StatsService fromContext(ServletContext context) throws ServletException {
+        synchronized (context) {
+            StatsService service = (StatsService) context.getAttribute(ServletAttributes.STATS_SERVICE_ATTRIBUTE);
+            if (service == null) {
+                service = fromSettings(LogStores.fromContext(context));
+                context.setAttribute(ServletAttributes.STATS_SERVICE_ATTRIBUTE, service);
+            }
+            return service;
+        }
+    }
+
+
+    /**
+     * Get a snapshot of the statistics at least as recent as the data version at the time of the call
+     * @return current snapshot, computed if needed
+     */
+    public Snapshot snapshot() {
+        long version = (versioned == null) ? -1 : versioned.getVersion(); // read before computing
+        long now = System.currentTimeMillis();
+        CompletableFuture<Snapshot> mine = new CompletableFuture<>();
+        CompletableFuture<Snapshot> other = null;
+        synchronized (this) {
+            if (current != null && isFresh(current, version, now)) {
+                hitCount.incrementAndGet();
+                return current;
+            }
+            if (running != null && runningVersion >= version) {
+                other = running;
+            } else {
+                running = mine;
+                runningVersion = version;
+            }
+        }
+        if (other != null) {
+            coalescedCount.incrementAndGet();
+            return other.join(); // failures are rethrown as CompletionException
+        }
+        missCount.incrementAndGet();
+        try {
+            Snapshot snapshot = new Snapshot(version, now, copyOf(helper.getLogStatistics()));
+            synchronized (this) {
+                if (current == null || current.version <= version) current = snapshot;
+                if (running == mine) running = null;
+            }
+            mine.complete(snapshot);
+            return snapshot;
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                if (running == mine) running = null;
+            }
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+
+    private boolean isFresh(Snapshot snapshot, long version, long now) {
+        if (snapshot.version < version) return false;
+        if (ttlMillis > 0) return now - snapshot.computedAt < ttlMillis;
+        return versioned != null; // without a version, only a TTL allows reuse
+    }
+
+
+    private static Map<String, Map<String, Long>> copyOf(Map<String, Map<String, Long>> stats) {
+        Map<String, Map<String, Long>> copy = new LinkedHashMap<>(); // keeps the order of the loggers
+        stats.forEach((logger, levelMap) -> copy.put(logger, Map.copyOf(levelMap)));
+        return Collections.unmodifiableMap(copy);
+    }
+
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+
+    @Override
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+
+    @Override
+    public long getRenderCount() {
+        return renderCount.get();
+    }
+
+
+    @Override
+    public synchronized long getSnapshotAgeMillis() {
+        return (current == null) ? -1 : System.currentTimeMillis() - current.computedAt;
+    }
+
+
+    /**
+     * Register this StatsService as an MBean with the platform MBeanServer
+     * @param name instance name of the MBean
+     */
+    public void registerMBean(String name) {
+        MBeanRegistry.register(this, "StatsService", name);
+        this.name = name;
+    }
+
+
+    /**
+     * Unregisters this StatsService as an MBean with the platform MBeanServer
+     */
+    public void unregisterMBean() {
+        if (this.name == null) {
+            return;
+        }
+        MBeanRegistry.unregister("StatsService", name);
+        this.name = null;
+    }
+
+
+    /**
+     * Immutable statistics at one data version, with the documents rendered from them
+     */
+    public final class Snapshot {
+
+        private final long version; // -1 without a VersionedLogStore
+        private final long computedAt;
+        private final Map<String, Map<String, Long>> stats;
+        private final Map<String, CompletableFuture<byte[]>> rendered = new ConcurrentHashMap<>(); // by format
+
+        private Snapshot(long version, long computedAt, Map<String, Map<String, Long>> stats) {
+            this.version = version;
+            this.computedAt = computedAt;
+            this.stats = stats;
+        }
+
+
+        /**
+         * @return data version the statistics were computed at, -1 without a VersionedLogStore
+         */
+        public long getVersion() {
+            return version;
+        }
+
+
+        /**
+         * @return unmodifiable nested map: logger → (level → count)
+         */
+        public Map<String, Map<String, Long>> getStats() {
+            return stats;
+        }
+
+
+        /**
+         * Get the document of a format, rendering it on first use; concurrent first uses render it once
+         * @param format name of the format, e.g. "csv"
+         * @param renderer renders the statistics in that format
+         * @return rendered document, shared: do not modify
+         * @throws IOException if the renderer fails, for every request waiting on it
+         */
+        public byte[] render(String format, Renderer renderer) throws IOException {
+            CompletableFuture<byte[]> mine = new CompletableFuture<>();
+            CompletableFuture<byte[]> other = rendered.putIfAbsent(format, mine);
+            if (other != null) {
+                return await(other);
+            }
+            renderCount.incrementAndGet();
+            try {
+                byte[] body = renderer.render(stats);
+                mine.complete(body);
+                return body;
+            } catch (IOException | RuntimeException | Error e) {
+                rendered.remove(format, mine); // failures are not kept
+                mine.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+
+        /**
+         * Write the document of a format to a client. The first use renders it straight to the client
+         * while keeping a copy for the next ones, so the first byte is not held back until the end;
+         * concurrent first uses wait for that copy.
+         * A client failing meanwhile does not stop the rendering, the copy is kept and the failure thrown afterwards
+         * @param format name of the format, e.g. "csv"
+         * @param renderer writes the statistics in that format
+         * @param out stream of the client
+         * @throws IOException if the renderer or the client stream fails
+         */
+        public void write(String format, StreamRenderer renderer, OutputStream out) throws IOException {
+            CompletableFuture<byte[]> mine = new CompletableFuture<>();
+            CompletableFuture<byte[]> other = rendered.putIfAbsent(format, mine);
+            if (other != null) {
+                out.write(await(other));
+                return;
+            }
+            renderCount.incrementAndGet();
+            Tee tee = new Tee(out);
+            try {
+                renderer.render(stats, tee);
+                tee.flush();
+                mine.complete(tee.copy.toByteArray());
+            } catch (IOException | RuntimeException | Error e) {
+                rendered.remove(format, mine); // failures are not kept
+                mine.completeExceptionally(e);
+                throw e;
+            }
+            if (tee.failure != null) throw tee.failure;
+        }
+    }
+
+
+    /**
+     * Writes to the client and to a copy, the client failing only stops the writes to the client
+     */
+    private static final class Tee extends OutputStream {
+
+        private final OutputStream client;
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private IOException failure;
+
+        Tee(OutputStream client) {
+            this.client = client;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            copy.write(b, off, len);
+            if (failure != null) return;
+            try {
+                client.write(b, off, len);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (failure != null) return;
+            try {
+                client.flush();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+
+    private static byte[] await(CompletableFuture<byte[]> other) throws IOException {
+        try {
+            return other.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw new IOException(io.getMessage(), io);
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw new UncheckedIOException(new IOException(cause));
+        }
+    }
+}
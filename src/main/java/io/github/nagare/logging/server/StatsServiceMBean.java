@@ -0,0 +1,39 @@
+package io.github.nagare.logging.server;
+
+/**
+ * MBean interface for StatsService.
+ * Reports how often the stats pages are served from a shared snapshot instead of recomputing the statistics.
+ * The MBean class MUST implement an interface with the following name: “class name” plus MBean.
+ */
+public interface StatsServiceMBean {
+
+    /**
+     * Get the number of requests served from the current snapshot
+     * @return the number of hits
+     */
+    public long getHitCount();
+
+    /**
+     * Get the number of snapshots computed
+     * @return the number of misses
+     */
+    public long getMissCount();
+
+    /**
+     * Get the number of requests that waited for a snapshot computed by another request
+     * @return the number of coalesced misses
+     */
+    public long getCoalescedCount();
+
+    /**
+     * Get the number of documents rendered from snapshots, at most one per format and snapshot
+     * @return the number of renders
+     */
+    public long getRenderCount();
+
+    /**
+     * Get the age of the current snapshot
+     * @return milliseconds since it was computed, -1 before the first one
+     */
+    public long getSnapshotAgeMillis();
+}
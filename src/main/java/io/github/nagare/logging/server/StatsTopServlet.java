@@ -0,0 +1,92 @@
+package io.github.nagare.logging.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.ServletException;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Servlet for returning the noisiest loggers and most frequent messages of a recent window.
+ * Accessible at GET /logstore/stats/top?window=5m&limit=10.
+ * window is one of 1m, 5m, 1h (default 5m), limit is between 1 and top.capacity (default 10).
+ * Counts are estimates from HeavyHitters: each count is at most its error above the true count.
+ * Content type: application/json
+ * Status: 200 on success, 400 on invalid window or limit
+ */
+public class StatsTopServlet extends HttpServlet {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private HeavyHitters hitters;
+
+    // Explicitly defined default constructor
+    public StatsTopServlet() {
+    }
+
+
+    /**
+     * Initialize servlet - get the HeavyHitters fed by LogsServlet from ServletContext
+     */
+    @Override
+    public void init() throws ServletException {
+        this.hitters = HeavyHitters.fromContext(getServletContext());
+    }
+
+
+    /**
+     * Handles GET requests and writes the top loggers and messages as JSON:
+     * {"window": "5m", "loggers": [{"value", "count", "error"}...], "messages": [...]}
+     * @param req  HTTP request
+     * @param resp HTTP response
+     * @throws ServletException if a servlet error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        String windowParam = req.getParameter("window");
+        HeavyHitters.Window window = (windowParam == null) ? HeavyHitters.Window.FIVE_MINUTES : HeavyHitters.Window.parse(windowParam);
+        if (window == null) {
+            sendError(resp, 400, "Invalid window. Must be one of: 1m, 5m, 1h");
+            return;
+        }
+        int limit = 10;
+        String limitParam = req.getParameter("limit");
+        if (limitParam != null) {
+            try {
+                limit = Integer.parseInt(limitParam);
+            } catch (NumberFormatException e) {
+                limit = 0;
+            }
+        }
+        if (limit < 1 || limit > hitters.getCapacity()) {
+            sendError(resp, 400, "Limit must be between 1 and " + hitters.getCapacity());
+            return;
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("window", window.toString());
+        body.put("loggers", hitters.topLoggers(window, limit));
+        body.put("messages", hitters.topMessages(window, limit));
+        resp.setStatus(200);
+        resp.setContentType("application/json");
+        resp.getOutputStream().write(mapper.writeValueAsBytes(body));
+    }
+
+
+    /**
+     * Sends an HTTP error response with the specified status code and message.
+     * @param resp the HttpServletResponse to write the error to
+     * @param statusCode the HTTP status code
+     * @param message the error message to include in the response body
+     * @throws IOException if an I/O error occurs while writing the response
+     */
+    private void sendError(HttpServletResponse resp, int statusCode, String message) throws IOException {
+        resp.setStatus(statusCode);
+        resp.setContentType("text/plain");
+        resp.getWriter().write(message);
+    }
+}
@@ -0,0 +1,747 @@
+package io.github.nagare.logging.server;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * Inverted index of message terms in front of another LogStore, for GET /logs?q=.
+ * Queries without terms go to the backing store, queries with terms are answered from the index
+ * and only the returned events are read from the backing store.
+ * <br>
+ * The index is a list of immutable segments, one per ingested batch, merged in the background
+ * (MERGE_FACTOR segments of the same size tier into one) so their number stays logarithmic.
+ * In a segment, documents are sorted by event time, latest first, and each document keeps the columns
+ * needed to filter without reading the event: event time, level and logger.
+ * The term dictionary is a sorted array, each posting list holds the documents of a term in time order,
+ * delta and varint encoded. A query intersects the posting lists of its terms, rarest first,
+ * and stops reading a segment once no later match can enter the result.
+ * Deleted documents are marked in a bitmap and dropped by the next merge.
+ * A batch is stored before it is indexed, deletes made meanwhile are recorded
+ * and marked in its segment once indexed, for the events the backing store no longer holds.
+ * <br>
+ * The index is built on startup from a paged scan of the backing store (LogScan) and held in memory.
+ * Only writes made through this store are seen, so the backing store must not be shared with another writer.
+ */
+public class TextIndexLogStore implements LogStore {
+
+    static final int MERGE_FACTOR = 8;
+
+    private final LogStore backing;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock mergeLock = new ReentrantLock(); // one merge at a time
+    private final AtomicBoolean mergePending = new AtomicBoolean();
+    private final ExecutorService merger;
+    private final Map<String, Integer> loggerIds = new HashMap<>();
+    private final List<String> loggerNames = new ArrayList<>(); // index = logger id
+    private List<Segment> segments = new ArrayList<>(); // replaced, never modified, under the write lock
+    // under the write lock: deletes made while batches were stored but not yet indexed
+    private final List<WindowDelete> windowDeletes = new ArrayList<>();
+    private long deleteCount;
+    private int savesInFlight;
+
+    /**
+     * Create the index and fill it with the events already stored
+     * @param backing store holding every event
+     */
+    public TextIndexLogStore(LogStore backing) {
+        this.backing = backing;
+        this.merger = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-text-merge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // one segment per page, without thread and errorDetails
+        LogScan.forEach(backing, List.of("id", "message", "logger", "level"), null, null, page -> {
+            lock.writeLock().lock();
+            try {
+                index(page);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+        scheduleMerge();
+    }
+
+
+    /**
+     * Get the store behind the index
+     * @return backing LogStore
+     */
+    public LogStore getBacking() {
+        return backing;
+    }
+
+
+    @Override
+    public void save(LogEvent logEvent) {
+        saveAll(List.of(logEvent));
+    }
+
+
+    /**
+     * Store the events, then index them: searches only wait for index(), not for the backing store.
+     * Deletes running in between found no document to mark, they are applied to the new segment
+     */
+    @Override
+    public void saveAll(List<LogEvent> logEvents) {
+        long deletesBefore;
+        lock.writeLock().lock();
+        try {
+            savesInFlight++;
+            deletesBefore = deleteCount;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        boolean stored = false;
+        try {
+            backing.saveAll(logEvents);
+            stored = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (stored) {
+                    Segment segment = index(logEvents);
+                    if (segment != null) markWindowDeletes(segment, deletesBefore);
+                }
+                if (--savesInFlight == 0) windowDeletes.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        scheduleMerge();
+    }
+
+
+    /**
+     * Answer a query with terms from the index, any other query from the backing store
+     */
+    @Override
+    public List<LogEvent> filterLogs(LogQuery query) {
+        if (query.getTerms().isEmpty()) return backing.filterLogs(query);
+        int threshold = query.getThreshold();
+        if (threshold == LogLevels.OFF) return List.of();
+        // an event deleted meanwhile resolves to null, search again without it so the page stays full
+        Set<String> gone = new HashSet<>();
+        Map<String, LogEvent> resolved = new HashMap<>();
+        while (true) {
+            List<LogEvent> result = new ArrayList<>();
+            boolean missing = false;
+            for (String id : search(query, threshold, gone)) {
+                LogEvent logEvent = resolved.computeIfAbsent(id, backing::getById);
+                if (logEvent != null) {
+                    result.add(logEvent);
+                } else {
+                    gone.add(id);
+                    missing = true;
+                }
+            }
+            if (!missing) return result;
+        }
+    }
+
+
+    /**
+     * Get the ids of the latest matches in the index
+     * @param skip ids to leave out, events no longer stored
+     * @return ids, latest first, at most the query limit
+     */
+    private List<String> search(LogQuery query, int threshold, Set<String> skip) {
+        long fromMicros = (query.getFrom() == null) ? Long.MIN_VALUE : EventKey.micros(query.getFrom());
+        long toMicros = (query.getTo() == null) ? Long.MAX_VALUE : EventKey.micros(query.getTo());
+        List<String> ids = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int logger = -1;
+            if (query.getLogger() != null) {
+                Integer id = loggerIds.get(query.getLogger());
+                if (id == null) return ids; // never logged
+                logger = id;
+            }
+            // {event time, segment, document}, earliest on top
+            PriorityQueue<long[]> latest = new PriorityQueue<>(Comparator.comparingLong(match -> match[0]));
+            Integer[] byLatest = new Integer[segments.size()];
+            for (int i = 0; i < byLatest.length; i++) {
+                byLatest[i] = i;
+            }
+            Arrays.sort(byLatest, Comparator.comparingLong((Integer i) -> segments.get(i).maxTime()).reversed());
+            for (int i : byLatest) {
+                Segment segment = segments.get(i);
+                if (latest.size() == query.getLimit() && segment.maxTime() < latest.peek()[0]) break;
+                segment.search(i, query, threshold, logger, fromMicros, toMicros, skip, latest);
+            }
+            List<long[]> matches = new ArrayList<>(latest);
+            matches.sort(Comparator.comparingLong((long[] match) -> match[0]).reversed());
+            for (long[] match : matches) {
+                ids.add(segments.get((int) match[1]).ids[(int) match[2]]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ids;
+    }
+
+
+    @Override
+    public boolean is_exist(String id) {
+        return backing.is_exist(id);
+    }
+
+
+    @Override
+    public LogEvent getById(String id) {
+        return backing.getById(id);
+    }
+
+
+    @Override
+    public List<LogEvent> getAllLogs() {
+        return backing.getAllLogs();
+    }
+
+
+    @Override
+    public Map<String, Map<String, Long>> countByLoggerAndLevel() {
+        return backing.countByLoggerAndLevel();
+    }
+
+
+    @Override
+    public SortedMap<Instant, Map<String, Map<String, Long>>> countByTimeBucket(Duration width, Instant from, Instant to) {
+        return backing.countByTimeBucket(width, from, to);
+    }
+
+
+    /**
+     * Delete from the backing store, then mark the same documents deleted from their columns
+     */
+    @Override
+    public long delete(DeleteFilter filter) {
+        lock.writeLock().lock();
+        try {
+            long deleted = backing.delete(filter);
+            record(new WindowDelete(filter, null));
+            if (filter.isEmpty()) {
+                segments = new ArrayList<>();
+                return deleted;
+            }
+            long before = (filter.getBefore() == null) ? Long.MAX_VALUE : EventKey.micros(filter.getBefore());
+            int maxLevel = (filter.getMaxLevel() == null) ? LogLevels.OFF : LogLevels.ordinal(filter.getMaxLevel());
+            boolean[] loggers = new boolean[loggerNames.size()];
+            for (int logger = 0; logger < loggers.length; logger++) {
+                loggers[logger] = filter.getLoggerPrefix() == null
+                        || loggerNames.get(logger).startsWith(filter.getLoggerPrefix());
+            }
+            for (Segment segment : segments) {
+                segment.delete(before, maxLevel, loggers);
+            }
+            return deleted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Delete from the backing store, the document is found by its event time
+     */
+    @Override
+    public void deleteById(String id) {
+        lock.writeLock().lock();
+        try {
+            LogEvent logEvent = backing.getById(id);
+            backing.deleteById(id);
+            record(new WindowDelete(null, id));
+            if (logEvent == null) return;
+            long micros = EventKey.of(logEvent).getMicros();
+            for (Segment segment : segments) {
+                segment.delete(id, micros);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Stop merging and close the backing store
+     */
+    @Override
+    public void close() {
+        merger.shutdown();
+        try {
+            merger.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        backing.close();
+    }
+
+
+    /**
+     * Get the number of index segments, e.g. to check that merging keeps up with ingest
+     * @return the number of segments
+     */
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Merge on the calling thread until no size tier holds MERGE_FACTOR segments
+     */
+    void mergeNow() {
+        mergeLock.lock();
+        try {
+            List<Segment> inputs;
+            while ((inputs = pickMerge()) != null) {
+                merge(inputs);
+            }
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Record a delete for the batches being stored, the caller holds the write lock
+     */
+    private void record(WindowDelete windowDelete) {
+        deleteCount++;
+        if (savesInFlight > 0) {
+            windowDelete.number = deleteCount;
+            windowDeletes.add(windowDelete);
+        }
+    }
+
+
+    /**
+     * Mark the documents of a new segment selected by a delete made while its batch was stored,
+     * unless the delete ran before the event was stored. The caller holds the write lock
+     * @param deletesBefore number of deletes made before the batch was stored
+     */
+    private void markWindowDeletes(Segment segment, long deletesBefore) {
+        for (int doc = 0; doc < segment.size(); doc++) {
+            for (WindowDelete windowDelete : windowDeletes) {
+                if (windowDelete.number > deletesBefore && windowDelete.matches(segment, doc, loggerNames)
+                        && !backing.is_exist(segment.ids[doc])) {
+                    segment.markDeleted(doc);
+                    break;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Add a segment holding a batch of stored events, the caller holds the write lock or is the constructor
+     * @return the new segment, null for an empty batch
+     */
+    private Segment index(List<LogEvent> logEvents) {
+        if (logEvents.isEmpty()) return null;
+        int count = logEvents.size();
+        long[] micros = new long[count];
+        byte[] levels = new byte[count];
+        int[] loggers = new int[count];
+        String[] ids = new String[count];
+        Map<String, IntList> postings = new HashMap<>();
+        for (int doc = 0; doc < count; doc++) {
+            LogEvent logEvent = logEvents.get(doc);
+            micros[doc] = EventKey.of(logEvent).getMicros();
+            levels[doc] = (byte) LogLevels.ordinal(logEvent.getLevel());
+            loggers[doc] = loggerIds.computeIfAbsent(logEvent.getLogger(), name -> {
+                loggerNames.add(name);
+                return loggerNames.size() - 1;
+            });
+            ids[doc] = logEvent.getId();
+            for (String term : Tokenizer.terms(logEvent.getMessage())) {
+                postings.computeIfAbsent(term, k -> new IntList()).add(doc);
+            }
+        }
+        Segment segment = new Segment(micros, levels, loggers, ids, postings);
+        List<Segment> next = new ArrayList<>(segments);
+        next.add(segment);
+        segments = next;
+        return segment;
+    }
+
+
+    private void scheduleMerge() {
+        if (mergePending.compareAndSet(false, true)) {
+            try {
+                merger.execute(() -> {
+                    mergePending.set(false);
+                    try {
+                        mergeNow();
+                    } catch (RuntimeException e) {
+                        System.err.println("Text index merge failed: " + e.getMessage());
+                    }
+                });
+            } catch (RejectedExecutionException e) { // closed
+                mergePending.set(false);
+            }
+        }
+    }
+
+
+    /**
+     * Find MERGE_FACTOR segments in the same size tier (size rounded down to a power of MERGE_FACTOR)
+     * @return segments to merge, null if no tier is full
+     */
+    private List<Segment> pickMerge() {
+        lock.readLock().lock();
+        try {
+            Map<Integer, List<Segment>> tiers = new TreeMap<>();
+            for (Segment segment : segments) {
+                int tier = 0;
+                for (long size = segment.size(); size >= MERGE_FACTOR; size /= MERGE_FACTOR) {
+                    tier++;
+                }
+                List<Segment> sameTier = tiers.computeIfAbsent(tier, k -> new ArrayList<>());
+                sameTier.add(segment);
+                if (sameTier.size() == MERGE_FACTOR) return sameTier;
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Merge segments into one without the deleted documents.
+     * The merged segment is built without lock from a copy of the deletion bitmaps,
+     * documents deleted meanwhile are marked again when it replaces its inputs.
+     */
+    private void merge(List<Segment> inputs) {
+        List<long[]> deletedBefore = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Segment input : inputs) {
+                deletedBefore.add(input.deleted.clone());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int count = 0;
+        int[][] renumber = new int[inputs.size()][]; // input document → merged document before sorting
+        for (int i = 0; i < inputs.size(); i++) {
+            Segment input = inputs.get(i);
+            renumber[i] = new int[input.size()];
+            for (int doc = 0; doc < input.size(); doc++) {
+                renumber[i][doc] = isSet(deletedBefore.get(i), doc) ? -1 : count++;
+            }
+        }
+        long[] micros = new long[count];
+        byte[] levels = new byte[count];
+        int[] loggers = new int[count];
+        String[] ids = new String[count];
+        Map<String, IntList> postings = new HashMap<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            Segment input = inputs.get(i);
+            for (int doc = 0; doc < input.size(); doc++) {
+                int merged = renumber[i][doc];
+                if (merged < 0) continue;
+                micros[merged] = input.micros[doc];
+                levels[merged] = input.levels[doc];
+                loggers[merged] = input.loggers[doc];
+                ids[merged] = input.ids[doc];
+            }
+            for (int term = 0; term < input.terms.length; term++) {
+                IntList docs = null;
+                PostingIterator posting = input.posting(term);
+                for (int doc = posting.next(); doc != PostingIterator.END; doc = posting.next()) {
+                    if (renumber[i][doc] < 0) continue;
+                    if (docs == null) docs = postings.computeIfAbsent(input.terms[term], k -> new IntList());
+                    docs.add(renumber[i][doc]);
+                }
+            }
+        }
+        Segment result = new Segment(micros, levels, loggers, ids, postings);
+
+        lock.writeLock().lock();
+        try {
+            if (!segments.containsAll(inputs)) return; // cleared meanwhile
+            for (int i = 0; i < inputs.size(); i++) {
+                long[] deletedNow = inputs.get(i).deleted;
+                for (int doc = 0; doc < renumber[i].length; doc++) {
+                    if (renumber[i][doc] >= 0 && isSet(deletedNow, doc)) {
+                        result.delete(inputs.get(i).ids[doc], inputs.get(i).micros[doc]);
+                    }
+                }
+            }
+            List<Segment> next = new ArrayList<>(segments);
+            next.removeAll(inputs);
+            if (result.size() > 0) next.add(result);
+            segments = next;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+
+    /**
+     * A delete by filter or by id, made while a batch was stored but not yet indexed
+     */
+    private static final class WindowDelete {
+
+        final DeleteFilter filter; // null for a delete by id
+        final String id;
+        long number; // position among all deletes
+
+        WindowDelete(DeleteFilter filter, String id) {
+            this.filter = filter;
+            this.id = id;
+        }
+
+        boolean matches(Segment segment, int doc, List<String> loggerNames) {
+            if (filter == null) return segment.ids[doc].equals(id);
+            if (filter.getBefore() != null && segment.micros[doc] >= EventKey.micros(filter.getBefore())) return false;
+            if (filter.getMaxLevel() != null && segment.levels[doc] > LogLevels.ordinal(filter.getMaxLevel())) return false;
+            return filter.getLoggerPrefix() == null
+                    || loggerNames.get(segment.loggers[doc]).startsWith(filter.getLoggerPrefix());
+        }
+    }
+
+
+    /**
+     * Immutable index of a set of documents, except for the deletion bitmap
+     */
+    private static final class Segment {
+
+        final long[] micros; // latest first
+        final byte[] levels;
+        final int[] loggers;
+        final String[] ids;
+        final String[] terms; // sorted term dictionary
+        final int[] docFreq;
+        final byte[][] postings;
+        final long[] deleted;
+
+        /**
+         * Sort the documents by event time, latest first, and encode the posting lists
+         * @param postings term → documents, numbered in the order of the column arrays
+         */
+        Segment(long[] micros, byte[] levels, int[] loggers, String[] ids, Map<String, IntList> postings) {
+            int count = micros.length;
+            Integer[] order = new Integer[count];
+            for (int doc = 0; doc < count; doc++) {
+                order[doc] = doc;
+            }
+            Arrays.sort(order, Comparator.comparingLong((Integer doc) -> micros[doc])
+                    .thenComparing(doc -> ids[doc]).reversed());
+            this.micros = new long[count];
+            this.levels = new byte[count];
+            this.loggers = new int[count];
+            this.ids = new String[count];
+            int[] position = new int[count]; // document in build order → sorted document
+            for (int sorted = 0; sorted < count; sorted++) {
+                int doc = order[sorted];
+                this.micros[sorted] = micros[doc];
+                this.levels[sorted] = levels[doc];
+                this.loggers[sorted] = loggers[doc];
+                this.ids[sorted] = ids[doc];
+                position[doc] = sorted;
+            }
+            this.deleted = new long[(count + 63) / 64];
+
+            this.terms = postings.keySet().toArray(new String[0]);
+            Arrays.sort(terms);
+            this.docFreq = new int[terms.length];
+            this.postings = new byte[terms.length][];
+            for (int term = 0; term < terms.length; term++) {
+                IntList docs = postings.get(terms[term]);
+                int[] sorted = new int[docs.size];
+                for (int k = 0; k < docs.size; k++) {
+                    sorted[k] = position[docs.values[k]];
+                }
+                Arrays.sort(sorted);
+                docFreq[term] = sorted.length;
+                this.postings[term] = encode(sorted);
+            }
+        }
+
+        int size() {
+            return micros.length;
+        }
+
+        long maxTime() {
+            return (micros.length == 0) ? Long.MIN_VALUE : micros[0];
+        }
+
+        PostingIterator posting(int term) {
+            return new PostingIterator(postings[term], docFreq[term]);
+        }
+
+        /**
+         * Add the latest matches of this segment to the bounded heap
+         * @param segmentIndex index of this segment in the segment list, kept in the heap entries
+         * @param skip ids of events no longer stored, usually empty
+         */
+        void search(int segmentIndex, LogQuery query, int threshold, int logger, long fromMicros, long toMicros,
+                    Set<String> skip, PriorityQueue<long[]> latest) {
+            List<String> queryTerms = query.getTerms();
+            PostingIterator[] iterators = new PostingIterator[queryTerms.size()];
+            for (int i = 0; i < iterators.length; i++) {
+                int term = Arrays.binarySearch(terms, queryTerms.get(i));
+                if (term < 0) return; // no document holds every term
+                iterators[i] = posting(term);
+            }
+            Arrays.sort(iterators, Comparator.comparingInt((PostingIterator iterator) -> iterator.count));
+            int max = query.getLimit();
+            int doc = iterators[0].advance(firstBefore(toMicros));
+            candidates:
+            while (doc != PostingIterator.END) {
+                for (int i = 1; i < iterators.length; i++) {
+                    int other = iterators[i].advance(doc);
+                    if (other == PostingIterator.END) return;
+                    if (other > doc) {
+                        doc = iterators[0].advance(other);
+                        continue candidates;
+                    }
+                }
+                long time = micros[doc];
+                if (time < fromMicros) return; // the remaining documents are older
+                if (latest.size() == max && time <= latest.peek()[0]) return;
+                if (!isSet(deleted, doc) && levels[doc] >= threshold && (logger < 0 || loggers[doc] == logger)
+                        && (skip.isEmpty() || !skip.contains(ids[doc]))) {
+                    latest.add(new long[] {time, segmentIndex, doc});
+                    if (latest.size() > max) latest.poll();
+                }
+                doc = iterators[0].next();
+            }
+        }
+
+        /**
+         * Get the first document older than the bound
+         */
+        private int firstBefore(long toMicros) {
+            int low = 0;
+            int high = micros.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (micros[middle] >= toMicros) low = middle + 1; else high = middle;
+            }
+            return low;
+        }
+
+        void delete(long before, int maxLevel, boolean[] matchingLoggers) {
+            for (int doc = firstBefore(before); doc < micros.length; doc++) {
+                if (levels[doc] <= maxLevel && matchingLoggers[loggers[doc]]) markDeleted(doc);
+            }
+        }
+
+        void delete(String id, long eventMicros) {
+            for (int doc = firstBefore(eventMicros + 1); doc < micros.length && micros[doc] == eventMicros; doc++) {
+                if (ids[doc].equals(id)) markDeleted(doc);
+            }
+        }
+
+        void markDeleted(int doc) {
+            deleted[doc >>> 6] |= 1L << doc;
+        }
+
+        private static byte[] encode(int[] docs) {
+            byte[] bytes = new byte[docs.length * 5];
+            int length = 0;
+            int previous = -1;
+            for (int doc : docs) {
+                int delta = doc - previous; // at least 1
+                previous = doc;
+                while (delta >= 0x80) {
+                    bytes[length++] = (byte) (delta | 0x80);
+                    delta >>>= 7;
+                }
+                bytes[length++] = (byte) delta;
+            }
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+
+
+    /**
+     * Reader of one delta and varint encoded posting list, in increasing document order
+     */
+    private static final class PostingIterator {
+
+        static final int END = Integer.MAX_VALUE;
+
+        final int count;
+        private final byte[] bytes;
+        private int offset;
+        private int current = -1;
+
+        PostingIterator(byte[] bytes, int count) {
+            this.bytes = bytes;
+            this.count = count;
+        }
+
+        int next() {
+            if (offset == bytes.length) return current = END;
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[offset++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return current += delta;
+        }
+
+        /**
+         * Move to the first document at or after target
+         * @return that document, END if there is none
+         */
+        int advance(int target) {
+            while (current < target && current != END) {
+                next();
+            }
+            return current;
+        }
+    }
+
+
+    /**
+     * Growable int array
+     */
+    private static final class IntList {
+
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.nagare.logging.server;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+
+
+/**
+ * Dictionary entry for the thread where a log event occurred, referenced by log_events.thread_id
+ */
+@Entity
+@Table(name = "log_threads")
+public class ThreadName extends NameEntry {
+
+    public ThreadName() {
+    }
+}
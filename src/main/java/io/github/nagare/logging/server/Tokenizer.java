@@ -0,0 +1,58 @@
+package io.github.nagare.logging.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+
+/**
+ * Splits log messages and search text into terms, the same way for indexing and for querying.
+ * A term is a lower case run of letters and digits, e.g. "Payment timeout (id=42)" gives payment, timeout, id, 42.
+ * Terms longer than MAX_TERM_LENGTH are dropped, they are hashes or encoded payloads nobody searches for.
+ */
+final class Tokenizer {
+
+    static final int MAX_TERM_LENGTH = 64;
+
+    /**
+     * Private constructor prevents instantiation
+     */
+    private Tokenizer() {
+        throw new AssertionError("Cannot instantiate utility class");
+    }
+
+
+    /**
+     * Get the distinct terms of a text, in order of first occurrence
+     * @param text message or search text, may be null
+     * @return terms, empty if none
+     */
+    static List<String> terms(String text) {
+        if (text == null) return List.of();
+        Set<String> terms = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inTerm = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inTerm && start < 0) {
+                start = i;
+            } else if (!inTerm && start >= 0) {
+                if (i - start <= MAX_TERM_LENGTH) terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+
+    /**
+     * Check whether a text contains every term, for stores without an inverted index
+     * @param text message, may be null
+     * @param terms terms from terms()
+     * @return true if every term occurs in the text
+     */
+    static boolean containsAll(String text, List<String> terms) {
+        return terms.isEmpty() || terms(text).containsAll(terms);
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.nagare.logging.server;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import org.hibernate.type.SqlTypes;
+import org.hibernate.type.descriptor.WrapperOptions;
+import org.hibernate.type.descriptor.java.AbstractClassJavaType;
+import org.hibernate.type.descriptor.jdbc.JdbcType;
+import org.hibernate.type.descriptor.jdbc.JdbcTypeIndicators;
+
+
+/**
+ * Hibernate JavaType that keeps the id of LogEvent as a String in Java,
+ * but stores it as a native UUID column (H2, PostgreSQL) or BINARY(16) where no native type exists.
+ * The JSON contract keeps the 36-character text form, the conversion happens at the JPA boundary.
+ * This shrinks every row and every primary key index entry from 36+ bytes to 16 bytes.
+ * <br>
+ * A JPA AttributeConverter can not be used here, the specification does not apply converters to @Id.
+ * <a href="https://docs.jboss.org/hibernate/orm/6.6/userguide/html_single/Hibernate_User_Guide.html#basic-uuid">...</a>
+ */
+public class UuidStringJavaType extends AbstractClassJavaType<String> {
+
+    /**
+     * Public no-argument constructor, Hibernate instantiates it from @JavaType
+     */
+    public UuidStringJavaType() {
+        super(String.class);
+    }
+
+
+    /**
+     * Ask the dialect for its UUID column type, native uuid or binary(16)
+     * @param indicators information about the mapping context
+     * @return JdbcType registered for SqlTypes.UUID
+     */
+    @Override
+    public JdbcType getRecommendedJdbcType(JdbcTypeIndicators indicators) {
+        return indicators.getJdbcType(SqlTypes.UUID);
+    }
+
+
+    @Override
+    public String toString(String value) {
+        return value;
+    }
+
+
+    @Override
+    public String fromString(CharSequence string) {
+        return (string == null) ? null : string.toString();
+    }
+
+
+    /**
+     * Convert the text id into the form the JDBC driver expects
+     * @param value UUID in text form, must already be validated
+     * @param type UUID, byte[] or String depending on the dialect
+     * @param options wrapper options
+     * @return converted value
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <X> X unwrap(String value, Class<X> type, WrapperOptions options) {
+        if (value == null) return null;
+        UUID uuid = UUID.fromString(value);
+        if (UUID.class.isAssignableFrom(type)) return (X) uuid;
+        if (byte[].class.isAssignableFrom(type)) {
+            return (X) ByteBuffer.allocate(16)
+                    .putLong(uuid.getMostSignificantBits())
+                    .putLong(uuid.getLeastSignificantBits())
+                    .array();
+        }
+        if (String.class.isAssignableFrom(type)) return (X) uuid.toString();
+        throw unknownUnwrap(type);
+    }
+
+
+    /**
+     * Convert the value read by the JDBC driver back to the canonical text form
+     * @param value UUID, byte[] or String depending on the dialect
+     * @param options wrapper options
+     * @return lowercase 36-character UUID string
+     */
+    @Override
+    public <X> String wrap(X value, WrapperOptions options) {
+        if (value == null) return null;
+        if (value instanceof UUID uuid) return uuid.toString();
+        if (value instanceof byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new UUID(buffer.getLong(), buffer.getLong()).toString();
+        }
+        if (value instanceof String string) return UUID.fromString(string).toString();
+        throw unknownWrap(value.getClass());
+    }
+}
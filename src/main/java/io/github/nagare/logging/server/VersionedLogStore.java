@@ -0,0 +1,153 @@
+package io.github.nagare.logging.server;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * LogStore counting the writes made through it, in front of the stores shared by DatabaseInitializer.
+ * The version is bumped after every save and delete has completed, so a reader that sees a version
+ * also sees every write counted in it. Servlets use it to tell whether a previous response is still current.
+ * <br>
+ * Only writes made through this store are counted, with several server instances on one database
+ * each instance has its own version.
+ */
+public class VersionedLogStore implements LogStore {
+
+    private final LogStore backing;
+    private final AtomicLong version = new AtomicLong();
+    private final long startedAt = System.currentTimeMillis(); // versions restart at 0 with the server
+    private volatile long lastModified = startedAt;
+
+    /**
+     * @param backing store holding every event
+     */
+    public VersionedLogStore(LogStore backing) {
+        this.backing = backing;
+    }
+
+
+    /**
+     * Get the store behind the version counter
+     * @return backing LogStore
+     */
+    public LogStore getBacking() {
+        return backing;
+    }
+
+
+    /**
+     * Get the number of writes since startup
+     * @return data version, increasing
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+
+    /**
+     * Get an entity tag for the current version, different across restarts
+     * @return quoted strong ETag value
+     */
+    public String getETag() {
+        return "\"" + Long.toString(startedAt, 36) + "-" + version.get() + "\"";
+    }
+
+
+    /**
+     * Get the time of the last write, or of startup if nothing was written
+     * @return epoch milliseconds
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+
+    /**
+     * Count a write made around this store, e.g. partitions dropped by RetentionService
+     */
+    public void markModified() {
+        bump();
+    }
+
+
+    @Override
+    public void save(LogEvent logEvent) {
+        backing.save(logEvent);
+        bump();
+    }
+
+
+    @Override
+    public void saveAll(List<LogEvent> logEvents) {
+        backing.saveAll(logEvents);
+        bump();
+    }
+
+
+    @Override
+    public List<LogEvent> filterLogs(LogQuery query) {
+        return backing.filterLogs(query);
+    }
+
+
+    @Override
+    public boolean is_exist(String id) {
+        return backing.is_exist(id);
+    }
+
+
+    @Override
+    public LogEvent getById(String id) {
+        return backing.getById(id);
+    }
+
+
+    @Override
+    public List<LogEvent> getAllLogs() {
+        return backing.getAllLogs();
+    }
+
+
+    @Override
+    public Map<String, Map<String, Long>> countByLoggerAndLevel() {
+        return backing.countByLoggerAndLevel();
+    }
+
+
+    @Override
+    public SortedMap<Instant, Map<String, Map<String, Long>>> countByTimeBucket(Duration width, Instant from, Instant to) {
+        return backing.countByTimeBucket(width, from, to);
+    }
+
+
+    @Override
+    public long delete(DeleteFilter filter) {
+        long deleted = backing.delete(filter);
+        if (deleted > 0) bump(); // an hourly retention pass deleting nothing keeps the version, see markModified
+        return deleted;
+    }
+
+
+    @Override
+    public void deleteById(String id) {
+        backing.deleteById(id);
+        bump();
+    }
+
+
+    @Override
+    public void close() {
+        backing.close();
+    }
+
+
+    private void bump() {
+        lastModified = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
+}
@@ -0,0 +1,17 @@
+-- Convert log_events.id from VARCHAR(36) to a native 16-byte UUID.
+-- hibernate.hbm2ddl.auto=update never changes the type of an existing column,
+-- so databases created before this change need this script once.
+-- Run it while the application is stopped.
+
+-- PostgreSQL: native uuid type, the primary key index is rebuilt by ALTER TYPE
+ALTER TABLE log_events ALTER COLUMN id TYPE uuid USING id::uuid;
+
+-- MySQL / MariaDB: no native uuid type, use BINARY(16)
+-- ALTER TABLE log_events ADD COLUMN id_bin BINARY(16);
+-- UPDATE log_events SET id_bin = UNHEX(REPLACE(id, '-', ''));
+-- ALTER TABLE log_events DROP PRIMARY KEY, DROP COLUMN id;
+-- ALTER TABLE log_events CHANGE id_bin id BINARY(16) NOT NULL, ADD PRIMARY KEY (id);
+
+-- Size check (PostgreSQL), run before and after:
+-- SELECT pg_size_pretty(pg_table_size('log_events'))   AS table_size,
+--        pg_size_pretty(pg_indexes_size('log_events')) AS index_size;
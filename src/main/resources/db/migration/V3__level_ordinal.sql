@@ -0,0 +1,19 @@
+-- Convert log_events.level from VARCHAR(10) to a SMALLINT severity ordinal (see LogLevels).
+-- "level >= WARN" then becomes an indexable range predicate.
+-- Run it once while the application is stopped.
+
+-- PostgreSQL
+ALTER TABLE log_events ALTER COLUMN level TYPE smallint USING
+    CASE upper(level)
+        WHEN 'ALL'   THEN 0
+        WHEN 'TRACE' THEN 1
+        WHEN 'DEBUG' THEN 2
+        WHEN 'INFO'  THEN 3
+        WHEN 'WARN'  THEN 4
+        WHEN 'ERROR' THEN 5
+        WHEN 'FATAL' THEN 6
+        WHEN 'OFF'   THEN 7
+    END;
+
+CREATE INDEX IF NOT EXISTS idx_log_events_timestamp ON log_events (timestamp);
+CREATE INDEX IF NOT EXISTS idx_log_events_level_timestamp ON log_events (level, timestamp);
@@ -0,0 +1,23 @@
+-- Move repeated logger and thread names of log_events into dictionary tables.
+-- log_events keeps integer keys, see NameDictionary.
+-- Run it once while the application is stopped.
+
+-- PostgreSQL
+CREATE TABLE IF NOT EXISTS log_loggers (id serial PRIMARY KEY, name varchar(255) NOT NULL UNIQUE);
+CREATE TABLE IF NOT EXISTS log_threads (id serial PRIMARY KEY, name varchar(255) NOT NULL UNIQUE);
+
+INSERT INTO log_loggers (name) SELECT DISTINCT logger FROM log_events ON CONFLICT (name) DO NOTHING;
+INSERT INTO log_threads (name) SELECT DISTINCT thread FROM log_events ON CONFLICT (name) DO NOTHING;
+
+ALTER TABLE log_events ADD COLUMN logger_id integer;
+ALTER TABLE log_events ADD COLUMN thread_id integer;
+UPDATE log_events e SET logger_id = l.id FROM log_loggers l WHERE l.name = e.logger;
+UPDATE log_events e SET thread_id = t.id FROM log_threads t WHERE t.name = e.thread;
+ALTER TABLE log_events ALTER COLUMN logger_id SET NOT NULL;
+ALTER TABLE log_events ALTER COLUMN thread_id SET NOT NULL;
+
+ALTER TABLE log_events DROP COLUMN logger;
+ALTER TABLE log_events DROP COLUMN thread;
+
+-- Reclaim the space of the dropped columns
+VACUUM FULL log_events;
@@ -0,0 +1,19 @@
+-- Store each distinct error_details text once in log_stack_traces, keyed by its SHA-256 hash.
+-- log_events keeps error_hash, see StackTraceStore.
+-- Run it once while the application is stopped. Requires PostgreSQL 11+ for sha256().
+
+-- PostgreSQL
+CREATE TABLE IF NOT EXISTS log_stack_traces (hash varchar(64) PRIMARY KEY, details text NOT NULL);
+
+ALTER TABLE log_events ADD COLUMN error_hash varchar(64);
+UPDATE log_events SET error_hash = encode(sha256(convert_to(error_details, 'UTF8')), 'hex')
+    WHERE error_details IS NOT NULL;
+
+INSERT INTO log_stack_traces (hash, details)
+    SELECT DISTINCT ON (error_hash) error_hash, error_details FROM log_events WHERE error_hash IS NOT NULL
+    ON CONFLICT (hash) DO NOTHING;
+
+ALTER TABLE log_events DROP COLUMN error_details;
+
+-- Reclaim the space of the dropped column
+VACUUM FULL log_events;
@@ -0,0 +1,42 @@
+-- Rebuild log_events as a table partitioned by UTC day of event_time (PostgreSQL 11+).
+-- Retention then drops whole partitions (see PartitionManager) instead of deleting rows,
+-- and queries with time bounds only scan the matching days.
+-- Run it once while the application is stopped. Daily partitions for new data are
+-- created by the application every hour, a few days ahead.
+
+-- event_time is the parsed timestamp, added NOT NULL by this version of the application
+ALTER TABLE log_events ADD COLUMN IF NOT EXISTS event_time timestamptz;
+UPDATE log_events SET event_time = timestamp::timestamptz WHERE event_time IS NULL;
+ALTER TABLE log_events ALTER COLUMN event_time SET NOT NULL;
+
+ALTER TABLE log_events RENAME TO log_events_old;
+-- Renaming the table keeps the name of its primary key, free it for the new table
+ALTER TABLE log_events_old RENAME CONSTRAINT log_events_pkey TO log_events_old_pkey;
+DROP INDEX IF EXISTS idx_log_events_timestamp;
+DROP INDEX IF EXISTS idx_log_events_level_timestamp;
+DROP INDEX IF EXISTS idx_log_events_event_time;
+DROP INDEX IF EXISTS idx_log_events_level_event_time;
+
+-- The partition key must be part of the primary key, id stays unique through the application
+CREATE TABLE log_events (LIKE log_events_old INCLUDING DEFAULTS) PARTITION BY RANGE (event_time);
+ALTER TABLE log_events ADD PRIMARY KEY (id, event_time);
+CREATE INDEX idx_log_events_event_time ON log_events (event_time);
+CREATE INDEX idx_log_events_level_event_time ON log_events (level, event_time);
+
+-- Catches events far in the past or future, retention never drops it
+CREATE TABLE log_events_default PARTITION OF log_events DEFAULT;
+
+DO $$
+DECLARE
+    d date;
+BEGIN
+    FOR d IN SELECT DISTINCT (event_time AT TIME ZONE 'UTC')::date FROM log_events_old LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS log_events_p%s PARTITION OF log_events FOR VALUES FROM (%L) TO (%L)',
+                       to_char(d, 'YYYYMMDD'),
+                       d::timestamp AT TIME ZONE 'UTC',
+                       (d + 1)::timestamp AT TIME ZONE 'UTC');
+    END LOOP;
+END $$;
+
+INSERT INTO log_events SELECT * FROM log_events_old;
+DROP TABLE log_events_old;
@@ -0,0 +1,6 @@
+-- Index log_events by logger and event time, for GET /logs?logger=...
+-- The latest events of one logger are then read from the index instead of scanning every logger.
+-- On a partitioned table (V6) the index is created on every partition.
+
+-- PostgreSQL
+CREATE INDEX IF NOT EXISTS idx_log_events_logger_event_time ON log_events (logger_id, event_time);
@@ -0,0 +1,7 @@
+-- Record when each stack trace was last handed out, see StackTraceStore.
+-- RetentionService collects the stack traces no log event references, once unused for an hour,
+-- so a trace reused by an event being saved is never collected under it.
+
+-- PostgreSQL
+ALTER TABLE log_stack_traces ADD COLUMN IF NOT EXISTS last_used timestamp with time zone NOT NULL DEFAULT now();
+ALTER TABLE log_stack_traces ALTER COLUMN last_used DROP DEFAULT;
@@ -0,0 +1,272 @@
+package io.github.nagare.logging.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Conformance and performance suite shared by every LogStore engine.
+ * An engine is tested by a TestXxxLogStore class extending this one and creating an empty store.
+ */
+public abstract class LogStoreContract {
+
+    // Generous bounds, they catch accidental O(n²) or per-event round trips, not small regressions
+    private static final int PERF_EVENTS = 5000;
+    private static final long PERF_MAX_MILLIS = 15000;
+
+    protected LogStore store;
+    private final Instant base = Instant.parse("2025-06-01T12:00:00Z");
+
+    /**
+     * Create the engine under test, holding no log events
+     * @return empty LogStore
+     */
+    protected abstract LogStore createStore();
+
+
+    @BeforeEach
+    public void setUpStore() {
+        store = createStore();
+        store.deleteAll();
+    }
+
+    @AfterEach
+    public void tearDownStore() {
+        store.close();
+    }
+
+
+    /**
+     * Create a log event at base time plus the given number of seconds
+     */
+    protected LogEvent event(String logger, String level, int seconds) {
+        LogEvent logEvent = new LogEvent();
+        logEvent.setId(TestHelper.generateId());
+        logEvent.setMessage("Test message " + seconds);
+        logEvent.setTimestamp(base.plusSeconds(seconds).toString());
+        logEvent.setThread("main");
+        logEvent.setLogger(logger);
+        logEvent.setLevel(level);
+        return logEvent;
+    }
+
+
+    @Test
+    public void testSaveAndGetById() {
+        LogEvent logEvent = event("test.Logger", "ERROR", 0);
+        logEvent.setErrorDetails("java.lang.IllegalStateException\n\tat test.Logger.run(Logger.java:1)");
+        store.save(logEvent);
+        assertTrue(store.is_exist(logEvent.getId()));
+        LogEvent loaded = store.getById(logEvent.getId());
+        assertEquals(logEvent, loaded);
+        assertEquals(logEvent.getId(), loaded.getId());
+        assertEquals(logEvent.getErrorDetails(), loaded.getErrorDetails());
+        assertNull(store.getById(TestHelper.generateId()));
+        assertFalse(store.is_exist(TestHelper.generateId()));
+    }
+
+    @Test
+    public void testSaveAll() {
+        List<LogEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            batch.add(event("test.Logger", "INFO", i));
+        }
+        store.saveAll(batch);
+        assertEquals(120, store.getAllLogs().size());
+        assertTrue(store.is_exist(batch.get(119).getId()));
+    }
+
+    @Test
+    public void testFilterOrderAndLimit() {
+        for (int i = 0; i < 10; i++) {
+            store.save(event("test.Logger", "INFO", i));
+        }
+        List<LogEvent> logs = store.filterLogs("4", "ALL");
+        assertEquals(4, logs.size());
+        for (int i = 0; i < 4; i++) { // latest first
+            assertEquals(base.plusSeconds(9 - i).toString(), logs.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    public void testFilterLevel() {
+        for (int i = 0; i < 12; i++) {
+            store.save(event("test.Logger", LogLevels.name(1 + i % 6), i)); // TRACE .. FATAL
+        }
+        assertEquals(12, store.filterLogs("100", "ALL").size());
+        assertEquals(12, store.filterLogs("100", "TRACE").size());
+        List<LogEvent> warn = store.filterLogs("100", "WARN");
+        assertEquals(6, warn.size());
+        assertTrue(warn.stream().allMatch(log -> LogLevels.passes(log.getLevel(), "WARN")));
+        assertEquals(2, store.filterLogs("100", "FATAL").size());
+        assertTrue(store.filterLogs("100", "OFF").isEmpty());
+    }
+
+    @Test
+    public void testFilterTimeWindow() {
+        for (int i = 0; i < 10; i++) {
+            store.save(event("test.Logger", "INFO", i));
+        }
+        List<LogEvent> logs = store.filterLogs("100", "ALL", base.plusSeconds(3), base.plusSeconds(7));
+        assertEquals(4, logs.size()); // from inclusive, to exclusive
+        assertEquals(base.plusSeconds(6).toString(), logs.get(0).getTimestamp());
+        assertEquals(base.plusSeconds(3).toString(), logs.get(3).getTimestamp());
+        assertEquals(3, store.filterLogs("100", "ALL", null, base.plusSeconds(3)).size());
+        assertEquals(2, store.filterLogs("100", "ALL", base.plusSeconds(8), null).size());
+    }
+
+    @Test
+    public void testFilterLogger() {
+        for (int i = 0; i < 12; i++) {
+            store.save(event((i % 2 == 0) ? "com.pay.Service" : "com.web.Service", LogLevels.name(1 + i % 6), i));
+        }
+        List<LogEvent> pay = store.filterLogs(new LogQuery(100, "ERROR", "com.pay.Service", null, null));
+        assertEquals(2, pay.size()); // seconds 10 (FATAL) and 4 (ERROR)
+        assertEquals(base.plusSeconds(10).toString(), pay.get(0).getTimestamp());
+        assertEquals(base.plusSeconds(4).toString(), pay.get(1).getTimestamp());
+        List<LogEvent> web = store.filterLogs(new LogQuery(100, "ALL", "com.web.Service", base.plusSeconds(5), null));
+        assertEquals(4, web.size()); // seconds 11, 9, 7, 5
+        assertTrue(web.stream().allMatch(log -> log.getLogger().equals("com.web.Service")));
+        assertTrue(store.filterLogs(new LogQuery(100, "ALL", "com.pay", null, null)).isEmpty()); // exact name only
+    }
+
+    @Test
+    public void testFilterText() {
+        String[] messages = {"Payment timeout after 30s", "payment accepted", "Timeout: payment gateway",
+                "timeouts are retried", "User login"};
+        for (int i = 0; i < 10; i++) {
+            LogEvent logEvent = event("test.Logger", (i < 5) ? "INFO" : "ERROR", i);
+            logEvent.setMessage(messages[i % messages.length]);
+            store.save(logEvent);
+        }
+        List<String> terms = List.of("timeout", "payment");
+        List<LogEvent> logs = store.filterLogs(new LogQuery(100, "ALL", null, null, null, terms));
+        assertEquals(4, logs.size()); // whole words only, "timeouts" does not match
+        assertEquals(base.plusSeconds(7).toString(), logs.get(0).getTimestamp());
+        assertEquals(base.plusSeconds(0).toString(), logs.get(3).getTimestamp());
+        assertEquals(2, store.filterLogs(new LogQuery(100, "ERROR", null, null, null, terms)).size());
+        assertEquals(1, store.filterLogs(new LogQuery(1, "ALL", null, null, null, terms)).size());
+        assertEquals(2, store.filterLogs(new LogQuery(100, "ALL", null, base.plusSeconds(1), base.plusSeconds(6),
+                terms)).size()); // seconds 2 and 5
+        assertTrue(store.filterLogs(new LogQuery(100, "ALL", null, null, null, List.of("refund"))).isEmpty());
+    }
+
+    @Test
+    public void testFilterFields() {
+        for (int i = 0; i < 6; i++) {
+            LogEvent logEvent = event((i % 2 == 0) ? "a.Logger" : "b.Logger", (i < 3) ? "INFO" : "ERROR", i);
+            logEvent.setErrorDetails("java.lang.IllegalStateException " + i);
+            store.save(logEvent);
+        }
+        List<String> fields = List.of("timestamp", "level", "logger");
+        List<LogEvent> logs = store.filterLogs(new LogQuery(4, "ALL", null, null, null, List.of(), fields));
+        assertEquals(4, logs.size());
+        assertEquals(base.plusSeconds(5).toString(), logs.get(0).getTimestamp());
+        assertEquals("ERROR", logs.get(0).getLevel());
+        assertEquals("b.Logger", logs.get(0).getLogger());
+        // terms need the message even when it is not asked for
+        logs = store.filterLogs(new LogQuery(10, "ERROR", "a.Logger", null, null, List.of("message", "4"), fields));
+        assertEquals(1, logs.size());
+        assertEquals(base.plusSeconds(4).toString(), logs.get(0).getTimestamp());
+        assertThrows(IllegalArgumentException.class,
+                () -> new LogQuery(10, "ALL", null, null, null, List.of(), List.of("eventTime")));
+    }
+
+    @Test
+    public void testCountByLoggerAndLevel() {
+        store.save(event("a.Logger", "INFO", 0));
+        store.save(event("a.Logger", "INFO", 1));
+        store.save(event("a.Logger", "ERROR", 2));
+        store.save(event("b.Logger", "WARN", 3));
+        Map<String, Map<String, Long>> stats = store.countByLoggerAndLevel();
+        assertEquals(2, stats.size());
+        assertEquals(2L, stats.get("a.Logger").get("INFO"));
+        assertEquals(1L, stats.get("a.Logger").get("ERROR"));
+        assertNull(stats.get("a.Logger").get("WARN"));
+        assertEquals(1L, stats.get("b.Logger").get("WARN"));
+    }
+
+    @Test
+    public void testCountByTimeBucket() {
+        store.save(event("a.Logger", "INFO", 0));
+        store.save(event("a.Logger", "INFO", 59));
+        store.save(event("a.Logger", "ERROR", 60));
+        store.save(event("b.Logger", "WARN", 3600));
+        store.save(event("b.Logger", "WARN", -1)); // bucket before base
+        SortedMap<Instant, Map<String, Map<String, Long>>> perMinute = store.countByTimeBucket(Duration.ofMinutes(1), base, null);
+        assertEquals(List.of(base, base.plusSeconds(60), base.plusSeconds(3600)), List.copyOf(perMinute.keySet()));
+        assertEquals(Map.of("a.Logger", Map.of("INFO", 2L)), perMinute.get(base));
+        assertEquals(Map.of("a.Logger", Map.of("ERROR", 1L)), perMinute.get(base.plusSeconds(60)));
+
+        SortedMap<Instant, Map<String, Map<String, Long>>> perHour = store.countByTimeBucket(Duration.ofHours(1), null, base.plusSeconds(3600));
+        assertEquals(List.of(base.minusSeconds(3600), base), List.copyOf(perHour.keySet()));
+        assertEquals(1L, perHour.get(base.minusSeconds(3600)).get("b.Logger").get("WARN"));
+        assertEquals(Map.of("INFO", 2L, "ERROR", 1L), perHour.get(base).get("a.Logger"));
+    }
+
+    @Test
+    public void testCountByTimeBucketNanos() {
+        // bounds finer than the stored microseconds are truncated to them, as in filterLogs
+        store.save(event("a.Logger", "INFO", 1));
+        Instant bound = base.plusSeconds(1).plusNanos(500);
+        assertEquals(1, store.countByTimeBucket(Duration.ofMinutes(1), bound, null).size());
+        assertEquals(0, store.countByTimeBucket(Duration.ofMinutes(1), null, bound).size());
+    }
+
+    @Test
+    public void testDeleteFilter() {
+        for (int i = 0; i < 12; i++) {
+            store.save(event((i < 6) ? "com.pay.Service" : "com.web.Service", LogLevels.name(1 + i % 6), i));
+        }
+        assertEquals(2, store.delete(new DeleteFilter(null, "TRACE", null))); // 1 per logger
+        assertEquals(3, store.delete(DeleteFilter.before(base.plusSeconds(4)))); // seconds 1, 2, 3
+        assertEquals(2, store.delete(new DeleteFilter(null, null, "com.pay"))); // seconds 4, 5
+        assertEquals(5, store.getAllLogs().size());
+        assertTrue(store.getAllLogs().stream().allMatch(log -> log.getLogger().equals("com.web.Service")));
+    }
+
+    @Test
+    public void testDeleteByIdAndAll() {
+        LogEvent first = event("test.Logger", "INFO", 0);
+        store.save(first);
+        store.save(event("test.Logger", "INFO", 1));
+        store.deleteById(first.getId());
+        assertFalse(store.is_exist(first.getId()));
+        assertEquals(1, store.getAllLogs().size());
+        store.deleteAll();
+        assertTrue(store.getAllLogs().isEmpty());
+        assertTrue(store.countByLoggerAndLevel().isEmpty());
+    }
+
+    @Test
+    public void testPerformance() {
+        List<LogEvent> batch = new ArrayList<>();
+        for (int i = 0; i < PERF_EVENTS; i++) {
+            batch.add(event("perf.Logger" + (i % 20), LogLevels.name(1 + i % 6), i));
+        }
+        long start = System.nanoTime();
+        store.saveAll(batch);
+        long ingest = System.nanoTime();
+        List<LogEvent> latest = store.filterLogs("100", "WARN");
+        long query = System.nanoTime();
+        Map<String, Map<String, Long>> stats = store.countByLoggerAndLevel();
+        long end = System.nanoTime();
+
+        assertEquals(100, latest.size());
+        assertEquals(20, stats.size());
+        System.out.printf("%s: saveAll(%d) %d ms, filterLogs %d ms, stats %d ms%n",
+                store.getClass().getSimpleName(), PERF_EVENTS, Duration.ofNanos(ingest - start).toMillis(),
+                Duration.ofNanos(query - ingest).toMillis(), Duration.ofNanos(end - query).toMillis());
+        assertTrue(Duration.ofNanos(end - start).toMillis() < PERF_MAX_MILLIS);
+    }
+}
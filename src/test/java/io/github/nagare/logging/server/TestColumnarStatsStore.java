@@ -0,0 +1,87 @@
+package io.github.nagare.logging.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the LogStore conformance suite against the columnar stats store in front of the in-memory engine,
+// and tests for the following: deleteById in place, compaction, loading existing events,
+// time buckets from the columns agreeing with the engine.
+public class TestColumnarStatsStore extends LogStoreContract {
+
+    @Override
+    protected LogStore createStore() {
+        return new ColumnarStatsStore(new MemoryLogStore());
+    }
+
+
+    @Test
+    public void testDeleteById() {
+        LogEvent first = event("test.Logger", "INFO", 0);
+        store.save(first);
+        store.save(event("test.Logger", "INFO", 1));
+        store.save(event("test.Logger", "INFO", 0)); // same columns as the deleted event
+        store.deleteById(first.getId());
+        store.deleteById(first.getId()); // already deleted
+        assertEquals(2L, store.countByLoggerAndLevel().get("test.Logger").get("INFO"));
+        assertEquals(3, ((ColumnarStatsStore) store).getRowCount()); // marked in place
+    }
+
+    @Test
+    public void testCompaction() {
+        ColumnarStatsStore columns = (ColumnarStatsStore) store;
+        List<LogEvent> events = new ArrayList<>();
+        for (int i = 0; i < ColumnarStatsStore.CHUNK_ROWS + 10; i++) {
+            events.add(event("test.Logger", (i % 4 == 0) ? "WARN" : "INFO", i));
+        }
+        columns.saveAll(events);
+        assertEquals(0, columns.compact());
+
+        columns.delete(new DeleteFilter(null, "INFO", null)); // 3 rows out of 4, in both chunks
+        assertEquals(ColumnarStatsStore.CHUNK_ROWS * 3 / 4, columns.compact()); // the active chunk is left
+        assertEquals(ColumnarStatsStore.CHUNK_ROWS / 4 + 10, columns.getRowCount());
+        Map<String, Long> levels = columns.countByLoggerAndLevel().get("test.Logger");
+        assertEquals(ColumnarStatsStore.CHUNK_ROWS / 4 + 3, levels.get("WARN"));
+        assertNull(levels.get("INFO"));
+
+        columns.save(event("test.Logger", "INFO", 0)); // the active chunk is still last
+        assertEquals(1L, columns.countByLoggerAndLevel().get("test.Logger").get("INFO"));
+    }
+
+    @Test
+    public void testLoadExisting() {
+        MemoryLogStore backing = new MemoryLogStore();
+        backing.save(event("a.Logger", "WARN", 0));
+        backing.save(event("b.Logger", "ERROR", 1));
+        store = new ColumnarStatsStore(backing);
+        Map<String, Map<String, Long>> stats = store.countByLoggerAndLevel();
+        assertEquals(1L, stats.get("a.Logger").get("WARN"));
+        assertEquals(1L, stats.get("b.Logger").get("ERROR"));
+    }
+
+    @Test
+    public void testCountByTimeBucketMatchesEngine() {
+        ColumnarStatsStore columns = (ColumnarStatsStore) store;
+        List<LogEvent> events = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) { // several growths of the active chunk
+            events.add(event("logger." + (i % 7), LogLevels.name(1 + i % 6), i * 13));
+        }
+        columns.saveAll(events);
+        columns.delete(new DeleteFilter(null, "DEBUG", "logger.3"));
+        columns.deleteById(events.get(100).getId());
+
+        Instant base = Instant.parse(event("x", "INFO", 0).getTimestamp());
+        for (Duration width : List.of(Duration.ofMinutes(1), Duration.ofHours(1), Duration.ofDays(1))) {
+            assertEquals(columns.getBacking().countByTimeBucket(width, null, null),
+                    columns.countByTimeBucket(width, null, null));
+            assertEquals(columns.getBacking().countByTimeBucket(width, base.plusSeconds(600), base.plusSeconds(40_000)),
+                    columns.countByTimeBucket(width, base.plusSeconds(600), base.plusSeconds(40_000)));
+        }
+    }
+}
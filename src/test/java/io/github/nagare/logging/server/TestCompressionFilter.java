@@ -0,0 +1,182 @@
+package io.github.nagare.logging.server;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test for the following:
+// negotiation, threshold, skipped content types, ETag suffix, the bandwidth saved and asynchronous output.
+public class TestCompressionFilter {
+
+    private static final String LARGE = "logger\tINFO\tWARN\n".repeat(200);
+
+    /**
+     * Servlet writing a fixed body with a fixed content type and ETag
+     */
+    private static HttpServlet servlet(String contentType, String body) {
+        return new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.setHeader("ETag", "\"abc-1\"");
+                if ("\"abc-1\"".equals(req.getHeader("If-None-Match"))) {
+                    resp.setStatus(304);
+                    return;
+                }
+                resp.setContentType(contentType);
+                resp.setStatus(200);
+                resp.getWriter().write(body);
+            }
+        };
+    }
+
+    private static MockHttpServletResponse get(CompressionFilter filter, HttpServlet servlet,
+                                               String acceptEncoding) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/stats/csv");
+        if (acceptEncoding != null) request.addHeader("Accept-Encoding", acceptEncoding);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(servlet));
+        return response;
+    }
+
+
+    @Test
+    public void testNegotiate() {
+        assertEquals("gzip", CompressionFilter.negotiate("gzip, deflate, br"));
+        assertEquals("deflate", CompressionFilter.negotiate("gzip;q=0.5, deflate"));
+        assertEquals("deflate", CompressionFilter.negotiate("gzip;q=0, *"));
+        assertEquals("gzip", CompressionFilter.negotiate("*"));
+        assertNull(CompressionFilter.negotiate("br, identity"));
+        assertNull(CompressionFilter.negotiate(null));
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        CompressionFilter filter = new CompressionFilter(1024);
+        MockHttpServletResponse response = get(filter, servlet("text/csv", LARGE), "gzip");
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertEquals("\"abc-1--gzip\"", response.getHeader("ETag"));
+        byte[] compressed = response.getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertEquals(LARGE, new String(in.readAllBytes(), StandardCharsets.ISO_8859_1));
+        }
+        assertEquals(1, filter.getCompressedCount());
+        assertEquals(LARGE.length(), filter.getBytesIn());
+        assertEquals(compressed.length, filter.getBytesOut());
+        assertTrue(filter.getBytesSaved() > LARGE.length() / 2);
+        assertTrue(filter.getCompressionRatio() < 0.5);
+    }
+
+    @Test
+    public void testDeflate() throws Exception {
+        CompressionFilter filter = new CompressionFilter(1024);
+        MockHttpServletResponse response = get(filter, servlet("application/json", LARGE), "deflate");
+        assertEquals("deflate", response.getHeader("Content-Encoding"));
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertEquals(LARGE, new String(in.readAllBytes(), StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    @Test
+    public void testSkipped() throws Exception {
+        CompressionFilter filter = new CompressionFilter(1024);
+        // below the threshold
+        MockHttpServletResponse response = get(filter, servlet("text/csv", "logger\tINFO\n"), "gzip");
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("logger\tINFO\n", response.getContentAsString());
+        // already compressed
+        response = get(filter, servlet("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", LARGE), "gzip");
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("\"abc-1\"", response.getHeader("ETag"));
+        assertEquals(LARGE, response.getContentAsString());
+        // not accepted by the client
+        response = get(filter, servlet("text/csv", LARGE), null);
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(LARGE, response.getContentAsString());
+
+        assertEquals(0, filter.getCompressedCount());
+        assertEquals(3, filter.getUncompressedCount());
+    }
+
+    @Test
+    public void testConditionalGet() throws Exception {
+        // the client sends back the ETag of the compressed response
+        CompressionFilter filter = new CompressionFilter(1024);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/stats/csv");
+        request.addHeader("Accept-Encoding", "gzip");
+        request.addHeader("If-None-Match", "\"abc-1--gzip\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(servlet("text/csv", LARGE)));
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        // non-blocking output is passed through, what was held back goes out first
+        CompressionFilter filter = new CompressionFilter(1024);
+        HttpServlet async = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.setContentType("text/csv");
+                resp.setStatus(200);
+                ServletOutputStream out = resp.getOutputStream();
+                out.write("head\n".getBytes(StandardCharsets.ISO_8859_1));
+                AsyncContext context = req.startAsync();
+                out.setWriteListener(new WriteListener() {
+                    @Override
+                    public void onWritePossible() throws IOException {
+                        out.write(LARGE.getBytes(StandardCharsets.ISO_8859_1));
+                        context.complete();
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+                });
+            }
+        };
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/stats/csv");
+        request.setAsyncSupported(true);
+        request.addHeader("Accept-Encoding", "gzip");
+        MockHttpServletResponse response = TestHelper.createNonBlockingResponse();
+        filter.doFilter(request, response, new MockFilterChain(async));
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("head\n" + LARGE, response.getContentAsString());
+        assertEquals(1, filter.getUncompressedCount());
+        assertEquals(0, filter.getCompressedCount());
+
+        // once compression started, non-blocking output is refused
+        HttpServlet late = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.setContentType("text/csv");
+                resp.setStatus(200);
+                resp.getOutputStream().write(LARGE.getBytes(StandardCharsets.ISO_8859_1));
+                req.startAsync();
+                resp.getOutputStream().setWriteListener(null);
+            }
+        };
+        request = new MockHttpServletRequest("GET", "/stats/csv");
+        request.setAsyncSupported(true);
+        request.addHeader("Accept-Encoding", "gzip");
+        MockHttpServletRequest lateRequest = request;
+        assertThrows(IllegalStateException.class, () -> filter.doFilter(lateRequest,
+                TestHelper.createNonBlockingResponse(), new MockFilterChain(late)));
+    }
+}
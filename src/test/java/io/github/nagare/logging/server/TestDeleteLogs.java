@@ -11,6 +11,9 @@ import org.springframework.mock.web.MockServletConfig;
 import org.springframework.mock.web.MockServletContext;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -69,4 +72,98 @@ public class TestDeleteLogs {
         assertEquals(200, response.getStatus());
         assertTrue(repo.getAllLogs().isEmpty());
     }
+
+    @Test
+    public void testDoDelete3() throws ServletException, IOException {
+        // Delete up to a maximum level
+        TestHelper.populateDB(repo, 12); // 2 of each level
+        request.setParameter("level", "debug");
+        servlet.doDelete(request, response);
+        assertEquals(200, response.getStatus());
+        assertEquals(8, repo.getAllLogs().size());
+        assertTrue(repo.getAllLogs().stream()
+                .noneMatch(log -> log.getLevel().equals("TRACE") || log.getLevel().equals("DEBUG")));
+    }
+
+    @Test
+    public void testDoDelete4() throws ServletException, IOException {
+        // Delete by logger prefix, wildcard characters are literal
+        TestHelper.populateWithSameLogger(repo, 3, "com.pay_ment.Service");
+        TestHelper.populateWithSameLogger(repo, 2, "com.payXment.Service");
+        request.setParameter("logger", "com.pay_");
+        servlet.doDelete(request, response);
+        assertEquals(200, response.getStatus());
+        assertEquals(2, repo.getAllLogs().size());
+        assertTrue(repo.getAllLogs().stream().allMatch(log -> log.getLogger().equals("com.payXment.Service")));
+    }
+
+    @Test
+    public void testDoDelete5() throws ServletException, IOException {
+        // Delete events before a timestamp, the latest ones are kept
+        TestHelper.populateDB(repo, 10); // 1 minute apart
+        request.setParameter("before", Instant.now().minus(Duration.ofMinutes(5)).plusSeconds(30).toString());
+        servlet.doDelete(request, response);
+        assertEquals(200, response.getStatus());
+        assertEquals(5, repo.getAllLogs().size());
+    }
+
+    @Test
+    public void testDoDelete6() throws ServletException, IOException {
+        // Invalid before format
+        request.setParameter("before", "yesterday");
+        servlet.doDelete(request, response);
+        assertEquals(400, response.getStatus());
+        assertEquals("text/plain", response.getContentType());
+        assertTrue(response.getContentAsString().contains("Invalid before format. Expected: ISO-8601 format"));
+    }
+
+    @Test
+    public void testDoDelete7() throws IOException {
+        // Deletes run in bounded chunks
+        TestHelper.populateDB(repo, 10);
+        ChunkedDeleter deleter = new ChunkedDeleter(emf, 3, 0);
+        assertEquals(10, deleter.delete(DeleteFilter.ALL));
+        assertEquals(4, deleter.getChunkCount());
+        assertEquals(10, deleter.getTotalDeleted());
+        assertFalse(deleter.isRunning());
+        assertTrue(repo.getAllLogs().isEmpty());
+    }
+
+    @Test
+    public void testDoDelete8() throws ServletException, IOException {
+        // Delete one log event by id, others are kept
+        TestHelper.populateDB(repo, 3);
+        LogEvent logEvent = repo.getAllLogs().get(0);
+        request.setPathInfo("/" + logEvent.getId());
+        servlet.doDelete(request, response);
+        assertEquals(200, response.getStatus());
+        assertEquals(2, repo.getAllLogs().size());
+        assertFalse(repo.is_exist(logEvent.getId()));
+
+        response = new MockHttpServletResponse();
+        servlet.doDelete(request, response); // already gone
+        assertEquals(404, response.getStatus());
+
+        response = new MockHttpServletResponse();
+        request.setPathInfo("/not-a-uuid");
+        servlet.doDelete(request, response);
+        assertEquals(400, response.getStatus());
+        assertEquals(2, repo.getAllLogs().size());
+    }
+
+    @Test
+    public void testDoDelete9() throws ServletException, IOException {
+        // ALL and OFF mean the reverse of a maximum level on GET, a purge rejects them
+        TestHelper.populateDB(repo, 12);
+        for (String level : List.of("all", "OFF")) {
+            response = new MockHttpServletResponse();
+            request.setParameter("level", level);
+            servlet.doDelete(request, response);
+            assertEquals(400, response.getStatus());
+            assertTrue(response.getContentAsString().contains("ALL and OFF are not a maximum level"));
+        }
+        assertEquals(12, repo.getAllLogs().size());
+        assertThrows(IllegalArgumentException.class, () -> new DeleteFilter(null, "ALL", null));
+        assertThrows(IllegalArgumentException.class, () -> new DeleteFilter(null, "OFF", null));
+    }
 }
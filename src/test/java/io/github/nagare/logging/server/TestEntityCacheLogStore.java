@@ -0,0 +1,80 @@
+package io.github.nagare.logging.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the LogStore conformance suite against the entity cache in front of the in-memory engine,
+// and tests for the following: hits, invalidation by deleteById and by filtered deletes, LRU bound,
+// read copies.
+public class TestEntityCacheLogStore extends LogStoreContract {
+
+    @Override
+    protected LogStore createStore() {
+        return new EntityCacheLogStore(new MemoryLogStore(), 3);
+    }
+
+
+    @Test
+    public void testHitAndDeleteById() {
+        EntityCacheLogStore cache = (EntityCacheLogStore) store;
+        LogEvent logEvent = event("test.Logger", "INFO", 1);
+        cache.save(logEvent);
+        assertEquals(0, cache.getSize()); // filled by lookups only
+        assertEquals(logEvent, cache.getById(logEvent.getId()));
+        assertNotSame(cache.getById(logEvent.getId()), cache.getById(logEvent.getId())); // copies
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+
+        cache.deleteById(logEvent.getId());
+        assertEquals(0, cache.getSize());
+        assertNull(cache.getById(logEvent.getId()));
+        assertNull(cache.getBacking().getById(logEvent.getId()));
+    }
+
+    @Test
+    public void testFilteredDelete() {
+        EntityCacheLogStore cache = (EntityCacheLogStore) store;
+        LogEvent web = event("web.Handler", "INFO", 1);
+        LogEvent db = event("db.Pool", "INFO", 2);
+        cache.saveAll(List.of(web, db));
+        cache.getById(web.getId());
+        cache.getById(db.getId());
+        assertEquals(1, cache.delete(new DeleteFilter(null, null, "web.")));
+        assertEquals(1, cache.getSize()); // only the deleted event is invalidated
+        assertNull(cache.getById(web.getId()));
+        assertEquals(db, cache.getById(db.getId()));
+
+        cache.deleteAll();
+        assertEquals(0, cache.getSize());
+        assertNull(cache.getById(db.getId()));
+    }
+
+    @Test
+    public void testLruBound() {
+        EntityCacheLogStore cache = (EntityCacheLogStore) store;
+        for (int i = 0; i < 5; i++) {
+            LogEvent logEvent = event("test.Logger", "INFO", i);
+            cache.save(logEvent);
+            cache.getById(logEvent.getId());
+        }
+        assertEquals(3, cache.getSize());
+        assertEquals(5, cache.getMissCount());
+    }
+
+    @Test
+    public void testReadCopies() {
+        EntityCacheLogStore cache = (EntityCacheLogStore) store;
+        LogEvent logEvent = event("test.Logger", "INFO", 0);
+        cache.save(logEvent);
+        cache.getById(logEvent.getId()).setMessage("changed after a miss");
+        cache.getById(logEvent.getId()).setMessage("changed after a hit");
+        cache.filterLogs("1", "ALL").get(0).setMessage("changed after filterLogs");
+        assertEquals(1, cache.getHitCount()); // the second lookup is answered from the cache
+        assertEquals("Test message 0", cache.getById(logEvent.getId()).getMessage());
+        assertEquals("Test message 0", cache.filterLogs("1", "ALL").get(0).getMessage());
+        assertEquals("Test message 0", cache.getBacking().getById(logEvent.getId()).getMessage());
+    }
+}
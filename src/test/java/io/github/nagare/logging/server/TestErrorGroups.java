@@ -0,0 +1,144 @@
+package io.github.nagare.logging.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test for the following:
+// normalization of stack traces, grouping with first and last seen, eviction past the group limit, ordering, and the JSON of /stats/errors.
+public class TestErrorGroups {
+
+    private static final String TRACE = """
+            java.lang.IllegalStateException: order 1234 not found
+            \tat com.example.OrderService.find(OrderService.java:42)
+            \tat com.example.OrderService$$EnhancerBySpringCGLIB$$5d2a1f.find(<generated>)
+            \tat com.example.Api$$Lambda$14/0x0000000800c0b000.run(Unknown Source)
+            \tat com.example.Api.lambda$handle$0(Api.java:17)
+            \tat jdk.proxy2/jdk.proxy2.$Proxy12.find(Unknown Source)
+            \tat jdk.internal.reflect.GeneratedMethodAccessor31.invoke(Unknown Source)
+            Caused by: java.sql.SQLException: timeout after 30000 ms
+            \tat org.h2.Driver.connect(Driver.java:59)
+            \t... 5 more
+            """;
+
+    private ErrorGroups errors;
+
+    @BeforeEach
+    public void setUp() {
+        errors = new ErrorGroups(2);
+    }
+
+
+    private static LogEvent event(String errorDetails, String timestamp) {
+        LogEvent logEvent = new LogEvent();
+        logEvent.setId(UUID.randomUUID().toString());
+        logEvent.setMessage("failed");
+        logEvent.setTimestamp(timestamp);
+        logEvent.setThread("main");
+        logEvent.setLogger("com.example.OrderService");
+        logEvent.setLevel("ERROR");
+        logEvent.setErrorDetails(errorDetails);
+        return logEvent;
+    }
+
+
+    @Test
+    public void testNormalize() {
+        assertEquals("""
+                java.lang.IllegalStateException
+                at com.example.OrderService.find(OrderService.java)
+                at com.example.OrderService.find(<generated>)
+                at com.example.Api.run(Unknown Source)
+                at com.example.Api.lambda$handle$(Api.java)
+                at jdk.proxy2/jdk.proxy2.$Proxy.find(Unknown Source)
+                at jdk.internal.reflect.GeneratedMethodAccessor.invoke(Unknown Source)
+                Caused by: java.sql.SQLException
+                at org.h2.Driver.connect(Driver.java)
+                """, ErrorGroups.normalize(TRACE));
+    }
+
+    @Test
+    public void testGrouping() {
+        String otherBuild = TRACE.replace("1234", "99").replace(":42)", ":45)").replace("$$5d2a1f", "$$77aa")
+                .replace("Lambda$14/0x0000000800c0b000", "Lambda/0x0000000800d11228").replace("$0(", "$3(")
+                .replace("$Proxy12", "$Proxy7").replace("Accessor31", "Accessor2");
+        errors.record(event(TRACE, "2025-06-01T12:00:00Z"));
+        errors.record(event(otherBuild, "2025-06-01T13:00:00Z"));
+        errors.record(event(TRACE, "2025-06-01T11:00:00Z")); // late event
+        errors.record(event("java.lang.NullPointerException\n\tat com.example.Other.run(Other.java:1)", "2025-06-01T12:30:00Z"));
+        errors.record(event(null, "2025-06-01T12:30:00Z")); // no error
+
+        List<ErrorGroups.Group> top = errors.top(10);
+        assertEquals(2, top.size());
+        assertEquals(3, top.get(0).getCount());
+        assertEquals("java.lang.IllegalStateException", top.get(0).getException());
+        assertEquals("2025-06-01T11:00:00Z", top.get(0).getFirstSeen());
+        assertEquals("2025-06-01T13:00:00Z", top.get(0).getLastSeen());
+        assertEquals(TRACE, top.get(0).getSample()); // the first one
+        assertEquals(16, top.get(0).getFingerprint().length());
+        assertEquals("java.lang.NullPointerException", top.get(1).getException());
+
+        errors.record(event("java.lang.OutOfMemoryError", "2025-06-01T13:30:00Z")); // past maxGroups
+        assertEquals(2, errors.getGroupCount());
+        assertEquals(1, errors.getEvictedCount());
+        assertEquals(5, errors.getRecordedCount());
+        List<String> exceptions = errors.top(10).stream().map(ErrorGroups.Group::getException).toList();
+        assertEquals(List.of("java.lang.IllegalStateException", "java.lang.OutOfMemoryError"), exceptions); // the stalest is gone
+        assertEquals(1, errors.top(1).size());
+    }
+
+    @Test
+    public void testOrderByLastSeen() {
+        errors.record(event("java.lang.IllegalStateException", "2025-06-01T12:00:00.500Z"));
+        errors.record(event("java.lang.NullPointerException", "2025-06-01T12:00:00Z"));
+        List<String> exceptions = errors.top(10).stream().map(ErrorGroups.Group::getException).toList();
+        assertEquals(List.of("java.lang.IllegalStateException", "java.lang.NullPointerException"), exceptions); // latest first
+    }
+
+    @Test
+    public void testStatsErrors() throws Exception {
+        MockServletContext context = new MockServletContext();
+        context.setAttribute(ServletAttributes.LOG_STORE_ATTRIBUTE, new MemoryLogStore());
+        context.setAttribute(ServletAttributes.ERROR_GROUPS_ATTRIBUTE, errors);
+        LogsServlet logs = new LogsServlet();
+        logs.init(new MockServletConfig(context));
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletRequest post = new MockHttpServletRequest();
+            post.setContentType("application/json");
+            post.setContent(new ObjectMapper().writeValueAsBytes(event(TRACE.replace("1234", "" + i), "2025-06-01T12:00:0" + i + "Z")));
+            MockHttpServletResponse posted = new MockHttpServletResponse();
+            logs.doPost(post, posted);
+            assertEquals(201, posted.getStatus());
+        }
+        StatsErrorsServlet servlet = new StatsErrorsServlet();
+        servlet.init(new MockServletConfig(context));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.doGet(new MockHttpServletRequest(), response);
+        assertEquals(200, response.getStatus());
+        assertEquals("application/json", response.getContentType());
+        JsonNode json = new ObjectMapper().readTree(response.getContentAsByteArray());
+        assertEquals(1, json.get("groupCount").asInt());
+        JsonNode group = json.get("groups").get(0);
+        assertEquals(2, group.get("count").asLong());
+        assertEquals("2025-06-01T12:00:00Z", group.get("firstSeen").asText());
+        assertEquals("2025-06-01T12:00:01Z", group.get("lastSeen").asText());
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("limit", "0");
+        response = new MockHttpServletResponse();
+        servlet.doGet(request, response);
+        assertEquals(400, response.getStatus());
+        assertEquals("Limit must be between 1 and 1000", response.getContentAsString());
+    }
+}
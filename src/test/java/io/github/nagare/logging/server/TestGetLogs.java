@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 // Test for the following:
@@ -67,7 +68,6 @@ public class TestGetLogs {
                 }
                 """;
         LogEvent logEvent = TestHelper.createLogEvent(jsonLog);
-        //Persistency.DB.add(logEvent);
         repo.save(logEvent);
 
         request.setParameter("limit", "10");
@@ -309,4 +309,176 @@ public class TestGetLogs {
                 "Invalid log level. Must be one of: ALL, TRACE, DEBUG, INFO, WARN, ERROR, FATAL, OFF"));
     }
 
+    @Test
+    public void testDoGet19() throws ServletException, IOException {
+        // test level threshold is applied by the database together with the limit
+        TestHelper.populateDB(repo, 30); // 5 of each level
+        request.setParameter("limit", "8");
+        request.setParameter("level", "error");
+        servlet.doGet(request, response);
+        assertEquals(200, response.getStatus());
+        LogEvent[] resultEvents = TestHelper.createLogEventArray(response.getContentAsString());
+        assertEquals(8, resultEvents.length);
+        assertTrue(Arrays.stream(resultEvents)
+                .allMatch(log -> log.getLevel().equals("ERROR") || log.getLevel().equals("FATAL")));
+    }
+
+    @Test
+    public void testDoGet20() throws ServletException, IOException {
+        // test from/to time window, from inclusive and to exclusive
+        TestHelper.populateDB(repo, 10); // 1 minute apart, latest first
+        List<LogEvent> all = repo.filterLogs("10", "ALL");
+        request.setParameter("limit", "10");
+        request.setParameter("level", "all");
+        request.setParameter("from", all.get(6).getTimestamp());
+        request.setParameter("to", all.get(2).getTimestamp());
+        servlet.doGet(request, response);
+        assertEquals(200, response.getStatus());
+        LogEvent[] resultEvents = TestHelper.createLogEventArray(response.getContentAsString());
+        assertEquals(4, resultEvents.length);
+        assertEquals(all.get(3).getId(), resultEvents[0].getId());
+        assertEquals(all.get(6).getId(), resultEvents[3].getId());
+    }
+
+    @Test
+    public void testDoGet21() throws ServletException, IOException {
+        // test invalid from format
+        request.setParameter("limit", "10");
+        request.setParameter("level", "all");
+        request.setParameter("from", "yesterday");
+        servlet.doGet(request, response);
+        assertEquals(400, response.getStatus());
+        assertEquals("text/plain", response.getContentType());
+        assertTrue(response.getContentAsString().contains("Invalid from format. Expected: ISO-8601 format"));
+    }
+
+    @Test
+    public void testDoGet22() throws ServletException, IOException {
+        // test logger filter together with the level threshold
+        TestHelper.populateWithSameLogger(repo, 12, "com.example.Payment");
+        TestHelper.populateWithSameLogger(repo, 12, "com.example.Web");
+        request.setParameter("limit", "10");
+        request.setParameter("level", "error");
+        request.setParameter("logger", "com.example.Payment");
+        servlet.doGet(request, response);
+        assertEquals(200, response.getStatus());
+        LogEvent[] resultEvents = TestHelper.createLogEventArray(response.getContentAsString());
+        assertEquals(4, resultEvents.length); // 2 ERROR and 2 FATAL
+        assertTrue(Arrays.stream(resultEvents).allMatch(log -> log.getLogger().equals("com.example.Payment")));
+
+        response = new MockHttpServletResponse();
+        request.setParameter("logger", "com.example.Unknown");
+        servlet.doGet(request, response);
+        assertEquals("[]", response.getContentAsString());
+    }
+
+    @Test
+    public void testDoGet23() throws ServletException, IOException {
+        // test full-text search on the message, every word must occur
+        TestHelper.populateDB(repo, 12); // "Test message 0" .. "Test message 11"
+        request.setParameter("limit", "10");
+        request.setParameter("level", "all");
+        request.setParameter("q", "MESSAGE 11");
+        servlet.doGet(request, response);
+        assertEquals(200, response.getStatus());
+        LogEvent[] resultEvents = TestHelper.createLogEventArray(response.getContentAsString());
+        assertEquals(1, resultEvents.length);
+        assertEquals("Test message 11", resultEvents[0].getMessage());
+    }
+
+    @Test
+    public void testDoGet24() throws ServletException, IOException {
+        // test q without any word
+        request.setParameter("limit", "10");
+        request.setParameter("level", "all");
+        request.setParameter("q", "%%");
+        servlet.doGet(request, response);
+        assertEquals(400, response.getStatus());
+        assertTrue(response.getContentAsString().contains("Invalid q. Must contain letters or digits"));
+    }
+
+    @Test
+    public void testDoGet25() throws ServletException, IOException {
+        // test conditional GET on the version of a shared VersionedLogStore
+        VersionedLogStore versioned = new VersionedLogStore(repo);
+        MockServletContext context = new MockServletContext();
+        context.setAttribute(ServletAttributes.EMF_ATTRIBUTE, emf);
+        context.setAttribute(ServletAttributes.LOG_STORE_ATTRIBUTE, versioned);
+        LogsServlet versionedServlet = new LogsServlet();
+        versionedServlet.init(new MockServletConfig(context));
+        TestHelper.populateDB(versioned, 3);
+
+        request.setParameter("limit", "10");
+        request.setParameter("level", "all");
+        versionedServlet.doGet(request, response);
+        assertEquals(200, response.getStatus());
+        String etag = response.getHeader("ETag");
+        assertEquals(versioned.getETag(), etag);
+        assertTrue(response.containsHeader("Last-Modified"));
+
+        response = new MockHttpServletResponse();
+        request.addHeader("If-None-Match", etag);
+        versionedServlet.doGet(request, response);
+        assertEquals(304, response.getStatus());
+        assertEquals("", response.getContentAsString());
+
+        response = new MockHttpServletResponse();
+        request.setParameter("fields", "eventTime"); // a bad request is rejected even when unchanged
+        versionedServlet.doGet(request, response);
+        assertEquals(400, response.getStatus());
+        request.removeParameter("fields");
+
+        TestHelper.populateDB(versioned, 1); // a write changes the version
+        response = new MockHttpServletResponse();
+        versionedServlet.doGet(request, response);
+        assertEquals(200, response.getStatus());
+        assertEquals(4, TestHelper.createLogEventArray(response.getContentAsString()).length);
+        assertNotEquals(etag, response.getHeader("ETag"));
+    }
+
+    @Test
+    public void testDoGet26() throws ServletException, IOException {
+        // test projection with fields, and unknown fields
+        TestHelper.populateDB(repo, 3);
+        request.setParameter("limit", "10");
+        request.setParameter("level", "all");
+        request.setParameter("fields", "timestamp,level, logger");
+        servlet.doGet(request, response);
+        assertEquals(200, response.getStatus());
+        String result = response.getContentAsString();
+        assertTrue(result.startsWith("[{\"timestamp\":"));
+        assertTrue(result.contains("\"level\":"));
+        assertTrue(result.contains("\"logger\":"));
+        assertTrue(!result.contains("\"message\"") && !result.contains("\"errorDetails\"") && !result.contains("\"id\""));
+
+        response = new MockHttpServletResponse();
+        request.setParameter("fields", "timestamp,eventTime");
+        servlet.doGet(request, response);
+        assertEquals(400, response.getStatus());
+        assertTrue(response.getContentAsString().contains("Invalid fields"));
+    }
+
+    @Test
+    public void testDoGet27() throws ServletException, IOException {
+        // test GET /logs/{id}, found, unknown and invalid ids
+        TestHelper.populateDB(repo, 3);
+        LogEvent logEvent = repo.getAllLogs().get(1);
+        request.setPathInfo("/" + logEvent.getId().toUpperCase());
+        servlet.doGet(request, response);
+        assertEquals(200, response.getStatus());
+        assertEquals("application/json", response.getContentType());
+        assertEquals(logEvent, TestHelper.createLogEvent(response.getContentAsString()));
+
+        response = new MockHttpServletResponse();
+        request.setPathInfo("/" + TestHelper.generateId());
+        servlet.doGet(request, response);
+        assertEquals(404, response.getStatus());
+
+        response = new MockHttpServletResponse();
+        request.setPathInfo("/42");
+        servlet.doGet(request, response);
+        assertEquals(400, response.getStatus());
+        assertTrue(response.getContentAsString().contains("Invalid UUID format for id"));
+    }
+
 }
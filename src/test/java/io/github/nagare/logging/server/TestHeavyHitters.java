@@ -0,0 +1,167 @@
+package io.github.nagare.logging.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test for the following:
+// SpaceSaving error bounds, merge of slots, window expiry, message truncation, and the JSON of /stats/top.
+public class TestHeavyHitters {
+
+    private static final long NOW = 60_000L * 29_000_000; // on a minute boundary
+    private HeavyHitters hitters;
+
+    @BeforeEach
+    public void setUp() {
+        hitters = new HeavyHitters(3);
+    }
+
+
+    private static LogEvent event(String logger, String message) {
+        LogEvent logEvent = new LogEvent();
+        logEvent.setId(UUID.randomUUID().toString());
+        logEvent.setMessage(message);
+        logEvent.setTimestamp("2024-12-05T14:30:45Z");
+        logEvent.setThread("main");
+        logEvent.setLogger(logger);
+        logEvent.setLevel("INFO");
+        return logEvent;
+    }
+
+
+    @Test
+    public void testSpaceSavingBounds() {
+        SpaceSaving summary = new SpaceSaving(3);
+        Map<String, Integer> actual = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = (i % 2 == 0) ? "hot" : (i % 5 == 0) ? "warm" : "cold" + i;
+            summary.offer(key);
+            actual.merge(key, 1, Integer::sum);
+        }
+        Map<String, long[]> counts = new HashMap<>();
+        summary.addTo(counts);
+        assertEquals(3, counts.size()); // bounded whatever the number of keys
+        assertTrue(counts.containsKey("hot"));
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            long count = entry.getValue()[0];
+            long error = entry.getValue()[1];
+            assertTrue(count >= actual.get(entry.getKey()));
+            assertTrue(count - error <= actual.get(entry.getKey()));
+        }
+        assertEquals(1000, counts.values().stream().mapToLong(totals -> totals[0]).sum()); // counts add up to the stream
+    }
+
+    @Test
+    public void testMergeBounds() {
+        HeavyHitters small = new HeavyHitters(2);
+        for (String logger : List.of("a", "b", "b", "c", "c")) { // a is evicted from the first slot by c
+            small.record(event(logger, "m"), NOW);
+        }
+        for (int i = 0; i < 3; i++) {
+            small.record(event("a", "m"), NOW + 10_000); // next slot
+        }
+        HeavyHitters.Hitter a = small.top(HeavyHitters.Window.ONE_MINUTE, true, 10, NOW + 10_000).stream()
+                .filter(hitter -> hitter.getValue().equals("a")).findFirst().orElseThrow();
+        assertTrue(a.getCount() >= 4); // true count
+        assertTrue(a.getCount() - a.getError() <= 4);
+    }
+
+    @Test
+    public void testWindows() {
+        for (int i = 0; i < 5; i++) {
+            hitters.record(event("old.Logger", "old"), NOW - 30 * 60_000); // 30 minutes ago
+        }
+        for (int i = 0; i < 3; i++) {
+            hitters.record(event("recent.Logger", "recent"), NOW - 3 * 60_000); // 3 minutes ago
+        }
+        hitters.record(event("now.Logger", "now"), NOW);
+        hitters.record(event("now.Logger", "now"), NOW + 5_000);
+
+        List<HeavyHitters.Hitter> hour = hitters.top(HeavyHitters.Window.ONE_HOUR, true, 10, NOW + 5_000);
+        assertEquals(List.of("old.Logger", "recent.Logger", "now.Logger"), hour.stream().map(HeavyHitters.Hitter::getValue).toList());
+        assertEquals(5, hour.get(0).getCount());
+        assertEquals(0, hour.get(0).getError());
+
+        List<HeavyHitters.Hitter> five = hitters.top(HeavyHitters.Window.FIVE_MINUTES, true, 10, NOW + 5_000);
+        assertEquals(List.of("recent.Logger", "now.Logger"), five.stream().map(HeavyHitters.Hitter::getValue).toList());
+
+        List<HeavyHitters.Hitter> one = hitters.top(HeavyHitters.Window.ONE_MINUTE, false, 10, NOW + 5_000);
+        assertEquals(1, one.size());
+        assertEquals("now", one.get(0).getValue());
+        assertEquals(2, one.get(0).getCount());
+
+        assertEquals(List.of(), hitters.top(HeavyHitters.Window.ONE_MINUTE, true, 10, NOW + 2 * 60_000)); // expired
+        assertEquals(1, hitters.top(HeavyHitters.Window.ONE_HOUR, true, 1, NOW + 5_000).size()); // limit
+        assertEquals(10, hitters.getRecordedCount());
+    }
+
+    @Test
+    public void testLongMessages() {
+        String message = "x".repeat(HeavyHitters.MAX_MESSAGE_CHARS + 50);
+        hitters.record(event("test.Logger", message), NOW);
+        hitters.record(event("test.Logger", message + "y"), NOW);
+        List<HeavyHitters.Hitter> messages = hitters.top(HeavyHitters.Window.ONE_MINUTE, false, 10, NOW);
+        assertEquals(1, messages.size()); // counted on their start
+        assertEquals(HeavyHitters.MAX_MESSAGE_CHARS, messages.get(0).getValue().length());
+        assertEquals(2, messages.get(0).getCount());
+    }
+
+    @Test
+    public void testStatsTop() throws Exception {
+        MockServletContext context = new MockServletContext();
+        context.setAttribute(ServletAttributes.LOG_STORE_ATTRIBUTE, new MemoryLogStore());
+        context.setAttribute(ServletAttributes.HEAVY_HITTERS_ATTRIBUTE, hitters);
+        LogsServlet logs = new LogsServlet();
+        logs.init(new MockServletConfig(context));
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest post = new MockHttpServletRequest();
+            post.setContentType("application/json");
+            post.setContent(new ObjectMapper().writeValueAsBytes(event((i == 0) ? "quiet.Logger" : "noisy.Logger", "hello")));
+            MockHttpServletResponse posted = new MockHttpServletResponse();
+            logs.doPost(post, posted);
+            assertEquals(201, posted.getStatus());
+        }
+        StatsTopServlet servlet = new StatsTopServlet();
+        servlet.init(new MockServletConfig(context));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("window", "1m");
+        request.setParameter("limit", "1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.doGet(request, response);
+        assertEquals(200, response.getStatus());
+        assertEquals("application/json", response.getContentType());
+        JsonNode json = new ObjectMapper().readTree(response.getContentAsByteArray());
+        assertEquals("1m", json.get("window").asText());
+        assertEquals(1, json.get("loggers").size());
+        assertEquals("noisy.Logger", json.get("loggers").get(0).get("value").asText());
+        assertEquals(2, json.get("loggers").get(0).get("count").asLong());
+        assertEquals(3, json.get("messages").get(0).get("count").asLong());
+
+        request = new MockHttpServletRequest();
+        request.setParameter("window", "1d");
+        response = new MockHttpServletResponse();
+        servlet.doGet(request, response);
+        assertEquals(400, response.getStatus());
+        assertEquals("Invalid window. Must be one of: 1m, 5m, 1h", response.getContentAsString());
+
+        request = new MockHttpServletRequest();
+        request.setParameter("limit", "4");
+        response = new MockHttpServletResponse();
+        servlet.doGet(request, response);
+        assertEquals(400, response.getStatus());
+        assertEquals("Limit must be between 1 and 3", response.getContentAsString());
+    }
+}
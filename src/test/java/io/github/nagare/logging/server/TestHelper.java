@@ -10,6 +10,10 @@ import java.util.UUID;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.springframework.mock.web.MockHttpServletResponse;
+
 
 /**
  * Utility class providing helper methods for testing log servlets.
@@ -110,7 +114,7 @@ public class TestHelper {
      * @param count number of log events to create
      * @throws IOException if JSON parsing fails
      */
-    public static void populateDB(LogEventRepository repo, int count) throws IOException {
+    public static void populateDB(LogStore repo, int count) throws IOException {
         for (int i = 0; i < count; i++) {
             String json = createLogJson(
                     generateId(), // Chance of duplication is astronomically small
@@ -120,7 +124,6 @@ public class TestHelper {
                     );
             LogEvent logEvent = createLogEvent(json);
 
-            //Persistency.DB.add(logEvent);
             repo.save(logEvent);
         }
     }
@@ -132,7 +135,7 @@ public class TestHelper {
      * @param logger base logger name (will be appended with index)
      * @throws IOException if JSON parsing fails
      */
-    public static void populateWithLogger(LogEventRepository repo, int count, String logger) throws IOException {
+    public static void populateWithLogger(LogStore repo, int count, String logger) throws IOException {
         for (int i = 0; i < count; i++) {
             String json = createLogJsonWithLogger(
                     generateId(), // Chance of duplication is astronomically small
@@ -143,7 +146,6 @@ public class TestHelper {
             );
             LogEvent logEvent = createLogEvent(json);
 
-            //Persistency.DB.add(logEvent);
             repo.save(logEvent);
         }
     }
@@ -155,7 +157,7 @@ public class TestHelper {
      * @param logger logger name to use for all log events
      * @throws IOException if JSON parsing fails
      */
-    public static void populateWithSameLogger(LogEventRepository repo, int count, String logger) throws IOException {
+    public static void populateWithSameLogger(LogStore repo, int count, String logger) throws IOException {
         for (int i = 0; i < count; i++) {
             String json = createLogJsonWithLogger(
                     generateId(), // Chance of duplication is astronomically small
@@ -166,7 +168,6 @@ public class TestHelper {
             );
             LogEvent logEvent = createLogEvent(json);
 
-            //Persistency.DB.add(logEvent);
             repo.save(logEvent);
         }
     }
@@ -179,4 +180,49 @@ public class TestHelper {
     public static String generateId() {
         return UUID.randomUUID().toString();
     }
+
+
+    /**
+     * Creates a response whose output stream supports non-blocking writes like a container's, always ready.
+     * The write listener is called at once, the written bytes end up in the mock response.
+     * @return mock response for servlets using setWriteListener
+     */
+    public static MockHttpServletResponse createNonBlockingResponse() {
+        return new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                ServletOutputStream content = super.getOutputStream();
+                return new ServletOutputStream() {
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        try {
+                            listener.onWritePossible();
+                        } catch (IOException e) {
+                            listener.onError(e);
+                        }
+                    }
+
+                    @Override
+                    public void write(int b) throws IOException {
+                        content.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        content.write(b, off, len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        content.flush();
+                    }
+                };
+            }
+        };
+    }
 }
@@ -0,0 +1,80 @@
+package io.github.nagare.logging.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the LogStore conformance suite against the hot tier in front of the in-memory engine,
+// and tests for the following: hits inside the tier, misses falling back, deletes, warm-up, reads return copies.
+public class TestHotTierLogStore extends LogStoreContract {
+
+    private static final Duration FOREVER = Duration.ofDays(365_000); // test events are in the past
+
+    @Override
+    protected LogStore createStore() {
+        return new HotTierLogStore(new MemoryLogStore(), 10, FOREVER);
+    }
+
+
+    @Test
+    public void testHitAndMiss() {
+        HotTierLogStore hotTier = (HotTierLogStore) store;
+        for (int i = 0; i < 20; i++) {
+            hotTier.save(event("test.Logger", "INFO", i));
+        }
+        assertEquals(10, hotTier.getSize());
+        assertTrue(hotTier.getUsedBytes() > 0);
+
+        List<LogEvent> latest = hotTier.filterLogs("5", "ALL");
+        assertEquals(event("test.Logger", "INFO", 19).getTimestamp(), latest.get(0).getTimestamp());
+        assertEquals(1, hotTier.getHitCount());
+
+        assertEquals(15, hotTier.filterLogs("15", "ALL").size()); // older events come from the backing store
+        assertEquals(1, hotTier.getMissCount());
+
+        Instant from = Instant.parse(event("test.Logger", "INFO", 15).getTimestamp());
+        assertEquals(5, hotTier.filterLogs("100", "ALL", from, null).size()); // window inside the tier
+        assertEquals(2, hotTier.getHitCount());
+        assertEquals(2.0 / 3, hotTier.getHitRatio(), 0.001);
+    }
+
+    @Test
+    public void testDeleteThroughTier() {
+        LogEvent latest = event("test.Logger", "INFO", 5);
+        store.save(event("test.Logger", "INFO", 4));
+        store.save(latest);
+        store.deleteById(latest.getId());
+        assertNull(store.getById(latest.getId()));
+        assertEquals(1, store.filterLogs("1", "ALL").size());
+        assertNotEquals(latest.getTimestamp(), store.filterLogs("1", "ALL").get(0).getTimestamp());
+    }
+
+    @Test
+    public void testWarmUp() {
+        MemoryLogStore backing = new MemoryLogStore();
+        for (int i = 0; i < 20; i++) {
+            backing.save(event("test.Logger", "INFO", i));
+        }
+        HotTierLogStore hotTier = new HotTierLogStore(backing, 10, FOREVER);
+        store = hotTier;
+        assertTrue(hotTier.getSize() > 0);
+        assertEquals(3, hotTier.filterLogs("3", "ALL").size());
+        assertEquals(1, hotTier.getHitCount());
+    }
+
+    @Test
+    public void testReadCopies() {
+        HotTierLogStore hotTier = (HotTierLogStore) store;
+        LogEvent logEvent = event("test.Logger", "INFO", 0);
+        hotTier.save(logEvent);
+        hotTier.getById(logEvent.getId()).setMessage("changed after getById");
+        hotTier.filterLogs("1", "ALL").get(0).setMessage("changed after filterLogs");
+        assertEquals(1, hotTier.getHitCount()); // answered from the tier
+        assertEquals("Test message 0", hotTier.getById(logEvent.getId()).getMessage());
+        assertEquals("Test message 0", hotTier.filterLogs("1", "ALL").get(0).getMessage());
+    }
+}
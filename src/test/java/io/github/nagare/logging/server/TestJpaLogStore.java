@@ -0,0 +1,54 @@
+package io.github.nagare.logging.server;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Runs the LogStore conformance suite against the JPA engine on H2,
+ * and checks that a projection leaves the columns that were not asked for unread
+ */
+public class TestJpaLogStore extends LogStoreContract {
+
+    private static EntityManagerFactory emf;
+
+    @BeforeAll
+    public static void setUpClass() {
+        emf = TestDatabaseSetup.createTestEMF();
+    }
+
+    @Override
+    protected LogStore createStore() {
+        return new LogEventRepository(emf);
+    }
+
+
+    @Test
+    public void testProjectionSkipsColumns() {
+        LogEvent logEvent = event("test.Logger", "ERROR", 0);
+        logEvent.setErrorDetails("java.lang.IllegalStateException\n\tat test.Logger.run(Logger.java:1)");
+        store.save(logEvent);
+        List<LogEvent> logs = store.filterLogs(new LogQuery(10, "ALL", null, null, null, List.of(),
+                List.of("id", "level")));
+        assertEquals(1, logs.size());
+        LogEvent loaded = logs.get(0);
+        assertEquals(logEvent.getId(), loaded.getId());
+        assertEquals("ERROR", loaded.getLevel());
+        assertNull(loaded.getMessage());
+        assertNull(loaded.getErrorDetails());
+        assertNull(loaded.getLogger());
+        assertNull(loaded.getThread());
+        assertNull(loaded.getTimestamp());
+
+        loaded = store.filterLogs(new LogQuery(10, "ALL", null, null, null, List.of(),
+                List.of("thread", "errorDetails"))).get(0);
+        assertEquals("main", loaded.getThread());
+        assertEquals(logEvent.getErrorDetails(), loaded.getErrorDetails());
+        assertNull(loaded.getId());
+    }
+}
@@ -0,0 +1,132 @@
+package io.github.nagare.logging.server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test for the following:
+// filters, dropping for slow subscribers, subscriber limit, and the SSE stream of /logs/tail.
+public class TestLogTail {
+
+    private LogTail tail;
+
+    @BeforeEach
+    public void setUp() {
+        tail = new LogTail(3, 2);
+    }
+
+
+    private static LogEvent event(String logger, String level, String message) {
+        LogEvent logEvent = new LogEvent();
+        logEvent.setId(UUID.randomUUID().toString());
+        logEvent.setMessage(message);
+        logEvent.setTimestamp("2024-12-05T14:30:45Z");
+        logEvent.setThread("main");
+        logEvent.setLogger(logger);
+        logEvent.setLevel(level);
+        return logEvent;
+    }
+
+
+    @Test
+    public void testFilters() throws InterruptedException {
+        LogTail.Subscription subscription = tail.subscribe("WARN", "com.example.Payment");
+        tail.publish(event("com.example.Payment", "INFO", "too low"));
+        tail.publish(event("com.example.Other", "ERROR", "other logger"));
+        tail.publish(event("com.example.Payment", "ERROR", "match"));
+        List<LogEvent> events = subscription.poll(1000);
+        assertEquals(1, events.size());
+        assertEquals("match", events.get(0).getMessage());
+        assertEquals(List.of(), subscription.poll(10)); // nothing new
+        assertEquals(3, tail.getPublishedCount());
+    }
+
+    @Test
+    public void testSlowSubscriberDrops() throws InterruptedException {
+        LogTail.Subscription slow = tail.subscribe("ALL", null);
+        for (int i = 0; i < 10; i++) {
+            tail.publish(event("test.Logger", "INFO", "event " + i)); // never blocks
+        }
+        List<LogEvent> events = slow.poll(1000);
+        assertEquals(3, events.size());
+        assertEquals("event 0", events.get(0).getMessage());
+        assertEquals(7, slow.takeDropped());
+        assertEquals(0, slow.takeDropped());
+        assertEquals(7, tail.getDroppedCount());
+    }
+
+    @Test
+    public void testSubscriberLimitAndClose() throws InterruptedException {
+        LogTail.Subscription first = tail.subscribe("ALL", null);
+        assertNotNull(tail.subscribe("ALL", null));
+        assertNull(tail.subscribe("ALL", null));
+        assertEquals(1, tail.getRejectedCount());
+
+        first.close();
+        assertEquals(1, tail.getSubscriberCount());
+        assertNull(first.poll(1000));
+        tail.close();
+        assertEquals(0, tail.getSubscriberCount());
+        assertNull(tail.subscribe("ALL", null));
+    }
+
+    @Test
+    public void testServletStream() throws Exception {
+        MockServletContext context = new MockServletContext();
+        context.setAttribute(ServletAttributes.LOG_TAIL_ATTRIBUTE, tail);
+        LogTailServlet servlet = new LogTailServlet();
+        servlet.init(new MockServletConfig(context));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        request.setParameter("level", "error");
+        MockHttpServletResponse response = TestHelper.createNonBlockingResponse();
+        servlet.doGet(request, response); // returns at once, the scheduler thread writes
+        assertTrue(request.isAsyncStarted());
+        assertEquals(1, tail.getSubscriberCount());
+
+        LogEvent error = event("test.Logger", "ERROR", "disk full");
+        tail.publish(event("test.Logger", "INFO", "filtered out"));
+        tail.publish(error);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!response.getContentAsString().contains("disk full") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        tail.close(); // ends the stream
+        while (request.isAsyncStarted() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(request.isAsyncStarted()); // completed
+        assertEquals(0, tail.getSubscriberCount());
+        servlet.destroy();
+
+        assertEquals(200, response.getStatus());
+        assertEquals("text/event-stream;charset=UTF-8", response.getContentType());
+        String body = response.getContentAsString();
+        assertTrue(body.startsWith(": following\n\n"));
+        assertTrue(body.contains("id: " + error.getId() + "\nevent: log\ndata: {"));
+        assertTrue(body.contains("disk full"));
+        assertFalse(body.contains("filtered out"));
+    }
+
+    @Test
+    public void testServletInvalidLevel() throws Exception {
+        MockServletContext context = new MockServletContext();
+        LogTailServlet servlet = new LogTailServlet();
+        servlet.init(new MockServletConfig(context));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("level", "loud");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.doGet(request, response);
+        assertEquals(400, response.getStatus());
+        assertNotNull(context.getAttribute(ServletAttributes.LOG_TAIL_ATTRIBUTE)); // created without the listener
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.nagare.logging.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+
+import jakarta.servlet.ServletException;
+
+// Test for the following:
+// raw event export over several pages (with events sharing a time across page ends), filters, parameters.
+public class TestLogsExcel {
+
+    private static final Instant BASE = Instant.parse("2024-12-05T14:00:00Z");
+
+    private LogsExcelServlet servlet;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private MemoryLogStore store;
+
+    @BeforeEach
+    public void setUp() throws ServletException {
+        store = new MemoryLogStore();
+        MockServletContext context = new MockServletContext();
+        context.setAttribute(ServletAttributes.LOG_STORE_ATTRIBUTE, store);
+        servlet = new LogsExcelServlet();
+        servlet.init(new MockServletConfig(context));
+        request = new MockHttpServletRequest();
+        response = new MockHttpServletResponse();
+    }
+
+
+    /**
+     * Save count events, 7 per second, every third one at ERROR
+     */
+    private void populate(int count) {
+        List<LogEvent> logEvents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LogEvent logEvent = new LogEvent();
+            logEvent.setId(TestHelper.generateId());
+            logEvent.setMessage("Test message " + i);
+            logEvent.setTimestamp(BASE.plusSeconds(i / 7).toString());
+            logEvent.setThread("main");
+            logEvent.setLogger("test.Logger");
+            logEvent.setLevel((i % 3 == 0) ? "ERROR" : "INFO");
+            logEvents.add(logEvent);
+        }
+        store.saveAll(logEvents);
+    }
+
+    private XSSFSheet events() throws IOException {
+        XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(response.getContentAsByteArray()));
+        return workbook.getSheet("events");
+    }
+
+
+    @Test
+    public void testPages() throws ServletException, IOException {
+        populate(2 * LogsExcelServlet.PAGE_EVENTS + 500); // page ends fall inside a second
+        servlet.doGet(request, response);
+        assertEquals(200, response.getStatus());
+        assertEquals("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", response.getContentType());
+        XSSFSheet sheet = events();
+        assertEquals("message", sheet.getRow(0).getCell(5).getStringCellValue());
+        assertEquals(2 * LogsExcelServlet.PAGE_EVENTS + 500, sheet.getLastRowNum());
+        Set<String> ids = new HashSet<>();
+        Instant previous = Instant.MAX;
+        for (int r = 1; r <= sheet.getLastRowNum(); r++) {
+            XSSFRow row = sheet.getRow(r);
+            assertTrue(ids.add(row.getCell(0).getStringCellValue())); // none written twice
+            Instant time = Instant.parse(row.getCell(1).getStringCellValue());
+            assertFalse(time.isAfter(previous)); // latest first
+            previous = time;
+        }
+    }
+
+    @Test
+    public void testFiltersAndLimit() throws ServletException, IOException {
+        populate(70); // 10 seconds
+        request.setParameter("level", "error");
+        request.setParameter("from", BASE.plusSeconds(5).toString());
+        servlet.doGet(request, response);
+        XSSFSheet sheet = events();
+        assertEquals(12, sheet.getLastRowNum()); // events 35..69, every third
+        assertEquals("ERROR", sheet.getRow(1).getCell(2).getStringCellValue());
+
+        response = new MockHttpServletResponse();
+        request.setParameter("limit", "5");
+        servlet.doGet(request, response);
+        assertEquals(5, events().getLastRowNum());
+    }
+
+    @Test
+    public void testInvalidParameters() throws ServletException, IOException {
+        request.setParameter("limit", "0");
+        servlet.doGet(request, response);
+        assertEquals(400, response.getStatus());
+
+        response = new MockHttpServletResponse();
+        request.removeAllParameters();
+        request.setParameter("to", "tomorrow");
+        servlet.doGet(request, response);
+        assertEquals(400, response.getStatus());
+        assertTrue(response.getContentAsString().contains("Invalid from or to format"));
+    }
+}
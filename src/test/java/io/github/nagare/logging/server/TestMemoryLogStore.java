@@ -0,0 +1,47 @@
+package io.github.nagare.logging.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the LogStore conformance suite against the in-memory engine, and tests for the following:
+// oldest-first eviction within the memory budget, stored and returned events are copies.
+public class TestMemoryLogStore extends LogStoreContract {
+
+    @Override
+    protected LogStore createStore() {
+        return new MemoryLogStore();
+    }
+
+
+    @Test
+    public void testEviction() {
+        MemoryLogStore small = new MemoryLogStore(10_000);
+        store = small;
+        for (int i = 0; i < 100; i++) {
+            small.save(event("test.Logger", "INFO", i));
+        }
+        assertTrue(small.getUsedBytes() <= 10_000);
+        assertTrue(small.getEvictedCount() > 0);
+        int kept = small.getAllLogs().size();
+        assertEquals(100, kept + small.getEvictedCount());
+        // the latest events are kept
+        assertEquals(event("test.Logger", "INFO", 99).getTimestamp(), small.filterLogs("1", "ALL").get(0).getTimestamp());
+        assertEquals((long) kept, small.countByLoggerAndLevel().get("test.Logger").get("INFO"));
+    }
+
+    @Test
+    public void testStoredCopy() {
+        LogEvent logEvent = event("test.Logger", "INFO", 0);
+        store.save(logEvent);
+        logEvent.setMessage("changed after save");
+        assertEquals("Test message 0", store.getById(logEvent.getId()).getMessage());
+
+        // reads return copies too
+        store.getById(logEvent.getId()).setMessage("changed after getById");
+        store.filterLogs("10", "ALL").get(0).setMessage("changed after filterLogs");
+        store.filterLogs("10", "INFO").get(0).setMessage("changed after filterLogs by level");
+        store.getAllLogs().get(0).setMessage("changed after getAllLogs");
+        assertEquals("Test message 0", store.getById(logEvent.getId()).getMessage());
+    }
+}
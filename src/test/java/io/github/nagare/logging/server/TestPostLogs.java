@@ -523,4 +523,35 @@ public class TestPostLogs {
         assertEquals(201, response.getStatus());
     }
 
+    @Test
+    public void testDoPost23() throws ServletException, IOException {
+        // test uppercase UUID is stored in canonical form and found by either form
+        String jsonLog = TestHelper.createLogJson("D290F1EE-6C54-4B01-90E6-D701748F0851", "message", "debug", 0);
+        request.setContentType("application/json");
+        request.setContent(jsonLog.getBytes());
+        servlet.doPost(request, response);
+        assertEquals(201, response.getStatus());
+        assertEquals("d290f1ee-6c54-4b01-90e6-d701748f0851",
+                repo.getById("d290f1ee-6c54-4b01-90e6-d701748f0851").getId());
+        assertTrue(repo.is_exist("D290F1EE-6C54-4B01-90E6-D701748F0851"));
+    }
+
+    @Test
+    public void testDoPost24() throws ServletException, IOException {
+        // test repeated errorDetails is stored once and rehydrated for every event
+        String trace = "java.lang.IllegalStateException: boom\n\tat com.example.Foo.bar(Foo.java:42)";
+        LogEvent first = TestHelper.createLogEvent(TestHelper.createLogJson(TestHelper.generateId(), "first", "error", 0));
+        LogEvent second = TestHelper.createLogEvent(TestHelper.createLogJson(TestHelper.generateId(), "second", "error", 1));
+        first.setErrorDetails(trace);
+        second.setErrorDetails(trace);
+        StackTraceStore stackTraces = repo.getStackTraces();
+        long hits = stackTraces.getHitCount();
+        repo.save(first);
+        repo.save(second);
+        assertTrue(stackTraces.getHitCount() >= hits + 1);
+        assertTrue(stackTraces.getBytesSaved() >= trace.length());
+        assertEquals(trace, repo.getById(first.getId()).getErrorDetails());
+        assertEquals(trace, repo.getById(second.getId()).getErrorDetails());
+    }
+
 }
@@ -0,0 +1,119 @@
+package io.github.nagare.logging.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the LogStore conformance suite against the version counter in front of the in-memory engine,
+// and tests for the following: version bumps, cache hits, invalidation by version, LRU bound, coalescing.
+public class TestQueryCache extends LogStoreContract {
+
+    @Override
+    protected LogStore createStore() {
+        return new VersionedLogStore(new MemoryLogStore());
+    }
+
+
+    @Test
+    public void testVersionBumps() {
+        VersionedLogStore versioned = (VersionedLogStore) store;
+        assertEquals(0, versioned.getVersion());
+        LogEvent logEvent = event("test.Logger", "INFO", 1);
+        versioned.save(logEvent);
+        versioned.saveAll(List.of(event("test.Logger", "INFO", 2)));
+        assertEquals(2, versioned.getVersion());
+
+        versioned.filterLogs("10", "ALL");
+        assertEquals(2, versioned.getVersion()); // reads keep the version
+        versioned.delete(new DeleteFilter(null, null, "other"));
+        assertEquals(2, versioned.getVersion()); // so does a delete removing nothing
+        versioned.deleteById(logEvent.getId());
+        assertEquals(3, versioned.getVersion());
+    }
+
+    @Test
+    public void testHitAndInvalidation() throws IOException {
+        QueryCache cache = new QueryCache(10);
+        AtomicInteger loads = new AtomicInteger();
+        QueryCache.Loader loader = () -> new byte[] {(byte) loads.incrementAndGet()};
+
+        assertEquals(1, cache.get("q", 0, loader)[0]);
+        assertEquals(1, cache.get("q", 0, loader)[0]);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        assertEquals(2, cache.get("q", 1, loader)[0]); // written since, entry is stale
+        assertEquals(2, cache.get("q", 1, loader)[0]);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testLruBound() throws IOException {
+        QueryCache cache = new QueryCache(2);
+        QueryCache.Loader loader = () -> new byte[0];
+        cache.get("a", 0, loader);
+        cache.get("b", 0, loader);
+        cache.get("a", 0, loader); // a is now the most recently used
+        cache.get("c", 0, loader); // evicts b
+        assertEquals(2, cache.getSize());
+
+        cache.get("a", 0, loader);
+        assertEquals(2, cache.getHitCount());
+        cache.get("b", 0, loader);
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        QueryCache cache = new QueryCache(10);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        QueryCache.Loader slowLoader = () -> {
+            loads.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return new byte[] {42};
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.get("q", 0, slowLoader)));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (cache.getMissCount() + cache.getCoalescedCount() < 8 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            for (Future<byte[]> result : results) {
+                assertEquals(42, result.get(5, TimeUnit.SECONDS)[0]);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(7, cache.getCoalescedCount());
+    }
+
+    @Test
+    public void testLoaderFailure() {
+        QueryCache cache = new QueryCache(10);
+        assertThrows(IOException.class, () -> cache.get("q", 0, () -> { throw new IOException("down"); }));
+        assertEquals(0, cache.getSize()); // failures are not cached
+    }
+}
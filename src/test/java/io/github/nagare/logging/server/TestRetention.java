@@ -0,0 +1,148 @@
+package io.github.nagare.logging.server;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test for the following:
+// retention window applied by RetentionService, H2 is not partitioned so rows are deleted,
+// collection of orphaned stack traces.
+public class TestRetention {
+
+    private static EntityManagerFactory emf;
+    private LogEventRepository repo;
+
+    @BeforeAll
+    public static void setUpClass() {
+        // Create EMF once for all tests in this class
+        emf = TestDatabaseSetup.createTestEMF();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        repo = new LogEventRepository(emf);
+        TestDatabaseSetup.clearDatabase(emf);
+    }
+
+    // Helper method to save a log event the given number of days ago
+    private LogEvent saveDaysAgo(int days) throws IOException {
+        return saveDaysAgo(days, null);
+    }
+
+    // Helper method to save a log event with the given errorDetails the given number of days ago
+    private LogEvent saveDaysAgo(int days, String errorDetails) throws IOException {
+        LogEvent logEvent = TestHelper.createLogEvent(
+                TestHelper.createLogJson(TestHelper.generateId(), "day " + days, "info", 0));
+        logEvent.setTimestamp(Instant.now().minus(Duration.ofDays(days)).toString());
+        logEvent.setErrorDetails(errorDetails);
+        repo.save(logEvent);
+        return logEvent;
+    }
+
+
+    @Test
+    public void testRetention1() throws IOException {
+        // test events outside the window are removed, today and yesterday are kept
+        LogEvent today = saveDaysAgo(0);
+        LogEvent yesterday = saveDaysAgo(1);
+        saveDaysAgo(3);
+        saveDaysAgo(10);
+        PartitionManager partitions = new PartitionManager(emf);
+        assertFalse(partitions.isPartitioned());
+        assertEquals(2, new RetentionService(partitions, new ChunkedDeleter(emf, 1, 0), 2).runOnce());
+        List<LogEvent> remaining = repo.getAllLogs();
+        assertEquals(2, remaining.size());
+        assertTrue(remaining.stream().anyMatch(log -> log.getId().equals(today.getId())));
+        assertTrue(remaining.stream().anyMatch(log -> log.getId().equals(yesterday.getId())));
+    }
+
+    @Test
+    public void testRetention2() throws IOException {
+        // test retention 0 keeps everything
+        saveDaysAgo(0);
+        saveDaysAgo(400);
+        assertEquals(0, new RetentionService(new PartitionManager(emf), new ChunkedDeleter(emf), 0).runOnce());
+        assertEquals(2, repo.getAllLogs().size());
+    }
+
+    @Test
+    public void testRetention3() {
+        // test negative retention is rejected
+        assertThrows(IllegalArgumentException.class, () -> new RetentionService(new PartitionManager(emf), new ChunkedDeleter(emf), -1));
+    }
+
+    @Test
+    public void testRetention4() {
+        // test dropped partitions bump the version, although the LogStore deletes nothing
+        PartitionManager partitions = new PartitionManager(emf) {
+            @Override
+            public long dropBefore(LocalDate cutoff) {
+                return 1;
+            }
+        };
+        VersionedLogStore store = new VersionedLogStore(repo);
+        String etag = store.getETag();
+        assertEquals(0, new RetentionService(partitions, null, store, 2).runOnce());
+        assertEquals(1, store.getVersion());
+        assertNotEquals(etag, store.getETag());
+    }
+
+    @Test
+    public void testRetention5() throws IOException {
+        // test stack traces of deleted events are collected once unused for the grace period, shared ones are kept
+        saveDaysAgo(10, "expired trace");
+        LogEvent kept = saveDaysAgo(0, "shared trace");
+        LogEvent shared = saveDaysAgo(1, "shared trace");
+
+        StackTraceStore stackTraces = new StackTraceStore(emf); // nothing cached
+        assertEquals(1, new RetentionService(null, stackTraces, repo, 2).runOnce());
+        String expired = StackTraceStore.hash("expired trace");
+        assertEquals(1, stackTraces.load(List.of(expired)).size()); // used just now
+
+        Instant later = Instant.now().plus(StackTraceStore.GRACE).plusSeconds(60);
+        assertEquals(1, stackTraces.deleteOrphans(later));
+        assertTrue(new StackTraceStore(emf).load(List.of(expired)).isEmpty());
+        repo.deleteById(kept.getId());
+        assertEquals(0, stackTraces.deleteOrphans(later)); // still referenced by the other event
+        assertEquals("shared trace", repo.getById(shared.getId()).getErrorDetails());
+
+        repo.deleteById(shared.getId());
+        assertEquals(1, stackTraces.deleteOrphans(later));
+    }
+
+    @Test
+    public void testRetention6() {
+        // test store() interleaved with the orphan collection never returns a hash whose row is gone
+        StackTraceStore stackTraces = new StackTraceStore(emf);
+        StackTraceStore collector = new StackTraceStore(emf); // e.g. another server
+        Instant start = Instant.now();
+        String hash = stackTraces.store("orphan trace", start); // its event was never saved
+
+        // reused just before the collection: the old cache entry is checked in the database, the row is used again
+        Instant later = start.plus(StackTraceStore.GRACE).plusSeconds(60);
+        assertEquals(hash, stackTraces.store("orphan trace", later));
+        assertEquals(0, collector.deleteOrphans(later));
+
+        // a cache hit within half the grace period is safe, no collector may delete the row yet
+        Instant soon = later.plus(StackTraceStore.GRACE.dividedBy(2)).minusSeconds(60);
+        assertEquals(hash, stackTraces.store("orphan trace", soon));
+        assertEquals(0, collector.deleteOrphans(soon));
+
+        // collected after the cache entry was made: the cached hash is inserted again, not trusted
+        Instant much = later.plus(StackTraceStore.GRACE).plusSeconds(60);
+        assertEquals(1, collector.deleteOrphans(much));
+        long misses = stackTraces.getMissCount();
+        assertEquals(hash, stackTraces.store("orphan trace", much));
+        assertEquals(misses + 1, stackTraces.getMissCount());
+        assertEquals("orphan trace", collector.load(List.of(hash)).get(hash));
+    }
+}
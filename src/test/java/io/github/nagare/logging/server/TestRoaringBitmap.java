@@ -0,0 +1,96 @@
+package io.github.nagare.logging.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test for the following:
+// sparse (array) and dense (bitmap) containers, intersection, union, ordered iteration, serialization.
+public class TestRoaringBitmap {
+
+    private static List<Integer> values(RoaringBitmap bitmap) {
+        List<Integer> values = new ArrayList<>();
+        for (PrimitiveIterator.OfInt it = bitmap.iterator(); it.hasNext(); ) {
+            values.add(it.nextInt());
+        }
+        return values;
+    }
+
+    private static RoaringBitmap of(Iterable<Integer> values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        values.forEach(bitmap::add);
+        return bitmap;
+    }
+
+
+    @Test
+    public void testAddAndContains() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bitmap.add(70000);
+        bitmap.add(3);
+        bitmap.add(3);
+        bitmap.add(1);
+        assertTrue(bitmap.contains(1));
+        assertTrue(bitmap.contains(70000));
+        assertFalse(bitmap.contains(2));
+        assertEquals(3, bitmap.cardinality());
+        assertEquals(List.of(1, 3, 70000), values(bitmap)); // increasing order across containers
+    }
+
+    @Test
+    public void testDenseContainer() {
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 10000; i++) {
+            expected.add(i * 3); // more than 4096 values under one key
+        }
+        RoaringBitmap bitmap = of(expected);
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertEquals(new ArrayList<>(expected), values(bitmap));
+        assertFalse(bitmap.contains(1));
+    }
+
+    @Test
+    public void testAndOr() {
+        TreeSet<Integer> evens = new TreeSet<>();
+        TreeSet<Integer> threes = new TreeSet<>();
+        for (int i = 0; i < 200000; i++) {
+            if (i % 2 == 0) evens.add(i);
+            if (i % 3 == 0 && i < 9000) threes.add(i); // sparse, only in the first containers
+        }
+        RoaringBitmap a = of(evens);
+        RoaringBitmap b = of(threes);
+
+        TreeSet<Integer> both = new TreeSet<>(evens);
+        both.retainAll(threes);
+        assertEquals(new ArrayList<>(both), values(a.and(b)));
+        TreeSet<Integer> either = new TreeSet<>(evens);
+        either.addAll(threes);
+        assertEquals(new ArrayList<>(either), values(a.or(b)));
+        assertEquals(evens.size(), a.cardinality()); // operands unchanged
+        assertTrue(new RoaringBitmap().and(a).isEmpty());
+    }
+
+    @Test
+    public void testSerialization() throws IOException {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = 0; i < 100000; i += (i < 50000) ? 1 : 97) {
+            bitmap.add(i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.writeTo(new DataOutputStream(bytes));
+        RoaringBitmap read = RoaringBitmap.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(values(bitmap), values(read));
+        read.add(100001); // still growable
+        assertTrue(read.contains(100001));
+    }
+}
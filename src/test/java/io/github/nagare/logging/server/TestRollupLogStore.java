@@ -0,0 +1,203 @@
+package io.github.nagare.logging.server;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the LogStore conformance suite against the rollup tables in front of the in-memory engine,
+// and tests for the following: buckets per width, deletes on and off bucket boundaries, loading existing events, compaction, stats time ranges.
+public class TestRollupLogStore extends LogStoreContract {
+
+    private static final Instant BASE = Instant.parse("2025-06-01T12:00:00Z"); // base time of the contract events
+
+    @Override
+    protected LogStore createStore() {
+        return new RollupLogStore(new MemoryLogStore(), Duration.ofHours(48), Duration.ofDays(90));
+    }
+
+
+    @Test
+    public void testBuckets() {
+        RollupLogStore rollups = (RollupLogStore) store;
+        for (int i = 0; i < 10; i++) {
+            rollups.save(event("test.Logger", (i % 2 == 0) ? "INFO" : "ERROR", i * 30)); // every 30 seconds
+        }
+        rollups.save(event("other.Logger", "WARN", 3600));
+
+        SortedMap<Instant, Map<String, Map<String, Long>>> perMinute =
+                rollups.countByBucket(RollupLogStore.Bucket.MINUTE, BASE, BASE.plus(Duration.ofMinutes(5)));
+        assertEquals(5, perMinute.size());
+        assertEquals(BASE, perMinute.firstKey());
+        assertEquals(1L, perMinute.get(BASE).get("test.Logger").get("INFO"));
+        assertEquals(1L, perMinute.get(BASE).get("test.Logger").get("ERROR"));
+        assertEquals(0L, perMinute.get(BASE).get("test.Logger").get("FATAL"));
+
+        SortedMap<Instant, Map<String, Map<String, Long>>> perHour =
+                rollups.countByBucket(RollupLogStore.Bucket.HOUR, null, null);
+        assertEquals(List.of(BASE, BASE.plus(Duration.ofHours(1))), List.copyOf(perHour.keySet()));
+        assertEquals(5L, perHour.get(BASE).get("test.Logger").get("INFO"));
+        assertNull(perHour.get(BASE).get("other.Logger"));
+
+        // from and to are rounded out to whole buckets
+        SortedMap<Instant, Map<String, Map<String, Long>>> perDay = rollups.countByBucket(
+                RollupLogStore.Bucket.DAY, BASE.plusSeconds(1), BASE.plusSeconds(2));
+        assertEquals(Instant.parse("2025-06-01T00:00:00Z"), perDay.firstKey());
+        assertEquals(1L, perDay.get(perDay.firstKey()).get("other.Logger").get("WARN"));
+    }
+
+    @Test
+    public void testDeleteOnBoundary() {
+        RollupLogStore rollups = (RollupLogStore) store;
+        rollups.save(event("test.Logger", "INFO", 0));
+        rollups.save(event("test.Logger", "ERROR", 0));
+        rollups.save(event("test.Logger", "INFO", 3600));
+        rollups.delete(new DeleteFilter(BASE.plus(Duration.ofHours(1)), "WARN", null));
+        SortedMap<Instant, Map<String, Map<String, Long>>> perHour =
+                rollups.countByBucket(RollupLogStore.Bucket.HOUR, null, null);
+        assertEquals(0L, perHour.get(BASE).get("test.Logger").get("INFO"));
+        assertEquals(1L, perHour.get(BASE).get("test.Logger").get("ERROR")); // above the maximum level
+        assertEquals(1L, perHour.get(BASE.plus(Duration.ofHours(1))).get("test.Logger").get("INFO"));
+        assertEquals(1, rollups.getRecountCount()); // the cut splits a day bucket, the hour table is exact
+        assertEquals(1L, rollups.countByBucket(RollupLogStore.Bucket.DAY, null, null)
+                .values().iterator().next().get("test.Logger").get("INFO"));
+        rollups.delete(DeleteFilter.before(Instant.parse("2025-06-01T00:00:00Z"))); // retention cuts on days
+        assertEquals(1, rollups.getRecountCount());
+    }
+
+    @Test
+    public void testDeleteOffBoundaryRecounts() {
+        RollupLogStore rollups = (RollupLogStore) store;
+        rollups.save(event("test.Logger", "INFO", 10));
+        rollups.save(event("test.Logger", "INFO", 50));
+        rollups.save(event("test.Logger", "WARN", 70));
+        rollups.delete(DeleteFilter.before(BASE.plusSeconds(30)));
+        assertEquals(3, rollups.getRecountCount()); // the bucket holding the cut in each table
+        SortedMap<Instant, Map<String, Map<String, Long>>> perMinute =
+                rollups.countByBucket(RollupLogStore.Bucket.MINUTE, null, null);
+        assertEquals(1L, perMinute.get(BASE).get("test.Logger").get("INFO"));
+        assertEquals(0L, perMinute.get(BASE).get("test.Logger").get("WARN"));
+        assertEquals(1L, perMinute.get(BASE.plusSeconds(60)).get("test.Logger").get("WARN"));
+        assertEquals(1L, rollups.countByBucket(RollupLogStore.Bucket.HOUR, null, null)
+                .get(BASE).get("test.Logger").get("INFO"));
+
+        rollups.delete(DeleteFilter.before(BASE.plusSeconds(90))); // the recounted minute bucket is now empty
+        assertTrue(rollups.countByBucket(RollupLogStore.Bucket.MINUTE, null, null).isEmpty());
+        assertTrue(rollups.countByBucket(RollupLogStore.Bucket.DAY, null, null).isEmpty());
+        assertEquals(6, rollups.getRecountCount());
+    }
+
+    @Test
+    public void testDeleteById() {
+        RollupLogStore rollups = (RollupLogStore) store;
+        LogEvent first = event("test.Logger", "INFO", 0);
+        rollups.save(first);
+        rollups.save(event("test.Logger", "INFO", 1));
+        rollups.deleteById(first.getId());
+        assertEquals(1L, rollups.countByBucket(RollupLogStore.Bucket.DAY, null, null)
+                .values().iterator().next().get("test.Logger").get("INFO"));
+        assertEquals(0, rollups.getRecountCount());
+    }
+
+    @Test
+    public void testLoadExisting() {
+        MemoryLogStore backing = new MemoryLogStore();
+        Instant now = Instant.now();
+        LogEvent recent = event("test.Logger", "INFO", 0);
+        recent.setTimestamp(now.toString());
+        backing.save(recent);
+        backing.save(event("test.Logger", "ERROR", 0)); // 2025, past the minute and hour retention
+        store.close();
+        store = new RollupLogStore(backing, Duration.ofHours(48), Duration.ofDays(90));
+        RollupLogStore rollups = (RollupLogStore) store;
+        assertEquals(1, rollups.getMinuteBucketCount());
+        assertEquals(1, rollups.getHourBucketCount());
+        assertEquals(2, rollups.getDayBucketCount());
+        assertEquals(1L, rollups.countByBucket(RollupLogStore.Bucket.DAY, BASE, BASE.plusSeconds(1))
+                .get(Instant.parse("2025-06-01T00:00:00Z")).get("test.Logger").get("ERROR"));
+    }
+
+    @Test
+    public void testCompaction() {
+        RollupLogStore rollups = (RollupLogStore) store;
+        rollups.save(event("test.Logger", "INFO", 0));
+        rollups.save(event("test.Logger", "INFO", 60));
+        assertEquals(2, rollups.getMinuteBucketCount());
+
+        assertEquals(0, rollups.compact(BASE.plus(Duration.ofHours(1))));
+        assertEquals(2, rollups.compact(BASE.plus(Duration.ofDays(3)))); // past the minute retention
+        assertEquals(0, rollups.getMinuteBucketCount());
+        assertEquals(1, rollups.getHourBucketCount());
+        assertEquals(1, rollups.compact(BASE.plus(Duration.ofDays(100))));
+        assertEquals(0, rollups.getHourBucketCount());
+        assertEquals(1, rollups.getDayBucketCount()); // day buckets are kept
+        assertEquals(3, rollups.getExpiredCount());
+    }
+
+    @Test
+    public void testStatsRange() throws Exception {
+        RollupLogStore rollups = (RollupLogStore) store;
+        rollups.save(event("test.Logger", "ERROR", 0));
+        rollups.save(event("test.Logger", "ERROR", 90));
+        MockServletContext context = new MockServletContext();
+        context.setAttribute(ServletAttributes.LOG_STORE_ATTRIBUTE, rollups);
+        context.setAttribute(ServletAttributes.ROLLUPS_ATTRIBUTE, rollups);
+        StatsCSVServlet servlet = new StatsCSVServlet();
+        servlet.init(new MockServletConfig(context));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("bucket", "minute");
+        request.setParameter("from", BASE.toString());
+        request.setParameter("to", BASE.plus(Duration.ofHours(1)).toString());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.doGet(request, response);
+        assertEquals(200, response.getStatus());
+        assertEquals("text/csv", response.getContentType());
+        String[] lines = response.getContentAsString().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("bucket\tlogger\tALL\tTRACE\tDEBUG\tINFO\tWARN\tERROR\tFATAL\tOFF", lines[0]);
+        assertEquals(BASE + "\ttest.Logger\t0\t0\t0\t0\t0\t1\t0\t0", lines[1]);
+        assertEquals(BASE.plusSeconds(60) + "\ttest.Logger\t0\t0\t0\t0\t0\t1\t0\t0", lines[2]);
+
+        request = new MockHttpServletRequest();
+        request.setParameter("bucket", "week");
+        response = new MockHttpServletResponse();
+        servlet.doGet(request, response);
+        assertEquals(400, response.getStatus());
+        assertEquals("Invalid bucket. Must be one of: minute, hour, day", response.getContentAsString());
+
+        request = new MockHttpServletRequest();
+        request.setParameter("from", BASE.toString());
+        request.setParameter("to", BASE.toString());
+        response = new MockHttpServletResponse();
+        servlet.doGet(request, response);
+        assertEquals(400, response.getStatus());
+    }
+
+    @Test
+    public void testStatsRangeDisabled() throws Exception {
+        MockServletContext context = new MockServletContext();
+        context.setAttribute(ServletAttributes.LOG_STORE_ATTRIBUTE, new MemoryLogStore());
+        StatsHTMLServlet servlet = new StatsHTMLServlet();
+        servlet.init(new MockServletConfig(context));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("bucket", "hour");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.doGet(request, response);
+        assertEquals(400, response.getStatus());
+        assertEquals(StatsRange.DISABLED, response.getContentAsString());
+
+        response = new MockHttpServletResponse();
+        servlet.doGet(new MockHttpServletRequest(), response); // all-time stats need no rollups
+        assertEquals(200, response.getStatus());
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.nagare.logging.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the LogStore conformance suite against the segment file engine, and tests for the following:
+// recovery on reopen, truncation of a torn tail, rolling by size, removal of dead segments,
+// bitmap indexes written on close and loaded on reopen, rebuilt when corrupt.
+public class TestSegmentLogStore extends LogStoreContract {
+
+    @TempDir
+    Path directory;
+
+    @Override
+    protected LogStore createStore() {
+        return new SegmentLogStore(directory);
+    }
+
+
+    @Test
+    public void testReopen() {
+        LogEvent logEvent = event("test.Logger", "WARN", 0);
+        store.save(logEvent);
+        store.save(event("test.Logger", "INFO", 1));
+        store.deleteById(logEvent.getId());
+        store.close();
+
+        store = new SegmentLogStore(directory);
+        assertFalse(store.is_exist(logEvent.getId()));
+        assertEquals(1, store.getAllLogs().size());
+        assertEquals(1L, store.countByLoggerAndLevel().get("test.Logger").get("INFO"));
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        store.save(event("test.Logger", "INFO", 0));
+        store.save(event("test.Logger", "INFO", 1));
+        store.close();
+        Path segment;
+        try (var files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        long size = Files.size(segment);
+        // half written record: length and CRC, then a truncated body
+        Files.write(segment, new byte[] {0, 0, 0, 100, 1, 2, 3, 4, 1, 0, 0}, StandardOpenOption.APPEND);
+
+        store = new SegmentLogStore(directory);
+        assertEquals(size, Files.size(segment));
+        assertEquals(2, store.getAllLogs().size());
+        store.save(event("test.Logger", "INFO", 2));
+        assertEquals(3, store.filterLogs("10", "ALL").size());
+    }
+
+    @Test
+    public void testIndexReopen() throws IOException {
+        for (int i = 0; i < 200; i++) {
+            store.save(event((i % 4 == 0) ? "com.pay.Service" : "com.web.Service", LogLevels.name(1 + i % 6), i));
+        }
+        LogQuery query = new LogQuery(100, "ERROR", "com.pay.Service", null, null);
+        List<LogEvent> before = store.filterLogs(query);
+        store.close();
+        Path index;
+        try (var files = Files.list(directory)) {
+            index = files.filter(file -> file.toString().endsWith(".idx")).findFirst().orElseThrow();
+        }
+
+        store = new SegmentLogStore(directory); // loads the index
+        assertEquals(before, store.filterLogs(query));
+        LogEvent latest = event("com.pay.Service", "FATAL", 500);
+        store.save(latest); // appended after the index was written
+        assertEquals(latest.getId(), store.filterLogs(query).get(0).getId());
+        store.close();
+
+        Files.write(index, new byte[] {1, 2, 3, 4, 5}); // corrupt index, the segment is read instead
+        store = new SegmentLogStore(directory);
+        assertEquals(before.size() + 1, store.filterLogs(query).size());
+        assertEquals(33, store.delete(new DeleteFilter(null, "INFO", "com.pay"))); // every 12 seconds from 0 and 8
+        assertEquals(201 - 33, store.getAllLogs().size());
+    }
+
+    @Test
+    public void testRollingAndDeadSegments() {
+        store.close();
+        SegmentLogStore small = new SegmentLogStore(directory, 1024, Duration.ofHours(1));
+        store = small;
+        List<LogEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(event("test.Logger", "INFO", i));
+        }
+        small.saveAll(batch);
+        assertTrue(small.segmentCount() > 5);
+        assertEquals(10, small.filterLogs("10", "ALL").size());
+        assertEquals(batch.get(99).getTimestamp(), small.filterLogs("1", "ALL").get(0).getTimestamp());
+
+        int before = small.segmentCount();
+        assertEquals(50, small.delete(DeleteFilter.before(Instant.parse(batch.get(50).getTimestamp()))));
+        assertTrue(small.segmentCount() < before); // oldest segments hold no live event anymore
+        assertEquals(50, small.getAllLogs().size());
+        assertEquals(batch.get(50).getTimestamp(), small.filterLogs("100", "ALL").get(49).getTimestamp());
+    }
+}
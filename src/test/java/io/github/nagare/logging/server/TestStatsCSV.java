@@ -139,4 +139,47 @@ public class TestStatsCSV {
         String[] headers = header.split("\t");;
         assertEquals(9, headers.length);
     }
+
+    @Test
+    public void testDoGet5() throws ServletException, IOException {
+        // test If-Modified-Since and If-None-Match against a shared VersionedLogStore
+        VersionedLogStore versioned = new VersionedLogStore(repo);
+        MockServletContext context = new MockServletContext();
+        context.setAttribute(ServletAttributes.EMF_ATTRIBUTE, emf);
+        context.setAttribute(ServletAttributes.LOG_STORE_ATTRIBUTE, versioned);
+        StatsCSVServlet versionedServlet = new StatsCSVServlet();
+        versionedServlet.init(new MockServletConfig(context));
+        TestHelper.populateDB(versioned, 5);
+
+        versionedServlet.doGet(request, response);
+        assertEquals(200, response.getStatus());
+        String etag = response.getHeader("ETag");
+        assertNotNull(etag);
+
+        response = new MockHttpServletResponse();
+        request.addHeader("If-Modified-Since", versioned.getLastModified() + 1000);
+        versionedServlet.doGet(request, response);
+        assertEquals(304, response.getStatus());
+
+        request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "\"other\", W/" + etag);
+        response = new MockHttpServletResponse();
+        versionedServlet.doGet(request, response);
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void testDoGet6() throws ServletException, IOException {
+        // test many loggers
+        int loggers = 300;
+        TestHelper.populateWithLogger(repo, loggers, "test.Logger");
+        servlet.doGet(request, response);
+        assertTrue(response.isCommitted());
+        String[] lines = response.getContentAsString().split("\n");
+        assertEquals(loggers + 1, lines.length);
+        for (int i = 1; i < lines.length; i++) {
+            assertEquals(9, lines[i].split("\t").length);
+        }
+    }
 }
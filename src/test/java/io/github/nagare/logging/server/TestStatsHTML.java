@@ -169,4 +169,21 @@ public class TestStatsHTML {
         assertEquals(9, headers.size());
     }
 
+    @Test
+    public void testDoGet5() throws ServletException, IOException {
+        // test many loggers, and logger names escaped
+        int loggers = 300;
+        TestHelper.populateWithLogger(repo, loggers - 1, "test.Logger");
+        TestHelper.populateWithSameLogger(repo, 1, "<b>test</b>");
+        servlet.doGet(request, response);
+        assertTrue(response.isCommitted());
+        String htmlContent = response.getContentAsString();
+        assertTrue(htmlContent.endsWith("</table></body></html>"));
+        assertFalse(htmlContent.contains("<b>"));
+        Document doc = Jsoup.parse(htmlContent);
+        Elements rows = doc.select("table tr");
+        assertEquals(loggers + 1, rows.size());
+        assertEquals(1, doc.select("td:containsOwn(<b>test</b>)").size());
+    }
+
 }
@@ -0,0 +1,190 @@
+package io.github.nagare.logging.server;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test for the following:
+// snapshot reuse per version and TTL, coalescing, rendering once per format, and sharing by the stats servlets.
+public class TestStatsService {
+
+    private static LogEvent event(String logger, String level) {
+        LogEvent logEvent = new LogEvent();
+        logEvent.setId(UUID.randomUUID().toString());
+        logEvent.setMessage("message");
+        logEvent.setTimestamp("2024-12-05T14:30:45Z");
+        logEvent.setThread("main");
+        logEvent.setLogger(logger);
+        logEvent.setLevel(level);
+        return logEvent;
+    }
+
+
+    @Test
+    public void testReusedUntilWrite() {
+        VersionedLogStore store = new VersionedLogStore(new MemoryLogStore());
+        StatsService service = new StatsService(store, 0);
+        store.save(event("test.Logger", "INFO"));
+
+        StatsService.Snapshot first = service.snapshot();
+        assertSame(first, service.snapshot());
+        assertEquals(1, first.getStats().get("test.Logger").get("INFO"));
+        assertThrows(UnsupportedOperationException.class, () -> first.getStats().remove("test.Logger"));
+        assertEquals(1, service.getMissCount());
+        assertEquals(1, service.getHitCount());
+
+        store.save(event("test.Logger", "INFO"));
+        StatsService.Snapshot second = service.snapshot();
+        assertNotSame(first, second);
+        assertEquals(2, second.getStats().get("test.Logger").get("INFO"));
+        assertEquals(1, first.getStats().get("test.Logger").get("INFO")); // immutable
+        assertEquals(store.getVersion(), second.getVersion());
+    }
+
+    @Test
+    public void testTtl() throws InterruptedException {
+        MemoryLogStore store = new MemoryLogStore(); // keeps no version
+        StatsService uncached = new StatsService(store, 0);
+        assertNotSame(uncached.snapshot(), uncached.snapshot());
+
+        StatsService cached = new StatsService(store, 50);
+        StatsService.Snapshot first = cached.snapshot();
+        assertSame(first, cached.snapshot());
+        Thread.sleep(100);
+        assertNotSame(first, cached.snapshot());
+    }
+
+    @Test
+    public void testRenderOncePerSnapshot() throws IOException {
+        VersionedLogStore store = new VersionedLogStore(new MemoryLogStore());
+        StatsService service = new StatsService(store, 0);
+        AtomicInteger renders = new AtomicInteger();
+        StatsService.Renderer renderer = stats -> new byte[] {(byte) renders.incrementAndGet()};
+
+        assertEquals(1, service.snapshot().render("csv", renderer)[0]);
+        assertEquals(1, service.snapshot().render("csv", renderer)[0]);
+        assertEquals(2, service.snapshot().render("html", renderer)[0]);
+        store.save(event("test.Logger", "WARN"));
+        assertEquals(3, service.snapshot().render("csv", renderer)[0]);
+        assertEquals(3, service.getRenderCount());
+
+        StatsService.Snapshot snapshot = service.snapshot();
+        assertThrows(IOException.class, () -> snapshot.render("xlsx", stats -> { throw new IOException("full"); }));
+        assertEquals(4, snapshot.render("xlsx", renderer)[0]); // failures are not kept
+    }
+
+    @Test
+    public void testWriteStreamsOnce() throws IOException {
+        StatsService service = new StatsService(new VersionedLogStore(new MemoryLogStore()), 0);
+        StatsService.Snapshot snapshot = service.snapshot();
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        snapshot.write("csv", (stats, out) -> {
+            out.write('a');
+            assertEquals(1, first.size()); // reached the client before the end of the rendering
+            out.write('b');
+        }, first);
+        assertEquals("ab", first.toString(StandardCharsets.ISO_8859_1));
+
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        snapshot.write("csv", (stats, out) -> fail("rendered twice"), second);
+        assertEquals("ab", second.toString(StandardCharsets.ISO_8859_1));
+        assertEquals(1, service.getRenderCount());
+
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("client gone");
+            }
+        };
+        assertThrows(IOException.class, () -> snapshot.write("html", (stats, out) -> out.write('c'), broken));
+        assertEquals("c", new String(snapshot.render("html", stats -> fail("rendered twice")), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        AtomicInteger computes = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        LogStore slow = new MemoryLogStore() {
+            @Override
+            public Map<String, Map<String, Long>> countByLoggerAndLevel() {
+                computes.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.countByLoggerAndLevel();
+            }
+        };
+        StatsService service = new StatsService(new VersionedLogStore(slow), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<StatsService.Snapshot>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(service::snapshot));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (service.getMissCount() + service.getCoalescedCount() < 8 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            StatsService.Snapshot first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<StatsService.Snapshot> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, computes.get());
+        assertEquals(1, service.getMissCount());
+        assertEquals(7, service.getCoalescedCount());
+    }
+
+    @Test
+    public void testSharedByServlets() throws Exception {
+        VersionedLogStore store = new VersionedLogStore(new MemoryLogStore());
+        store.save(event("test.Logger", "ERROR"));
+        MockServletContext context = new MockServletContext();
+        context.setAttribute(ServletAttributes.LOG_STORE_ATTRIBUTE, store);
+        StatsCSVServlet csv = new StatsCSVServlet();
+        csv.init(new MockServletConfig(context));
+        StatsHTMLServlet html = new StatsHTMLServlet();
+        html.init(new MockServletConfig(context));
+        StatsExcelServlet excel = new StatsExcelServlet();
+        excel.init(new MockServletConfig(context));
+
+        for (int i = 0; i < 2; i++) {
+            csv.doGet(new MockHttpServletRequest(), new MockHttpServletResponse());
+            html.doGet(new MockHttpServletRequest(), new MockHttpServletResponse());
+            excel.doGet(new MockHttpServletRequest(), new MockHttpServletResponse());
+        }
+        StatsService service = (StatsService) context.getAttribute(ServletAttributes.STATS_SERVICE_ATTRIBUTE);
+        assertNotNull(service);
+        assertEquals(1, service.getMissCount());
+        assertEquals(5, service.getHitCount());
+        assertEquals(3, service.getRenderCount());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        csv.doGet(new MockHttpServletRequest(), response);
+        assertTrue(response.getContentAsString().contains("test.Logger\t0\t0\t0\t0\t0\t1\t0\t0"));
+    }
+}
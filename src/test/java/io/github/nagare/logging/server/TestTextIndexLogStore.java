@@ -0,0 +1,140 @@
+package io.github.nagare.logging.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the LogStore conformance suite against the text index in front of the in-memory engine,
+// and tests for the following: tokenizer, merging of segments, deletes before and after a merge, warm-up,
+// deletes racing with a save, full pages despite events gone from the backing store.
+public class TestTextIndexLogStore extends LogStoreContract {
+
+    @Override
+    protected LogStore createStore() {
+        return new TextIndexLogStore(new MemoryLogStore());
+    }
+
+    private static LogQuery search(String q) {
+        return new LogQuery(1000, "ALL", null, null, null, Tokenizer.terms(q));
+    }
+
+
+    @Test
+    public void testTokenizer() {
+        assertEquals(List.of("payment", "timeout", "id", "42"), Tokenizer.terms("Payment timeout (id=42), payment"));
+        assertEquals(List.of(), Tokenizer.terms("-- !!"));
+        assertEquals(List.of("a"), Tokenizer.terms("a " + "x".repeat(Tokenizer.MAX_TERM_LENGTH + 1)));
+        assertTrue(Tokenizer.containsAll("Timeout in payment", List.of("payment", "timeout")));
+        assertFalse(Tokenizer.containsAll("Timeouts in payment", List.of("payment", "timeout")));
+    }
+
+    @Test
+    public void testMerge() {
+        TextIndexLogStore index = (TextIndexLogStore) store;
+        for (int i = 0; i < 100; i++) { // one segment per save
+            LogEvent logEvent = event("test.Logger", "INFO", i);
+            logEvent.setMessage("request " + i + ((i % 10 == 0) ? " failed" : " done"));
+            index.save(logEvent);
+        }
+        index.mergeNow();
+        assertTrue(index.getSegmentCount() < TextIndexLogStore.MERGE_FACTOR * 2);
+        List<LogEvent> failed = index.filterLogs(search("failed request"));
+        assertEquals(10, failed.size());
+        assertEquals("request 90 failed", failed.get(0).getMessage());
+        assertEquals("request 0 failed", failed.get(9).getMessage());
+    }
+
+    @Test
+    public void testDeleteAndMerge() {
+        TextIndexLogStore index = (TextIndexLogStore) store;
+        LogEvent first = null;
+        for (int i = 0; i < 40; i++) {
+            LogEvent logEvent = event((i % 2 == 0) ? "com.pay.Service" : "com.web.Service", "INFO", i);
+            logEvent.setMessage("checkout step " + (i % 4));
+            index.save(logEvent);
+            if (i == 0) first = logEvent;
+        }
+        index.deleteById(first.getId());
+        assertEquals(9, index.filterLogs(search("checkout 0")).size());
+        assertEquals(20, index.delete(new DeleteFilter(null, null, "com.web")));
+        assertTrue(index.filterLogs(search("step 1")).isEmpty());
+        index.mergeNow(); // deleted documents are dropped
+        assertEquals(9, index.filterLogs(search("checkout 0")).size());
+        assertEquals(10, index.filterLogs(search("step 2")).size());
+        assertTrue(index.filterLogs(search("step 3")).isEmpty());
+    }
+
+    @Test
+    public void testWarmUp() {
+        MemoryLogStore backing = new MemoryLogStore();
+        LogEvent logEvent = event("test.Logger", "WARN", 0);
+        logEvent.setMessage("disk almost full");
+        backing.save(logEvent);
+        store = new TextIndexLogStore(backing);
+        assertEquals(logEvent.getId(), store.filterLogs(search("full disk")).get(0).getId());
+    }
+
+    @Test
+    public void testDeleteWhileSaving() {
+        // deletes made after the backing store saved a batch, before it is indexed
+        List<Runnable> duringSave = new ArrayList<>();
+        AtomicInteger reads = new AtomicInteger();
+        MemoryLogStore backing = new MemoryLogStore() {
+            @Override
+            public void saveAll(List<LogEvent> logEvents) {
+                super.saveAll(logEvents);
+                duringSave.forEach(Runnable::run);
+                duringSave.clear();
+            }
+
+            @Override
+            public LogEvent getById(String id) {
+                reads.incrementAndGet();
+                return super.getById(id);
+            }
+        };
+        TextIndexLogStore index = new TextIndexLogStore(backing);
+        store = index;
+        for (int i = 0; i < 5; i++) {
+            LogEvent logEvent = event("test.Logger", "INFO", i);
+            logEvent.setMessage("disk full " + i);
+            index.save(logEvent);
+        }
+        LogEvent byId = event("test.Logger", "INFO", 10);
+        byId.setMessage("disk full by id");
+        LogEvent byFilter = event("com.web.Service", "INFO", 11);
+        byFilter.setMessage("disk full by filter");
+        LogEvent kept = event("test.Logger", "ERROR", 12);
+        kept.setMessage("disk full kept");
+        duringSave.add(() -> index.deleteById(byId.getId()));
+        duringSave.add(() -> index.delete(new DeleteFilter(null, "INFO", "com.web")));
+        index.saveAll(List.of(byId, byFilter, kept));
+
+        reads.set(0);
+        List<LogEvent> latest = index.filterLogs(new LogQuery(3, "ALL", null, null, null, Tokenizer.terms("disk full")));
+        assertEquals(List.of("disk full kept", "disk full 4", "disk full 3"),
+                latest.stream().map(LogEvent::getMessage).toList());
+        assertEquals(3, reads.get()); // the deleted documents are marked, no read is wasted on them
+    }
+
+    @Test
+    public void testFullPageDespiteGhosts() {
+        // events deleted from the backing store behind the index do not shorten the page
+        TextIndexLogStore index = (TextIndexLogStore) store;
+        for (int i = 0; i < 10; i++) {
+            LogEvent logEvent = event("test.Logger", "INFO", i);
+            logEvent.setMessage("disk full " + i);
+            index.save(logEvent);
+        }
+        for (LogEvent logEvent : index.getBacking().filterLogs("3", "ALL")) {
+            index.getBacking().deleteById(logEvent.getId());
+        }
+        List<LogEvent> latest = index.filterLogs(new LogQuery(4, "ALL", null, null, null, Tokenizer.terms("disk")));
+        assertEquals(List.of("disk full 6", "disk full 5", "disk full 4", "disk full 3"),
+                latest.stream().map(LogEvent::getMessage).toList());
+    }
+}